@@ -0,0 +1,63 @@
+package com.example.crypto_exchange.benchmarks;
+
+import com.example.crypto_exchange.entity.UserBalance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link UserBalance#addAmount}/{@link UserBalance#subtractAmount} and the raw BigDecimal arithmetic
+ * behind them, at the scale (18) stored in the <b>balances</b> table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class BalanceArithmeticBenchmark {
+
+    private UserBalance balance;
+    private BigDecimal amount;
+    private BigDecimal balanceAmount;
+
+    @Setup
+    public void setUp() {
+        balance = new UserBalance(1L, 1L, new BigDecimal("1000000.000000000000000000"));
+        balanceAmount = balance.getAmount();
+        amount = new BigDecimal("0.123456789012345678");
+    }
+
+    /**
+     * Credit followed by a debit of the same amount, so the balance does not drift between invocations
+     */
+    @Benchmark
+    public UserBalance addThenSubtract() {
+        balance.addAmount(amount);
+        balance.subtractAmount(amount);
+        return balance;
+    }
+
+    @Benchmark
+    public boolean hasSufficientBalance() {
+        return balance.hasSufficientBalance(amount);
+    }
+
+    /**
+     * Baseline: the same arithmetic without the entity (no timestamp update)
+     */
+    @Benchmark
+    public BigDecimal bigDecimalAddThenSubtract() {
+        return balanceAmount.add(amount).subtract(amount);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.crypto_exchange.benchmarks;
+
+import com.example.crypto_exchange.dto.TransferRequest;
+import com.example.crypto_exchange.entity.Token;
+import com.example.crypto_exchange.entity.TransactionLog;
+import com.example.crypto_exchange.entity.User;
+import com.example.crypto_exchange.repository.TokenRepository;
+import com.example.crypto_exchange.repository.UserRepository;
+import com.example.crypto_exchange.service.TokenRegistry;
+import com.example.crypto_exchange.service.TransactionLogService;
+import com.example.crypto_exchange.service.TransferService;
+import com.example.crypto_exchange.service.UserBalanceService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The balance, transfer and logging services end to end against PostgreSQL, with Spring's transaction
+ * proxies, Hibernate and the connection pool in the loop.
+ *
+ * <p>By default an embedded PostgreSQL is started for the run (it refuses to start as root). Pass
+ * {@code -Dbenchmark.jdbc.url=... -Dbenchmark.jdbc.username=... -Dbenchmark.jdbc.password=...} to use an
+ * existing, empty database instead; its schema is recreated. H2 is not an option: balance credits are a
+ * PostgreSQL {@code INSERT ... ON CONFLICT} upsert.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class DatabaseServiceBenchmark {
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = Token.class)
+    @EnableJpaRepositories(basePackageClasses = TokenRepository.class)
+    @Import({TokenRegistry.class, UserBalanceService.class, TransactionLogService.class, TransferService.class})
+    static class ServiceContext {
+    }
+
+    /**
+     * Number of users transfers are spread over; fewer users means more row contention
+     */
+    @Param({"1000"})
+    public int users;
+
+    private EmbeddedPostgres postgres;
+    private ConfigurableApplicationContext context;
+    private UserBalanceService userBalanceService;
+    private TransactionLogService transactionLogService;
+    private TransferService transferService;
+    private TransactionTemplate transactionTemplate;
+    private long[] userIds;
+    private BigDecimal amount;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String url = System.getProperty("benchmark.jdbc.url");
+        String username = System.getProperty("benchmark.jdbc.username", "postgres");
+        String password = System.getProperty("benchmark.jdbc.password", "postgres");
+        if (url == null) {
+            postgres = EmbeddedPostgres.start();
+            url = postgres.getJdbcUrl("postgres", "postgres");
+        }
+
+        context = new SpringApplicationBuilder(ServiceContext.class)
+                .properties("spring.config.location=classpath:benchmark.properties",
+                        "spring.datasource.url=" + url,
+                        "spring.datasource.username=" + username,
+                        "spring.datasource.password=" + password)
+                .run();
+        userBalanceService = context.getBean(UserBalanceService.class);
+        transactionLogService = context.getBean(TransactionLogService.class);
+        transferService = context.getBean(TransferService.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        context.getBean(TokenRepository.class).save(new Token("ETH", "Ethereum", 18));
+        context.getBean(TokenRegistry.class).refresh();
+        List<User> created = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            created.add(new User("bench" + i + "@example.com", "Bench " + i));
+        }
+        userIds = context.getBean(UserRepository.class).saveAll(created).stream().mapToLong(User::getUserId).toArray();
+        BigDecimal initialBalance = new BigDecimal("1000000");
+        for (long userId : userIds) {
+            userBalanceService.setBalance(userId, "ETH", initialBalance);
+        }
+        amount = new BigDecimal("0.000001");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    @Benchmark
+    public BigDecimal getBalance() {
+        return userBalanceService.getBalance(randomUser(), "ETH");
+    }
+
+    @Benchmark
+    public String processTransfer() {
+        long from = randomUser();
+        long to = randomUser();
+        while (to == from) {
+            to = randomUser();
+        }
+        return transferService.processTransfer(new TransferRequest(from, to, "ETH", amount));
+    }
+
+    @Benchmark
+    public TransactionLog logDeposit() {
+        return transactionLogService.logDeposit(randomUser(), "ETH", amount, "0x742d35Cc6634C0532925a3b844Bc454e4438f44e", "0xabc");
+    }
+
+    /**
+     * The two {@code TRADE} entries of one fill in one transaction, which Hibernate flushes as one batch
+     */
+    @Benchmark
+    public TransactionLog logFill() {
+        long buyer = randomUser();
+        long seller = randomUser();
+        return transactionTemplate.execute(status -> {
+            transactionLogService.logTrade(buyer, 1L, 1L, amount);
+            return transactionLogService.logTrade(seller, 2L, 1L, amount);
+        });
+    }
+
+    private long randomUser() {
+        return userIds[ThreadLocalRandom.current().nextInt(userIds.length)];
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.crypto_exchange.benchmarks;
+
+import com.example.crypto_exchange.dto.TransferRequest;
+import com.example.crypto_exchange.entity.Token;
+import com.example.crypto_exchange.entity.TransactionLog;
+import com.example.crypto_exchange.entity.UserBalance;
+import com.example.crypto_exchange.repository.TokenRepository;
+import com.example.crypto_exchange.repository.TransactionLogRepository;
+import com.example.crypto_exchange.repository.UserBalanceRepository;
+import com.example.crypto_exchange.repository.UserRepository;
+import com.example.crypto_exchange.service.TokenRegistry;
+import com.example.crypto_exchange.service.TransactionLogService;
+import com.example.crypto_exchange.service.TransferService;
+import com.example.crypto_exchange.service.UserBalanceService;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+/**
+ * Service-layer overhead of the balance, transfer and logging paths with the repositories mocked out:
+ * validation, token lookups, entity construction and logging, but no database.
+ *
+ * <p>The mocks are stub-only, so they do not record invocations and do not grow during a run.
+ * Mockito's own dispatch is part of the measured cost; compare releases, not absolute numbers.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class MockedServiceBenchmark {
+
+    private UserBalanceService userBalanceService;
+    private TransactionLogService transactionLogService;
+    private TransferService transferService;
+    private TransferRequest transferRequest;
+    private BigDecimal amount;
+
+    @Setup
+    public void setUp() {
+        TokenRepository tokenRepository = stubOnly(TokenRepository.class);
+        Token eth = new Token("ETH", "Ethereum", 18).setTokenId(1L);
+        when(tokenRepository.findAll()).thenReturn(List.of(eth));
+        TokenRegistry tokenRegistry = new TokenRegistry(tokenRepository);
+        tokenRegistry.refresh();
+
+        UserBalanceRepository userBalanceRepository = stubOnly(UserBalanceRepository.class);
+        when(userBalanceRepository.findByUserIdAndTokenId(anyLong(), anyLong()))
+                .thenReturn(Optional.of(new UserBalance(1L, 1L, new BigDecimal("100"))));
+        when(userBalanceRepository.debitIfSufficient(anyLong(), anyLong(), any())).thenReturn(1);
+        when(userBalanceRepository.upsertCredit(anyLong(), anyLong(), any())).thenReturn(1);
+
+        TransactionLogRepository transactionLogRepository = stubOnly(TransactionLogRepository.class);
+        when(transactionLogRepository.save(any(TransactionLog.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        userBalanceService = new UserBalanceService(userBalanceRepository, stubOnly(UserRepository.class), tokenRegistry, Optional.empty());
+        transactionLogService = new TransactionLogService(transactionLogRepository, tokenRegistry, Optional.empty());
+        transferService = new TransferService(userBalanceService, transactionLogService);
+        transferRequest = new TransferRequest(1L, 2L, "ETH", new BigDecimal("0.01"));
+        amount = new BigDecimal("0.01");
+    }
+
+    @Benchmark
+    public BigDecimal getBalance() {
+        return userBalanceService.getBalance(1L, "ETH");
+    }
+
+    @Benchmark
+    public boolean hasSufficientBalance() {
+        return userBalanceService.hasSufficientBalance(1L, 1L, amount);
+    }
+
+    @Benchmark
+    public String processTransfer() {
+        return transferService.processTransfer(transferRequest);
+    }
+
+    @Benchmark
+    public TransactionLog logDeposit() {
+        return transactionLogService.logDeposit(1L, "ETH", amount, "0x742d35Cc6634C0532925a3b844Bc454e4438f44e", "0xabc");
+    }
+
+    private static <T> T stubOnly(Class<T> type) {
+        return Mockito.mock(type, Mockito.withSettings().stubOnly());
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.crypto_exchange.benchmarks;
+
+import com.example.crypto_exchange.matching.OrderBook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link OrderBook} in steady state: limit orders priced randomly around a fixed mid price are matched and
+ * their remainder rested; once {@code restingOrders} orders have rested, each new one first cancels the oldest,
+ * so the book holds at most that many orders.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class OrderBookBenchmark {
+
+    private static final long MID = 100_000;
+
+    /**
+     * Price levels on each side of the mid price that orders are spread over
+     */
+    @Param({"50", "1000"})
+    public int spread;
+
+    @Param({"10000"})
+    public int restingOrders;
+
+    private OrderBook book;
+    private SplittableRandom random;
+    private long[] resting;
+    private int oldest;
+    private long nextOrderId;
+    private long traded;
+    private final OrderBook.Listener listener =
+            (makerOrderId, makerUserId, takerOrderId, takerUserId, takerBuys, price, quantity, makerRemaining) ->
+                    traded += quantity;
+
+    @Setup
+    public void setUp() {
+        book = new OrderBook(1 << 16, 4096);
+        random = new SplittableRandom(42);
+        resting = new long[restingOrders];
+        oldest = 0;
+        nextOrderId = 1;
+        for (int n = 0; n < 4 * restingOrders; n++) {
+            placeNext();
+        }
+    }
+
+    @Benchmark
+    public void place(Blackhole blackhole) {
+        placeNext();
+        blackhole.consume(traded);
+    }
+
+    private void placeNext() {
+        long orderId = nextOrderId++;
+        boolean buy = random.nextBoolean();
+        // Mostly passive orders, some crossing the mid price by a few ticks
+        long offset = random.nextInt(spread) - 3;
+        long price = buy ? MID - offset : MID + offset;
+        long quantity = 1 + random.nextInt(10);
+        long left = book.match(orderId, orderId, buy, price, quantity, listener);
+        if (left > 0) {
+            if (resting[oldest] != 0) {
+                // -1 if it has been filled meanwhile
+                book.cancel(resting[oldest]);
+            }
+            book.add(orderId, orderId, buy, price, left);
+            resting[oldest] = orderId;
+            oldest = oldest + 1 == resting.length ? 0 : oldest + 1;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.crypto_exchange.benchmarks;
+
+import com.example.crypto_exchange.dto.OrderBookDepth;
+import com.example.crypto_exchange.dto.OrderRequest;
+import com.example.crypto_exchange.dto.OrderResponse;
+import com.example.crypto_exchange.entity.OrderSide;
+import com.example.crypto_exchange.entity.OrderType;
+import com.example.crypto_exchange.entity.Token;
+import com.example.crypto_exchange.entity.TradingPair;
+import com.example.crypto_exchange.entity.User;
+import com.example.crypto_exchange.matching.MatchingEngine;
+import com.example.crypto_exchange.repository.TokenRepository;
+import com.example.crypto_exchange.repository.TradingPairRepository;
+import com.example.crypto_exchange.repository.UserRepository;
+import com.example.crypto_exchange.service.TokenRegistry;
+import com.example.crypto_exchange.service.TransactionLogService;
+import com.example.crypto_exchange.service.UserBalanceService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Placing spot orders through {@link MatchingEngine} end to end against PostgreSQL: reservation and order row,
+ * matching on the book thread, and settlement of the trades with balances, trade log entries and order rows.
+ *
+ * <p>Every order is one lot at the same price on a random side, so about half of them trade with a resting order
+ * and the rest rest, which keeps the book small and steady. Database setup as in {@link DatabaseServiceBenchmark}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class PairMatcherBenchmark {
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = Token.class)
+    @EnableJpaRepositories(basePackageClasses = TokenRepository.class)
+    @Import({TokenRegistry.class, UserBalanceService.class, TransactionLogService.class})
+    static class MatchingContext {
+    }
+
+    /**
+     * Number of users orders are spread over; fewer users means more balance row contention
+     */
+    @Param({"1000"})
+    public int users;
+
+    private EmbeddedPostgres postgres;
+    private ConfigurableApplicationContext context;
+    private MatchingEngine matchingEngine;
+    private long[] userIds;
+    private BigDecimal price;
+    private BigDecimal quantity;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String url = System.getProperty("benchmark.jdbc.url");
+        String username = System.getProperty("benchmark.jdbc.username", "postgres");
+        String password = System.getProperty("benchmark.jdbc.password", "postgres");
+        if (url == null) {
+            postgres = EmbeddedPostgres.start();
+            url = postgres.getJdbcUrl("postgres", "postgres");
+        }
+
+        context = new SpringApplicationBuilder(MatchingContext.class)
+                .properties("spring.config.location=classpath:benchmark.properties",
+                        "spring.datasource.url=" + url,
+                        "spring.datasource.username=" + username,
+                        "spring.datasource.password=" + password)
+                .run();
+        UserBalanceService userBalanceService = context.getBean(UserBalanceService.class);
+        TokenRepository tokenRepository = context.getBean(TokenRepository.class);
+        Token base = tokenRepository.save(new Token("ETH", "Ethereum", 18));
+        Token quote = tokenRepository.save(new Token("USDT", "Tether", 6));
+        context.getBean(TokenRegistry.class).refresh();
+        context.getBean(TradingPairRepository.class).save(new TradingPair("ETHUSDT", base.getTokenId(),
+                quote.getTokenId(), new BigDecimal("0.01"), new BigDecimal("0.001")));
+        List<User> created = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            created.add(new User("bench" + i + "@example.com", "Bench " + i));
+        }
+        userIds = context.getBean(UserRepository.class).saveAll(created).stream().mapToLong(User::getUserId).toArray();
+        for (long userId : userIds) {
+            userBalanceService.setBalance(userId, "ETH", new BigDecimal("1000000"));
+            userBalanceService.setBalance(userId, "USDT", new BigDecimal("1000000000"));
+        }
+        price = new BigDecimal("2000.00");
+        quantity = new BigDecimal("0.001");
+
+        // Created once the pair exists: the engine builds its books when it starts
+        matchingEngine = context.getAutowireCapableBeanFactory().createBean(MatchingEngine.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.getAutowireCapableBeanFactory().destroyBean(matchingEngine);
+        context.close();
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    @Benchmark
+    public OrderResponse placeLimitOrder() {
+        return place();
+    }
+
+    /**
+     * Placing orders while the book is read: the book thread serves depth between orders, so depth throughput
+     * shows how long that thread is held per order
+     */
+    @Benchmark
+    @Group("trading")
+    @GroupThreads(4)
+    public OrderResponse tradingPlace() {
+        return place();
+    }
+
+    @Benchmark
+    @Group("trading")
+    @GroupThreads(1)
+    public OrderBookDepth tradingDepth() {
+        return matchingEngine.getDepth("ETHUSDT", 5);
+    }
+
+    private OrderResponse place() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return matchingEngine.placeOrder(new OrderRequest()
+                .setUserId(userIds[random.nextInt(userIds.length)])
+                .setPair("ETHUSDT")
+                .setSide(random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL)
+                .setType(OrderType.LIMIT)
+                .setPrice(price)
+                .setQuantity(quantity));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.crypto_exchange.benchmarks;
+
+import com.example.crypto_exchange.dto.TransferRequest;
+import com.example.crypto_exchange.dto.WithdrawRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bean Validation of the request DTOs, as done for {@code @Valid} controller arguments.
+ * The invalid requests measure the cost of building constraint violations (message interpolation).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class RequestValidationBenchmark {
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private TransferRequest validTransfer;
+    private TransferRequest invalidTransfer;
+    private WithdrawRequest validWithdraw;
+    private WithdrawRequest invalidWithdraw;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        validTransfer = new TransferRequest(1L, 2L, "ETH", new BigDecimal("0.5"));
+        invalidTransfer = new TransferRequest(null, 2L, " ", new BigDecimal("-1"));
+        validWithdraw = new WithdrawRequest(1L, "USDT", new BigDecimal("25"), "0x742d35Cc6634C0532925a3b844Bc454e4438f44e");
+        invalidWithdraw = new WithdrawRequest(0L, "USDT", BigDecimal.ZERO, "0x742d35");
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<TransferRequest>> validTransferRequest() {
+        return validator.validate(validTransfer);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<TransferRequest>> invalidTransferRequest() {
+        return validator.validate(invalidTransfer);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<WithdrawRequest>> validWithdrawRequest() {
+        return validator.validate(validWithdraw);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<WithdrawRequest>> invalidWithdrawRequest() {
+        return validator.validate(invalidWithdraw);
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.crypto_exchange.loadtest;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Builds deposit, transfer and withdrawal requests against the exchange API with a weighted operation
+ * mix, uniformly random users from {@code [firstUser, lastUser]} and uniformly random tokens.
+ */
+public class ExchangeRequests implements LoadGenerator.RequestSource {
+
+    public static final String DEPOSIT = "deposit";
+    public static final String TRANSFER = "transfer";
+    public static final String WITHDRAW = "withdraw";
+
+    private final URI baseUri;
+    private final String authorization;
+    private final Duration timeout;
+    private final String[] operations;
+    private final double[] cumulativeWeights;
+    private final long firstUser;
+    private final long lastUser;
+    private final List<String> tokens;
+    private final BigDecimal amount;
+    private final String withdrawPath;
+
+    /**
+     * @param authorization Value of the {@code Authorization} header, see {@link #basicAuthorization}
+     */
+    public ExchangeRequests(URI baseUri, String authorization, Duration timeout, Map<String, Double> mix,
+                            long firstUser, long lastUser, List<String> tokens, BigDecimal amount, String withdrawPath) {
+        if (lastUser - firstUser < 1) {
+            throw new IllegalArgumentException("Transfers need at least two users");
+        }
+        this.baseUri = baseUri;
+        this.authorization = authorization;
+        this.timeout = timeout;
+        this.operations = mix.keySet().toArray(String[]::new);
+        this.cumulativeWeights = new double[operations.length];
+        double total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+        this.firstUser = firstUser;
+        this.lastUser = lastUser;
+        this.tokens = List.copyOf(tokens);
+        this.amount = amount;
+        this.withdrawPath = withdrawPath;
+    }
+
+    public static String basicAuthorization(String username, String password) {
+        return "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parse an operation mix such as {@code deposit:2,transfer:5,withdraw:1}.
+     */
+    public static Map<String, Double> parseMix(String mix) {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] nameAndWeight = part.trim().split(":");
+            String operation = nameAndWeight[0].trim().toLowerCase(Locale.ROOT);
+            if (!List.of(DEPOSIT, TRANSFER, WITHDRAW).contains(operation)) {
+                throw new IllegalArgumentException("Unknown operation in mix: " + operation);
+            }
+            double weight = nameAndWeight.length > 1 ? Double.parseDouble(nameAndWeight[1]) : 1;
+            if (weight > 0) {
+                weights.put(operation, weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Operation mix is empty: " + mix);
+        }
+        return weights;
+    }
+
+    @Override
+    public LoadGenerator.LoadRequest next(ThreadLocalRandom random) {
+        double pick = random.nextDouble(cumulativeWeights[cumulativeWeights.length - 1]);
+        int index = 0;
+        while (cumulativeWeights[index] <= pick) {
+            index++;
+        }
+        String operation = operations[index];
+        long user = random.nextLong(firstUser, lastUser + 1);
+        String token = tokens.get(random.nextInt(tokens.size()));
+        return new LoadGenerator.LoadRequest(operation, switch (operation) {
+            case DEPOSIT -> deposit(user, token, amount);
+            case TRANSFER -> transfer(user, otherUser(random, user), token);
+            default -> withdraw(user, token, random);
+        });
+    }
+
+    /**
+     * Deposit request used to give every user a starting balance before the measured run.
+     */
+    public HttpRequest deposit(long user, String token, BigDecimal depositAmount) {
+        return post("/api/v1/deposit", String.format(
+                "{\"userId\":%d,\"tokenSymbol\":\"%s\",\"amount\":%s,\"walletAddress\":\"%s\"}",
+                user, token, depositAmount.toPlainString(), walletAddress(user)));
+    }
+
+    private HttpRequest transfer(long fromUser, long toUser, String token) {
+        return post("/api/v1/transfer", String.format(
+                "{\"fromUserId\":%d,\"toUserId\":%d,\"tokenSymbol\":\"%s\",\"amount\":%s}",
+                fromUser, toUser, token, amount.toPlainString()));
+    }
+
+    private HttpRequest withdraw(long user, String token, ThreadLocalRandom random) {
+        return post(withdrawPath, String.format(
+                "{\"userId\":%d,\"tokenSymbol\":\"%s\",\"amount\":%s,\"toAddress\":\"0x%040x\"}",
+                user, token, amount.toPlainString(), random.nextLong() & Long.MAX_VALUE));
+    }
+
+    private long otherUser(ThreadLocalRandom random, long user) {
+        long other = random.nextLong(firstUser, lastUser);
+        return other >= user ? other + 1 : other;
+    }
+
+    private HttpRequest post(String path, String json) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .header("Authorization", authorization)
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    /**
+     * A stable, valid-looking deposit address per user
+     */
+    static String walletAddress(long user) {
+        return String.format("0x%040x", user);
+    }
+}
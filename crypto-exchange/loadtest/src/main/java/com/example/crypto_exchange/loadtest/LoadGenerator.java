@@ -0,0 +1,187 @@
+package com.example.crypto_exchange.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model HTTP load generator: requests are started on a fixed schedule of {@code rps} arrivals per
+ * second (evenly spaced or Poisson), whether or not earlier requests have completed.
+ *
+ * <p>Latency is measured from the <em>scheduled</em> start of a request, not from when it was actually
+ * sent, so time spent queued behind a slow server is included (no coordinated omission). Arrivals that
+ * would exceed {@code maxInFlight} outstanding requests are not sent and are counted as dropped: the
+ * system under test could not keep up with the offered load.</p>
+ */
+public class LoadGenerator {
+
+    /**
+     * A request to send, tagged with the operation it is reported under.
+     */
+    public record LoadRequest(String operation, HttpRequest request) {
+    }
+
+    /**
+     * Produces the request for each arrival; called from the scheduling thread only.
+     */
+    @FunctionalInterface
+    public interface RequestSource {
+        LoadRequest next(ThreadLocalRandom random);
+    }
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final HttpClient httpClient;
+    private final double rps;
+    private final boolean poisson;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<String, OperationStats> stats = new ConcurrentHashMap<>();
+
+    private volatile long measureFromNanos = Long.MAX_VALUE;
+
+    public LoadGenerator(HttpClient httpClient, double rps, boolean poisson, int maxInFlight) {
+        if (rps <= 0) {
+            throw new IllegalArgumentException("rps must be positive");
+        }
+        this.httpClient = httpClient;
+        this.rps = rps;
+        this.poisson = poisson;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Offer load for {@code warmup + duration}; only requests scheduled after the warm-up are reported.
+     * Returns once the requests still in flight have completed or {@code drainTimeout} has passed.
+     */
+    public LoadReport run(RequestSource source, Duration warmup, Duration duration, Duration drainTimeout,
+                          Duration progressInterval, PrintStream progress) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long start = System.nanoTime();
+        measureFromNanos = start + warmup.toNanos();
+        long end = measureFromNanos + duration.toNanos();
+        long meanIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rps);
+        long nextProgress = measureFromNanos + progressInterval.toNanos();
+
+        long intended = start;
+        while (intended < end) {
+            long now = System.nanoTime();
+            if (intended > now) {
+                LockSupport.parkNanos(intended - now);
+                continue;
+            }
+            send(source.next(random), intended);
+            intended += poisson
+                    ? (long) (-Math.log(1.0 - random.nextDouble()) * meanIntervalNanos)
+                    : meanIntervalNanos;
+            if (now >= nextProgress) {
+                printProgress(progress, now - measureFromNanos);
+                nextProgress += progressInterval.toNanos();
+            }
+        }
+
+        long drainDeadline = System.nanoTime() + drainTimeout.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        int unfinished = inFlight.get();
+
+        Map<String, LoadReport.OperationResult> results = new TreeMap<>();
+        stats.forEach((operation, operationStats) -> results.put(operation, operationStats.result()));
+        return new LoadReport(rps, duration, unfinished, results);
+    }
+
+    private void send(LoadRequest loadRequest, long intendedNanos) {
+        OperationStats operationStats = stats.computeIfAbsent(loadRequest.operation(), op -> new OperationStats());
+        boolean measured = intendedNanos >= measureFromNanos;
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            if (measured) {
+                operationStats.dropped.increment();
+            }
+            return;
+        }
+        httpClient.sendAsync(loadRequest.request(), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, failure) -> {
+                    long latency = System.nanoTime() - intendedNanos;
+                    inFlight.decrementAndGet();
+                    if (!measured) {
+                        return;
+                    }
+                    if (failure != null) {
+                        operationStats.failures.increment();
+                        operationStats.failureTypes
+                                .computeIfAbsent(rootCause(failure).getClass().getSimpleName(), type -> new LongAdder())
+                                .increment();
+                        return;
+                    }
+                    operationStats.recorder.recordValue(Math.min(latency, HIGHEST_TRACKABLE_NANOS));
+                    operationStats.statuses.computeIfAbsent(response.statusCode(), status -> new LongAdder()).increment();
+                });
+    }
+
+    private void printProgress(PrintStream progress, long elapsedNanos) {
+        if (progress == null || elapsedNanos < 0) {
+            return;
+        }
+        StringBuilder line = new StringBuilder(String.format("[%4ds] in-flight=%d", TimeUnit.NANOSECONDS.toSeconds(elapsedNanos), inFlight.get()));
+        new TreeMap<>(stats).forEach((operation, operationStats) -> {
+            Histogram interval = operationStats.interval();
+            line.append(String.format("  %s: n=%d p50=%.1fms p99=%.1fms", operation, interval.getTotalCount(),
+                    millis(interval.getValueAtPercentile(50)), millis(interval.getValueAtPercentile(99))));
+        });
+        progress.println(line);
+    }
+
+    private static Throwable rootCause(Throwable failure) {
+        Throwable cause = failure;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static final class OperationStats {
+        final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+        final Histogram total = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+        final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        final Map<String, LongAdder> failureTypes = new ConcurrentHashMap<>();
+        final LongAdder failures = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+
+        /**
+         * Latencies recorded since the previous call, also folded into the running total
+         */
+        synchronized Histogram interval() {
+            Histogram interval = recorder.getIntervalHistogram();
+            total.add(interval);
+            return interval;
+        }
+
+        LoadReport.OperationResult result() {
+            interval();
+            Map<Integer, Long> statusCounts = new TreeMap<>();
+            statuses.forEach((status, count) -> statusCounts.put(status, count.sum()));
+            Map<String, Long> failureCounts = new TreeMap<>();
+            failureTypes.forEach((type, count) -> failureCounts.put(type, count.sum()));
+            return new LoadReport.OperationResult(total.copy(), statusCounts, failureCounts, failures.sum(), dropped.sum());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.crypto_exchange.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Outcome of a load run: per operation, the latency distribution of completed requests, response status
+ * counts, transport failures and dropped arrivals.
+ */
+public record LoadReport(double offeredRps, Duration duration, int unfinished, Map<String, OperationResult> operations) {
+
+    /**
+     * @param latencies Latency of every completed request in nanoseconds, measured from its scheduled start
+     * @param statuses  Completed requests per HTTP status
+     * @param failureTypes Transport failures (timeouts, refused connections) per exception type
+     * @param dropped   Arrivals not sent because too many requests were already in flight
+     */
+    public record OperationResult(Histogram latencies, Map<Integer, Long> statuses, Map<String, Long> failureTypes,
+                                  long failures, long dropped) {
+
+        public long completed() {
+            return latencies.getTotalCount();
+        }
+
+        public long successful() {
+            return statuses.entrySet().stream()
+                    .filter(entry -> entry.getKey() >= 200 && entry.getKey() < 300)
+                    .mapToLong(Map.Entry::getValue)
+                    .sum();
+        }
+
+        /**
+         * Share of arrivals that did not get a 2xx response
+         */
+        public double errorRate() {
+            long attempted = completed() + failures + dropped;
+            return attempted == 0 ? 0 : 1.0 - (double) successful() / attempted;
+        }
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%nOffered load: %.1f req/s for %ds%n", offeredRps, duration.toSeconds());
+        out.printf("%-10s %9s %9s %8s %9s %9s %9s %9s %9s %9s%n",
+                "operation", "requests", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "dropped");
+        operations.forEach((operation, result) -> {
+            Histogram latencies = result.latencies();
+            out.printf("%-10s %9d %9.1f %7.2f%% %9.1f %9.1f %9.1f %9.1f %9.1f %9d%n",
+                    operation,
+                    result.completed() + result.failures(),
+                    result.completed() / (double) Math.max(1, duration.toSeconds()),
+                    result.errorRate() * 100,
+                    LoadGenerator.millis(latencies.getValueAtPercentile(50)),
+                    LoadGenerator.millis(latencies.getValueAtPercentile(90)),
+                    LoadGenerator.millis(latencies.getValueAtPercentile(99)),
+                    LoadGenerator.millis(latencies.getValueAtPercentile(99.9)),
+                    LoadGenerator.millis(latencies.getMaxValue()),
+                    result.dropped());
+        });
+        operations.forEach((operation, result) -> {
+            out.printf("%-10s statuses=%s", operation, result.statuses());
+            if (!result.failureTypes().isEmpty()) {
+                out.printf(" failures=%s", result.failureTypes());
+            }
+            out.println();
+        });
+        if (unfinished > 0) {
+            out.printf("%d requests were still in flight when the run ended%n", unfinished);
+        }
+    }
+
+    /**
+     * Write one HdrHistogram percentile distribution ({@code <operation>.hgrm}, in milliseconds) per operation,
+     * for plotting or comparing runs.
+     */
+    public void writePercentileDistributions(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Map.Entry<String, OperationResult> entry : operations.entrySet()) {
+            try (PrintStream out = new PrintStream(directory.resolve(entry.getKey() + ".hgrm").toFile())) {
+                entry.getValue().latencies().outputPercentileDistribution(out, 1_000_000.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.crypto_exchange.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+/**
+ * Command-line entry point: optionally starts a {@link StubEthereumNode}, gives the test users a starting
+ * balance, then drives the exchange with an open-model load and prints latency percentiles and error rates.
+ *
+ * <p>Start the exchange against the stub node with {@code --infura.api.url=http://127.0.0.1:8545}
+ * (see the README). Options, all {@code --name=value}:</p>
+ * <pre>
+ *   --target=http://localhost:8081    exchange base URL
+ *   --rps=50                          offered requests per second
+ *   --duration=60 --warmup=10         measured and warm-up seconds
+ *   --mix=deposit:2,transfer:5,withdraw:1
+ *   --users=1-100 --tokens=ETH,USDT --amount=0.0001
+ *   --username=nikgeo --password=password
+ *   --auth=bearer                     log in once and send the bearer token, or basic (BCrypt on every request)
+ *   --withdraw-path=/api/v1/withdraw  or /api/v1/withdraw/sync
+ *   --poisson=true                    exponential instead of evenly spaced arrivals
+ *   --max-in-flight=2000 --timeout=30
+ *   --prefund=1000                    deposit this amount per user and token first (0 = skip)
+ *   --stub-node-port=8545             start the stub node on this port (0 = do not start)
+ *   --stub-latency-ms=50 --stub-block-time-ms=12000
+ *   --hdr-out=target/loadtest         write per-operation .hgrm percentile distributions here
+ * </pre>
+ */
+public final class LoadTest {
+
+    private static final int PREFUND_CONCURRENCY = 100;
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        URI target = URI.create(options.getOrDefault("target", "http://localhost:8081"));
+        double rps = Double.parseDouble(options.getOrDefault("rps", "50"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        Duration timeout = Duration.ofSeconds(Long.parseLong(options.getOrDefault("timeout", "30")));
+        String[] users = options.getOrDefault("users", "1-100").split("-");
+        List<String> tokens = Arrays.asList(options.getOrDefault("tokens", "ETH").split(","));
+        BigDecimal prefund = new BigDecimal(options.getOrDefault("prefund", "1000"));
+        int stubPort = Integer.parseInt(options.getOrDefault("stub-node-port", "8545"));
+
+        StubEthereumNode node = null;
+        if (stubPort > 0) {
+            node = new StubEthereumNode(stubPort,
+                    Long.parseLong(options.getOrDefault("stub-latency-ms", "50")),
+                    Long.parseLong(options.getOrDefault("stub-block-time-ms", "12000"))).start();
+            System.out.println("Stub Ethereum node listening on " + node.url());
+        }
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        String authorization = ExchangeRequests.basicAuthorization(
+                options.getOrDefault("username", "nikgeo"), options.getOrDefault("password", "password"));
+        if (options.getOrDefault("auth", "bearer").equals("bearer")) {
+            authorization = login(httpClient, target, authorization);
+        }
+        ExchangeRequests requests = new ExchangeRequests(
+                target,
+                authorization,
+                timeout,
+                ExchangeRequests.parseMix(options.getOrDefault("mix", "deposit:2,transfer:5,withdraw:1")),
+                Long.parseLong(users[0]),
+                Long.parseLong(users[users.length - 1]),
+                tokens,
+                new BigDecimal(options.getOrDefault("amount", "0.0001")),
+                options.getOrDefault("withdraw-path", "/api/v1/withdraw"));
+
+        if (prefund.signum() > 0) {
+            prefund(httpClient, requests, Long.parseLong(users[0]), Long.parseLong(users[users.length - 1]), tokens, prefund);
+        }
+
+        System.out.printf("Offering %.1f req/s to %s for %ds after %ds warm-up%n",
+                rps, target, duration.toSeconds(), warmup.toSeconds());
+        LoadGenerator generator = new LoadGenerator(httpClient, rps,
+                Boolean.parseBoolean(options.getOrDefault("poisson", "false")),
+                Integer.parseInt(options.getOrDefault("max-in-flight", "2000")));
+        LoadReport report = generator.run(requests, warmup, duration, timeout, Duration.ofSeconds(5), System.out);
+        report.print(System.out);
+        if (options.containsKey("hdr-out")) {
+            report.writePercentileDistributions(Path.of(options.get("hdr-out")));
+        }
+
+        if (node != null) {
+            System.out.println("Stub node served " + node.httpRequests() + " HTTP requests: " + node.calls());
+            node.close();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Exchange the Basic credentials for a bearer token; it must outlive the run ({@code auth.token.ttl-seconds}).
+     */
+    private static String login(HttpClient httpClient, URI target, String basicAuthorization) throws Exception {
+        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(target.resolve("/api/v1/auth/login"))
+                        .header("Authorization", basicAuthorization)
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login failed with HTTP " + response.statusCode() + ": " + response.body());
+        }
+        JsonNode body = new ObjectMapper().readTree(response.body());
+        System.out.printf("Logged in, bearer token valid for %ds%n", body.path("expiresIn").asLong());
+        return "Bearer " + body.get("token").asText();
+    }
+
+    /**
+     * Deposit a starting balance for every user and token so that transfers and withdrawals can succeed.
+     */
+    private static void prefund(HttpClient httpClient, ExchangeRequests requests, long firstUser, long lastUser,
+                                List<String> tokens, BigDecimal amount) {
+        System.out.printf("Prefunding users %d-%d with %s of %s%n", firstUser, lastUser, amount.toPlainString(), tokens);
+        long failed = 0;
+        for (String token : tokens) {
+            // At most PREFUND_CONCURRENCY deposits at a time
+            for (long chunk = firstUser; chunk <= lastUser; chunk += PREFUND_CONCURRENCY) {
+                List<CompletableFuture<HttpResponse<Void>>> deposits = new ArrayList<>();
+                for (long user = chunk; user <= Math.min(lastUser, chunk + PREFUND_CONCURRENCY - 1); user++) {
+                    deposits.add(httpClient.sendAsync(requests.deposit(user, token, amount), HttpResponse.BodyHandlers.discarding()));
+                }
+                failed += deposits.stream().map(CompletableFuture::join).filter(response -> response.statusCode() != 200).count();
+            }
+        }
+        if (failed > 0) {
+            System.out.printf("WARNING: %d prefund deposits failed (unknown users or tokens?)%n", failed);
+        }
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.crypto_exchange.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local stand-in for an Ethereum JSON-RPC provider (Infura), so that the exchange can be load tested
+ * without touching a real network.
+ *
+ * <p>Answers the calls the exchange makes (single or batched): balances are always zero, blocks are
+ * empty and produced every {@code blockTimeMs}, and every sent transaction is immediately "mined" with
+ * a successful receipt. Each HTTP request is delayed by {@code latencyMs} to model the provider's
+ * round trip. Unknown methods get a JSON-RPC {@code -32601} error.</p>
+ */
+public class StubEthereumNode implements AutoCloseable {
+
+    /**
+     * Selector of Multicall3 {@code aggregate3((address,bool,bytes)[])}
+     */
+    private static final String AGGREGATE3_SELECTOR = "82ad56cb";
+    private static final String ZERO_WORD = "0".repeat(64);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final long latencyMs;
+    private final long blockTimeMs;
+    private final long startedAt = System.currentTimeMillis();
+    private final Map<String, Long> minedTransactions = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+    private final LongAdder httpRequests = new LongAdder();
+
+    public StubEthereumNode(int port, long latencyMs, long blockTimeMs) throws IOException {
+        this.latencyMs = latencyMs;
+        this.blockTimeMs = Math.max(1, blockTimeMs);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.createContext("/", this::handle);
+    }
+
+    public StubEthereumNode start() {
+        server.start();
+        return this;
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Number of HTTP requests received so far (a batch counts once)
+     */
+    public long httpRequests() {
+        return httpRequests.sum();
+    }
+
+    /**
+     * Number of JSON-RPC calls received so far, per method
+     */
+    public Map<String, Long> calls() {
+        Map<String, Long> counts = new TreeMap<>();
+        calls.forEach((method, count) -> counts.put(method, count.sum()));
+        return counts;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        httpRequests.increment();
+        try {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            JsonNode response;
+            if (request.isArray()) {
+                ArrayNode responses = objectMapper.createArrayNode();
+                request.forEach(call -> responses.add(answer(call)));
+                response = responses;
+            } else {
+                response = answer(request);
+            }
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+            byte[] body = objectMapper.writeValueAsBytes(response);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.sendResponseHeaders(503, -1);
+        } catch (IOException e) {
+            exchange.sendResponseHeaders(400, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private ObjectNode answer(JsonNode call) {
+        String method = call.path("method").asText();
+        JsonNode params = call.path("params");
+        calls.computeIfAbsent(method, m -> new LongAdder()).increment();
+
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", call.get("id"));
+        Object result = result(method, params);
+        if (result == null) {
+            ObjectNode error = response.putObject("error");
+            error.put("code", -32601);
+            error.put("message", "Method not supported by stub node: " + method);
+        } else {
+            response.set("result", objectMapper.valueToTree(result));
+        }
+        return response;
+    }
+
+    private Object result(String method, JsonNode params) {
+        return switch (method) {
+            case "web3_clientVersion" -> "StubEthereumNode/1.0";
+            case "net_version" -> "1";
+            case "eth_chainId" -> "0x1";
+            case "eth_blockNumber" -> hex(blockNumber());
+            case "eth_gasPrice", "eth_maxPriorityFeePerGas" -> "0x3b9aca00";
+            case "eth_estimateGas" -> "0x5208";
+            case "eth_getBalance", "eth_getTransactionCount" -> "0x0";
+            case "eth_call" -> call(params.path(0).path("data").asText(params.path(0).path("input").asText("")));
+            case "eth_getLogs" -> new Object[0];
+            case "eth_getBlockByNumber" -> block(params.path(0).asText());
+            case "eth_sendRawTransaction" -> sendRawTransaction();
+            case "eth_getTransactionReceipt" -> receipt(params.path(0).asText());
+            default -> null;
+        };
+    }
+
+    private long blockNumber() {
+        return 20_000_000L + (System.currentTimeMillis() - startedAt) / blockTimeMs;
+    }
+
+    /**
+     * {@code balanceOf} returns zero; a Multicall3 {@code aggregate3} returns a successful zero for every call.
+     */
+    private String call(String data) {
+        String calldata = data.startsWith("0x") ? data.substring(2) : data;
+        if (!calldata.startsWith(AGGREGATE3_SELECTOR)) {
+            return "0x" + ZERO_WORD;
+        }
+        // aggregate3(Call3[]): word 0 is the offset of the array, which starts with its length
+        int arrayOffset = new BigInteger(calldata.substring(8, 8 + 64), 16).intValueExact();
+        int count = new BigInteger(calldata.substring(8 + arrayOffset * 2, 8 + arrayOffset * 2 + 64), 16).intValueExact();
+        // Result(bool success, bytes returnData)[]: head of offsets, then 4 words per tuple
+        StringBuilder out = new StringBuilder(2 + (2 + count * 5) * 64);
+        out.append("0x").append(word(32)).append(word(count));
+        for (int i = 0; i < count; i++) {
+            out.append(word(32L * count + 128L * i));
+        }
+        for (int i = 0; i < count; i++) {
+            out.append(word(1)).append(word(64)).append(word(32)).append(ZERO_WORD);
+        }
+        return out.toString();
+    }
+
+    private Map<String, Object> block(String tag) {
+        long number = tag.startsWith("0x") ? Long.parseLong(tag.substring(2), 16) : blockNumber();
+        return Map.of(
+                "number", hex(number),
+                "hash", hash(number),
+                "parentHash", hash(number - 1),
+                "timestamp", hex(startedAt / 1000 + number * blockTimeMs / 1000),
+                "gasLimit", "0x1c9c380",
+                "gasUsed", "0x0",
+                "transactions", new Object[0]);
+    }
+
+    private String sendRawTransaction() {
+        String txHash = "0x" + randomHex(64);
+        minedTransactions.put(txHash, blockNumber());
+        return txHash;
+    }
+
+    private Object receipt(String txHash) {
+        Long block = minedTransactions.get(txHash);
+        if (block == null) {
+            // Unknown transaction: a null result (not an error), clients keep polling
+            return NullNode.getInstance();
+        }
+        return Map.of(
+                "transactionHash", txHash,
+                "transactionIndex", "0x0",
+                "blockNumber", hex(block),
+                "blockHash", hash(block),
+                "cumulativeGasUsed", "0x5208",
+                "gasUsed", "0x5208",
+                "effectiveGasPrice", "0x3b9aca00",
+                "status", "0x1",
+                "logs", new Object[0]);
+    }
+
+    private static String hex(long value) {
+        return "0x" + Long.toHexString(value);
+    }
+
+    private static String word(long value) {
+        String hex = Long.toHexString(value);
+        return "0".repeat(64 - hex.length()) + hex;
+    }
+
+    private static String hash(long blockNumber) {
+        return "0x" + word(blockNumber);
+    }
+
+    private static String randomHex(int digits) {
+        StringBuilder hex = new StringBuilder(digits);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < digits; i++) {
+            hex.append(Character.forDigit(random.nextInt(16), 16));
+        }
+        return hex.toString();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    /**
+     * Run the stub node on its own: {@code StubEthereumNode [port] [latencyMs] [blockTimeMs]}
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8545;
+        long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 50;
+        long blockTimeMs = args.length > 2 ? Long.parseLong(args[2]) : 12_000;
+        StubEthereumNode node = new StubEthereumNode(port, latencyMs, blockTimeMs).start();
+        System.out.println("Stub Ethereum node listening on " + node.url());
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.crypto_exchange.loadtest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadGeneratorTest {
+
+    private StubEthereumNode node;
+    private HttpRequest blockNumber;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // The stub node doubles as a target with a known 20 ms service time
+        node = new StubEthereumNode(0, 20, 1000).start();
+        blockNumber = HttpRequest.newBuilder(URI.create(node.url()))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"eth_blockNumber\",\"params\":[]}"))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        node.close();
+    }
+
+    @Test
+    void offersScheduledLoadAndMeasuresFromIntendedStart() {
+        // Arrange
+        LoadGenerator generator = new LoadGenerator(HttpClient.newHttpClient(), 100, false, 1000);
+
+        // Act - 0.5 s warm-up, then 1 s measured at 100 req/s
+        LoadReport report = generator.run(random -> new LoadGenerator.LoadRequest("rpc", blockNumber),
+                Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofSeconds(1), null);
+
+        // Assert
+        LoadReport.OperationResult result = report.operations().get("rpc");
+        assertTrue(result.completed() >= 95 && result.completed() <= 105, "completed " + result.completed());
+        assertEquals(result.completed(), result.statuses().get(200));
+        assertEquals(0.0, result.errorRate(), 1e-9);
+        assertTrue(result.latencies().getValueAtPercentile(50) >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(node.httpRequests() >= 145, "warm-up requests are sent but not reported");
+    }
+
+    @Test
+    void arrivalsBeyondMaxInFlightAreDropped() {
+        // Arrange - 200 req/s against a 20 ms service time needs ~4 requests in flight
+        LoadGenerator generator = new LoadGenerator(HttpClient.newHttpClient(), 200, false, 1);
+
+        // Act
+        LoadReport report = generator.run(random -> new LoadGenerator.LoadRequest("rpc", blockNumber),
+                Duration.ZERO, Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofSeconds(1), null);
+
+        // Assert
+        LoadReport.OperationResult result = report.operations().get("rpc");
+        assertTrue(result.dropped() > 100, "dropped " + result.dropped());
+        assertTrue(result.errorRate() > 0.5);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.crypto_exchange.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StubEthereumNodeTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private StubEthereumNode node;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        node = new StubEthereumNode(0, 0, 1000).start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        node.close();
+    }
+
+    @Test
+    void sentTransactionHasSuccessfulReceipt() throws Exception {
+        // Act
+        String txHash = rpc("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"eth_sendRawTransaction\",\"params\":[\"0xf86c\"]}")
+                .get("result").asText();
+        JsonNode receipt = rpc("{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"eth_getTransactionReceipt\",\"params\":[\"" + txHash + "\"]}");
+        JsonNode unknown = rpc("{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"eth_getTransactionReceipt\",\"params\":[\"0x01\"]}");
+
+        // Assert
+        assertEquals(66, txHash.length());
+        assertEquals("0x1", receipt.get("result").get("status").asText());
+        assertTrue(unknown.has("result"));
+        assertTrue(unknown.get("result").isNull());
+    }
+
+    @Test
+    void batchAnswersEveryCallAndRejectsUnknownMethods() throws Exception {
+        // Act
+        JsonNode responses = rpc("[{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"eth_getBalance\",\"params\":[\"0x01\",\"latest\"]}," +
+                "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"eth_blockNumber\",\"params\":[]}," +
+                "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"eth_mining\",\"params\":[]}]");
+
+        // Assert
+        assertEquals(3, responses.size());
+        assertEquals("0x0", responses.get(0).get("result").asText());
+        assertTrue(responses.get(1).get("result").asText().startsWith("0x"));
+        assertEquals(-32601, responses.get(2).get("error").get("code").asInt());
+        assertEquals(1, node.httpRequests());
+        assertEquals(1L, node.calls().get("eth_mining"));
+    }
+
+    @Test
+    void aggregate3ReturnsOneSuccessfulResultPerCall() throws Exception {
+        // Arrange - only the array offset and length are read by the stub
+        String calldata = "0x82ad56cb" + word(32) + word(3) + word(0).repeat(3);
+
+        // Act
+        String result = rpc("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"eth_call\",\"params\":[{\"to\":\"0xca11\",\"data\":\"" +
+                calldata + "\"},\"latest\"]}").get("result").asText().substring(2);
+
+        // Assert - offset, length, 3 tuple offsets, 3 tuples of 4 words
+        assertEquals((2 + 3 + 3 * 4) * 64, result.length());
+        assertEquals(word(3), result.substring(64, 128));
+        assertEquals(word(3 * 32 + 128), result.substring(3 * 64, 4 * 64));
+        assertEquals(word(1), result.substring(5 * 64, 6 * 64), "first call succeeded");
+    }
+
+    private JsonNode rpc(String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(node.url()))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return objectMapper.readTree(httpClient.send(request, HttpResponse.BodyHandlers.ofString()).body());
+    }
+
+    private static String word(long value) {
+        return String.format("%064x", value);
+    }
+}
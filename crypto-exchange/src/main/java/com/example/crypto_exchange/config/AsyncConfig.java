@@ -1,20 +1,76 @@
 package com.example.crypto_exchange.config;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.SimpleAsyncTaskExecutorBuilder;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.retry.annotation.EnableRetry;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
+/**
+ * Executors for {@code @Async}, Spring MVC async requests and the withdrawal pipeline.
+ *
+ * <p>With {@code spring.threads.virtual.enabled=true} (which also switches Tomcat and the scheduler to
+ * virtual threads) every task gets its own virtual thread, and the withdrawal pipeline is capped at
+ * {@code exchange.executor.withdrawal.max-concurrency} running withdrawals; further submitters wait for
+ * a slot. Otherwise both are bounded platform-thread pools: {@code spring.task.execution.pool.*} for
+ * {@code @Async}, and {@code max-concurrency} threads with a {@code queue-capacity} queue for
+ * withdrawals, beyond which withdrawals are rejected.</p>
+ */
 @Slf4j
 @Configuration
 @EnableAsync
 @EnableRetry
 @EnableScheduling
 public class AsyncConfig {
-    
-    public AsyncConfig() {
-        log.info("AsyncConfig initialized - enabling async processing, retry mechanism, and scheduling");
+
+    public static final String WITHDRAWAL_EXECUTOR = "withdrawalExecutor";
+
+    private final boolean virtualThreads;
+
+    public AsyncConfig(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        log.info("AsyncConfig initialized - enabling async processing, retry mechanism, and scheduling on {} threads",
+                virtualThreads ? "virtual" : "platform");
         log.debug("Configuration includes: @EnableAsync, @EnableRetry, @EnableScheduling");
     }
-} 
\ No newline at end of file
+
+    /**
+     * Executor for {@code @Async} methods and async MVC requests (e.g. streaming exports). Declared here
+     * because any other executor bean makes Spring Boot back off from creating it.
+     */
+    @Bean(name = {"applicationTaskExecutor", "taskExecutor"})
+    public AsyncTaskExecutor applicationTaskExecutor(SimpleAsyncTaskExecutorBuilder simpleBuilder,
+                                                     ThreadPoolTaskExecutorBuilder threadPoolBuilder) {
+        return virtualThreads ? simpleBuilder.build() : threadPoolBuilder.build();
+    }
+
+    /**
+     * Executor for withdrawals, which block on JDBC and Ethereum RPC calls.
+     */
+    @Bean(name = WITHDRAWAL_EXECUTOR)
+    public AsyncTaskExecutor withdrawalExecutor(SimpleAsyncTaskExecutorBuilder simpleBuilder,
+                                                ThreadPoolTaskExecutorBuilder threadPoolBuilder,
+                                                @Value("${exchange.executor.withdrawal.max-concurrency:64}") int maxConcurrency,
+                                                @Value("${exchange.executor.withdrawal.queue-capacity:1000}") int queueCapacity) {
+        log.info("Withdrawal executor: {} threads, at most {} concurrent withdrawals{}",
+                virtualThreads ? "virtual" : "platform", maxConcurrency,
+                virtualThreads ? "" : ", " + queueCapacity + " queued");
+        if (virtualThreads) {
+            return simpleBuilder
+                    .threadNamePrefix("withdrawal-")
+                    .concurrencyLimit(maxConcurrency)
+                    .build();
+        }
+        return threadPoolBuilder
+                .threadNamePrefix("withdrawal-")
+                .corePoolSize(maxConcurrency)
+                .maxPoolSize(maxConcurrency)
+                .queueCapacity(queueCapacity)
+                .build();
+    }
+}
@@ -5,55 +5,155 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.web.util.ContentCachingRequestWrapper;
 import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.Collections;
-import java.util.stream.Collectors;
+import java.util.Enumeration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Access logging for HTTP requests.
+ *
+ * <p>Every request gets one completion line (method, URI, status, duration). Bodies are only captured
+ * for a sampled fraction of requests ({@code logging.http.body-sample-rate}) and, for the request body,
+ * for failed requests (status 4xx/5xx or an exception); captured bodies are cut at
+ * {@code logging.http.max-body-bytes}. Only sampled requests have their response buffered, everything
+ * else is streamed to the client untouched. Headers are formatted only when DEBUG is enabled, with
+ * credentials masked; bodies of the authentication endpoints, which carry bearer tokens, are never
+ * captured.</p>
+ */
 @Slf4j
 @Component
 public class LoggingFilter extends OncePerRequestFilter {
 
+    /**
+     * Streaming downloads must reach the client as they are written, so their bodies are never cached.
+     */
+    private static final String STREAMING_PATH_SUFFIX = "/export";
+
+    /**
+     * Login responses contain the issued bearer token, which must not end up in the log files.
+     */
+    private static final String AUTH_PATH_PREFIX = "/api/v1/auth/";
+
+    private static final String START_ATTRIBUTE = LoggingFilter.class.getName() + ".start";
+
+    @Value("${logging.http.body-sample-rate:1.0}")
+    private double bodySampleRate = 1.0;
+
+    @Value("${logging.http.max-body-bytes:4096}")
+    private int maxBodyBytes = 4096;
+
+    @Value("${logging.http.log-failed-request-bodies:true}")
+    private boolean logFailedRequestBodies = true;
+
+    /**
+     * Also run on the async dispatch of a request, which completes it
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
-        
-        ContentCachingRequestWrapper requestWrapper = new ContentCachingRequestWrapper(request);
-        ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
 
-        try {
-            log.info("Incoming request: {} {} from {}", 
-                request.getMethod(), 
-                request.getRequestURI(),
-                request.getRemoteAddr());
-            
-            log.debug("Request headers: {}", Collections.list(request.getHeaderNames())
-                .stream()
-                .collect(Collectors.toMap(
-                    headerName -> headerName,
-                    request::getHeader
-                )));
-
-            filterChain.doFilter(requestWrapper, responseWrapper);
-
-            String requestBody = new String(requestWrapper.getContentAsByteArray(), StandardCharsets.UTF_8);
-            String responseBody = new String(responseWrapper.getContentAsByteArray(), StandardCharsets.UTF_8);
-
-            log.info("Response status: {} for {} {}", 
-                response.getStatus(), 
-                request.getMethod(), 
-                request.getRequestURI());
-            
-            log.debug("Request body: {}", requestBody);
-            log.debug("Response body: {}", responseBody);
+        ContentCachingRequestWrapper requestWrapper;
+        ContentCachingResponseWrapper responseWrapper;
+        long start;
+        if (isAsyncDispatch(request)) {
+            // Second half of an async request (e.g. a CompletableFuture result): reuse the original wrappers
+            Long asyncStart = (Long) request.getAttribute(START_ATTRIBUTE);
+            start = asyncStart != null ? asyncStart : System.nanoTime();
+            requestWrapper = WebUtils.getNativeRequest(request, ContentCachingRequestWrapper.class);
+            responseWrapper = WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+        } else {
+            start = System.nanoTime();
+            String uri = request.getRequestURI();
+            boolean uncaptured = uri.endsWith(STREAMING_PATH_SUFFIX) || uri.startsWith(AUTH_PATH_PREFIX);
+            boolean sampled = !uncaptured && bodySampleRate > 0 && ThreadLocalRandom.current().nextDouble() < bodySampleRate;
+            log.debug("Request headers for {} {}: {}", request.getMethod(), request.getRequestURI(), new Headers(request));
+
+            // The request body is cached up to the cap as it is read; the response only when sampled
+            requestWrapper = sampled || (logFailedRequestBodies && !uncaptured)
+                    ? new ContentCachingRequestWrapper(request, maxBodyBytes)
+                    : null;
+            responseWrapper = sampled ? new ContentCachingResponseWrapper(response) : null;
+        }
 
+        Throwable failure = null;
+        try {
+            filterChain.doFilter(requestWrapper != null ? requestWrapper : request,
+                    responseWrapper != null ? responseWrapper : response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            failure = e;
+            throw e;
         } finally {
+            if (isAsyncStarted(request)) {
+                // Logged when the async result has been written
+                request.setAttribute(START_ATTRIBUTE, start);
+            } else {
+                logCompletion(request, response, requestWrapper, responseWrapper, start, failure);
+            }
+        }
+    }
+
+    private void logCompletion(HttpServletRequest request, HttpServletResponse response,
+                               ContentCachingRequestWrapper requestWrapper, ContentCachingResponseWrapper responseWrapper,
+                               long start, Throwable failure) throws IOException {
+        int status = failure != null ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus();
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        boolean failed = failure != null || status >= 400;
+        if (failed) {
+            log.warn("{} {} -> {} in {}ms from {}{}", request.getMethod(), request.getRequestURI(), status, durationMs,
+                    request.getRemoteAddr(), failure != null ? " (" + failure.getClass().getSimpleName() + ")" : "");
+        } else {
+            log.info("{} {} -> {} in {}ms", request.getMethod(), request.getRequestURI(), status, durationMs);
+        }
+        boolean sampled = responseWrapper != null;
+        if (requestWrapper != null && (sampled || failed)) {
+            log.info("Request body of {} {}: {}", request.getMethod(), request.getRequestURI(),
+                    truncate(requestWrapper.getContentAsByteArray()));
+        }
+        if (responseWrapper != null) {
+            log.info("Response body of {} {}: {}", request.getMethod(), request.getRequestURI(),
+                    truncate(responseWrapper.getContentAsByteArray()));
             responseWrapper.copyBodyToResponse();
         }
     }
-} 
\ No newline at end of file
+
+    private String truncate(byte[] body) {
+        if (body.length <= maxBodyBytes) {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+        return new String(body, 0, maxBodyBytes, StandardCharsets.UTF_8) + "...(" + body.length + " bytes)";
+    }
+
+    /**
+     * Formats the request headers only when (and if) the log line is actually written.
+     */
+    private record Headers(HttpServletRequest request) {
+        @Override
+        public String toString() {
+            StringBuilder headers = new StringBuilder("{");
+            Enumeration<String> names = request.getHeaderNames();
+            while (names.hasMoreElements()) {
+                String name = names.nextElement();
+                boolean secret = name.equalsIgnoreCase("authorization") || name.equalsIgnoreCase("cookie");
+                headers.append(name).append('=').append(secret ? "***" : request.getHeader(name));
+                if (names.hasMoreElements()) {
+                    headers.append(", ");
+                }
+            }
+            return headers.append('}').toString();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.crypto_exchange.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times intercepted method calls into the {@value #METRIC_NAME} Micrometer timer, tagged with
+ * {@code layer}, {@code class}, {@code method}, {@code outcome} ({@code success}/{@code error}) and
+ * {@code exception}. The timers publish percentile histograms, so p99 per method can be computed
+ * in Prometheus ({@code histogram_quantile}) and aggregated across instances.
+ *
+ * <p>Calls slower than {@code metrics.slow-call.threshold-ms} are logged, but only a
+ * {@code metrics.slow-call.log-sample-rate} fraction of them, so a slow dependency cannot flood the log.</p>
+ */
+@Slf4j
+@Component
+public class MethodMetrics {
+
+    public static final String METRIC_NAME = "exchange.method";
+
+    private record TimerKey(String layer, Class<?> targetClass, Method method, Class<?> exception) {
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final long slowThresholdNanos;
+    private final double slowLogSampleRate;
+    private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, String> classNames = new ConcurrentHashMap<>();
+
+    public MethodMetrics(MeterRegistry meterRegistry,
+                         @Value("${metrics.slow-call.threshold-ms:1000}") long slowThresholdMs,
+                         @Value("${metrics.slow-call.log-sample-rate:0.1}") double slowLogSampleRate) {
+        this.meterRegistry = meterRegistry;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMs);
+        this.slowLogSampleRate = slowLogSampleRate;
+    }
+
+    /**
+     * Proceed with the intercepted call and record its duration.
+     */
+    public Object time(ProceedingJoinPoint joinPoint, String layer) throws Throwable {
+        long start = System.nanoTime();
+        Class<?> exception = null;
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass();
+            throw e;
+        } finally {
+            long duration = System.nanoTime() - start;
+            // The proxy, not the target: a repository's target is Spring Data's generic implementation
+            Class<?> targetClass = joinPoint.getThis() != null ? joinPoint.getThis().getClass() : joinPoint.getSignature().getDeclaringType();
+            Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+            timers.computeIfAbsent(new TimerKey(layer, targetClass, method, exception), this::register)
+                    .record(duration, TimeUnit.NANOSECONDS);
+            if (duration > slowThresholdNanos && ThreadLocalRandom.current().nextDouble() < slowLogSampleRate) {
+                log.warn("SLOW {} call: {}.{}() took {}ms{}", layer, className(targetClass), method.getName(),
+                        TimeUnit.NANOSECONDS.toMillis(duration), exception == null ? "" : " and failed with " + exception.getSimpleName());
+            }
+        }
+    }
+
+    private Timer register(TimerKey key) {
+        return Timer.builder(METRIC_NAME)
+                .description("Duration of service, controller and repository calls")
+                .tag("layer", key.layer())
+                .tag("class", className(key.targetClass()))
+                .tag("method", key.method().getName())
+                .tag("outcome", key.exception() == null ? "success" : "error")
+                .tag("exception", key.exception() == null ? "none" : key.exception().getSimpleName())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+    }
+
+    /**
+     * Readable class name: CGLIB subclasses are unwrapped and repository proxies are named after
+     * their repository interface instead of {@code $ProxyNN}.
+     */
+    private String className(Class<?> targetClass) {
+        return classNames.computeIfAbsent(targetClass, type -> {
+            Class<?> userClass = ClassUtils.getUserClass(type);
+            if (Proxy.isProxyClass(userClass)) {
+                for (Class<?> candidate : userClass.getInterfaces()) {
+                    if (candidate.getName().startsWith("com.example.crypto_exchange.")) {
+                        return candidate.getSimpleName();
+                    }
+                }
+            }
+            return userClass.getSimpleName();
+        });
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.crypto_exchange.config;
+
+import com.example.crypto_exchange.service.RateLimitService;
+import com.example.crypto_exchange.service.RateLimitService.Endpoint;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.bucket4j.ConsumptionProbe;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies {@link RateLimitService} limits to deposit, transfer and withdrawal requests, keyed by the
+ * authenticated user (or the client address for unauthenticated calls).
+ *
+ * <p>Runs after the Spring Security filter chain, so the authentication is known. Rejected requests get
+ * {@code 429 Too Many Requests} with a {@code Retry-After} header and are counted in
+ * {@code exchange.rate_limit.rejected}. Disable with {@code rate-limit.enabled=false}.</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String API_PREFIX = "/api/v1/";
+
+    private final RateLimitService rateLimitService;
+    private final ObjectMapper objectMapper;
+    private final Map<Endpoint, Counter> rejections = new EnumMap<>(Endpoint.class);
+
+    public RateLimitFilter(RateLimitService rateLimitService, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.rateLimitService = rateLimitService;
+        this.objectMapper = objectMapper;
+        for (Endpoint endpoint : Endpoint.values()) {
+            rejections.put(endpoint, Counter.builder("exchange.rate_limit.rejected")
+                    .description("Requests rejected by the per-user rate limit")
+                    .tag("endpoint", endpoint.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        Endpoint endpoint = endpointOf(request);
+        if (endpoint == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String user = userOf(request);
+        ConsumptionProbe probe = rateLimitService.tryConsume(user, endpoint);
+        if (probe.isConsumed()) {
+            response.setHeader("X-Rate-Limit-Remaining", Long.toString(probe.getRemainingTokens()));
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        rejections.get(endpoint).increment();
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(probe.getNanosToWaitForRefill()) + 1);
+        log.debug("Rate limit exceeded for {} on {}, retry in {}s", user, endpoint, retryAfterSeconds);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("timestamp", LocalDateTime.now().toString());
+        body.put("status", "ERROR");
+        body.put("errorCode", "TOO_MANY_REQUESTS");
+        body.put("message", "Rate limit exceeded. Please try again later.");
+        body.put("path", "uri=" + request.getRequestURI());
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+
+    /**
+     * The rate-limited endpoint a request targets, or null when it is not limited.
+     */
+    static Endpoint endpointOf(HttpServletRequest request) {
+        if (!"POST".equals(request.getMethod())) {
+            return null;
+        }
+        String uri = request.getRequestURI();
+        if (!uri.startsWith(API_PREFIX)) {
+            return null;
+        }
+        String path = uri.substring(API_PREFIX.length());
+        if (path.equals("deposit") || path.startsWith("deposit/")) {
+            return Endpoint.DEPOSIT;
+        }
+        if (path.equals("transfer") || path.startsWith("transfer/")) {
+            return Endpoint.TRANSFER;
+        }
+        if (path.equals("withdraw") || path.startsWith("withdraw/")) {
+            return Endpoint.WITHDRAW;
+        }
+        return null;
+    }
+
+    private static String userOf(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return authentication.getName();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.crypto_exchange.controller;
 
+import com.example.crypto_exchange.service.AuthTokenService;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -13,8 +15,14 @@ import java.util.Map;
 @Slf4j
 @RestController
 @RequestMapping("/api/v1/auth")
+@RequiredArgsConstructor
 public class AuthController {
 
+    private final AuthTokenService authTokenService;
+
+    /**
+     * Check the HTTP Basic credentials once and return a bearer token for subsequent requests.
+     */
     @PostMapping("/login")
     public ResponseEntity<?> login(Authentication authentication) {
         log.info("Authentication attempt for user: {}", authentication.getName());
@@ -24,6 +32,9 @@ public class AuthController {
         response.put("message", "Login successful");
         response.put("username", authentication.getName());
         response.put("authorities", authentication.getAuthorities());
+        response.put("token", authTokenService.issue(authentication));
+        response.put("tokenType", "Bearer");
+        response.put("expiresIn", authTokenService.getTtl().toSeconds());
         
         log.info("Login successful for user: {}", authentication.getName());
         return ResponseEntity.ok(response);
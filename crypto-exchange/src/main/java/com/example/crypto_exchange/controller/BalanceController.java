@@ -0,0 +1,43 @@
+package com.example.crypto_exchange.controller;
+
+import com.example.crypto_exchange.dto.BalanceResponse;
+import com.example.crypto_exchange.service.UserBalanceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/balances")
+@RequiredArgsConstructor
+public class BalanceController {
+
+    private final UserBalanceService userBalanceService;
+
+    /**
+     * All of a user's balances with their total, locked and available amounts.
+     */
+    @GetMapping
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<List<BalanceResponse>> getBalances(@RequestParam Long userId) {
+        List<BalanceResponse> balances = userBalanceService.getAllBalances(userId).stream()
+                .map(balance -> BalanceResponse.from(balance, balance.getToken().getSymbol()))
+                .toList();
+        return ResponseEntity.ok(balances);
+    }
+
+    /**
+     * One balance, read from the ledger when it is enabled; zero if the user never held the token.
+     */
+    @GetMapping("/{tokenSymbol}")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<BalanceResponse> getBalance(@PathVariable String tokenSymbol, @RequestParam Long userId) {
+        return ResponseEntity.ok(userBalanceService.findBalance(userId, tokenSymbol)
+                .map(balance -> BalanceResponse.from(balance, tokenSymbol))
+                .orElseGet(() -> BalanceResponse.empty(tokenSymbol)));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.crypto_exchange.controller;
+
+import com.example.crypto_exchange.dto.OrderBookDepth;
+import com.example.crypto_exchange.dto.OrderRequest;
+import com.example.crypto_exchange.dto.OrderResponse;
+import com.example.crypto_exchange.matching.MatchingEngine;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/orders")
+@RequiredArgsConstructor
+public class OrderController {
+
+    private final MatchingEngine matchingEngine;
+
+    /**
+     * Place a limit or market order; it is matched before the response is returned.
+     */
+    @PostMapping
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<OrderResponse> placeOrder(@Valid @RequestBody OrderRequest request) {
+        log.info("Placing order: {}", request);
+        return ResponseEntity.ok(matchingEngine.placeOrder(request));
+    }
+
+    @DeleteMapping("/{orderId}")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<OrderResponse> cancelOrder(@PathVariable Long orderId, @RequestParam Long userId) {
+        log.info("Cancelling order {} of user {}", orderId, userId);
+        return ResponseEntity.ok(matchingEngine.cancelOrder(userId, orderId));
+    }
+
+    @GetMapping
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<List<OrderResponse>> getOpenOrders(@RequestParam Long userId) {
+        return ResponseEntity.ok(matchingEngine.getOpenOrders(userId));
+    }
+
+    @GetMapping("/book/{pair}")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<OrderBookDepth> getOrderBook(@PathVariable String pair,
+                                                       @RequestParam(defaultValue = "20") int depth) {
+        return ResponseEntity.ok(matchingEngine.getDepth(pair, depth));
+    }
+}
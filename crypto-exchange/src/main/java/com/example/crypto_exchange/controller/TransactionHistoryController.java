@@ -0,0 +1,84 @@
+package com.example.crypto_exchange.controller;
+
+import com.example.crypto_exchange.dto.TransactionHistoryPage;
+import com.example.crypto_exchange.entity.TransactionType;
+import com.example.crypto_exchange.service.TransactionExportService;
+import com.example.crypto_exchange.service.TransactionLogService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/transactions")
+@RequiredArgsConstructor
+public class TransactionHistoryController {
+
+    private final TransactionLogService transactionLogService;
+    private final TransactionExportService transactionExportService;
+
+    /**
+     * A user's transaction history, newest first. Pass the returned {@code nextCursor} as {@code cursor}
+     * to get the next page.
+     */
+    @GetMapping
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<TransactionHistoryPage> userHistory(
+            @RequestParam Long userId,
+            @RequestParam(required = false) TransactionType type,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        log.debug("Transaction history request: userId={}, type={}, limit={}", userId, type, limit);
+        return ResponseEntity.ok(transactionLogService.getUserTransactionHistory(userId, type, cursor, limit));
+    }
+
+    /**
+     * All transactions within a time range, newest first, paged like {@link #userHistory}.
+     */
+    @GetMapping("/range")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<TransactionHistoryPage> timeRange(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        log.debug("Transaction range request: from={}, to={}, limit={}", from, to, limit);
+        return ResponseEntity.ok(transactionLogService.getTransactionsByTimeRange(from, to, cursor, limit));
+    }
+
+    /**
+     * Export the transactions of a user, of a time range, or of a user within a time range, oldest first,
+     * as CSV or NDJSON. Rows are streamed to the client as they are read.
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "csv") String format) {
+        // Validate up front: once streaming has started the status can no longer change
+        TransactionExportService.validateFilter(userId, from, to);
+        TransactionExportService.Format exportFormat = TransactionExportService.Format.parse(format);
+        log.info("Transaction export request: userId={}, from={}, to={}, format={}", userId, from, to, exportFormat);
+
+        StreamingResponseBody body = out -> transactionExportService.export(userId, from, to, exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("transactions." + exportFormat.getFileExtension()).build().toString())
+                .body(body);
+    }
+}
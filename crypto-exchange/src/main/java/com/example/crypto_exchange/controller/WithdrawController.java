@@ -4,10 +4,6 @@ import com.example.crypto_exchange.dto.WithdrawRequest;
 import com.example.crypto_exchange.dto.WithdrawResponse;
 import com.example.crypto_exchange.exception.WithdrawException;
 import com.example.crypto_exchange.service.WithdrawService;
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
-import io.github.bucket4j.Bucket4j;
-import io.github.bucket4j.Refill;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -16,7 +12,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.Duration;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.concurrent.CompletableFuture;
@@ -28,33 +23,24 @@ import java.util.concurrent.CompletableFuture;
 public class WithdrawController {
     
     private final WithdrawService withdrawService;
-    private final Bucket rateLimitBucket = Bucket4j.builder()
-        .addLimit(Bandwidth.classic(10, Refill.greedy(10, Duration.ofMinutes(1))))
-        .build();
 
     @PostMapping
     @PreAuthorize("hasRole('USER')")
     public CompletableFuture<ResponseEntity<WithdrawResponse>> withdraw(@Valid @RequestBody WithdrawRequest request) {
         log.info("Processing async withdrawal request: {}", request);
-        
-        if (!rateLimitBucket.tryConsume(1)) {
-            return CompletableFuture.completedFuture(
-                ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
-                    .body(new WithdrawResponse(null, null, "ERROR: TOO_MANY_REQUESTS: Rate limit exceeded. Please try again later."))
-            );
-        }
 
         return withdrawService.processWithdraw(request)
             .thenApply(response -> {
-                log.info("Async withdrawal successful: {}", response);
-                return ResponseEntity.ok(response);
+                log.info("Withdrawal queued: {}", response);
+                return ResponseEntity.accepted().body(response);
             })
             .exceptionally(throwable -> {
                 Throwable cause = throwable.getCause();
                 if (cause instanceof WithdrawException) {
                     WithdrawException we = (WithdrawException) cause;
                     log.warn("Async withdrawal failed: {} ({})", we.getMessage(), we.getErrorCode());
-                    return ResponseEntity.badRequest().body(new WithdrawResponse(null, null, "ERROR: " + we.getErrorCode() + ": " + we.getMessage()));
+                    HttpStatus status = "SERVICE_BUSY".equals(we.getErrorCode()) ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.BAD_REQUEST;
+                    return ResponseEntity.status(status).body(new WithdrawResponse(null, null, "ERROR: " + we.getErrorCode() + ": " + we.getMessage()));
                 } else {
                     log.error("Unexpected error during async withdrawal", throwable);
                     return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new WithdrawResponse(null, null, "ERROR: INTERNAL_ERROR: An unexpected error occurred"));
@@ -89,11 +75,6 @@ public class WithdrawController {
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<WithdrawResponse> withdrawSync(@Valid @RequestBody WithdrawRequest request) {
         log.info("Processing synchronous withdrawal request: {}", request);
-        
-        if (!rateLimitBucket.tryConsume(1)) {
-            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
-                .body(new WithdrawResponse(null, null, "ERROR: TOO_MANY_REQUESTS: Rate limit exceeded. Please try again later."));
-        }
 
         try {
             WithdrawResponse response = withdrawService.processWithdrawSync(request);
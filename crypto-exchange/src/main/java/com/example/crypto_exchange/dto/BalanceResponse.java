@@ -0,0 +1,34 @@
+package com.example.crypto_exchange.dto;
+
+import com.example.crypto_exchange.entity.UserBalance;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class BalanceResponse {
+    private String tokenSymbol;
+    /**
+     * The whole balance, including what is locked
+     */
+    private BigDecimal total;
+    /**
+     * Reserved for open orders and pending withdrawals
+     */
+    private BigDecimal locked;
+    private BigDecimal available;
+
+    public static BalanceResponse from(UserBalance balance, String tokenSymbol) {
+        return new BalanceResponse(tokenSymbol, balance.getAmount(), balance.getLockedAmount(), balance.getAvailableAmount());
+    }
+
+    public static BalanceResponse empty(String tokenSymbol) {
+        return new BalanceResponse(tokenSymbol, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.crypto_exchange.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Aggregated price levels of an order book, best first
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class OrderBookDepth {
+    private String pair;
+    private List<PriceLevel> bids;
+    private List<PriceLevel> asks;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PriceLevel {
+        private BigDecimal price;
+        private BigDecimal quantity;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.crypto_exchange.dto;
+
+import com.example.crypto_exchange.entity.OrderSide;
+import com.example.crypto_exchange.entity.OrderType;
+import com.example.crypto_exchange.entity.TimeInForce;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class OrderRequest {
+    @NotNull(message = "User ID is required")
+    private Long userId;
+
+    @NotBlank(message = "Trading pair is required")
+    private String pair;
+
+    @NotNull(message = "Side is required")
+    private OrderSide side;
+
+    @NotNull(message = "Order type is required")
+    private OrderType type;
+
+    /**
+     * GTC if omitted; market orders are IOC unless FOK
+     */
+    private TimeInForce timeInForce;
+
+    /**
+     * Limit price in quote per base; required for limit orders, ignored for market orders
+     */
+    @Positive(message = "Price must be positive")
+    private BigDecimal price;
+
+    @NotNull(message = "Quantity is required")
+    @Positive(message = "Quantity must be positive")
+    private BigDecimal quantity;
+}
@@ -0,0 +1,34 @@
+package com.example.crypto_exchange.dto;
+
+import com.example.crypto_exchange.entity.OrderSide;
+import com.example.crypto_exchange.entity.OrderStatus;
+import com.example.crypto_exchange.entity.SpotOrder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class OrderResponse {
+    private Long orderId;
+    private String pair;
+    private OrderSide side;
+    /**
+     * Limit price; null for market orders
+     */
+    private BigDecimal price;
+    private BigDecimal quantity;
+    private BigDecimal filledQuantity;
+    private BigDecimal remainingQuantity;
+    private OrderStatus status;
+
+    public static OrderResponse from(SpotOrder order, String pair) {
+        return new OrderResponse(order.getOrderId(), pair, order.getSide(), order.getPrice(), order.getQuantity(),
+                order.getQuantity().subtract(order.getRemainingQuantity()), order.getRemainingQuantity(), order.getStatus());
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.crypto_exchange.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+import java.util.List;
+
+/**
+ * One page of transaction history, newest first. {@code nextCursor} is an opaque token for the next
+ * page and {@code null} on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class TransactionHistoryPage {
+    private List<TransactionLogResponse> items;
+    private String nextCursor;
+}
@@ -0,0 +1,37 @@
+package com.example.crypto_exchange.dto;
+
+import com.example.crypto_exchange.entity.TransactionLog;
+import com.example.crypto_exchange.entity.TransactionStatus;
+import com.example.crypto_exchange.entity.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class TransactionLogResponse {
+    private Long logId;
+    private TransactionType transactionType;
+    private Long userId;
+    private Long tokenId;
+    private BigDecimal amount;
+    private TransactionStatus status;
+    private String txHash;
+    private Long orderId;
+    private String fromAddress;
+    private String toAddress;
+    private String errorMessage;
+    private LocalDateTime createdAt;
+
+    public static TransactionLogResponse from(TransactionLog log) {
+        return new TransactionLogResponse(log.getLogId(), log.getTransactionType(), log.getUserId(), log.getTokenId(),
+                log.getAmount(), log.getStatus(), log.getTxHash(), log.getOrderId(), log.getFromAddress(), log.getToAddress(),
+                log.getErrorMessage(), log.getCreatedAt());
+    }
+}
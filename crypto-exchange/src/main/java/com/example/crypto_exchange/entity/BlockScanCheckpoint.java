@@ -0,0 +1,58 @@
+package com.example.crypto_exchange.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Last block that a block scanner has fully processed. Scanning resumes from the block after
+ * {@code lastBlock}, so a restart neither misses nor needs to re-read older blocks.
+ */
+@Entity
+@Table(name = "block_scan_checkpoints")
+public class BlockScanCheckpoint {
+
+    @Id
+    @Column(name = "scanner", length = 50)
+    private String scanner;
+
+    @Column(name = "last_block", nullable = false)
+    private Long lastBlock;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public BlockScanCheckpoint() {
+    }
+
+    public BlockScanCheckpoint(String scanner, Long lastBlock) {
+        this.scanner = scanner;
+        this.lastBlock = lastBlock;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public String getScanner() {
+        return scanner;
+    }
+
+    public void setScanner(String scanner) {
+        this.scanner = scanner;
+    }
+
+    public Long getLastBlock() {
+        return lastBlock;
+    }
+
+    public void setLastBlock(Long lastBlock) {
+        this.lastBlock = lastBlock;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
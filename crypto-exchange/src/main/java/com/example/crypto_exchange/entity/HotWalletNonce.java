@@ -0,0 +1,58 @@
+package com.example.crypto_exchange.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Highest nonce handed out for a hot wallet, plus one. After a restart signing continues from here
+ * even if the node has forgotten transactions that were signed but never mined.
+ */
+@Entity
+@Table(name = "hot_wallet_nonces")
+public class HotWalletNonce {
+
+    @Id
+    @Column(name = "address", length = 42)
+    private String address;
+
+    @Column(name = "next_nonce", nullable = false)
+    private Long nextNonce;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public HotWalletNonce() {
+    }
+
+    public HotWalletNonce(String address, Long nextNonce) {
+        this.address = address;
+        this.nextNonce = nextNonce;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public String getAddress() {
+        return address;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    public Long getNextNonce() {
+        return nextNonce;
+    }
+
+    public void setNextNonce(Long nextNonce) {
+        this.nextNonce = nextNonce;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.crypto_exchange.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * A balance ledger intent whose database transaction committed. The row is inserted by the ledger in that same
+ * transaction, so after a crash its presence tells whether an intent left open must be committed or aborted.
+ * Rows are deleted once the ledger has journaled the commit.
+ */
+@Entity
+@Table(name = "ledger_commits")
+public class LedgerCommit {
+
+    @Id
+    @Column(name = "intent_id")
+    private Long intentId;
+
+    public LedgerCommit() {
+    }
+
+    public LedgerCommit(Long intentId) {
+        this.intentId = intentId;
+    }
+
+    public Long getIntentId() {
+        return intentId;
+    }
+
+    public void setIntentId(Long intentId) {
+        this.intentId = intentId;
+    }
+}
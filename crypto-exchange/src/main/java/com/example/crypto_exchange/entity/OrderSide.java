@@ -0,0 +1,6 @@
+package com.example.crypto_exchange.entity;
+
+public enum OrderSide {
+    BUY,
+    SELL
+}
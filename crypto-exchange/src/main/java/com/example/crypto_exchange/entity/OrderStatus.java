@@ -0,0 +1,12 @@
+package com.example.crypto_exchange.entity;
+
+public enum OrderStatus {
+    /**
+     * Stored with its reservation and being matched; one of the others once matching is done
+     */
+    PENDING,
+    OPEN,
+    PARTIALLY_FILLED,
+    FILLED,
+    CANCELLED
+}
@@ -0,0 +1,9 @@
+package com.example.crypto_exchange.entity;
+
+public enum OrderType {
+    LIMIT,
+    /**
+     * Takes whatever the book offers at any price; never rests
+     */
+    MARKET
+}
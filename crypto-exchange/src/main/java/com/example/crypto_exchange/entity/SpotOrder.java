@@ -0,0 +1,77 @@
+package com.example.crypto_exchange.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * An order accepted by a matching engine. It is stored {@link OrderStatus#PENDING} together with its reservation
+ * before it is matched and gets its final status once matching is done; the rows of open orders are what the
+ * books are rebuilt from on startup, in id (time) order. A market order is stored with the worst price it
+ * traded at, 0 until it trades.
+ */
+@Entity
+@Table(name = "spot_orders", indexes = {
+    @Index(name = "idx_spot_orders_pair_status", columnList = "pair_id, status, order_id"),
+    @Index(name = "idx_spot_orders_user_status", columnList = "user_id, status")
+})
+@Data
+@NoArgsConstructor
+@Accessors(chain = true)
+public class SpotOrder {
+
+    /**
+     * Assigned by the matching engine, which needs it before the order reaches the database
+     */
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "pair_id", nullable = false)
+    private Long pairId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "side", length = 4, nullable = false)
+    private OrderSide side;
+
+    @Column(name = "price", precision = 36, scale = 18, nullable = false)
+    private BigDecimal price;
+
+    @Column(name = "quantity", precision = 36, scale = 18, nullable = false)
+    private BigDecimal quantity;
+
+    @Column(name = "remaining_quantity", precision = 36, scale = 18, nullable = false)
+    private BigDecimal remainingQuantity;
+
+    /**
+     * What the order still has reserved of the token it spends; null for orders stored before it was recorded
+     */
+    @Column(name = "reserved_amount", precision = 36, scale = 18)
+    private BigDecimal reservedAmount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 16, nullable = false)
+    private OrderStatus status;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
+        if (this.createdAt == null) {
+            this.createdAt = this.updatedAt;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.crypto_exchange.entity;
+
+public enum TimeInForce {
+    /**
+     * Good till cancelled: the unfilled rest is added to the book
+     */
+    GTC,
+    /**
+     * Immediate or cancel: the unfilled rest is cancelled
+     */
+    IOC,
+    /**
+     * Fill or kill: filled completely at once or not at all
+     */
+    FOK
+}
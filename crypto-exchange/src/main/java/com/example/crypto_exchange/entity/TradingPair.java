@@ -0,0 +1,61 @@
+package com.example.crypto_exchange.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+import java.math.BigDecimal;
+
+/**
+ * A spot market trading a base token against a quote token, e.g. ETH-USDT: prices are quote per base,
+ * quantities are in base. Prices must be multiples of {@code tickSize} and quantities of {@code lotSize}.
+ */
+@Entity
+@Table(name = "trading_pairs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class TradingPair {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "pair_id")
+    private Long pairId;
+
+    @NotBlank
+    @Column(name = "symbol", length = 21, nullable = false, unique = true)
+    private String symbol;
+
+    @NotNull
+    @Column(name = "base_token_id", nullable = false)
+    private Long baseTokenId;
+
+    @NotNull
+    @Column(name = "quote_token_id", nullable = false)
+    private Long quoteTokenId;
+
+    @NotNull
+    @Column(name = "tick_size", precision = 36, scale = 18, nullable = false)
+    private BigDecimal tickSize;
+
+    @NotNull
+    @Column(name = "lot_size", precision = 36, scale = 18, nullable = false)
+    private BigDecimal lotSize;
+
+    @Column(name = "active", nullable = false)
+    private boolean active = true;
+
+    // Custom constructor
+    public TradingPair(String symbol, Long baseTokenId, Long quoteTokenId, BigDecimal tickSize, BigDecimal lotSize) {
+        this.symbol = symbol;
+        this.baseTokenId = baseTokenId;
+        this.quoteTokenId = quoteTokenId;
+        this.tickSize = tickSize;
+        this.lotSize = lotSize;
+    }
+}
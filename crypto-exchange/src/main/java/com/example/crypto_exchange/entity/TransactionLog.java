@@ -6,11 +6,31 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transaction_logs")
+@Table(name = "transaction_logs", indexes = {
+    // Keyset pagination of the transaction history, newest first
+    @Index(name = "idx_transaction_logs_user_created", columnList = "user_id, created_at, log_id"),
+    @Index(name = "idx_transaction_logs_user_type_created", columnList = "user_id, transaction_type, created_at, log_id"),
+    @Index(name = "idx_transaction_logs_created", columnList = "created_at, log_id"),
+    // Withdrawal queue of the payout engine
+    @Index(name = "idx_transaction_logs_status_type", columnList = "status, transaction_type, log_id")
+}, uniqueConstraints = {
+    // An on-chain deposit is credited at most once
+    @UniqueConstraint(name = "uk_transaction_logs_tx_log_index", columnNames = {"tx_hash", "log_index"})
+})
 public class TransactionLog {
 
+    public static final int NATIVE_TRANSFER_LOG_INDEX = -1;
+
+    /**
+     * Sequence the ids are taken from. Each value reserves the {@link #ID_ALLOCATION_SIZE} ids up to and
+     * including it (Hibernate's pooled optimizer), so inserts need no round trip for their id and can be batched.
+     */
+    public static final String ID_SEQUENCE = "transaction_logs_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     @Column(name = "log_id")
     private Long logId;
 
@@ -43,6 +63,31 @@ public class TransactionLog {
     @Column(name = "tx_hash", length = 66)
     private String txHash;
 
+    /**
+     * Position of the credited {@code Transfer} event in its block, or
+     * {@link #NATIVE_TRANSFER_LOG_INDEX} for the ETH value of the transaction itself; set for on-chain deposits only
+     */
+    @Column(name = "log_index")
+    private Integer logIndex;
+
+    /**
+     * Hot-wallet nonce of an on-chain withdrawal, set when it is signed
+     */
+    @Column(name = "nonce")
+    private Long nonce;
+
+    /**
+     * Signed raw transaction of an on-chain withdrawal, kept so that it can be broadcast again unchanged
+     */
+    @Column(name = "raw_transaction", length = 1000)
+    private String rawTransaction;
+
+    /**
+     * Spot order whose fill this entry records; set for trades only
+     */
+    @Column(name = "order_id")
+    private Long orderId;
+
     @Column(name = "from_address", length = 42)
     private String fromAddress;
 
@@ -133,6 +178,38 @@ public class TransactionLog {
         this.txHash = txHash;
     }
 
+    public Integer getLogIndex() {
+        return logIndex;
+    }
+
+    public void setLogIndex(Integer logIndex) {
+        this.logIndex = logIndex;
+    }
+
+    public Long getNonce() {
+        return nonce;
+    }
+
+    public void setNonce(Long nonce) {
+        this.nonce = nonce;
+    }
+
+    public String getRawTransaction() {
+        return rawTransaction;
+    }
+
+    public void setRawTransaction(String rawTransaction) {
+        this.rawTransaction = rawTransaction;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(Long orderId) {
+        this.orderId = orderId;
+    }
+
     public String getFromAddress() {
         return fromAddress;
     }
@@ -3,5 +3,6 @@ package com.example.crypto_exchange.entity;
 public enum TransactionType {
     DEPOSIT,
     WITHDRAW,
-    TRANSFER
+    TRANSFER,
+    TRADE
 } 
\ No newline at end of file
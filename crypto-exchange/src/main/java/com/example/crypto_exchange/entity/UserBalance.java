@@ -37,6 +37,14 @@ public class UserBalance {
     @Column(name = "amount", precision = 36, scale = 18, nullable = false)
     private BigDecimal amount = BigDecimal.ZERO;
 
+    /**
+     * Part of {@code amount} held for open orders and pending withdrawals; never more than {@code amount}
+     */
+    @NotNull
+    @Column(name = "locked_amount", precision = 36, scale = 18, nullable = false,
+            columnDefinition = "numeric(36,18) not null default 0")
+    private BigDecimal lockedAmount = BigDecimal.ZERO;
+
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 
@@ -77,16 +85,27 @@ public class UserBalance {
         this.updatedAt = LocalDateTime.now();
     }
 
+    public void setLockedAmount(BigDecimal lockedAmount) {
+        this.lockedAmount = lockedAmount != null ? lockedAmount : BigDecimal.ZERO;
+    }
+
+    /**
+     * What can be spent or reserved: the amount minus what is locked
+     */
+    public BigDecimal getAvailableAmount() {
+        return amount.subtract(lockedAmount);
+    }
+
     // Business methods for balance operations
     public void addAmount(BigDecimal amountToAdd) {
-        if (amountToAdd != null && amountToAdd.compareTo(BigDecimal.ZERO) > 0) {
+        if (amountToAdd != null && amountToAdd.signum() > 0) {
             this.amount = this.amount.add(amountToAdd);
             this.updatedAt = LocalDateTime.now();
         }
     }
 
     public void subtractAmount(BigDecimal amountToSubtract) {
-        if (amountToSubtract != null && amountToSubtract.compareTo(BigDecimal.ZERO) > 0) {
+        if (amountToSubtract != null && amountToSubtract.signum() > 0) {
             this.amount = this.amount.subtract(amountToSubtract);
             this.updatedAt = LocalDateTime.now();
         }
@@ -94,7 +113,7 @@ public class UserBalance {
 
     public boolean hasSufficientBalance(BigDecimal requiredAmount) {
         return requiredAmount != null && 
-               this.amount.compareTo(requiredAmount) >= 0;
+               getAvailableAmount().compareTo(requiredAmount) >= 0;
     }
 
     @PrePersist
@@ -104,5 +123,8 @@ public class UserBalance {
         if (this.amount == null) {
             this.amount = BigDecimal.ZERO;
         }
+        if (this.lockedAmount == null) {
+            this.lockedAmount = BigDecimal.ZERO;
+        }
     }
 } 
\ No newline at end of file
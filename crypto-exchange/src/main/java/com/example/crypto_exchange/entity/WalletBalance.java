@@ -2,7 +2,12 @@ package com.example.crypto_exchange.entity;
 
 import jakarta.persistence.*;
 import java.math.BigDecimal;
+import java.util.Locale;
 
+/**
+ * Last known on-chain balance of one wallet address and token. Addresses are stored lower-case, and native ETH
+ * with an empty contract address, so that lookups compare the columns directly and use the unique index.
+ */
 @Entity
 @Table(name = "wallet_balances", uniqueConstraints = {
     @UniqueConstraint(columnNames = {"wallet_address", "token_contract_address"})
@@ -42,7 +47,7 @@ public class WalletBalance {
     }
 
     public void setWalletAddress(String walletAddress) {
-        this.walletAddress = walletAddress;
+        this.walletAddress = walletAddress == null ? null : walletAddress.toLowerCase(Locale.ROOT);
     }
 
     public String getTokenContractAddress() {
@@ -50,7 +55,7 @@ public class WalletBalance {
     }
 
     public void setTokenContractAddress(String tokenContractAddress) {
-        this.tokenContractAddress = tokenContractAddress;
+        this.tokenContractAddress = tokenContractAddress == null ? "" : tokenContractAddress.toLowerCase(Locale.ROOT);
     }
 
     public BigDecimal getBalance() {
@@ -0,0 +1,435 @@
+package com.example.crypto_exchange.ledger;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Authoritative user balances held in memory (enabled with {@code ledger.enabled=true}).
+ *
+ * <p>Balances are partitioned by user id over {@code ledger.shards} {@link LedgerShard}s. Each shard owns its
+ * users' balances outright and has its own writer thread, journal and snapshots under
+ * {@code <ledger.directory>/shard-NN}, so shards never contend and throughput grows with their number. A command
+ * goes to the shard of the user it changes; a transfer is prepared in the sender's shard and, between users of
+ * different shards, credited in the receiver's shard after its commit, see {@link LedgerShard}. Committed balances are handed to the {@link LedgerProjector}, which
+ * keeps the <b>balances</b> table up to date asynchronously.</p>
+ *
+ * <p>Inside the ledger amounts are {@link FixedPoint} values. They are converted once on the way in, where an
+ * amount with more than 18 decimals or beyond {@code numeric(36,18)} is refused with an
+ * {@link IllegalArgumentException}, and returned at scale 18 like the amount columns.</p>
+ *
+ * <p>Part of a balance can be reserved for an open order or a pending withdrawal: {@link #reserve} locks it,
+ * {@link #release} unlocks it and {@link #settle} spends it. Debits and transfers only draw on the available,
+ * unlocked part, so a reservation holds until it is released or settled.</p>
+ *
+ * <p>A credit, release or transfer that belongs to a database transaction is made in two phases so that it
+ * survives a crash right after that transaction commits: it is journaled as an intent before the commit
+ * ({@link #prepareCredit}, {@link #prepareRelease}, {@link #prepareTransfer}), the id of the intent is inserted into <b>ledger_commits</b> within the transaction
+ * ({@link #recordCommitted}) and the intent is committed or aborted afterwards. Startup commits every intent
+ * left open whose row exists and aborts the others.</p>
+ *
+ * <p>Startup recovers every shard from its newest snapshot and journal. On the very first start, with no
+ * shard directories at all, the ledger is seeded from the <b>balances</b> table. The number of shards cannot
+ * change while shard directories exist. If a journal write fails that shard stops accepting commands
+ * ({@link LedgerUnavailableException}) until restarted.</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ledger.enabled", havingValue = "true")
+@DependsOn("entityManagerFactory")
+public class BalanceLedger {
+
+    private static final String SHARD_PREFIX = "shard-";
+    /**
+     * Intent ids carry their shard in the low bits and the intent's journal sequence above them
+     */
+    private static final int SHARD_BITS = 8;
+    static final String INSERT_COMMIT_SQL = "INSERT INTO ledger_commits (intent_id) VALUES (?)";
+    static final String DELETE_COMMIT_SQL = "DELETE FROM ledger_commits WHERE intent_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Path directory;
+    private final LedgerShard[] shards;
+    /**
+     * Committed intents whose ledger_commits row can go
+     */
+    private final ConcurrentLinkedQueue<Long> committed = new ConcurrentLinkedQueue<>();
+    private volatile boolean accepting;
+
+    public BalanceLedger(LedgerProjector projector, JdbcTemplate jdbcTemplate,
+                         @Value("${ledger.directory:data/ledger}") String directory,
+                         @Value("${ledger.shards:4}") int shardCount,
+                         @Value("${ledger.journal.segment-size-mb:64}") int segmentSizeMb,
+                         @Value("${ledger.queue-capacity:65536}") int queueCapacity,
+                         @Value("${ledger.batch-size:4096}") int batchSize,
+                         @Value("${ledger.snapshot.every-records:1000000}") long snapshotEvery) throws IOException {
+        if (shardCount < 1 || shardCount > 1 << SHARD_BITS) {
+            throw new IllegalArgumentException("ledger.shards must be between 1 and " + (1 << SHARD_BITS));
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.directory = Path.of(directory);
+        checkShardLayout(shardCount);
+        this.shards = new LedgerShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new LedgerShard(i, shards, projector, this.directory.resolve(shardDirectoryName(i)),
+                    segmentSizeMb << 20, queueCapacity / shardCount, batchSize, snapshotEvery);
+        }
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        int recovered = 0;
+        for (LedgerShard shard : shards) {
+            if (shard.recover()) {
+                recovered++;
+            }
+        }
+        if (recovered == 0) {
+            seedFromDatabase();
+        } else if (recovered < shards.length) {
+            throw new IllegalStateException("Only " + recovered + " of " + shards.length
+                    + " ledger shards have a snapshot, refusing to start with missing balances");
+        }
+        List<Long> open = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            for (long sequence : shards[i].openIntents()) {
+                open.add(intentId(i, sequence));
+            }
+        }
+        for (LedgerShard shard : shards) {
+            shard.start();
+        }
+        resolveIntents(open);
+        accepting = true;
+    }
+
+    /**
+     * Commit the intents of database transactions that committed before the last shutdown or crash and abort the
+     * rest, then clear ledger_commits: no transaction is running yet, so every row left is resolved.
+     */
+    private void resolveIntents(List<Long> open) {
+        if (!open.isEmpty()) {
+            Set<Long> committedIds = new HashSet<>(jdbcTemplate.queryForList("SELECT intent_id FROM ledger_commits", Long.class));
+            int commits = 0;
+            for (long intentId : open) {
+                boolean commit = committedIds.contains(intentId);
+                run(shards[shardOf(intentId)], LedgerCommand.resolve(commit ? LedgerOperation.COMMIT : LedgerOperation.ABORT,
+                        intentId >>> SHARD_BITS));
+                if (commit) {
+                    commits++;
+                }
+            }
+            log.info("Resolved {} ledger intents left open: {} committed, {} aborted", open.size(), commits, open.size() - commits);
+        }
+        jdbcTemplate.update("DELETE FROM ledger_commits");
+    }
+
+    /**
+     * The shard owning a user's balances
+     */
+    static int shardIndex(long userId, int shardCount) {
+        // Fibonacci hashing spreads sequential ids evenly
+        return (int) (((userId * 0x9E3779B97F4A7C15L) >>> 32) % shardCount);
+    }
+
+    /**
+     * The balance, or empty if the user never held the token
+     */
+    public Optional<BigDecimal> find(long userId, long tokenId) {
+        return Optional.ofNullable(execute(userId, LedgerCommand.read(userId, tokenId)));
+    }
+
+    /**
+     * The balance with its reserved part, or empty if the user never held the token
+     */
+    public Optional<LedgerBalance> findBalance(long userId, long tokenId) {
+        LedgerCommand command = LedgerCommand.read(userId, tokenId);
+        execute(userId, command);
+        return command.found
+                ? Optional.of(new LedgerBalance(FixedPoint.toBigDecimal(command.balanceHigh, command.balanceLow),
+                        FixedPoint.toBigDecimal(command.lockedHigh, command.lockedLow)))
+                : Optional.empty();
+    }
+
+    /**
+     * Add a positive amount, creating the balance if needed.
+     * @return The new balance
+     */
+    public BigDecimal credit(long userId, long tokenId, BigDecimal amount) {
+        return execute(userId, write(LedgerOperation.CREDIT, userId, tokenId, 0, requirePositive(amount)));
+    }
+
+    /**
+     * Subtract a positive amount.
+     * @return The new balance
+     * @throws IllegalStateException if the balance does not exist or its available part does not cover the amount
+     */
+    public BigDecimal debit(long userId, long tokenId, BigDecimal amount) {
+        return execute(userId, write(LedgerOperation.DEBIT, userId, tokenId, 0, requirePositive(amount)));
+    }
+
+
+    /**
+     * Journal a credit of a positive amount that is only applied once {@link #commit committed}.
+     */
+    public LedgerIntent prepareCredit(long userId, long tokenId, BigDecimal amount) {
+        return prepare(userId, write(LedgerOperation.PREPARE_CREDIT, userId, tokenId, 0, requirePositive(amount)));
+    }
+
+    /**
+     * Journal a release of a positive amount that is only applied once {@link #commit committed}.
+     * @throws IllegalStateException if less than the amount is reserved
+     */
+    public LedgerIntent prepareRelease(long userId, long tokenId, BigDecimal amount) {
+        return prepare(userId, write(LedgerOperation.PREPARE_RELEASE, userId, tokenId, 0, requirePositive(amount)));
+    }
+
+    /**
+     * Journal a transfer of a positive amount: the sender is debited at once, the receiver is credited once the
+     * transfer is {@link #commit committed} and it is given back to the sender if aborted. Committing a transfer
+     * returns once the receiver is credited. {@link LedgerIntent#newBalance()} tells whether the receiver holds
+     * the token.
+     * @throws IllegalStateException if the sender's balance does not exist or does not cover the amount
+     */
+    public LedgerIntent prepareTransfer(long fromUserId, long toUserId, long tokenId, BigDecimal amount) {
+        LedgerCommand transfer = write(LedgerOperation.PREPARE_TRANSFER, fromUserId, tokenId, toUserId, requirePositive(amount));
+        int shard = shardIndex(fromUserId, shards.length);
+        // Look the receiver up while the sender's shard journals the transfer
+        LedgerCommand receiver = LedgerCommand.read(toUserId, tokenId);
+        LedgerShard receiverShard = shards[shardIndex(toUserId, shards.length)];
+        checkAccepting(receiverShard);
+        receiverShard.submit(receiver);
+        execute(shards[shard], transfer);
+        await(receiver);
+        return new LedgerIntent(intentId(shard, transfer.reference), !receiver.found);
+    }
+
+    /**
+     * Apply a prepared intent. Its ledger_commits row, if any, is deleted shortly after.
+     * @throws IllegalStateException if the intent is not open
+     */
+    public void commit(long intentId) {
+        execute(shards[shardOf(intentId)], LedgerCommand.resolve(LedgerOperation.COMMIT, intentId >>> SHARD_BITS));
+        committed.add(intentId);
+    }
+
+    /**
+     * Drop a prepared intent.
+     * @throws IllegalStateException if the intent is not open
+     */
+    public void abort(long intentId) {
+        execute(shards[shardOf(intentId)], LedgerCommand.resolve(LedgerOperation.ABORT, intentId >>> SHARD_BITS));
+    }
+
+    /**
+     * Record in the caller's database transaction that its intents are to be committed. Must run right before
+     * that transaction commits.
+     */
+    public void recordCommitted(Collection<Long> intentIds) {
+        jdbcTemplate.batchUpdate(INSERT_COMMIT_SQL, intentIds, intentIds.size(), (ps, intentId) -> ps.setLong(1, intentId));
+    }
+
+    /**
+     * Delete the ledger_commits rows of intents the ledger has committed.
+     * @return The number of rows deleted
+     */
+    @Scheduled(fixedDelayString = "${ledger.commits.purge-interval-ms:1000}")
+    public int purgeCommitted() {
+        List<Long> intentIds = new ArrayList<>();
+        Long intentId;
+        while ((intentId = committed.poll()) != null) {
+            intentIds.add(intentId);
+        }
+        if (intentIds.isEmpty()) {
+            return 0;
+        }
+        try {
+            jdbcTemplate.batchUpdate(DELETE_COMMIT_SQL, intentIds, intentIds.size(), (ps, id) -> ps.setLong(1, id));
+        } catch (DataAccessException e) {
+            // Harmless until then: the next startup clears them
+            committed.addAll(intentIds);
+            log.warn("Deleting {} ledger_commits rows failed, retrying: {}", intentIds.size(), e.getMessage());
+            return 0;
+        }
+        return intentIds.size();
+    }
+
+    /**
+     * Lock a positive amount of the available balance.
+     * @throws IllegalStateException if the balance does not exist or its available part does not cover the amount
+     */
+    public void reserve(long userId, long tokenId, BigDecimal amount) {
+        execute(userId, write(LedgerOperation.RESERVE, userId, tokenId, 0, requirePositive(amount)));
+    }
+
+    /**
+     * Unlock a positive amount reserved earlier; the balance is unchanged.
+     * @throws IllegalStateException if less than the amount is reserved
+     */
+    public void release(long userId, long tokenId, BigDecimal amount) {
+        execute(userId, write(LedgerOperation.RELEASE, userId, tokenId, 0, requirePositive(amount)));
+    }
+
+    /**
+     * Spend a positive amount reserved earlier: it leaves both the balance and its reserved part.
+     * @return The new balance
+     * @throws IllegalStateException if less than the amount is reserved
+     */
+    public BigDecimal settle(long userId, long tokenId, BigDecimal amount) {
+        return execute(userId, write(LedgerOperation.SETTLE, userId, tokenId, 0, requirePositive(amount)));
+    }
+
+    /**
+     * Overwrite a balance, keeping its reserved part.
+     * @throws IllegalStateException if the amount is below the reserved part
+     */
+    public void set(long userId, long tokenId, BigDecimal amount) {
+        execute(userId, write(LedgerOperation.SET, userId, tokenId, 0, amount));
+    }
+
+    /**
+     * The one conversion of an incoming amount to {@link FixedPoint}
+     */
+    private static LedgerCommand write(LedgerOperation operation, long userId, long tokenId, long counterpartyId,
+                                       BigDecimal amount) {
+        BigInteger units = FixedPoint.units(amount);
+        return LedgerCommand.write(operation, userId, tokenId, counterpartyId, FixedPoint.high(units), FixedPoint.low(units));
+    }
+
+    private LedgerIntent prepare(long userId, LedgerCommand command) {
+        int shard = shardIndex(userId, shards.length);
+        execute(shards[shard], command);
+        return new LedgerIntent(intentId(shard, command.reference), !command.found);
+    }
+
+    static long intentId(int shard, long sequence) {
+        return sequence << SHARD_BITS | shard;
+    }
+
+    private static int shardOf(long intentId) {
+        return (int) (intentId & ((1 << SHARD_BITS) - 1));
+    }
+
+    /**
+     * @return The user's balance after the command, or null if there is none
+     */
+    private BigDecimal execute(long userId, LedgerCommand command) {
+        return execute(shards[shardIndex(userId, shards.length)], command);
+    }
+
+    private BigDecimal execute(LedgerShard shard, LedgerCommand command) {
+        checkAccepting(shard);
+        return run(shard, command);
+    }
+
+    private void checkAccepting(LedgerShard shard) {
+        if (!accepting || !shard.isAvailable()) {
+            throw new LedgerUnavailableException("Ledger is not accepting commands", shard.failure());
+        }
+    }
+
+    /**
+     * Submit a command and wait for its result, whether or not the ledger accepts commands yet
+     */
+    private BigDecimal run(LedgerShard shard, LedgerCommand command) {
+        shard.submit(command);
+        return await(command);
+    }
+
+    private static BigDecimal await(LedgerCommand command) {
+        try {
+            command.done.get();
+            return command.found ? FixedPoint.toBigDecimal(command.balanceHigh, command.balanceLow) : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LedgerUnavailableException("Interrupted while waiting for the ledger", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new LedgerUnavailableException("Ledger command failed", e.getCause());
+        }
+    }
+
+    private void seedFromDatabase() throws IOException {
+        jdbcTemplate.query("SELECT user_id, token_id, amount, locked_amount FROM balances", (RowCallbackHandler) rs -> {
+            long userId = rs.getLong("user_id");
+            shards[shardIndex(userId, shards.length)].seed(userId, rs.getLong("token_id"), rs.getBigDecimal("amount"),
+                    rs.getBigDecimal("locked_amount"));
+        });
+        int seeded = 0;
+        for (LedgerShard shard : shards) {
+            shard.writeInitialSnapshot();
+            seeded += shard.size();
+        }
+        log.info("Seeded ledger with {} balances from the balances table over {} shards", seeded, shards.length);
+    }
+
+    /**
+     * Users hash to a different shard once the shard count changes, so existing shard data must match it.
+     */
+    private void checkShardLayout(int shardCount) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            long existing = files.filter(Files::isDirectory)
+                    .filter(path -> path.getFileName().toString().startsWith(SHARD_PREFIX))
+                    .count();
+            if (existing > 0 && existing != shardCount) {
+                throw new IllegalStateException("Ledger in " + directory + " has " + existing
+                        + " shards but ledger.shards is " + shardCount
+                        + "; stop with the old value, let the projection catch up and delete the directory to reseed");
+            }
+        }
+    }
+
+    private static String shardDirectoryName(int shard) {
+        return String.format("%s%02d", SHARD_PREFIX, shard);
+    }
+
+    private static BigDecimal requirePositive(BigDecimal amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        return amount;
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException, IOException {
+        accepting = false;
+        // Let transfers already debited in one shard reach the shard that credits them
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (Arrays.stream(shards).anyMatch(shard -> shard.inFlight() > 0) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        for (LedgerShard shard : shards) {
+            shard.stop();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.crypto_exchange.ledger;
+
+import java.math.BigDecimal;
+
+/**
+ * Balances keyed by {@code (userId, tokenId)} in a primitive open-addressing table (linear probing, at most
+ * 70% full). Keys are stored in two {@code long[]}, amounts and their locked parts as {@link FixedPoint} halves
+ * in four more, so lookups and arithmetic allocate nothing. Not thread-safe: owned by one ledger shard's writer
+ * thread.
+ */
+public class BalanceTable {
+
+    /**
+     * Receives the entries of {@link #forEach}.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long userId, long tokenId, long amountHigh, long amountLow, long lockedHigh, long lockedLow);
+    }
+
+    private static final double MAX_LOAD = 0.7;
+
+    private long[] userIds;
+    private long[] tokenIds;
+    private long[] highs;
+    private long[] lows;
+    private long[] lockedHighs;
+    private long[] lockedLows;
+    private boolean[] used;
+    private int mask;
+    private int size;
+
+    public BalanceTable(int initialCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1);
+        allocate(capacity);
+    }
+
+    /**
+     * The slot holding a balance, or -1 if the user never held the token. Valid until the next insert.
+     */
+    public int find(long userId, long tokenId) {
+        for (int slot = hash(userId, tokenId) & mask; used[slot]; slot = (slot + 1) & mask) {
+            if (userIds[slot] == userId && tokenIds[slot] == tokenId) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    public long high(int slot) {
+        return highs[slot];
+    }
+
+    public long low(int slot) {
+        return lows[slot];
+    }
+
+    public long lockedHigh(int slot) {
+        return lockedHighs[slot];
+    }
+
+    public long lockedLow(int slot) {
+        return lockedLows[slot];
+    }
+
+    /**
+     * Compare the available (unlocked) part of the balance in {@code slot} with an amount
+     */
+    public int compareAvailable(int slot, long amountHigh, long amountLow) {
+        long high = FixedPoint.subtractHigh(highs[slot], lows[slot], lockedHighs[slot], lockedLows[slot]);
+        return FixedPoint.compare(high, lows[slot] - lockedLows[slot], amountHigh, amountLow);
+    }
+
+    public boolean contains(long userId, long tokenId) {
+        return find(userId, tokenId) >= 0;
+    }
+
+    /**
+     * The balance, or null if the user never held the token. Allocates: for callers outside the hot path.
+     */
+    public BigDecimal get(long userId, long tokenId) {
+        int slot = find(userId, tokenId);
+        return slot < 0 ? null : FixedPoint.toBigDecimal(highs[slot], lows[slot]);
+    }
+
+    /**
+     * Overwrite a balance, creating it if needed. The locked part of an existing balance is kept.
+     * @return Its slot
+     */
+    public int set(long userId, long tokenId, long amountHigh, long amountLow) {
+        int slot = find(userId, tokenId);
+        if (slot < 0) {
+            return set(userId, tokenId, amountHigh, amountLow, 0, 0);
+        }
+        highs[slot] = amountHigh;
+        lows[slot] = amountLow;
+        return slot;
+    }
+
+    /**
+     * Overwrite a balance and its locked part, creating it if needed.
+     * @return Its slot
+     */
+    public int set(long userId, long tokenId, long amountHigh, long amountLow, long lockedHigh, long lockedLow) {
+        int slot = find(userId, tokenId);
+        if (slot < 0) {
+            if (size + 1 > (mask + 1) * MAX_LOAD) {
+                grow();
+            }
+            slot = insert(userId, tokenId, amountHigh, amountLow, lockedHigh, lockedLow);
+            size++;
+            return slot;
+        }
+        highs[slot] = amountHigh;
+        lows[slot] = amountLow;
+        lockedHighs[slot] = lockedHigh;
+        lockedLows[slot] = lockedLow;
+        return slot;
+    }
+
+    /**
+     * Add to a balance, creating it if needed.
+     * @return Its slot
+     */
+    public int add(long userId, long tokenId, long amountHigh, long amountLow) {
+        int slot = find(userId, tokenId);
+        if (slot < 0) {
+            return set(userId, tokenId, amountHigh, amountLow);
+        }
+        long low = lows[slot];
+        highs[slot] = FixedPoint.addHigh(highs[slot], low, amountHigh, amountLow);
+        lows[slot] = low + amountLow;
+        return slot;
+    }
+
+    /**
+     * Subtract from the balance in {@code slot}.
+     */
+    public void subtract(int slot, long amountHigh, long amountLow) {
+        long low = lows[slot];
+        highs[slot] = FixedPoint.subtractHigh(highs[slot], low, amountHigh, amountLow);
+        lows[slot] = low - amountLow;
+    }
+
+    /**
+     * Add to the locked part of the balance in {@code slot}.
+     */
+    public void lock(int slot, long amountHigh, long amountLow) {
+        long low = lockedLows[slot];
+        lockedHighs[slot] = FixedPoint.addHigh(lockedHighs[slot], low, amountHigh, amountLow);
+        lockedLows[slot] = low + amountLow;
+    }
+
+    /**
+     * Subtract from the locked part of the balance in {@code slot}.
+     */
+    public void unlock(int slot, long amountHigh, long amountLow) {
+        long low = lockedLows[slot];
+        lockedHighs[slot] = FixedPoint.subtractHigh(lockedHighs[slot], low, amountHigh, amountLow);
+        lockedLows[slot] = low - amountLow;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot <= mask; slot++) {
+            if (used[slot]) {
+                consumer.accept(userIds[slot], tokenIds[slot], highs[slot], lows[slot], lockedHighs[slot], lockedLows[slot]);
+            }
+        }
+    }
+
+    private int insert(long userId, long tokenId, long amountHigh, long amountLow, long lockedHigh, long lockedLow) {
+        int slot = hash(userId, tokenId) & mask;
+        while (used[slot]) {
+            slot = (slot + 1) & mask;
+        }
+        userIds[slot] = userId;
+        tokenIds[slot] = tokenId;
+        highs[slot] = amountHigh;
+        lows[slot] = amountLow;
+        lockedHighs[slot] = lockedHigh;
+        lockedLows[slot] = lockedLow;
+        used[slot] = true;
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldUserIds = userIds;
+        long[] oldTokenIds = tokenIds;
+        long[] oldHighs = highs;
+        long[] oldLows = lows;
+        long[] oldLockedHighs = lockedHighs;
+        long[] oldLockedLows = lockedLows;
+        boolean[] oldUsed = used;
+        allocate((mask + 1) << 1);
+        for (int slot = 0; slot < oldUsed.length; slot++) {
+            if (oldUsed[slot]) {
+                insert(oldUserIds[slot], oldTokenIds[slot], oldHighs[slot], oldLows[slot],
+                        oldLockedHighs[slot], oldLockedLows[slot]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        userIds = new long[capacity];
+        tokenIds = new long[capacity];
+        highs = new long[capacity];
+        lows = new long[capacity];
+        lockedHighs = new long[capacity];
+        lockedLows = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int hash(long userId, long tokenId) {
+        // 64-bit finalizer of MurmurHash3 over both ids
+        long h = userId * 0x9E3779B97F4A7C15L + tokenId;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.crypto_exchange.ledger;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Amounts as signed 128-bit integers of 10<sup>-18</sup> units, held in two longs: {@code high} (signed) and
+ * {@code low} (unsigned). This is the precision of the {@code numeric(36,18)} amount columns, so every stored
+ * amount of every token (none has more than 18 decimals) converts exactly in both directions.
+ *
+ * <p>Arithmetic works on primitives and allocates nothing; conversion to and from {@link BigDecimal} only
+ * happens where amounts enter or leave the ledger. Results are checked against the column range
+ * (36 digits), so an overflow is caught before it is journaled rather than when the projection fails.</p>
+ */
+public final class FixedPoint {
+
+    public static final int SCALE = 18;
+
+    private static final BigInteger LIMIT = BigInteger.TEN.pow(36);
+    /**
+     * 10^36 - 1, the largest magnitude a numeric(36,18) column holds
+     */
+    private static final long MAX_HIGH = LIMIT.subtract(BigInteger.ONE).shiftRight(64).longValue();
+    private static final long MAX_LOW = LIMIT.subtract(BigInteger.ONE).longValue();
+
+    private FixedPoint() {
+    }
+
+    /**
+     * The amount in 10<sup>-18</sup> units.
+     * @throws IllegalArgumentException if it has more than 18 decimals or does not fit 36 digits
+     */
+    public static BigInteger units(BigDecimal amount) {
+        BigInteger units;
+        try {
+            units = amount.setScale(SCALE).unscaledValue();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount " + amount.toPlainString() + " has more than " + SCALE + " decimals");
+        }
+        if (units.abs().compareTo(LIMIT) >= 0) {
+            throw new IllegalArgumentException("Amount " + amount.toPlainString() + " is out of range");
+        }
+        return units;
+    }
+
+    public static long high(BigInteger units) {
+        return units.shiftRight(64).longValue();
+    }
+
+    public static long low(BigInteger units) {
+        return units.longValue();
+    }
+
+    public static BigDecimal toBigDecimal(long high, long low) {
+        BigInteger units = BigInteger.valueOf(high).shiftLeft(64)
+                .add(new BigInteger(Long.toUnsignedString(low)));
+        return new BigDecimal(units, SCALE);
+    }
+
+    /**
+     * High half of {@code a + b}; the low half is {@code aLow + bLow}
+     */
+    public static long addHigh(long aHigh, long aLow, long bHigh, long bLow) {
+        long carry = Long.compareUnsigned(aLow + bLow, aLow) < 0 ? 1 : 0;
+        return aHigh + bHigh + carry;
+    }
+
+    /**
+     * High half of {@code a - b}; the low half is {@code aLow - bLow}
+     */
+    public static long subtractHigh(long aHigh, long aLow, long bHigh, long bLow) {
+        long borrow = Long.compareUnsigned(aLow, bLow) < 0 ? 1 : 0;
+        return aHigh - bHigh - borrow;
+    }
+
+    public static int compare(long aHigh, long aLow, long bHigh, long bLow) {
+        return aHigh != bHigh ? Long.compare(aHigh, bHigh) : Long.compareUnsigned(aLow, bLow);
+    }
+
+    public static int signum(long high, long low) {
+        return high < 0 ? -1 : (high == 0 && low == 0 ? 0 : 1);
+    }
+
+    /**
+     * Whether the value fits a numeric(36,18) column
+     */
+    public static boolean inRange(long high, long low) {
+        if (high < 0) {
+            // -x = ~x + 1
+            long negatedLow = ~low + 1;
+            long negatedHigh = ~high + (negatedLow == 0 ? 1 : 0);
+            return negatedHigh >= 0 && compare(negatedHigh, negatedLow, MAX_HIGH, MAX_LOW) <= 0;
+        }
+        return compare(high, low, MAX_HIGH, MAX_LOW) <= 0;
+    }
+}
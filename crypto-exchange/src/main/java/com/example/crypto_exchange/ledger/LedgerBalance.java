@@ -0,0 +1,16 @@
+package com.example.crypto_exchange.ledger;
+
+import java.math.BigDecimal;
+
+/**
+ * A balance held in the {@link BalanceLedger} together with the part of it that is reserved, both at scale 18.
+ */
+public record LedgerBalance(BigDecimal amount, BigDecimal locked) {
+
+    /**
+     * What can be spent or reserved
+     */
+    public BigDecimal available() {
+        return amount.subtract(locked);
+    }
+}
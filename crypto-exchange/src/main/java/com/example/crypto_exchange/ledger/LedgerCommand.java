@@ -0,0 +1,99 @@
+package com.example.crypto_exchange.ledger;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A request queued to a {@link LedgerShard}. Amounts are {@link FixedPoint} values. Mutable fields are written
+ * by the shard's writer thread only and read by the caller after {@link #done} completes.
+ */
+final class LedgerCommand {
+
+    enum Kind {
+        READ,
+        WRITE,
+        /**
+         * The receiving shard credited the TRANSFER_OUT with sequence {@code reference}: stop tracking it
+         */
+        SETTLE
+    }
+
+    final Kind kind;
+    /**
+     * null unless WRITE
+     */
+    final LedgerOperation operation;
+    final long userId;
+    final long tokenId;
+    final long counterpartyId;
+    final long amountHigh;
+    final long amountLow;
+    final CompletableFuture<Void> done;
+    /**
+     * TRANSFER_IN and SETTLE: the sequence of the pending transfer; COMMIT and ABORT: the sequence of the intent.
+     * Set by the writer once an intent is journaled.
+     */
+    long reference;
+    /**
+     * COMMIT and ABORT: the intent they resolved; set by the writer
+     */
+    LedgerRecord intent;
+    /**
+     * COMMIT of a transfer to another shard: the transfer it left pending; set by the writer
+     */
+    LedgerRecord pending;
+    /**
+     * Whether the user holds the token; the balance and locked part below are only meaningful if so
+     */
+    boolean found;
+    long balanceHigh;
+    long balanceLow;
+    long lockedHigh;
+    long lockedLow;
+    RuntimeException rejection;
+
+    private LedgerCommand(Kind kind, LedgerOperation operation, long userId, long tokenId, long counterpartyId,
+                          long amountHigh, long amountLow, long reference, CompletableFuture<Void> done) {
+        this.kind = kind;
+        this.operation = operation;
+        this.userId = userId;
+        this.tokenId = tokenId;
+        this.counterpartyId = counterpartyId;
+        this.amountHigh = amountHigh;
+        this.amountLow = amountLow;
+        this.reference = reference;
+        this.done = done;
+    }
+
+    static LedgerCommand read(long userId, long tokenId) {
+        return new LedgerCommand(Kind.READ, null, userId, tokenId, 0, 0, 0, 0, new CompletableFuture<>());
+    }
+
+    static LedgerCommand write(LedgerOperation operation, long userId, long tokenId, long counterpartyId,
+                               long amountHigh, long amountLow) {
+        return new LedgerCommand(Kind.WRITE, operation, userId, tokenId, counterpartyId, amountHigh, amountLow, 0,
+                new CompletableFuture<>());
+    }
+
+    /**
+     * Resolve the intent journaled with {@code sequence} in the shard this is submitted to.
+     * @param operation COMMIT or ABORT
+     */
+    static LedgerCommand resolve(LedgerOperation operation, long sequence) {
+        return new LedgerCommand(Kind.WRITE, operation, 0, 0, 0, 0, 0, sequence, new CompletableFuture<>());
+    }
+
+    /**
+     * Credit of the receiver of a pending transfer in the receiver's shard. The future is the one of the COMMIT
+     * that made the transfer pending, so its caller is answered once the receiver is credited, or a new one for
+     * a transfer found pending at startup.
+     */
+    static LedgerCommand transferIn(LedgerRecord transfer, CompletableFuture<Void> done) {
+        return new LedgerCommand(Kind.WRITE, LedgerOperation.TRANSFER_IN, transfer.counterpartyId(),
+                transfer.tokenId(), transfer.userId(), transfer.amountHigh(), transfer.amountLow(),
+                transfer.sequence(), done);
+    }
+
+    static LedgerCommand settle(long transferOutSequence) {
+        return new LedgerCommand(Kind.SETTLE, null, 0, 0, 0, 0, 0, transferOutSequence, new CompletableFuture<>());
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.crypto_exchange.ledger;
+
+/**
+ * A change journaled by the {@link BalanceLedger} that only takes effect once committed.
+ * @param id Identifies the intent to {@link BalanceLedger#commit} or {@link BalanceLedger#abort} it
+ * @param newBalance Whether the user did not hold the token yet when the intent was journaled
+ */
+public record LedgerIntent(long id, boolean newBalance) {
+}
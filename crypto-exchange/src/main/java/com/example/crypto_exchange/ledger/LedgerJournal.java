@@ -0,0 +1,222 @@
+package com.example.crypto_exchange.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of {@link LedgerRecord}s in memory-mapped segment files.
+ *
+ * <p>Each segment is a preallocated file of {@code segmentSize} bytes named after the sequence of its first
+ * record. A record is {@code [int length][int crc32c][body]} with a fixed-size body (the amount is a
+ * {@link FixedPoint} value); a zero length ends a segment. Appends only copy into the mapping, {@link #commit}
+ * forces it to disk, so one fsync covers every record appended since the previous commit (group commit). Replay stops at the first torn or out-of-sequence record of the last
+ * segment and clears everything after it.</p>
+ *
+ * <p>Not thread-safe: used by the ledger's writer thread only.</p>
+ */
+@Slf4j
+public class LedgerJournal implements Closeable {
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+    private static final int BODY_BYTES = 8 + 1 + 8 + 8 + 8 + 8 + 8 + 8;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final CRC32C crc = new CRC32C();
+
+    private Path segmentPath;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private boolean dirty;
+
+    public LedgerJournal(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Read all records after {@code afterSequence} and position the journal for appending behind the last one.
+     * Must be called once before the first {@link #append}.
+     * @return The sequence of the last record in the journal, or {@code afterSequence} if there is none after it
+     */
+    public long replay(long afterSequence, Consumer<LedgerRecord> consumer) throws IOException {
+        List<Path> segments = segments();
+        long last = afterSequence;
+        long expected = -1;
+        for (int i = 0; i < segments.size(); i++) {
+            boolean lastSegment = i == segments.size() - 1;
+            FileChannel segmentChannel = FileChannel.open(segments.get(i), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            while (true) {
+                int start = buffer.position();
+                LedgerRecord record = read(buffer);
+                if (record == null || (expected >= 0 && record.sequence() != expected)) {
+                    if (!lastSegment && start < segmentSize - HEADER_BYTES && buffer.getInt(start) != 0) {
+                        throw new IOException("Ledger journal segment " + segments.get(i) + " is corrupt at offset " + start);
+                    }
+                    if (lastSegment && buffer.getInt(start) != 0) {
+                        log.warn("Ledger journal ends with a torn record at offset {} of {}, discarding the rest",
+                                start, segments.get(i).getFileName());
+                        clear(buffer, start);
+                    }
+                    buffer.position(start);
+                    break;
+                }
+                if (expected < 0 && record.sequence() > afterSequence + 1) {
+                    throw new IOException("Ledger journal starts at " + record.sequence() + ", records after "
+                            + afterSequence + " are missing");
+                }
+                expected = record.sequence() + 1;
+                if (record.sequence() > afterSequence) {
+                    consumer.accept(record);
+                    last = record.sequence();
+                }
+            }
+            if (lastSegment) {
+                segmentPath = segments.get(i);
+                channel = segmentChannel;
+                segment = buffer;
+            } else {
+                segmentChannel.close();
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Copy a record into the current segment, starting a new one when it is full. Not durable before {@link #commit}.
+     */
+    public void append(LedgerRecord record) throws IOException {
+        if (segment == null || segment.remaining() < HEADER_BYTES + BODY_BYTES + 4) {
+            roll(record.sequence());
+        }
+
+        int start = segment.position();
+        segment.position(start + HEADER_BYTES);
+        segment.putLong(record.sequence())
+                .put(record.operation().code())
+                .putLong(record.userId())
+                .putLong(record.tokenId())
+                .putLong(record.counterpartyId())
+                .putLong(record.amountHigh())
+                .putLong(record.amountLow())
+                .putLong(record.reference());
+        crc.reset();
+        crc.update(segment.slice(start + HEADER_BYTES, BODY_BYTES));
+        segment.putInt(start, BODY_BYTES);
+        segment.putInt(start + 4, (int) crc.getValue());
+        dirty = true;
+    }
+
+    /**
+     * Force every record appended so far to disk.
+     */
+    public void commit() {
+        if (dirty) {
+            segment.force();
+            dirty = false;
+        }
+    }
+
+    /**
+     * Continue in a new segment and delete all older ones, after a snapshot covering every record so far
+     * has been written.
+     * @param nextSequence Sequence of the next record to be appended
+     */
+    public void checkpoint(long nextSequence) throws IOException {
+        commit();
+        if (segment != null && segment.position() > 0) {
+            roll(nextSequence);
+        }
+        for (Path path : segments()) {
+            if (!path.equals(segmentPath) && firstSequence(path) < nextSequence) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        commit();
+        if (channel != null) {
+            channel.close();
+            channel = null;
+            segment = null;
+        }
+    }
+
+    private void roll(long firstSequence) throws IOException {
+        commit();
+        if (channel != null) {
+            channel.close();
+        }
+        Path path = directory.resolve(String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX));
+        segmentPath = path;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        log.debug("Started ledger journal segment {}", path.getFileName());
+    }
+
+    private LedgerRecord read(MappedByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_BYTES + BODY_BYTES) {
+            return null;
+        }
+        int start = buffer.position();
+        if (buffer.getInt(start) != BODY_BYTES) {
+            return null;
+        }
+        crc.reset();
+        crc.update(buffer.slice(start + HEADER_BYTES, BODY_BYTES));
+        if ((int) crc.getValue() != buffer.getInt(start + 4)) {
+            return null;
+        }
+
+        buffer.position(start + HEADER_BYTES);
+        long sequence = buffer.getLong();
+        LedgerOperation operation = LedgerOperation.ofCode(buffer.get());
+        long userId = buffer.getLong();
+        long tokenId = buffer.getLong();
+        long counterpartyId = buffer.getLong();
+        long amountHigh = buffer.getLong();
+        long amountLow = buffer.getLong();
+        long reference = buffer.getLong();
+        return new LedgerRecord(sequence, operation, userId, tokenId, counterpartyId, amountHigh, amountLow, reference);
+    }
+
+    private void clear(MappedByteBuffer buffer, int from) {
+        for (int i = from; i < segmentSize; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        buffer.force();
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files
+                    .filter(path -> path.getFileName().toString().startsWith(PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList());
+        }
+    }
+
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.crypto_exchange.ledger;
+
+/**
+ * Balance mutations recorded in the ledger journal. The code is the byte written to the journal and
+ * must never change.
+ *
+ * <p>A transfer is a PREPARE_TRANSFER in the sender's shard, which debits the sender at once. Its COMMIT credits
+ * a receiver of the same shard directly; a receiver in another shard is credited by a TRANSFER_IN there, and
+ * until then the committed transfer is pending like a TRANSFER_OUT. Its ABORT gives the sender the amount
+ * back. TRANSFER and TRANSFER_OUT are no longer written, but still replayed from older journals.</p>
+ *
+ * <p>RESERVE locks part of a balance, RELEASE unlocks it again and SETTLE spends it: the amount leaves both the
+ * balance and its locked part.</p>
+ *
+ * <p>A change made together with a database transaction is journaled as an intent before that transaction
+ * commits and resolved by a COMMIT or ABORT carrying the intent's sequence as reference. PREPARE_CREDIT and
+ * PREPARE_RELEASE change nothing until committed, PREPARE_TRANSFER only takes from the sender.</p>
+ */
+public enum LedgerOperation {
+    CREDIT(1),
+    DEBIT(2),
+    TRANSFER(3),
+    SET(4),
+    TRANSFER_OUT(5),
+    TRANSFER_IN(6),
+    RESERVE(7),
+    RELEASE(8),
+    SETTLE(9),
+    PREPARE_CREDIT(10),
+    PREPARE_RELEASE(11),
+    COMMIT(12),
+    ABORT(13),
+    PREPARE_TRANSFER(14);
+
+    private final byte code;
+
+    LedgerOperation(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte code() {
+        return code;
+    }
+
+    public static LedgerOperation ofCode(byte code) {
+        for (LedgerOperation operation : values()) {
+            if (operation.code == code) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown ledger operation " + code);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.crypto_exchange.ledger;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Copies committed ledger balances into the <b>balances</b> table, which becomes a read model that lags the
+ * {@link BalanceLedger} by at most {@code ledger.projection.interval-ms}.
+ *
+ * <p>The ledger publishes the new absolute balance of every key it changed; repeated changes of one key are
+ * coalesced, so a busy account costs one row write per interval. Rows are upserted in JDBC batches of
+ * {@code ledger.projection.batch-size}. A failed batch stays pending and is retried; a row the database
+ * rejects outright (unknown user or token) is logged and dropped.</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ledger.enabled", havingValue = "true")
+public class LedgerProjector {
+
+    static final String UPSERT_SQL = "INSERT INTO balances (user_id, token_id, amount, locked_amount, updated_at) " +
+            "VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (user_id, token_id) DO UPDATE SET amount = EXCLUDED.amount, " +
+            "locked_amount = EXCLUDED.locked_amount, updated_at = EXCLUDED.updated_at";
+
+    record BalanceKey(long userId, long tokenId) {
+    }
+
+    private record Balance(BigDecimal amount, BigDecimal locked) {
+    }
+
+    private record Change(long userId, long tokenId, long amountHigh, long amountLow, long lockedHigh, long lockedLow) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final ConcurrentLinkedQueue<Change> changes = new ConcurrentLinkedQueue<>();
+    private final Map<BalanceKey, Balance> pending = new LinkedHashMap<>();
+
+    public LedgerProjector(JdbcTemplate jdbcTemplate,
+                           @Value("${ledger.projection.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Record the committed {@link FixedPoint} balance of a key and its locked part. Called by the ledger's writer
+     * threads, never blocks; the conversion to {@link BigDecimal} happens on the flushing thread.
+     */
+    public void publish(long userId, long tokenId, long amountHigh, long amountLow, long lockedHigh, long lockedLow) {
+        changes.add(new Change(userId, tokenId, amountHigh, amountLow, lockedHigh, lockedLow));
+    }
+
+    /**
+     * Write all balances changed since the previous flush.
+     * @return The number of rows written
+     */
+    @Scheduled(fixedDelayString = "${ledger.projection.interval-ms:200}")
+    public synchronized int flush() {
+        Change change;
+        while ((change = changes.poll()) != null) {
+            pending.put(new BalanceKey(change.userId(), change.tokenId()), new Balance(
+                    FixedPoint.toBigDecimal(change.amountHigh(), change.amountLow()),
+                    FixedPoint.toBigDecimal(change.lockedHigh(), change.lockedLow())));
+        }
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        List<Map.Entry<BalanceKey, Balance>> rows = new ArrayList<>(pending.entrySet());
+        int written = 0;
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            List<Map.Entry<BalanceKey, Balance>> batch = rows.subList(from, Math.min(from + batchSize, rows.size()));
+            try {
+                write(batch);
+            } catch (DataIntegrityViolationException e) {
+                writeOneByOne(batch);
+            } catch (Exception e) {
+                log.warn("Projecting {} ledger balances failed, will retry: {}", rows.size() - written, e.getMessage());
+                return written;
+            }
+            batch.forEach(row -> pending.remove(row.getKey(), row.getValue()));
+            written += batch.size();
+        }
+        log.trace("Projected {} ledger balances", written);
+        return written;
+    }
+
+    /**
+     * Number of balances not yet written
+     */
+    public synchronized int backlog() {
+        return pending.size() + changes.size();
+    }
+
+    private void write(List<Map.Entry<BalanceKey, Balance>> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (Map.Entry<BalanceKey, Balance> row : batch) {
+            rows.add(new Object[]{row.getKey().userId(), row.getKey().tokenId(), row.getValue().amount(), row.getValue().locked()});
+        }
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+    }
+
+    private void writeOneByOne(List<Map.Entry<BalanceKey, Balance>> batch) {
+        for (Map.Entry<BalanceKey, Balance> row : batch) {
+            try {
+                write(List.of(row));
+            } catch (DataIntegrityViolationException e) {
+                log.error("Dropping ledger balance of user {} token {} rejected by the database: {}",
+                        row.getKey().userId(), row.getKey().tokenId(), e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (flush() > 0 || backlog() > 0) {
+            log.info("Ledger projection flushed on shutdown, {} balances left", backlog());
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.crypto_exchange.ledger;
+
+/**
+ * One journaled balance mutation; the amount is a {@link FixedPoint} value. {@code counterpartyId} is the other
+ * user of a transfer and 0 otherwise. {@code reference} is only set on TRANSFER_IN, the sequence of the
+ * matching TRANSFER_OUT in the sender's shard, and on COMMIT and ABORT, the sequence of the intent they resolve.
+ */
+public record LedgerRecord(long sequence, LedgerOperation operation, long userId, long tokenId,
+                           long counterpartyId, long amountHigh, long amountLow, long reference) {
+}
@@ -0,0 +1,525 @@
+package com.example.crypto_exchange.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One single-writer partition of the {@link BalanceLedger}: the balances of the users that hash to it, with
+ * its own journal, snapshots and writer thread. Nothing in a shard is shared with another shard.
+ *
+ * <p>Commands are handed over on a lock-free queue; the writer drains it in batches, applies them to its
+ * {@link BalanceTable}, journals them and forces the journal once per batch before answering (group commit).
+ * An idle writer parks and is unparked by the next producer. The queue bound is soft: callers spin while it is
+ * full, commands forwarded by other shards are never held back, so two shards can never wait on each other.</p>
+ *
+ * <p>Intents (PREPARE_CREDIT, PREPARE_RELEASE, PREPARE_TRANSFER) are kept by sequence until a COMMIT or ABORT
+ * resolves them; the ones still open in a snapshot are part of it. A transfer is prepared in the sender's
+ * shard, which debits the sender. When the receiver lives in another shard its COMMIT leaves the transfer
+ * pending until the receiving shard confirms it: once the COMMIT is journaled a TRANSFER_IN carrying its
+ * sequence is forwarded to the receiving shard, which credits the receiver and sends a SETTLE back. Each shard
+ * remembers per sending shard the highest TRANSFER_IN reference it applied, so the TRANSFER_INs that are
+ * re-sent for every pending transfer after a restart are credited exactly once.</p>
+ */
+@Slf4j
+class LedgerShard {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FULL_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final int id;
+    private final LedgerShard[] shards;
+    private final LedgerProjector projector;
+    private final LedgerJournal journal;
+    private final LedgerSnapshots snapshots;
+    private final ConcurrentLinkedQueue<LedgerCommand> queue = new ConcurrentLinkedQueue<>();
+    /**
+     * Commands queued or in the batch being processed
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int capacity;
+    private final int batchSize;
+    private final long snapshotEvery;
+    private final Thread writerThread;
+
+    private final BalanceTable table = new BalanceTable(1 << 14);
+    /**
+     * Committed transfers the receiving shard has not confirmed yet, as TRANSFER_OUT records by sequence
+     */
+    private final TreeMap<Long, LedgerRecord> pendingTransfers = new TreeMap<>();
+    /**
+     * Intents neither committed nor aborted yet, by sequence
+     */
+    private final TreeMap<Long, LedgerRecord> intents = new TreeMap<>();
+    /**
+     * Per sending shard, the reference of the last TRANSFER_IN applied
+     */
+    private final long[] creditedUpTo;
+    private long sequence;
+    private long snapshotSequence;
+    private volatile boolean idle;
+    private volatile boolean running = true;
+    private volatile Throwable failure;
+
+    LedgerShard(int id, LedgerShard[] shards, LedgerProjector projector, Path directory, int segmentSize,
+                int capacity, int batchSize, long snapshotEvery) throws IOException {
+        this.id = id;
+        this.shards = shards;
+        this.projector = projector;
+        this.journal = new LedgerJournal(directory, segmentSize);
+        this.snapshots = new LedgerSnapshots(directory);
+        this.capacity = Math.max(1, capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.snapshotEvery = Math.max(1, snapshotEvery);
+        this.creditedUpTo = new long[shards.length];
+        this.writerThread = Thread.ofPlatform().name("ledger-writer-" + id).daemon().unstarted(this::run);
+    }
+
+    /**
+     * Load the newest snapshot and replay the journal after it.
+     * @return whether a snapshot was found
+     */
+    boolean recover() throws IOException {
+        List<LedgerRecord> transfers = new ArrayList<>();
+        List<LedgerRecord> openIntents = new ArrayList<>();
+        OptionalLong snapshot = snapshots.loadLatest(table, transfers, openIntents, creditedUpTo);
+        transfers.forEach(transfer -> pendingTransfers.put(transfer.sequence(), transfer));
+        openIntents.forEach(intent -> intents.put(intent.sequence(), intent));
+        snapshotSequence = snapshot.orElse(0);
+        sequence = journal.replay(snapshotSequence, this::applyRecord);
+        if (snapshot.isEmpty() && sequence > 0) {
+            throw new IllegalStateException("Ledger shard " + id + " has a journal but no snapshot, refusing to start from an empty ledger");
+        }
+        log.info("Ledger shard {} recovered {} balances: snapshot at {}, journal replayed up to {}, {} transfers pending, {} intents open",
+                id, table.size(), snapshotSequence, sequence, pendingTransfers.size(), intents.size());
+        return snapshot.isPresent();
+    }
+
+    /**
+     * Load a balance on first start, before {@link #writeInitialSnapshot}.
+     */
+    void seed(long userId, long tokenId, BigDecimal amount, BigDecimal locked) {
+        BigInteger units = FixedPoint.units(amount);
+        BigInteger lockedUnits = FixedPoint.units(locked);
+        table.set(userId, tokenId, FixedPoint.high(units), FixedPoint.low(units),
+                FixedPoint.high(lockedUnits), FixedPoint.low(lockedUnits));
+    }
+
+    void writeInitialSnapshot() throws IOException {
+        snapshots.write(0, table, pendingTransfers.values(), intents.values(), creditedUpTo);
+    }
+
+    /**
+     * Sequences of the intents left open by the previous run, to be resolved once the writer runs. Only called
+     * between {@link #recover} and {@link #start}.
+     */
+    List<Long> openIntents() {
+        return new ArrayList<>(intents.keySet());
+    }
+
+    /**
+     * Start the writer after every shard has recovered. Re-sends the second phase of unconfirmed transfers
+     * and republishes all balances, as the projection may have missed changes made just before the last shutdown.
+     */
+    void start() {
+        pendingTransfers.values().forEach(transfer ->
+                shards[BalanceLedger.shardIndex(transfer.counterpartyId(), shards.length)]
+                        .forward(LedgerCommand.transferIn(transfer, new CompletableFuture<>())));
+        table.forEach(projector::publish);
+        writerThread.start();
+    }
+
+    boolean isAvailable() {
+        return running && failure == null;
+    }
+
+    Throwable failure() {
+        return failure;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    int size() {
+        return table.size();
+    }
+
+    /**
+     * Queue a caller's command, waiting while the queue is full.
+     */
+    void submit(LedgerCommand command) {
+        while (inFlight.get() >= capacity) {
+            if (!isAvailable()) {
+                throw new LedgerUnavailableException("Ledger is not accepting commands", failure);
+            }
+            LockSupport.parkNanos(FULL_BACKOFF_NANOS);
+        }
+        forward(command);
+    }
+
+    /**
+     * Queue a command regardless of the bound. Used between shards.
+     */
+    void forward(LedgerCommand command) {
+        inFlight.incrementAndGet();
+        queue.add(command);
+        if (idle) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    private void run() {
+        List<LedgerCommand> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            LedgerCommand command;
+            while (batch.size() < batchSize && (command = queue.poll()) != null) {
+                batch.add(command);
+            }
+            if (batch.isEmpty()) {
+                // A producer that adds after the check below sees idle set and unparks us
+                idle = true;
+                if (queue.isEmpty() && running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                idle = false;
+                continue;
+            }
+            try {
+                process(batch);
+            } finally {
+                inFlight.addAndGet(-batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<LedgerCommand> batch) {
+        if (failure != null) {
+            batch.forEach(command -> command.done.completeExceptionally(
+                    new LedgerUnavailableException("Ledger stopped after a journal failure", failure)));
+            return;
+        }
+        boolean written = false;
+        try {
+            for (LedgerCommand command : batch) {
+                written |= apply(command);
+            }
+            journal.commit();
+        } catch (IOException | RuntimeException e) {
+            // The table may now hold changes that are not in the journal: stop until a restart replays it
+            failure = e;
+            log.error("Ledger shard {} journal write failed, rejecting all further commands: {}", id, e.getMessage(), e);
+            batch.forEach(command -> command.done.completeExceptionally(
+                    new LedgerUnavailableException("Ledger journal write failed", e)));
+            return;
+        }
+
+        for (LedgerCommand command : batch) {
+            if (command.rejection != null) {
+                command.done.completeExceptionally(command.rejection);
+                continue;
+            }
+            if (command.kind == LedgerCommand.Kind.SETTLE) {
+                continue;
+            }
+            if (command.kind == LedgerCommand.Kind.WRITE) {
+                switch (command.operation) {
+                    case PREPARE_CREDIT, PREPARE_RELEASE -> {
+                        // No balance changed yet
+                    }
+                    case COMMIT -> {
+                        if (command.pending != null) {
+                            // Answered by the receiving shard
+                            shardOf(command.pending.counterpartyId()).forward(
+                                    LedgerCommand.transferIn(command.pending, command.done));
+                            continue;
+                        }
+                        LedgerRecord intent = command.intent;
+                        publish(intent.operation() == LedgerOperation.PREPARE_TRANSFER ? intent.counterpartyId() : intent.userId(),
+                                intent.tokenId());
+                    }
+                    case ABORT -> {
+                        if (command.intent.operation() == LedgerOperation.PREPARE_TRANSFER) {
+                            publish(command.intent.userId(), command.intent.tokenId());
+                        }
+                    }
+                    case TRANSFER_IN -> {
+                        publish(command.userId, command.tokenId);
+                        shardOf(command.counterpartyId).forward(LedgerCommand.settle(command.reference));
+                    }
+                    default -> publish(command.userId, command.tokenId);
+                }
+            }
+            command.done.complete(null);
+        }
+        if (written && sequence - snapshotSequence >= snapshotEvery) {
+            snapshot();
+        }
+    }
+
+    /**
+     * Validate, journal and apply one command.
+     * @return whether a journal record was appended
+     */
+    private boolean apply(LedgerCommand command) throws IOException {
+        if (command.kind == LedgerCommand.Kind.SETTLE) {
+            pendingTransfers.remove(command.reference);
+            return false;
+        }
+        int slot = table.find(command.userId, command.tokenId);
+        if (command.kind == LedgerCommand.Kind.READ) {
+            setResult(command, slot);
+            return false;
+        }
+        switch (command.operation) {
+            case DEBIT, PREPARE_TRANSFER, RESERVE -> {
+                if (slot < 0) {
+                    command.rejection = noBalance(command);
+                    return false;
+                }
+                if (table.compareAvailable(slot, command.amountHigh, command.amountLow) < 0) {
+                    long availableHigh = FixedPoint.subtractHigh(table.high(slot), table.low(slot),
+                            table.lockedHigh(slot), table.lockedLow(slot));
+                    command.rejection = new IllegalStateException("Insufficient balance. Available: "
+                            + plain(availableHigh, table.low(slot) - table.lockedLow(slot))
+                            + ", Required: " + plain(command.amountHigh, command.amountLow));
+                    return false;
+                }
+            }
+            case RELEASE, SETTLE, PREPARE_RELEASE -> {
+                if (slot < 0) {
+                    command.rejection = noBalance(command);
+                    return false;
+                }
+                if (FixedPoint.compare(table.lockedHigh(slot), table.lockedLow(slot), command.amountHigh, command.amountLow) < 0) {
+                    command.rejection = new IllegalStateException("Insufficient reserved balance. Reserved: "
+                            + plain(table.lockedHigh(slot), table.lockedLow(slot))
+                            + ", Required: " + plain(command.amountHigh, command.amountLow));
+                    return false;
+                }
+            }
+            case SET -> {
+                if (slot >= 0 && FixedPoint.compare(command.amountHigh, command.amountLow,
+                        table.lockedHigh(slot), table.lockedLow(slot)) < 0) {
+                    command.rejection = new IllegalStateException("Balance cannot be set below the reserved "
+                            + plain(table.lockedHigh(slot), table.lockedLow(slot)));
+                    return false;
+                }
+            }
+            case CREDIT, PREPARE_CREDIT -> {
+                if (!fitsAfterCredit(command.userId, command.tokenId, command.amountHigh, command.amountLow)) {
+                    command.rejection = new IllegalArgumentException("Balance of user " + command.userId + " would be out of range");
+                    return false;
+                }
+            }
+            case TRANSFER_IN -> {
+                if (command.reference <= creditedUpTo[BalanceLedger.shardIndex(command.counterpartyId, shards.length)]) {
+                    // Re-sent after a restart, already credited
+                    setResult(command, slot);
+                    return false;
+                }
+                // Never refused, the sender is already debited. 128 bits hold any sum of in-range balances;
+                // one beyond numeric(36,18) is rejected by the projection and logged there.
+            }
+            case COMMIT, ABORT -> {
+                command.intent = intents.get(command.reference);
+                if (command.intent == null) {
+                    command.rejection = new IllegalStateException("No open intent " + command.reference + " in ledger shard " + id);
+                    return false;
+                }
+            }
+        }
+
+        LedgerRecord record = command.intent != null
+                ? new LedgerRecord(sequence + 1, command.operation, command.intent.userId(), command.intent.tokenId(),
+                        command.intent.counterpartyId(), command.intent.amountHigh(), command.intent.amountLow(), command.reference)
+                : new LedgerRecord(sequence + 1, command.operation, command.userId, command.tokenId,
+                        command.counterpartyId, command.amountHigh, command.amountLow,
+                        command.operation == LedgerOperation.TRANSFER_IN ? command.reference : 0);
+        journal.append(record);
+        sequence = record.sequence();
+        switch (command.operation) {
+            case PREPARE_CREDIT, PREPARE_RELEASE, PREPARE_TRANSFER -> command.reference = record.sequence();
+            default -> {
+            }
+        }
+        setResult(command, applyRecord(record));
+        if (command.operation == LedgerOperation.COMMIT) {
+            command.pending = pendingTransfers.get(record.sequence());
+        }
+        return true;
+    }
+
+    private boolean fitsAfterCredit(long userId, long tokenId, long amountHigh, long amountLow) {
+        int slot = table.find(userId, tokenId);
+        if (slot < 0) {
+            return true;
+        }
+        long high = FixedPoint.addHigh(table.high(slot), table.low(slot), amountHigh, amountLow);
+        return FixedPoint.inRange(high, table.low(slot) + amountLow);
+    }
+
+    private void setResult(LedgerCommand command, int slot) {
+        command.found = slot >= 0;
+        if (command.found) {
+            command.balanceHigh = table.high(slot);
+            command.balanceLow = table.low(slot);
+            command.lockedHigh = table.lockedHigh(slot);
+            command.lockedLow = table.lockedLow(slot);
+        }
+    }
+
+    private static IllegalStateException noBalance(LedgerCommand command) {
+        return new IllegalStateException("No balance found for user " + command.userId + " and token " + command.tokenId);
+    }
+
+    private static String plain(long high, long low) {
+        return FixedPoint.toBigDecimal(high, low).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Apply an already validated record to the shard's state.
+     * @return The slot of {@code record.userId()}'s balance
+     */
+    private int applyRecord(LedgerRecord record) {
+        long high = record.amountHigh();
+        long low = record.amountLow();
+        return switch (record.operation()) {
+            case CREDIT -> table.add(record.userId(), record.tokenId(), high, low);
+            case SET -> table.set(record.userId(), record.tokenId(), high, low);
+            case DEBIT -> subtract(record.userId(), record.tokenId(), high, low);
+            case TRANSFER -> {
+                // Credit first: inserting the receiver may move the sender's slot
+                table.add(record.counterpartyId(), record.tokenId(), high, low);
+                yield subtract(record.userId(), record.tokenId(), high, low);
+            }
+            case TRANSFER_OUT -> {
+                pendingTransfers.put(record.sequence(), record);
+                yield subtract(record.userId(), record.tokenId(), high, low);
+            }
+            case TRANSFER_IN -> {
+                int source = BalanceLedger.shardIndex(record.counterpartyId(), shards.length);
+                creditedUpTo[source] = Math.max(creditedUpTo[source], record.reference());
+                yield table.add(record.userId(), record.tokenId(), high, low);
+            }
+            case RESERVE -> {
+                int slot = table.find(record.userId(), record.tokenId());
+                table.lock(slot, high, low);
+                yield slot;
+            }
+            case RELEASE -> {
+                int slot = table.find(record.userId(), record.tokenId());
+                table.unlock(slot, high, low);
+                yield slot;
+            }
+            case SETTLE -> {
+                int slot = subtract(record.userId(), record.tokenId(), high, low);
+                table.unlock(slot, high, low);
+                yield slot;
+            }
+            case PREPARE_CREDIT, PREPARE_RELEASE -> {
+                intents.put(record.sequence(), record);
+                yield table.find(record.userId(), record.tokenId());
+            }
+            case PREPARE_TRANSFER -> {
+                intents.put(record.sequence(), record);
+                yield subtract(record.userId(), record.tokenId(), high, low);
+            }
+            case COMMIT -> {
+                LedgerRecord intent = intents.remove(record.reference());
+                yield switch (intent.operation()) {
+                    case PREPARE_CREDIT -> table.add(record.userId(), record.tokenId(), high, low);
+                    case PREPARE_RELEASE -> unlockUpTo(record.userId(), record.tokenId(), high, low);
+                    case PREPARE_TRANSFER -> {
+                        if (shardOf(record.counterpartyId()) == this) {
+                            table.add(record.counterpartyId(), record.tokenId(), high, low);
+                        } else {
+                            pendingTransfers.put(record.sequence(), new LedgerRecord(record.sequence(),
+                                    LedgerOperation.TRANSFER_OUT, record.userId(), record.tokenId(),
+                                    record.counterpartyId(), high, low, 0));
+                        }
+                        // Crediting the receiver may move the sender's slot
+                        yield table.find(record.userId(), record.tokenId());
+                    }
+                    default -> throw new IllegalStateException("Record " + intent.sequence() + " is not an intent");
+                };
+            }
+            case ABORT -> {
+                LedgerRecord intent = intents.remove(record.reference());
+                yield intent.operation() == LedgerOperation.PREPARE_TRANSFER
+                        ? table.add(record.userId(), record.tokenId(), high, low)
+                        : table.find(record.userId(), record.tokenId());
+            }
+        };
+    }
+
+    /**
+     * Unlock an amount, or what is left of it if part of the reservation was settled after the release was
+     * prepared.
+     */
+    private int unlockUpTo(long userId, long tokenId, long amountHigh, long amountLow) {
+        int slot = table.find(userId, tokenId);
+        if (FixedPoint.compare(table.lockedHigh(slot), table.lockedLow(slot), amountHigh, amountLow) < 0) {
+            table.unlock(slot, table.lockedHigh(slot), table.lockedLow(slot));
+        } else {
+            table.unlock(slot, amountHigh, amountLow);
+        }
+        return slot;
+    }
+
+    private int subtract(long userId, long tokenId, long amountHigh, long amountLow) {
+        int slot = table.find(userId, tokenId);
+        table.subtract(slot, amountHigh, amountLow);
+        return slot;
+    }
+
+    private LedgerShard shardOf(long userId) {
+        return shards[BalanceLedger.shardIndex(userId, shards.length)];
+    }
+
+    private void publish(long userId, long tokenId) {
+        int slot = table.find(userId, tokenId);
+        projector.publish(userId, tokenId, table.high(slot), table.low(slot), table.lockedHigh(slot), table.lockedLow(slot));
+    }
+
+    private void snapshot() {
+        try {
+            snapshots.write(sequence, table, pendingTransfers.values(), intents.values(), creditedUpTo);
+            journal.checkpoint(sequence + 1);
+            snapshotSequence = sequence;
+        } catch (IOException e) {
+            // The journal still holds everything since the previous snapshot
+            log.error("Ledger shard {} snapshot at sequence {} failed: {}", id, sequence, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stop the writer, fail whatever is still queued and write a final snapshot.
+     */
+    void stop() throws InterruptedException, IOException {
+        running = false;
+        LockSupport.unpark(writerThread);
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        LedgerCommand left;
+        while ((left = queue.poll()) != null) {
+            left.done.completeExceptionally(new LedgerUnavailableException("Ledger stopped"));
+        }
+        if (failure == null && sequence > snapshotSequence) {
+            snapshot();
+        }
+        journal.close();
+    }
+}
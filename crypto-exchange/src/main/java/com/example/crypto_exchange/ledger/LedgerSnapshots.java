@@ -0,0 +1,221 @@
+package com.example.crypto_exchange.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Full copies of a shard's state at a journal sequence, so that startup only replays the journal written
+ * after the newest one. Besides the {@link BalanceTable} a snapshot holds the shard's unconfirmed outgoing
+ * transfers, its open intents and, per sending shard, the highest incoming transfer already credited.
+ *
+ * <p>A snapshot is written to a temporary file, forced to disk and renamed into place, so a crash never
+ * leaves a half-written snapshot under its final name. The file ends with a CRC32C of its content; a
+ * snapshot that does not verify is skipped in favour of the previous one. The two newest are kept. Snapshots of
+ * the two previous versions, written before intents and before balances had a locked part, are still read.</p>
+ */
+@Slf4j
+public class LedgerSnapshots {
+
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+    private static final int MAGIC = 0x4C444752;
+    private static final int VERSION = 5;
+    /**
+     * No intents
+     */
+    private static final int VERSION_NO_INTENTS = 4;
+    /**
+     * Balances without a locked part, no intents
+     */
+    private static final int VERSION_UNLOCKED = 3;
+    private static final int KEEP = 2;
+
+    private final Path directory;
+
+    public LedgerSnapshots(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Write a snapshot of a shard's state, which reflects every journal record up to {@code sequence}.
+     * @param pendingTransfers TRANSFER_OUT records the receiving shard has not confirmed yet
+     * @param intents Intents neither committed nor aborted yet
+     * @param creditedUpTo Per sending shard, the reference of the last TRANSFER_IN applied
+     */
+    public void write(long sequence, BalanceTable table, Collection<LedgerRecord> pendingTransfers,
+                      Collection<LedgerRecord> intents, long[] creditedUpTo) throws IOException {
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sequence);
+            out.writeInt(table.size());
+            table.forEach((userId, tokenId, amountHigh, amountLow, lockedHigh, lockedLow) -> {
+                try {
+                    out.writeLong(userId);
+                    out.writeLong(tokenId);
+                    out.writeLong(amountHigh);
+                    out.writeLong(amountLow);
+                    out.writeLong(lockedHigh);
+                    out.writeLong(lockedLow);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.writeInt(pendingTransfers.size());
+            for (LedgerRecord transfer : pendingTransfers) {
+                out.writeLong(transfer.sequence());
+                out.writeLong(transfer.userId());
+                out.writeLong(transfer.tokenId());
+                out.writeLong(transfer.counterpartyId());
+                out.writeLong(transfer.amountHigh());
+                out.writeLong(transfer.amountLow());
+            }
+            out.writeInt(intents.size());
+            for (LedgerRecord intent : intents) {
+                out.writeLong(intent.sequence());
+                out.writeByte(intent.operation().code());
+                out.writeLong(intent.userId());
+                out.writeLong(intent.tokenId());
+                out.writeLong(intent.counterpartyId());
+                out.writeLong(intent.amountHigh());
+                out.writeLong(intent.amountLow());
+            }
+            out.writeInt(creditedUpTo.length);
+            for (long reference : creditedUpTo) {
+                out.writeLong(reference);
+            }
+            out.flush();
+            // The checksum itself is not part of the checksum
+            out.writeLong(crc.getValue());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+
+        List<Path> snapshots = snapshots();
+        for (int i = KEEP; i < snapshots.size(); i++) {
+            Files.delete(snapshots.get(i));
+        }
+        log.info("Wrote ledger snapshot of {} balances at sequence {}", table.size(), sequence);
+    }
+
+    /**
+     * Load the newest valid snapshot into {@code table}, {@code pendingTransfers}, {@code intents} and
+     * {@code creditedUpTo}.
+     * @return Its sequence, or empty if there is no valid snapshot
+     */
+    public OptionalLong loadLatest(BalanceTable table, Collection<LedgerRecord> pendingTransfers,
+                                   Collection<LedgerRecord> intents, long[] creditedUpTo) throws IOException {
+        for (Path snapshot : snapshots()) {
+            BalanceTable candidate = new BalanceTable(1024);
+            List<LedgerRecord> candidateTransfers = new ArrayList<>();
+            List<LedgerRecord> candidateIntents = new ArrayList<>();
+            long[] candidateCredited = new long[creditedUpTo.length];
+            try {
+                long sequence = load(snapshot, candidate, candidateTransfers, candidateIntents, candidateCredited);
+                candidate.forEach(table::set);
+                pendingTransfers.addAll(candidateTransfers);
+                intents.addAll(candidateIntents);
+                System.arraycopy(candidateCredited, 0, creditedUpTo, 0, creditedUpTo.length);
+                log.info("Loaded ledger snapshot of {} balances at sequence {}", candidate.size(), sequence);
+                return OptionalLong.of(sequence);
+            } catch (IOException e) {
+                log.warn("Skipping unreadable ledger snapshot {}: {}", snapshot.getFileName(), e.getMessage());
+            }
+        }
+        return OptionalLong.empty();
+    }
+
+    private long load(Path snapshot, BalanceTable table, List<LedgerRecord> pendingTransfers,
+                      List<LedgerRecord> intents, long[] creditedUpTo) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16), crc);
+             DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a ledger snapshot");
+            }
+            int version = in.readInt();
+            if (version != VERSION && version != VERSION_NO_INTENTS && version != VERSION_UNLOCKED) {
+                throw new IOException("unsupported snapshot version " + version);
+            }
+            long sequence = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long userId = in.readLong();
+                long tokenId = in.readLong();
+                long amountHigh = in.readLong();
+                long amountLow = in.readLong();
+                if (version != VERSION_UNLOCKED) {
+                    table.set(userId, tokenId, amountHigh, amountLow, in.readLong(), in.readLong());
+                } else {
+                    table.set(userId, tokenId, amountHigh, amountLow, 0, 0);
+                }
+            }
+            int transfers = in.readInt();
+            for (int i = 0; i < transfers; i++) {
+                pendingTransfers.add(new LedgerRecord(in.readLong(), LedgerOperation.TRANSFER_OUT, in.readLong(),
+                        in.readLong(), in.readLong(), in.readLong(), in.readLong(), 0));
+            }
+            int open = version == VERSION ? in.readInt() : 0;
+            for (int i = 0; i < open; i++) {
+                long intentSequence = in.readLong();
+                LedgerOperation operation = LedgerOperation.ofCode(in.readByte());
+                intents.add(new LedgerRecord(intentSequence, operation, in.readLong(), in.readLong(), in.readLong(),
+                        in.readLong(), in.readLong(), 0));
+            }
+            if (in.readInt() != creditedUpTo.length) {
+                throw new IOException("written for a different number of shards");
+            }
+            for (int i = 0; i < creditedUpTo.length; i++) {
+                creditedUpTo[i] = in.readLong();
+            }
+            long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("checksum mismatch");
+            }
+            return sequence;
+        }
+    }
+
+    /**
+     * Snapshot files, newest first
+     */
+    private List<Path> snapshots() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> path.getFileName().toString().startsWith(PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+        }
+    }
+}
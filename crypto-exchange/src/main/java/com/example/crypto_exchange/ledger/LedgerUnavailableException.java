@@ -0,0 +1,16 @@
+package com.example.crypto_exchange.ledger;
+
+/**
+ * The ledger cannot accept commands: it is shut down, or a journal write failed and its in-memory state
+ * can no longer be trusted until it is restarted from the journal.
+ */
+public class LedgerUnavailableException extends RuntimeException {
+
+    public LedgerUnavailableException(String message) {
+        super(message);
+    }
+
+    public LedgerUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.crypto_exchange.matching;
+
+import com.example.crypto_exchange.dto.OrderBookDepth;
+import com.example.crypto_exchange.dto.OrderRequest;
+import com.example.crypto_exchange.dto.OrderResponse;
+import com.example.crypto_exchange.entity.OrderStatus;
+import com.example.crypto_exchange.entity.OrderType;
+import com.example.crypto_exchange.entity.SpotOrder;
+import com.example.crypto_exchange.entity.TimeInForce;
+import com.example.crypto_exchange.entity.TradingPair;
+import com.example.crypto_exchange.repository.SpotOrderRepository;
+import com.example.crypto_exchange.repository.TradingPairRepository;
+import com.example.crypto_exchange.service.TransactionLogService;
+import com.example.crypto_exchange.service.UserBalanceService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spot trading over the active {@link TradingPair}s: one {@link PairMatcher}, with its own book, book thread and
+ * settlement thread, per pair. Order ids are assigned here, in arrival order, and continue after the highest
+ * stored id on restart.
+ */
+@Slf4j
+@Service
+public class MatchingEngine {
+
+    private static final Set<OrderStatus> OPEN = EnumSet.of(OrderStatus.OPEN, OrderStatus.PARTIALLY_FILLED);
+
+    private final TradingPairRepository tradingPairRepository;
+    private final SpotOrderRepository spotOrderRepository;
+    private final UserBalanceService userBalanceService;
+    private final TransactionLogService transactionLogService;
+    private final TransactionTemplate transactionTemplate;
+    private final int expectedOrders;
+    private final int settlementBatchSize;
+    private final long settlementTimeoutMillis;
+    private final AtomicLong lastOrderId = new AtomicLong();
+
+    private volatile Map<String, PairMatcher> matchers = Map.of();
+    private volatile Map<Long, PairMatcher> matchersById = Map.of();
+
+    public MatchingEngine(TradingPairRepository tradingPairRepository,
+                          SpotOrderRepository spotOrderRepository,
+                          UserBalanceService userBalanceService,
+                          TransactionLogService transactionLogService,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${matching.book.expected-orders:65536}") int expectedOrders,
+                          @Value("${matching.settlement.batch-size:256}") int settlementBatchSize,
+                          @Value("${matching.settlement.timeout-ms:30000}") long settlementTimeoutMillis) {
+        this.tradingPairRepository = tradingPairRepository;
+        this.spotOrderRepository = spotOrderRepository;
+        this.userBalanceService = userBalanceService;
+        this.transactionLogService = transactionLogService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.expectedOrders = expectedOrders;
+        this.settlementBatchSize = settlementBatchSize;
+        this.settlementTimeoutMillis = settlementTimeoutMillis;
+    }
+
+    @PostConstruct
+    void start() {
+        lastOrderId.set(spotOrderRepository.findMaxOrderId());
+        Map<String, PairMatcher> bySymbol = new HashMap<>();
+        Map<Long, PairMatcher> byId = new HashMap<>();
+        for (TradingPair pair : tradingPairRepository.findByActiveTrue()) {
+            PairMatcher matcher = new PairMatcher(pair, userBalanceService, spotOrderRepository,
+                    transactionLogService, transactionTemplate, expectedOrders, settlementBatchSize, settlementTimeoutMillis);
+            matcher.cancelPending(spotOrderRepository.findByPairIdAndStatusInOrderByOrderIdAsc(pair.getPairId(),
+                    EnumSet.of(OrderStatus.PENDING)));
+            matcher.restore(spotOrderRepository.findByPairIdAndStatusInOrderByOrderIdAsc(pair.getPairId(), OPEN));
+            bySymbol.put(pair.getSymbol(), matcher);
+            byId.put(pair.getPairId(), matcher);
+        }
+        matchers = Map.copyOf(bySymbol);
+        matchersById = Map.copyOf(byId);
+        log.info("Matching engine started with {} trading pairs", matchers.size());
+    }
+
+    /**
+     * Place an order and match it immediately.
+     * @throws IllegalArgumentException for an unknown pair or a price/quantity that does not fit the pair
+     * @throws com.example.crypto_exchange.exception.InvalidInputException if the balance does not cover the order
+     * @throws IllegalStateException if trading on the pair is suspended or the order did not settle in time
+     */
+    public OrderResponse placeOrder(OrderRequest request) {
+        PairMatcher matcher = matcher(request.getPair());
+        TimeInForce timeInForce = request.getTimeInForce() == null ? TimeInForce.GTC : request.getTimeInForce();
+        PairMatcher.Placement placement = matcher.place(lastOrderId.incrementAndGet(), request.getUserId(),
+                request.getSide(), request.getType(), timeInForce, request.getPrice(), request.getQuantity());
+
+        TradingPair pair = matcher.pair();
+        BigDecimal lot = pair.getLotSize();
+        log.info("Order {} of user {} on {}: {} {} lots, {} filled", placement.orderId(), request.getUserId(),
+                pair.getSymbol(), placement.status(), placement.quantity(), placement.filled());
+        return new OrderResponse(placement.orderId(), pair.getSymbol(), request.getSide(),
+                request.getType() == OrderType.LIMIT ? request.getPrice() : null,
+                request.getQuantity(),
+                lot.multiply(BigDecimal.valueOf(placement.filled())),
+                lot.multiply(BigDecimal.valueOf(placement.quantity() - placement.filled())),
+                placement.status());
+    }
+
+    /**
+     * Cancel a user's open order and release the funds it still had reserved. An order that is no longer open is returned as is.
+     * @throws IllegalArgumentException if the user has no such order
+     */
+    public OrderResponse cancelOrder(Long userId, Long orderId) {
+        SpotOrder order = spotOrderRepository.findById(orderId)
+                .filter(o -> o.getUserId().equals(userId))
+                .orElseThrow(() -> new IllegalArgumentException("Order " + orderId + " not found"));
+        PairMatcher matcher = matchersById.get(order.getPairId());
+        if (matcher != null && OPEN.contains(order.getStatus()) && matcher.cancel(order)) {
+            log.info("Order {} of user {} cancelled", orderId, userId);
+        }
+        SpotOrder current = spotOrderRepository.findById(orderId).orElse(order);
+        return OrderResponse.from(current, matcher != null ? matcher.pair().getSymbol() : null);
+    }
+
+    public List<OrderResponse> getOpenOrders(Long userId) {
+        return spotOrderRepository.findByUserIdAndStatusInOrderByOrderIdDesc(userId, OPEN).stream()
+                .map(order -> {
+                    PairMatcher matcher = matchersById.get(order.getPairId());
+                    return OrderResponse.from(order, matcher != null ? matcher.pair().getSymbol() : null);
+                })
+                .toList();
+    }
+
+    public OrderBookDepth getDepth(String pair, int levels) {
+        return matcher(pair).depth(Math.max(1, levels));
+    }
+
+    private PairMatcher matcher(String symbol) {
+        PairMatcher matcher = symbol == null ? null : matchers.get(symbol.toUpperCase());
+        if (matcher == null) {
+            throw new IllegalArgumentException("Trading pair " + symbol + " does not exist");
+        }
+        return matcher;
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        for (PairMatcher matcher : matchers.values()) {
+            matcher.shutdown();
+        }
+    }
+}
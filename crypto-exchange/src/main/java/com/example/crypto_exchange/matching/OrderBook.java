@@ -0,0 +1,376 @@
+package com.example.crypto_exchange.matching;
+
+import java.util.Arrays;
+
+/**
+ * Price-time priority limit order book of one trading pair, in integer ticks (price) and lots (quantity).
+ *
+ * <p>Each side keeps its price levels in primitive arrays sorted so that the best level is last: taking from
+ * the top or adding near it moves few elements. Orders live in a pooled struct of arrays and are chained into
+ * a doubly-linked FIFO per level through {@code next}/{@code prev} indices (an intrusive queue), so matching,
+ * adding and cancelling allocate nothing once the pools have grown to the working size.</p>
+ *
+ * <p>Not thread-safe: each book is owned by one thread. {@link Listener} callbacks run in the middle of
+ * matching and must not call back into the book.</p>
+ */
+public class OrderBook {
+
+    /**
+     * Receives the trades of {@link #match}.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * A resting order (maker) trades {@code quantity} lots with the incoming order (taker) at the maker's price.
+         * Called before the book applies the trade: if it throws, matching stops there with the maker untouched
+         * and the exception propagates out of {@link #match}, leaving the trades before it applied.
+         * @param makerRemaining What will be left of the maker; 0 if it leaves the book
+         */
+        void onTrade(long makerOrderId, long makerUserId, long takerOrderId, long takerUserId, boolean takerBuys,
+                     long price, long quantity, long makerRemaining);
+    }
+
+    private static final int NONE = -1;
+
+    /**
+     * Price levels of one side. Sorted by {@link #key}, ascending, so the best price is at {@code count - 1}.
+     */
+    private static final class Levels {
+        final boolean bids;
+        long[] prices;
+        long[] quantities;
+        int[] heads;
+        int[] tails;
+        int count;
+
+        Levels(boolean bids, int capacity) {
+            this.bids = bids;
+            prices = new long[capacity];
+            quantities = new long[capacity];
+            heads = new int[capacity];
+            tails = new int[capacity];
+        }
+
+        /**
+         * Bids: higher is better; asks: lower is better
+         */
+        long key(long price) {
+            return bids ? price : -price;
+        }
+
+        /**
+         * @return The index of the level, or {@code -(insertion point) - 1}
+         */
+        int find(long price) {
+            long target = key(price);
+            int low = 0;
+            int high = count - 1;
+            // Most activity is near the top of the book, so look there first
+            if (count > 0 && key(prices[high]) < target) {
+                return -(count) - 1;
+            }
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                long middleKey = key(prices[middle]);
+                if (middleKey < target) {
+                    low = middle + 1;
+                } else if (middleKey > target) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -low - 1;
+        }
+
+        int insert(int index, long price) {
+            if (count == prices.length) {
+                int capacity = count << 1;
+                prices = Arrays.copyOf(prices, capacity);
+                quantities = Arrays.copyOf(quantities, capacity);
+                heads = Arrays.copyOf(heads, capacity);
+                tails = Arrays.copyOf(tails, capacity);
+            }
+            int moved = count - index;
+            System.arraycopy(prices, index, prices, index + 1, moved);
+            System.arraycopy(quantities, index, quantities, index + 1, moved);
+            System.arraycopy(heads, index, heads, index + 1, moved);
+            System.arraycopy(tails, index, tails, index + 1, moved);
+            prices[index] = price;
+            quantities[index] = 0;
+            heads[index] = NONE;
+            tails[index] = NONE;
+            count++;
+            return index;
+        }
+
+        void remove(int index) {
+            int moved = count - index - 1;
+            System.arraycopy(prices, index + 1, prices, index, moved);
+            System.arraycopy(quantities, index + 1, quantities, index, moved);
+            System.arraycopy(heads, index + 1, heads, index, moved);
+            System.arraycopy(tails, index + 1, tails, index, moved);
+            count--;
+        }
+    }
+
+    private final Levels bids;
+    private final Levels asks;
+    private final LongIntMap index;
+
+    private long[] orderIds;
+    private long[] userIds;
+    private long[] prices;
+    private long[] remaining;
+    private boolean[] buys;
+    private int[] next;
+    private int[] prev;
+    private int freeHead = NONE;
+    private int orderCount;
+
+    public OrderBook(int expectedOrders, int expectedLevels) {
+        int capacity = Math.max(16, expectedOrders);
+        bids = new Levels(true, Math.max(16, expectedLevels));
+        asks = new Levels(false, Math.max(16, expectedLevels));
+        index = new LongIntMap(capacity);
+        orderIds = new long[capacity];
+        userIds = new long[capacity];
+        prices = new long[capacity];
+        remaining = new long[capacity];
+        buys = new boolean[capacity];
+        next = new int[capacity];
+        prev = new int[capacity];
+        release(0, capacity);
+    }
+
+    /**
+     * Match an incoming order against the opposite side, best price first and oldest first within a price.
+     * @param limitPrice Worst acceptable price: {@link Long#MAX_VALUE} for a market buy, 0 for a market sell
+     * @return The quantity left unmatched
+     */
+    public long match(long orderId, long userId, boolean buy, long limitPrice, long quantity, Listener listener) {
+        Levels book = buy ? asks : bids;
+        while (quantity > 0 && book.count > 0) {
+            int level = book.count - 1;
+            long price = book.prices[level];
+            if (buy ? price > limitPrice : price < limitPrice) {
+                break;
+            }
+            int slot = book.heads[level];
+            while (quantity > 0 && slot != NONE) {
+                long traded = Math.min(quantity, remaining[slot]);
+                long makerOrderId = orderIds[slot];
+                long makerRemaining = remaining[slot] - traded;
+                int following = next[slot];
+                listener.onTrade(makerOrderId, userIds[slot], orderId, userId, buy, price, traded, makerRemaining);
+                quantity -= traded;
+                remaining[slot] = makerRemaining;
+                book.quantities[level] -= traded;
+                if (makerRemaining == 0) {
+                    book.heads[level] = following;
+                    if (following == NONE) {
+                        book.tails[level] = NONE;
+                    } else {
+                        prev[following] = NONE;
+                    }
+                    index.remove(makerOrderId);
+                    free(slot);
+                }
+                slot = following;
+            }
+            if (book.heads[level] == NONE) {
+                book.count--;
+            }
+        }
+        return quantity;
+    }
+
+    /**
+     * Rest an order at the back of its price level. Its price must not cross the opposite side: match first.
+     */
+    public void add(long orderId, long userId, boolean buy, long price, long quantity) {
+        if (quantity <= 0 || price <= 0) {
+            throw new IllegalArgumentException("Price and quantity must be positive");
+        }
+        if (index.get(orderId) != LongIntMap.MISSING) {
+            throw new IllegalArgumentException("Order " + orderId + " is already in the book");
+        }
+        Levels side = buy ? bids : asks;
+        int level = side.find(price);
+        if (level < 0) {
+            level = side.insert(-level - 1, price);
+        }
+        int slot = allocate();
+        orderIds[slot] = orderId;
+        userIds[slot] = userId;
+        prices[slot] = price;
+        remaining[slot] = quantity;
+        buys[slot] = buy;
+        next[slot] = NONE;
+        prev[slot] = side.tails[level];
+        if (side.tails[level] == NONE) {
+            side.heads[level] = slot;
+        } else {
+            next[side.tails[level]] = slot;
+        }
+        side.tails[level] = slot;
+        side.quantities[level] += quantity;
+        index.put(orderId, slot);
+    }
+
+    /**
+     * Remove a resting order.
+     * @return Its unfilled quantity, or -1 if it is not in the book
+     */
+    public long cancel(long orderId) {
+        int slot = index.get(orderId);
+        if (slot == LongIntMap.MISSING) {
+            return -1;
+        }
+        Levels side = buys[slot] ? bids : asks;
+        int level = side.find(prices[slot]);
+        if (prev[slot] == NONE) {
+            side.heads[level] = next[slot];
+        } else {
+            next[prev[slot]] = next[slot];
+        }
+        if (next[slot] == NONE) {
+            side.tails[level] = prev[slot];
+        } else {
+            prev[next[slot]] = prev[slot];
+        }
+        long left = remaining[slot];
+        side.quantities[level] -= left;
+        if (side.heads[level] == NONE) {
+            side.remove(level);
+        }
+        index.remove(orderId);
+        free(slot);
+        return left;
+    }
+
+    /**
+     * Quantity an incoming order could match right now, counting at most up to {@code quantity}
+     */
+    public long available(boolean buy, long limitPrice, long quantity) {
+        Levels book = buy ? asks : bids;
+        long found = 0;
+        for (int level = book.count - 1; level >= 0 && found < quantity; level--) {
+            long price = book.prices[level];
+            if (buy ? price > limitPrice : price < limitPrice) {
+                break;
+            }
+            found += book.quantities[level];
+        }
+        return Math.min(found, quantity);
+    }
+
+    /**
+     * Sum of price × quantity an incoming order would trade right now for up to {@code quantity}
+     * @throws ArithmeticException if the sum does not fit a long
+     */
+    public long cost(boolean buy, long limitPrice, long quantity) {
+        Levels book = buy ? asks : bids;
+        long cost = 0;
+        for (int level = book.count - 1; level >= 0 && quantity > 0; level--) {
+            long price = book.prices[level];
+            if (buy ? price > limitPrice : price < limitPrice) {
+                break;
+            }
+            long traded = Math.min(quantity, book.quantities[level]);
+            cost = Math.addExact(cost, Math.multiplyExact(price, traded));
+            quantity -= traded;
+        }
+        return cost;
+    }
+
+    /**
+     * Quantity an incoming buy could match right now, up to {@code quantity}, without its cost (price ×
+     * quantity) exceeding {@code budget}
+     */
+    public long affordable(long limitPrice, long quantity, long budget) {
+        long found = 0;
+        for (int level = asks.count - 1; level >= 0 && found < quantity; level--) {
+            long price = asks.prices[level];
+            if (price > limitPrice) {
+                break;
+            }
+            long wanted = Math.min(quantity - found, asks.quantities[level]);
+            if (budget / price < wanted) {
+                return found + budget / price;
+            }
+            found += wanted;
+            budget -= price * wanted;
+        }
+        return found;
+    }
+
+    /**
+     * Number of price levels on one side
+     */
+    public int depth(boolean bidSide) {
+        return (bidSide ? bids : asks).count;
+    }
+
+    /**
+     * Price of the {@code n}-th best level (0 = best)
+     */
+    public long levelPrice(boolean bidSide, int n) {
+        Levels side = bidSide ? bids : asks;
+        return side.prices[side.count - 1 - n];
+    }
+
+    /**
+     * Total resting quantity of the {@code n}-th best level (0 = best)
+     */
+    public long levelQuantity(boolean bidSide, int n) {
+        Levels side = bidSide ? bids : asks;
+        return side.quantities[side.count - 1 - n];
+    }
+
+    public boolean contains(long orderId) {
+        return index.get(orderId) != LongIntMap.MISSING;
+    }
+
+    /**
+     * Number of resting orders
+     */
+    public int size() {
+        return orderCount;
+    }
+
+    private int allocate() {
+        if (freeHead == NONE) {
+            int capacity = orderIds.length;
+            int grown = capacity << 1;
+            orderIds = Arrays.copyOf(orderIds, grown);
+            userIds = Arrays.copyOf(userIds, grown);
+            prices = Arrays.copyOf(prices, grown);
+            remaining = Arrays.copyOf(remaining, grown);
+            buys = Arrays.copyOf(buys, grown);
+            next = Arrays.copyOf(next, grown);
+            prev = Arrays.copyOf(prev, grown);
+            release(capacity, grown);
+        }
+        int slot = freeHead;
+        freeHead = next[slot];
+        orderCount++;
+        return slot;
+    }
+
+    private void free(int slot) {
+        next[slot] = freeHead;
+        freeHead = slot;
+        orderCount--;
+    }
+
+    /**
+     * Put slots {@code [from, to)} on the free list
+     */
+    private void release(int from, int to) {
+        for (int slot = to - 1; slot >= from; slot--) {
+            next[slot] = freeHead;
+            freeHead = slot;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.crypto_exchange.matching;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The database side of one {@link PairMatcher}: balances, trade log entries and order rows for what its book
+ * has already matched, written on a thread of its own so the book thread never waits for the database.
+ *
+ * <p>Work is settled strictly in the order it was submitted, up to {@code batchSize} items per transaction.
+ * The book cannot take a match back, so a batch that fails is not dropped: it is retried with growing pauses,
+ * one item per transaction until one commits, and the settlement is {@link #failing()} meanwhile.</p>
+ */
+@Slf4j
+class OrderSettlement {
+
+    private static final long MIN_PAUSE_MS = 50;
+    private static final long MAX_PAUSE_MS = 5_000;
+
+    private record Work(Runnable settle, Runnable done) {
+    }
+
+    private final String symbol;
+    private final TransactionTemplate transaction;
+    private final int batchSize;
+    private final BlockingQueue<Work> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean failing;
+    private volatile boolean stopping;
+
+    OrderSettlement(String symbol, TransactionTemplate transaction, int batchSize) {
+        this.symbol = symbol;
+        this.transaction = transaction;
+        this.batchSize = Math.max(1, batchSize);
+        this.thread = Thread.ofPlatform().name("order-settlement-" + symbol).daemon().start(this::run);
+    }
+
+    /**
+     * Queue work to run in a settlement transaction after everything submitted before it
+     * @return Completed with {@code result} once that transaction has committed
+     */
+    <T> CompletableFuture<T> submit(Runnable settle, T result) {
+        CompletableFuture<T> done = new CompletableFuture<>();
+        queue.add(new Work(settle, () -> done.complete(result)));
+        return done;
+    }
+
+    /**
+     * Whether the last settlement transaction failed; matched work is piling up until one commits again
+     */
+    boolean failing() {
+        return failing;
+    }
+
+    private void run() {
+        ArrayDeque<Work> pending = new ArrayDeque<>(batchSize);
+        List<Work> batch = new ArrayList<>(batchSize);
+        int size = batchSize;
+        long pause = MIN_PAUSE_MS;
+        try {
+            while (true) {
+                if (pending.isEmpty()) {
+                    Work first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        if (stopping) {
+                            return;
+                        }
+                        continue;
+                    }
+                    pending.add(first);
+                }
+                queue.drainTo(pending, batchSize - pending.size());
+
+                batch.clear();
+                for (Work work : pending) {
+                    if (batch.size() == size) {
+                        break;
+                    }
+                    batch.add(work);
+                }
+                try {
+                    transaction.executeWithoutResult(status -> {
+                        for (Work work : batch) {
+                            work.settle().run();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    failing = true;
+                    log.error("Settling {} matched orders of {} failed, retrying in {} ms", batch.size(), symbol, pause, e);
+                    Thread.sleep(pause);
+                    pause = Math.min(pause * 2, MAX_PAUSE_MS);
+                    size = 1;
+                    continue;
+                }
+                // Recovered once a whole batch, or all that was left, commits
+                if (failing && (size == batchSize || pending.size() == batch.size())) {
+                    log.info("Settlement of {} recovered", symbol);
+                    failing = false;
+                    pause = MIN_PAUSE_MS;
+                }
+                size = batchSize;
+                for (int n = 0; n < batch.size(); n++) {
+                    pending.poll().done().run();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (!pending.isEmpty() || !queue.isEmpty()) {
+                log.error("Settlement of {} stopped with {} matched orders unsettled", symbol, pending.size() + queue.size());
+            }
+        }
+    }
+
+    /**
+     * Settle what is queued, then stop
+     */
+    void shutdown(long timeoutMillis) throws InterruptedException {
+        stopping = true;
+        thread.join(timeoutMillis);
+    }
+}
@@ -0,0 +1,423 @@
+package com.example.crypto_exchange.matching;
+
+import com.example.crypto_exchange.dto.OrderBookDepth;
+import com.example.crypto_exchange.entity.OrderSide;
+import com.example.crypto_exchange.entity.OrderStatus;
+import com.example.crypto_exchange.entity.OrderType;
+import com.example.crypto_exchange.entity.SpotOrder;
+import com.example.crypto_exchange.entity.TimeInForce;
+import com.example.crypto_exchange.entity.TradingPair;
+import com.example.crypto_exchange.exception.InvalidInputException;
+import com.example.crypto_exchange.repository.SpotOrderRepository;
+import com.example.crypto_exchange.service.TransactionLogService;
+import com.example.crypto_exchange.service.UserBalanceService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The {@link OrderBook} of one trading pair together with the thread that owns it and the
+ * {@link OrderSettlement} of its trades. Every book operation runs on that single thread, so orders of a pair
+ * are matched strictly one after the other and the book needs no locking; the thread only touches memory.
+ *
+ * <p>Placing an order first reserves what it can spend (base for a sell, limit price × quantity of quote for a
+ * buy, what the book currently asks for the quantity for a market buy) and inserts its {@link SpotOrder} row
+ * {@link OrderStatus#PENDING} in the same transaction, on the caller's thread; only then is it matched, so an
+ * order in the book is always funded. A market buy matches only as much as its reservation pays for at the
+ * prices it meets. Each trade settles the seller's base and the buyer's quote at the maker's price out of their
+ * reservations and credits the other token to each; a buyer that gets a better price than its limit has the
+ * difference released. Whatever an IOC, FOK or market order leaves unfilled, and whatever a cancelled order had
+ * left, is released.</p>
+ *
+ * <p>The book applies trades as it matches them and hands the order's fills, its final status and any release
+ * to the settlement, which writes them in one transaction: both balance settlements and credits and a
+ * {@code TRADE} log entry per side for every fill, the maker rows and the taker row. Placing and cancelling
+ * return once that transaction has committed. Settlement follows the book in order and retries until it
+ * succeeds; while it is failing the pair takes no new orders. Rows still open are what the book is rebuilt from
+ * after a restart, and their reservations are part of the balances. A row left pending, because its settlement
+ * never committed, is cancelled on startup and what it still had reserved released, so the rebuilt book
+ * matches what was settled.</p>
+ */
+@Slf4j
+class PairMatcher implements OrderBook.Listener {
+
+    /**
+     * Outcome of placing an order, in lots
+     */
+    record Placement(long orderId, OrderStatus status, long quantity, long filled) {
+    }
+
+    /**
+     * One trade of the order being matched
+     */
+    private record Fill(long makerOrderId, long makerUserId, long price, long quantity, long makerRemaining) {
+    }
+
+    /**
+     * What matching an order left to settle; prices in ticks, quantities in lots, amounts as in
+     * {@link #takerReserved}
+     * @param improvementLimit Limit of a limit buy, whose fills below it release the difference; 0 otherwise
+     */
+    private record Matched(long orderId, long userId, boolean buy, long improvementLimit, List<Fill> fills,
+                           long price, long remaining, long kept, long released, OrderStatus status) {
+    }
+
+    private final TradingPair pair;
+    private final UserBalanceService balances;
+    private final SpotOrderRepository orders;
+    private final TransactionLogService transactionLog;
+    private final TransactionTemplate transaction;
+    private final OrderBook book;
+    private final ExecutorService thread;
+    private final OrderSettlement settlement;
+    private final long settlementTimeoutMillis;
+    /**
+     * Quote amount of one tick × one lot
+     */
+    private final BigDecimal quotePerTickLot;
+
+    // State of the order being matched, read and updated by onTrade
+    private long takerLimit;
+    private long takerFilled;
+    private boolean takerMarket;
+    private long takerPrice;
+    /**
+     * What the taker still has reserved: lots of base for a sell, ticks × lots of quote for a buy
+     */
+    private long takerReserved;
+    private List<Fill> takerFills;
+
+    PairMatcher(TradingPair pair, UserBalanceService balances, SpotOrderRepository orders,
+                TransactionLogService transactionLog, TransactionTemplate transaction, int expectedOrders,
+                int settlementBatchSize, long settlementTimeoutMillis) {
+        this.pair = pair;
+        this.balances = balances;
+        this.orders = orders;
+        this.transactionLog = transactionLog;
+        this.transaction = transaction;
+        this.book = new OrderBook(expectedOrders, 1024);
+        this.quotePerTickLot = pair.getTickSize().multiply(pair.getLotSize());
+        this.thread = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("order-book-" + pair.getSymbol()).daemon().factory());
+        this.settlement = new OrderSettlement(pair.getSymbol(), transaction, settlementBatchSize);
+        this.settlementTimeoutMillis = settlementTimeoutMillis;
+    }
+
+    TradingPair pair() {
+        return pair;
+    }
+
+    /**
+     * Whether new orders are turned away because matched ones fail to settle
+     */
+    boolean suspended() {
+        return settlement.failing();
+    }
+
+    /**
+     * Put orders that were open before a restart back into the book, oldest first. Their funds are still reserved.
+     */
+    void restore(List<SpotOrder> openOrders) {
+        call(() -> {
+            for (SpotOrder order : openOrders) {
+                book.add(order.getOrderId(), order.getUserId(), order.getSide() == OrderSide.BUY,
+                        ticks(order.getPrice()), lots(order.getRemainingQuantity()));
+            }
+            return null;
+        });
+        log.info("Order book {} restored with {} open orders", pair.getSymbol(), openOrders.size());
+    }
+
+    /**
+     * Cancel orders the last shutdown left {@link OrderStatus#PENDING}, whose matching never settled, and release
+     * what they still had reserved. None of them is in the book.
+     */
+    void cancelPending(List<SpotOrder> pendingOrders) {
+        for (SpotOrder order : pendingOrders) {
+            boolean buy = order.getSide() == OrderSide.BUY;
+            BigDecimal reserved = order.getReservedAmount();
+            transaction.executeWithoutResult(status -> {
+                if (reserved != null && reserved.signum() > 0) {
+                    balances.releaseReserved(order.getUserId(), buy ? pair.getQuoteTokenId() : pair.getBaseTokenId(), reserved);
+                }
+                orders.updateRemaining(order.getOrderId(), order.getRemainingQuantity(), BigDecimal.ZERO, OrderStatus.CANCELLED);
+            });
+        }
+        if (!pendingOrders.isEmpty()) {
+            log.warn("Order book {} cancelled {} orders left pending by the last shutdown", pair.getSymbol(), pendingOrders.size());
+        }
+    }
+
+    /**
+     * @param price Limit price, ignored for market orders
+     * @throws InvalidInputException if the balance does not cover the order
+     * @throws IllegalArgumentException if price or quantity are not multiples of the pair's tick and lot size
+     * @throws IllegalStateException if trading on the pair is suspended because its trades fail to settle
+     */
+    Placement place(long orderId, long userId, OrderSide side, OrderType type, TimeInForce timeInForce,
+                    BigDecimal price, BigDecimal quantity) {
+        long lots = lots(quantity);
+        long limit;
+        if (type == OrderType.MARKET) {
+            limit = side == OrderSide.BUY ? Long.MAX_VALUE : 0;
+        } else if (price == null) {
+            throw new IllegalArgumentException("Price is required for limit orders");
+        } else {
+            limit = ticks(price);
+        }
+        TimeInForce effective = type == OrderType.MARKET && timeInForce != TimeInForce.FOK ? TimeInForce.IOC : timeInForce;
+        boolean buy = side == OrderSide.BUY;
+        if (suspended()) {
+            throw new IllegalStateException("Trading on " + pair.getSymbol() + " is suspended until its trades settle");
+        }
+
+        // A FOK that cannot fill right now is turned away without reserving anything
+        if (effective == TimeInForce.FOK && call(() -> book.available(buy, limit, lots)) < lots) {
+            return new Placement(orderId, OrderStatus.CANCELLED, lots, 0);
+        }
+        long reserved;
+        if (!buy) {
+            reserved = lots;
+        } else if (type == OrderType.MARKET) {
+            reserved = call(() -> book.cost(true, limit, lots));
+            if (reserved == 0) {
+                return new Placement(orderId, OrderStatus.CANCELLED, lots, 0);
+            }
+        } else {
+            reserved = multiply(limit, lots);
+        }
+
+        // Reserve everything the order may spend and store it before it can trade
+        BigDecimal hold = buy ? quote(reserved) : quantity(reserved);
+        long holdToken = buy ? pair.getQuoteTokenId() : pair.getBaseTokenId();
+        transaction.executeWithoutResult(status -> {
+            if (!balances.reserveIfAvailable(userId, holdToken, hold)) {
+                throw new InvalidInputException("Insufficient balance to place order: requires " + hold.stripTrailingZeros().toPlainString());
+            }
+            orders.save(new SpotOrder()
+                    .setOrderId(orderId)
+                    .setPairId(pair.getPairId())
+                    .setUserId(userId)
+                    .setSide(side)
+                    // A market order has no price until it trades
+                    .setPrice(price(type == OrderType.MARKET ? 0 : limit))
+                    .setQuantity(quantity(lots))
+                    .setRemainingQuantity(quantity(lots))
+                    .setReservedAmount(hold)
+                    .setStatus(OrderStatus.PENDING));
+        });
+
+        // Settlement is queued from the book thread, so it follows the order of the book
+        return awaitSettlement(call(() -> {
+            Matched matched = match(orderId, userId, buy, type, effective, limit, lots, reserved);
+            return settlement.submit(() -> settle(matched),
+                    new Placement(orderId, matched.status(), lots, lots - matched.remaining()));
+        }), orderId);
+    }
+
+    /**
+     * Cancel a resting order and release what it had left.
+     * @return false if the order was no longer in the book
+     */
+    boolean cancel(SpotOrder order) {
+        CompletableFuture<Boolean> settled = call(() -> {
+            long left = book.cancel(order.getOrderId());
+            if (left < 0) {
+                return null;
+            }
+            boolean buy = order.getSide() == OrderSide.BUY;
+            BigDecimal release = buy ? quote(multiply(ticks(order.getPrice()), left)) : quantity(left);
+            return settlement.submit(() -> {
+                balances.releaseReserved(order.getUserId(), buy ? pair.getQuoteTokenId() : pair.getBaseTokenId(), release);
+                orders.updateRemaining(order.getOrderId(), quantity(left), BigDecimal.ZERO, OrderStatus.CANCELLED);
+            }, true);
+        });
+        return settled != null && awaitSettlement(settled, order.getOrderId());
+    }
+
+    /**
+     * The best {@code levels} price levels of each side
+     */
+    OrderBookDepth depth(int levels) {
+        return call(() -> new OrderBookDepth(pair.getSymbol(), depth(true, levels), depth(false, levels)));
+    }
+
+    /**
+     * Match an order whose funds are reserved; runs on the book thread
+     */
+    private Matched match(long orderId, long userId, boolean buy, OrderType type, TimeInForce timeInForce,
+                          long limit, long lots, long reserved) {
+        // The book may have moved since the order was priced: a market buy takes what its reservation still
+        // pays for, and a FOK that can no longer fill takes nothing
+        long matchable = buy && type == OrderType.MARKET ? book.affordable(limit, lots, reserved) : lots;
+        if (timeInForce == TimeInForce.FOK && (matchable < lots || book.available(buy, limit, lots) < lots)) {
+            matchable = 0;
+        }
+
+        takerLimit = buy && type == OrderType.LIMIT ? limit : 0;
+        takerFilled = 0;
+        takerMarket = type == OrderType.MARKET;
+        takerPrice = takerMarket ? 0 : limit;
+        takerReserved = reserved;
+        takerFills = new ArrayList<>();
+        long left = lots - matchable + book.match(orderId, userId, buy, limit, matchable, this);
+
+        boolean rests = left > 0 && type == OrderType.LIMIT && timeInForce == TimeInForce.GTC;
+        OrderStatus status;
+        if (left == 0) {
+            status = OrderStatus.FILLED;
+        } else if (rests) {
+            book.add(orderId, userId, buy, limit, left);
+            status = takerFilled > 0 ? OrderStatus.PARTIALLY_FILLED : OrderStatus.OPEN;
+        } else {
+            status = OrderStatus.CANCELLED;
+        }
+        // A resting order keeps its reservation; whatever any other order has left is released
+        long released = rests ? 0 : takerReserved;
+        return new Matched(orderId, userId, buy, takerLimit, takerFills, takerPrice, left,
+                takerReserved - released, released, status);
+    }
+
+    @Override
+    public void onTrade(long makerOrderId, long makerUserId, long takerOrderId, long takerUserId, boolean takerBuys,
+                        long price, long quantity, long makerRemaining) {
+        takerFills.add(new Fill(makerOrderId, makerUserId, price, quantity, makerRemaining));
+        takerFilled += quantity;
+        takerReserved -= takerBuys ? Math.max(takerLimit, price) * quantity : quantity;
+        if (takerMarket) {
+            // A market order is recorded at the worst price it traded at
+            takerPrice = price;
+        }
+    }
+
+    /**
+     * Write what matching an order did; runs in a settlement transaction
+     */
+    private void settle(Matched matched) {
+        long taker = matched.userId();
+        for (Fill fill : matched.fills()) {
+            long buyer = matched.buy() ? taker : fill.makerUserId();
+            long seller = matched.buy() ? fill.makerUserId() : taker;
+            BigDecimal base = quantity(fill.quantity());
+            BigDecimal cost = quote(multiply(fill.price(), fill.quantity()));
+            balances.settleReserved(seller, pair.getBaseTokenId(), base);
+            balances.settleReserved(buyer, pair.getQuoteTokenId(), cost);
+            balances.addToBalance(buyer, pair.getBaseTokenId(), base);
+            balances.addToBalance(seller, pair.getQuoteTokenId(), cost);
+            if (matched.improvementLimit() > fill.price()) {
+                balances.releaseReserved(taker, pair.getQuoteTokenId(),
+                        quote(multiply(matched.improvementLimit() - fill.price(), fill.quantity())));
+            }
+            transactionLog.logTrade(buyer, matched.buy() ? matched.orderId() : fill.makerOrderId(), pair.getBaseTokenId(), base);
+            transactionLog.logTrade(seller, matched.buy() ? fill.makerOrderId() : matched.orderId(), pair.getQuoteTokenId(), cost);
+            orders.updateRemaining(fill.makerOrderId(), quantity(fill.makerRemaining()),
+                    matched.buy() ? quantity(fill.makerRemaining()) : quote(multiply(fill.price(), fill.makerRemaining())),
+                    fill.makerRemaining() == 0 ? OrderStatus.FILLED : OrderStatus.PARTIALLY_FILLED);
+        }
+        boolean buy = matched.buy();
+        if (matched.released() > 0) {
+            balances.releaseReserved(taker, buy ? pair.getQuoteTokenId() : pair.getBaseTokenId(),
+                    buy ? quote(matched.released()) : quantity(matched.released()));
+        }
+        orders.updateMatched(matched.orderId(), price(matched.price()), quantity(matched.remaining()),
+                buy ? quote(matched.kept()) : quantity(matched.kept()), matched.status());
+    }
+
+    private List<OrderBookDepth.PriceLevel> depth(boolean bids, int levels) {
+        int count = Math.min(levels, book.depth(bids));
+        List<OrderBookDepth.PriceLevel> result = new ArrayList<>(count);
+        for (int n = 0; n < count; n++) {
+            result.add(new OrderBookDepth.PriceLevel(price(book.levelPrice(bids, n)), quantity(book.levelQuantity(bids, n))));
+        }
+        return result;
+    }
+
+    long ticks(BigDecimal price) {
+        return units(price, pair.getTickSize(), "Price", "tick size");
+    }
+
+    long lots(BigDecimal quantity) {
+        return units(quantity, pair.getLotSize(), "Quantity", "lot size");
+    }
+
+    private static long units(BigDecimal amount, BigDecimal unit, String what, String unitName) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException(what + " must be positive");
+        }
+        BigDecimal[] division = amount.divideAndRemainder(unit);
+        if (division[1].signum() != 0) {
+            throw new IllegalArgumentException(what + " must be a multiple of the " + unitName + " " + unit.stripTrailingZeros().toPlainString());
+        }
+        try {
+            return division[0].longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(what + " is out of range");
+        }
+    }
+
+    private static long multiply(long ticks, long lots) {
+        try {
+            return Math.multiplyExact(ticks, lots);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Order value is out of range");
+        }
+    }
+
+    private BigDecimal price(long ticks) {
+        return pair.getTickSize().multiply(BigDecimal.valueOf(ticks));
+    }
+
+    private BigDecimal quantity(long lots) {
+        return pair.getLotSize().multiply(BigDecimal.valueOf(lots));
+    }
+
+    private BigDecimal quote(long tickLots) {
+        return quotePerTickLot.multiply(BigDecimal.valueOf(tickLots));
+    }
+
+    private <T> T call(Callable<T> task) {
+        Future<T> future = thread.submit(task);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for order book " + pair.getSymbol(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Order book " + pair.getSymbol() + " failed", e.getCause());
+        }
+    }
+
+    private <T> T awaitSettlement(CompletableFuture<T> settled, long orderId) {
+        try {
+            return settled.get(settlementTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for order " + orderId + " to settle", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Order " + orderId + " failed to settle", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Order " + orderId + " on " + pair.getSymbol()
+                    + " is matched but not settled yet; settlement is retrying");
+        }
+    }
+
+    void shutdown() throws InterruptedException {
+        thread.shutdown();
+        thread.awaitTermination(10, TimeUnit.SECONDS);
+        settlement.shutdown(TimeUnit.SECONDS.toMillis(10));
+    }
+}
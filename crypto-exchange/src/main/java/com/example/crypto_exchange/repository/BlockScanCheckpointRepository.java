@@ -0,0 +1,9 @@
+package com.example.crypto_exchange.repository;
+
+import com.example.crypto_exchange.entity.BlockScanCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BlockScanCheckpointRepository extends JpaRepository<BlockScanCheckpoint, String> {
+}
@@ -0,0 +1,53 @@
+package com.example.crypto_exchange.repository;
+
+import com.example.crypto_exchange.entity.OrderStatus;
+import com.example.crypto_exchange.entity.SpotOrder;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SpotOrderRepository extends JpaRepository<SpotOrder, Long> {
+
+    /**
+     * Orders of a pair in the given statuses, oldest first: the time priority of the book
+     */
+    List<SpotOrder> findByPairIdAndStatusInOrderByOrderIdAsc(Long pairId, Collection<OrderStatus> statuses);
+
+    List<SpotOrder> findByUserIdAndStatusInOrderByOrderIdDesc(Long userId, Collection<OrderStatus> statuses);
+
+    @Query("SELECT COALESCE(MAX(o.orderId), 0) FROM SpotOrder o")
+    long findMaxOrderId();
+
+    /**
+     * Record a fill or cancellation of a resting order
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE SpotOrder o SET o.remainingQuantity = :remaining, o.reservedAmount = :reserved, o.status = :status, " +
+           "o.updatedAt = CURRENT_TIMESTAMP WHERE o.orderId = :orderId")
+    int updateRemaining(@Param("orderId") Long orderId,
+                        @Param("remaining") BigDecimal remaining,
+                        @Param("reserved") BigDecimal reserved,
+                        @Param("status") OrderStatus status);
+
+    /**
+     * Record a fill of an order being matched, or the outcome of its matching. The price changes for a market order.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE SpotOrder o SET o.price = :price, o.remainingQuantity = :remaining, o.reservedAmount = :reserved, " +
+           "o.status = :status, o.updatedAt = CURRENT_TIMESTAMP WHERE o.orderId = :orderId")
+    int updateMatched(@Param("orderId") Long orderId,
+                      @Param("price") BigDecimal price,
+                      @Param("remaining") BigDecimal remaining,
+                      @Param("reserved") BigDecimal reserved,
+                      @Param("status") OrderStatus status);
+}
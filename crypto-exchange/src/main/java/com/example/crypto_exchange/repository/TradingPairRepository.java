@@ -0,0 +1,13 @@
+package com.example.crypto_exchange.repository;
+
+import com.example.crypto_exchange.entity.TradingPair;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface TradingPairRepository extends JpaRepository<TradingPair, Long> {
+
+    List<TradingPair> findByActiveTrue();
+}
@@ -3,18 +3,39 @@ package com.example.crypto_exchange.repository;
 import com.example.crypto_exchange.entity.TransactionLog;
 import com.example.crypto_exchange.entity.TransactionStatus;
 import com.example.crypto_exchange.entity.TransactionType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionLogRepository extends JpaRepository<TransactionLog, Long> {
+
+    int EXPORT_FETCH_SIZE = 1000;
+
+    /**
+     * Move the id sequence past the rows inserted before it existed (when the ids came from the identity column).
+     * Returns the new sequence value, or nothing if the sequence was already ahead.
+     */
+    @Transactional
+    @Query(value = "SELECT setval('" + TransactionLog.ID_SEQUENCE + "', m.max_id) " +
+                   "FROM (SELECT max(log_id) AS max_id FROM transaction_logs) m " +
+                   "WHERE m.max_id > (SELECT last_value FROM " + TransactionLog.ID_SEQUENCE + ")",
+           nativeQuery = true)
+    Optional<Long> alignIdSequence();
     
     /**
      * Find all transactions for a specific user
@@ -40,6 +61,11 @@ public interface TransactionLogRepository extends JpaRepository<TransactionLog,
      * Find transactions by transaction hash
      */
     List<TransactionLog> findByTxHash(String txHash);
+
+    /**
+     * Check whether the on-chain transfer at the given log index of a transaction was already recorded
+     */
+    boolean existsByTxHashAndLogIndex(String txHash, Integer logIndex);
     
     /**
      * Find transactions within a time range
@@ -62,6 +88,144 @@ public interface TransactionLogRepository extends JpaRepository<TransactionLog,
         Pageable pageable
     );
     
+    /**
+     * Newest transactions of a user (first page of keyset pagination)
+     */
+    @Query("SELECT t FROM TransactionLog t WHERE t.userId = :userId ORDER BY t.createdAt DESC, t.logId DESC")
+    List<TransactionLog> findUserHistory(@Param("userId") Long userId, Limit limit);
+
+    /**
+     * Transactions of a user older than the given key (next page of keyset pagination)
+     */
+    @Query("SELECT t FROM TransactionLog t WHERE t.userId = :userId " +
+           "AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.logId < :logId)) " +
+           "ORDER BY t.createdAt DESC, t.logId DESC")
+    List<TransactionLog> findUserHistoryBefore(
+        @Param("userId") Long userId,
+        @Param("createdAt") LocalDateTime createdAt,
+        @Param("logId") Long logId,
+        Limit limit
+    );
+
+    /**
+     * Newest transactions of a user and type (first page of keyset pagination)
+     */
+    @Query("SELECT t FROM TransactionLog t WHERE t.userId = :userId AND t.transactionType = :type " +
+           "ORDER BY t.createdAt DESC, t.logId DESC")
+    List<TransactionLog> findUserHistoryByType(@Param("userId") Long userId, @Param("type") TransactionType type, Limit limit);
+
+    /**
+     * Transactions of a user and type older than the given key (next page of keyset pagination)
+     */
+    @Query("SELECT t FROM TransactionLog t WHERE t.userId = :userId AND t.transactionType = :type " +
+           "AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.logId < :logId)) " +
+           "ORDER BY t.createdAt DESC, t.logId DESC")
+    List<TransactionLog> findUserHistoryByTypeBefore(
+        @Param("userId") Long userId,
+        @Param("type") TransactionType type,
+        @Param("createdAt") LocalDateTime createdAt,
+        @Param("logId") Long logId,
+        Limit limit
+    );
+
+    /**
+     * Newest transactions within a time range (first page of keyset pagination)
+     */
+    @Query("SELECT t FROM TransactionLog t WHERE t.createdAt BETWEEN :startTime AND :endTime " +
+           "ORDER BY t.createdAt DESC, t.logId DESC")
+    List<TransactionLog> findTimeRangeHistory(
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime,
+        Limit limit
+    );
+
+    /**
+     * Transactions within a time range older than the given key (next page of keyset pagination)
+     */
+    @Query("SELECT t FROM TransactionLog t WHERE t.createdAt BETWEEN :startTime AND :endTime " +
+           "AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.logId < :logId)) " +
+           "ORDER BY t.createdAt DESC, t.logId DESC")
+    List<TransactionLog> findTimeRangeHistoryBefore(
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime,
+        @Param("createdAt") LocalDateTime createdAt,
+        @Param("logId") Long logId,
+        Limit limit
+    );
+
+    /**
+     * Stream all transactions of a user, oldest first. Rows are fetched from a server-side cursor
+     * {@value #EXPORT_FETCH_SIZE} at a time; the stream must be consumed inside a transaction and closed.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT t FROM TransactionLog t WHERE t.userId = :userId ORDER BY t.createdAt, t.logId")
+    Stream<TransactionLog> streamByUserId(@Param("userId") Long userId);
+
+    /**
+     * Stream all transactions within a time range, oldest first (see {@link #streamByUserId})
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT t FROM TransactionLog t WHERE t.createdAt BETWEEN :startTime AND :endTime ORDER BY t.createdAt, t.logId")
+    Stream<TransactionLog> streamByTimeRange(
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime
+    );
+
+    /**
+     * Stream the transactions of a user within a time range, oldest first (see {@link #streamByUserId})
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT t FROM TransactionLog t WHERE t.userId = :userId AND t.createdAt BETWEEN :startTime AND :endTime " +
+           "ORDER BY t.createdAt, t.logId")
+    Stream<TransactionLog> streamByUserIdAndTimeRange(
+        @Param("userId") Long userId,
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime
+    );
+
+    /**
+     * Withdrawals waiting to be signed: PENDING without a transaction hash, oldest first
+     */
+    @Query("SELECT t FROM TransactionLog t WHERE t.transactionType = 'WITHDRAW' AND t.status = 'PENDING' " +
+           "AND t.txHash IS NULL ORDER BY t.logId")
+    List<TransactionLog> findQueuedWithdrawals(Limit limit);
+
+    /**
+     * Withdrawals signed and broadcast but not yet confirmed, oldest first
+     */
+    @Query("SELECT t FROM TransactionLog t WHERE t.transactionType = 'WITHDRAW' AND t.status = 'PENDING' " +
+           "AND t.txHash IS NOT NULL ORDER BY t.logId")
+    List<TransactionLog> findSubmittedWithdrawals(Limit limit);
+
+    /**
+     * Withdrawals holding a nonce in [from, to) that are broadcast but not yet confirmed, by nonce
+     */
+    @Query("SELECT t FROM TransactionLog t WHERE t.transactionType = 'WITHDRAW' AND t.status = 'PENDING' " +
+           "AND t.nonce >= :from AND t.nonce < :to ORDER BY t.nonce")
+    List<TransactionLog> findInFlightWithdrawals(@Param("from") Long from, @Param("to") Long to);
+
+    /**
+     * Move a PENDING entry to a final status. Returns 0 if it was no longer PENDING.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE TransactionLog t SET t.status = :status, t.txHash = COALESCE(:txHash, t.txHash), " +
+           "t.errorMessage = :errorMessage, t.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE t.logId = :logId AND t.status = 'PENDING'")
+    int finishPending(@Param("logId") Long logId,
+                      @Param("status") TransactionStatus status,
+                      @Param("txHash") String txHash,
+                      @Param("errorMessage") String errorMessage);
+
     /**
      * Find failed transactions for a user
      */
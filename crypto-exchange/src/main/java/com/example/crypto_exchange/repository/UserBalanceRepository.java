@@ -48,6 +48,70 @@ public interface UserBalanceRepository extends JpaRepository<UserBalance, UserBa
                            @Param("tokenId") Long tokenId, 
                            @Param("amount") BigDecimal amount);
     
+    /**
+     * Atomically subtract an amount from a balance, but only if its available (unlocked) part covers it.
+     * Returns the number of updated rows: 0 means the balance is missing or insufficient.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE UserBalance ub SET ub.amount = ub.amount - :amount, ub.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE ub.userId = :userId AND ub.tokenId = :tokenId AND ub.amount - ub.lockedAmount >= :amount")
+    int debitIfSufficient(@Param("userId") Long userId,
+                          @Param("tokenId") Long tokenId,
+                          @Param("amount") BigDecimal amount);
+
+    /**
+     * Atomically lock an amount of a balance, but only if its available part covers it.
+     * Returns the number of updated rows: 0 means the balance is missing or insufficient.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE UserBalance ub SET ub.lockedAmount = ub.lockedAmount + :amount, ub.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE ub.userId = :userId AND ub.tokenId = :tokenId AND ub.amount - ub.lockedAmount >= :amount")
+    int reserveIfAvailable(@Param("userId") Long userId,
+                           @Param("tokenId") Long tokenId,
+                           @Param("amount") BigDecimal amount);
+
+    /**
+     * Atomically unlock a previously reserved amount, leaving the balance unchanged.
+     * Returns the number of updated rows: 0 means less than the amount is locked.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE UserBalance ub SET ub.lockedAmount = ub.lockedAmount - :amount, ub.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE ub.userId = :userId AND ub.tokenId = :tokenId AND ub.lockedAmount >= :amount")
+    int releaseReserved(@Param("userId") Long userId,
+                        @Param("tokenId") Long tokenId,
+                        @Param("amount") BigDecimal amount);
+
+    /**
+     * Atomically spend a previously reserved amount: subtract it from both the balance and the locked part.
+     * Returns the number of updated rows: 0 means less than the amount is locked.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE UserBalance ub SET ub.amount = ub.amount - :amount, ub.lockedAmount = ub.lockedAmount - :amount, " +
+           "ub.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE ub.userId = :userId AND ub.tokenId = :tokenId AND ub.lockedAmount >= :amount")
+    int settleReserved(@Param("userId") Long userId,
+                       @Param("tokenId") Long tokenId,
+                       @Param("amount") BigDecimal amount);
+
+    /**
+     * Atomically add an amount to a balance, creating the balance row if it does not exist yet.
+     * Fails with a constraint violation if the user or token does not exist.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query(value = "INSERT INTO balances (user_id, token_id, amount, updated_at) " +
+                   "VALUES (:userId, :tokenId, :amount, CURRENT_TIMESTAMP) " +
+                   "ON CONFLICT (user_id, token_id) DO UPDATE " +
+                   "SET amount = balances.amount + EXCLUDED.amount, updated_at = EXCLUDED.updated_at",
+           nativeQuery = true)
+    int upsertCredit(@Param("userId") Long userId,
+                     @Param("tokenId") Long tokenId,
+                     @Param("amount") BigDecimal amount);
+
     /**
      * Check if a balance record exists for user and token
      */
@@ -1,15 +1,69 @@
 package com.example.crypto_exchange.repository;
 
 import com.example.crypto_exchange.entity.WalletBalance;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface WalletBalanceRepository extends JpaRepository<WalletBalance, Long> {
+
+    /**
+     * Minimal view of a wallet row for the deposit address index
+     */
+    interface TrackedWallet {
+        Long getId();
+        String getWalletAddress();
+        Long getUserId();
+    }
+
     Optional<WalletBalance> findByWalletAddressAndTokenContractAddress(
         String walletAddress,
         String tokenContractAddress
     );
+
+    /**
+     * Next page of wallets after {@code afterId} (keyset pagination), ordered by id
+     */
+    List<WalletBalance> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    /**
+     * Next page of owned wallets after {@code afterId} as lightweight projections, ordered by id
+     */
+    @Query("SELECT w.id AS id, w.walletAddress AS walletAddress, w.userId AS userId FROM WalletBalance w " +
+           "WHERE w.id > :afterId AND w.userId IS NOT NULL ORDER BY w.id")
+    List<TrackedWallet> findTrackedWalletsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    /**
+     * Add {@code amount} to the last known on-chain balance of a wallet. Both addresses are compared as stored,
+     * lower-case (see {@link WalletBalance}), so that the update uses the unique index; native ETH is an empty
+     * contract address. Returns the number of updated rows (0 if the wallet/token pair is not tracked).
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE WalletBalance w SET w.balance = w.balance + :amount " +
+           "WHERE w.walletAddress = :walletAddress AND w.tokenContractAddress = :tokenContractAddress")
+    int incrementBalance(@Param("walletAddress") String walletAddress,
+                         @Param("tokenContractAddress") String tokenContractAddress,
+                         @Param("amount") BigDecimal amount);
+
+    /**
+     * Lower-case the addresses of rows written before they were normalised on write, and store a missing
+     * contract address as empty. Returns the number of updated rows.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE WalletBalance w SET w.walletAddress = lower(w.walletAddress), " +
+           "w.tokenContractAddress = coalesce(lower(w.tokenContractAddress), '') " +
+           "WHERE w.walletAddress <> lower(w.walletAddress) OR w.tokenContractAddress IS NULL " +
+           "OR w.tokenContractAddress <> lower(w.tokenContractAddress)")
+    int normalizeAddresses();
 } 
\ No newline at end of file
@@ -0,0 +1,146 @@
+package com.example.crypto_exchange.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Issues and verifies short-lived bearer tokens, so that API calls after {@code /api/v1/auth/login} are
+ * authenticated with one HMAC-SHA256 instead of a BCrypt password check.
+ *
+ * <p>A token is {@code base64url(username \n authorities \n expiry) "." base64url(hmac)}. Nothing is stored
+ * server side; every instance sharing {@code auth.token.secret} accepts the same tokens. Without a
+ * configured secret a random one is generated at startup, which invalidates tokens on restart.</p>
+ */
+@Slf4j
+@Service
+public class AuthTokenService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final char SEPARATOR = '\n';
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * A verified token
+     */
+    public record TokenClaims(String username, List<GrantedAuthority> authorities, Instant expiresAt) {
+    }
+
+    private final Mac prototype;
+    private final Duration ttl;
+    private final Clock clock;
+
+    @Autowired
+    public AuthTokenService(@Value("${auth.token.secret:}") String secret,
+                            @Value("${auth.token.ttl-seconds:900}") long ttlSeconds) {
+        this(secret, Duration.ofSeconds(ttlSeconds), Clock.systemUTC());
+    }
+
+    AuthTokenService(String secret, Duration ttl, Clock clock) {
+        byte[] key;
+        if (secret == null || secret.isBlank()) {
+            log.warn("auth.token.secret is not set, using a random key: tokens do not survive a restart "
+                    + "and are not accepted by other instances");
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+        } else {
+            key = secret.getBytes(StandardCharsets.UTF_8);
+            if (key.length < 32) {
+                throw new IllegalArgumentException("auth.token.secret must be at least 32 bytes");
+            }
+        }
+        try {
+            this.prototype = Mac.getInstance(ALGORITHM);
+            this.prototype.init(new SecretKeySpec(key, ALGORITHM));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Issue a token for an authenticated user, valid for {@code auth.token.ttl-seconds}.
+     */
+    public String issue(Authentication authentication) {
+        Instant expiresAt = clock.instant().plus(ttl);
+        String authorities = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.joining(","));
+        byte[] payload = (authentication.getName() + SEPARATOR + authorities + SEPARATOR + expiresAt.getEpochSecond())
+                .getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload));
+    }
+
+    /**
+     * Verify a token's signature and expiry.
+     *
+     * @return the claims, or empty when the token is malformed, forged or expired
+     */
+    public Optional<TokenClaims> verify(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot == token.length() - 1) {
+            return Optional.empty();
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(0, dot));
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (!MessageDigest.isEqual(sign(payload), signature)) {
+            return Optional.empty();
+        }
+
+        String claims = new String(payload, StandardCharsets.UTF_8);
+        int expirySeparator = claims.lastIndexOf(SEPARATOR);
+        int authoritiesSeparator = claims.lastIndexOf(SEPARATOR, expirySeparator - 1);
+        if (authoritiesSeparator <= 0) {
+            return Optional.empty();
+        }
+        Instant expiresAt = Instant.ofEpochSecond(Long.parseLong(claims.substring(expirySeparator + 1)));
+        if (!clock.instant().isBefore(expiresAt)) {
+            return Optional.empty();
+        }
+        String authorities = claims.substring(authoritiesSeparator + 1, expirySeparator);
+        return Optional.of(new TokenClaims(
+                claims.substring(0, authoritiesSeparator),
+                AuthorityUtils.commaSeparatedStringToAuthorityList(authorities),
+                expiresAt));
+    }
+
+    private byte[] sign(byte[] payload) {
+        try {
+            // A clone of the initialised prototype is far cheaper than Mac.getInstance + init
+            Mac mac = (Mac) prototype.clone();
+            return mac.doFinal(payload);
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("HMAC provider does not support cloning", e);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.entity.BlockScanCheckpoint;
+import com.example.crypto_exchange.entity.Token;
+import com.example.crypto_exchange.entity.TransactionLog;
+import com.example.crypto_exchange.repository.BlockScanCheckpointRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.utils.Convert;
+import org.web3j.utils.Numeric;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Detects deposits by scanning new blocks instead of polling every tracked wallet
+ * (enabled with {@code deposit.watcher.mode=block-scan}).
+ *
+ * <p>Each cycle walks the blocks between the persisted {@link BlockScanCheckpoint} and the latest block
+ * that has {@code deposit.scanner.confirmations} confirmations. ERC-20 deposits are found through the
+ * {@code Transfer} event logs of all known token contracts, native ETH deposits through the transactions of
+ * each block. Only the top-level value of a transaction is seen: ETH that a contract (a multisig, a smart
+ * wallet, an exchange's batch payout) forwards to a tracked address through an internal call appears in no
+ * block transaction or log and is not detected; such deposits need trace data or the balance-polling
+ * watcher. Recipients are matched against the {@link TrackedAddressIndex}, so the cost of a cycle
+ * depends on chain activity rather than on the number of wallets.</p>
+ *
+ * <p>Deposits are credited with their real transaction hash and log index. The checkpoint only advances after a range
+ * has been fully processed; re-scanning a range after a failure is safe because
+ * {@link DepositCreditService#creditOnChainDeposit} ignores transfers that were already credited.</p>
+ */
+@Service
+@ConditionalOnProperty(name = "deposit.watcher.mode", havingValue = "block-scan")
+public class BlockScanDepositDetector {
+
+    private static final Logger log = LoggerFactory.getLogger(BlockScanDepositDetector.class);
+
+    static final String CHECKPOINT = "deposits";
+
+    private final BlockchainService blockchainService;
+    private final BlockScanCheckpointRepository checkpointRepository;
+    private final DepositCreditService depositCreditService;
+    private final TokenRegistry tokenRegistry;
+    private final TrackedAddressIndex addressIndex;
+
+    /**
+     * Blocks a deposit must be buried under before it is credited (protection against reorgs).
+     */
+    @Value("${deposit.scanner.confirmations:12}")
+    private int confirmations;
+
+    /**
+     * Maximum number of blocks read per eth_getLogs call and per checkpoint update.
+     */
+    @Value("${deposit.scanner.max-block-range:100}")
+    private int maxBlockRange;
+
+    /**
+     * Block to start from when no checkpoint exists yet; a negative value starts at the current head.
+     */
+    @Value("${deposit.scanner.start-block:-1}")
+    private long startBlock;
+
+    @Autowired
+    public BlockScanDepositDetector(BlockchainService blockchainService,
+                                    BlockScanCheckpointRepository checkpointRepository,
+                                    DepositCreditService depositCreditService,
+                                    TokenRegistry tokenRegistry,
+                                    TrackedAddressIndex addressIndex) {
+        this.blockchainService = blockchainService;
+        this.checkpointRepository = checkpointRepository;
+        this.depositCreditService = depositCreditService;
+        this.tokenRegistry = tokenRegistry;
+        this.addressIndex = addressIndex;
+    }
+
+    /**
+     * Scan all confirmed blocks since the last checkpoint.
+     */
+    @Scheduled(fixedDelayString = "${deposit.scanner.fixed-delay-ms:15000}")
+    public void scan() {
+        Instant start = Instant.now();
+        try {
+            long head = blockchainService.getLatestBlockNumber() - confirmations;
+            BlockScanCheckpoint checkpoint = checkpointRepository.findById(CHECKPOINT)
+                    .orElseGet(() -> new BlockScanCheckpoint(CHECKPOINT, (startBlock < 0 ? head : startBlock) - 1));
+
+            int credited = 0;
+            int range = Math.max(1, maxBlockRange);
+            while (checkpoint.getLastBlock() < head) {
+                long from = checkpoint.getLastBlock() + 1;
+                long to = Math.min(from + range - 1, head);
+                credited += scanRange(from, to);
+                checkpoint.setLastBlock(to);
+                checkpoint = checkpointRepository.save(checkpoint);
+            }
+            log.debug("Block scan up to block {} finished in {} ms, {} deposits credited",
+                    checkpoint.getLastBlock(), Duration.between(start, Instant.now()).toMillis(), credited);
+        } catch (Exception e) {
+            log.error("Block scan failed, will resume from the last checkpoint: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Credit all deposits found in the given blocks (inclusive).
+     * @return The number of newly credited deposits
+     */
+    int scanRange(long fromBlock, long toBlock) {
+        log.trace("Scanning blocks {}-{}", fromBlock, toBlock);
+        return scanTokenTransfers(fromBlock, toBlock) + scanNativeTransfers(fromBlock, toBlock);
+    }
+
+    private int scanTokenTransfers(long fromBlock, long toBlock) {
+        Map<String, Token> tokensByContract = new HashMap<>();
+        for (Token token : tokenRegistry.getAll()) {
+            if (token.getContractAddress() != null && !token.getContractAddress().isBlank()) {
+                tokensByContract.put(token.getContractAddress().toLowerCase(Locale.ROOT), token);
+            }
+        }
+
+        int credited = 0;
+        for (Log transfer : blockchainService.getTransferLogs(fromBlock, toBlock, tokensByContract.keySet())) {
+            // ERC-721 also emits Transfer, but with the token id as a fourth indexed topic
+            if (transfer.isRemoved() || transfer.getTopics().size() != 3) {
+                continue;
+            }
+            Token token = tokensByContract.get(transfer.getAddress().toLowerCase(Locale.ROOT));
+            // The recipient topic is the address left-padded to 32 bytes, which the index matches directly
+            String recipientTopic = transfer.getTopics().get(2);
+            if (token == null || !addressIndex.contains(recipientTopic)) {
+                continue;
+            }
+            String recipient = "0x" + recipientTopic.substring(26);
+            BigInteger rawAmount = Numeric.toBigInt(transfer.getData());
+            if (rawAmount.signum() > 0) {
+                BigDecimal amount = new BigDecimal(rawAmount, token.getDecimals());
+                credited += credit(recipient, token, amount, transfer.getTransactionHash(),
+                        transfer.getLogIndex().intValueExact()) ? 1 : 0;
+            }
+        }
+        return credited;
+    }
+
+    private int scanNativeTransfers(long fromBlock, long toBlock) {
+        Optional<Token> eth = tokenRegistry.findBySymbol("ETH");
+        if (eth.isEmpty()) {
+            return 0;
+        }
+
+        int credited = 0;
+        for (EthBlock.Block block : blockchainService.getBlocksWithTransactions(fromBlock, toBlock)) {
+            for (EthBlock.TransactionResult<?> result : block.getTransactions()) {
+                EthBlock.TransactionObject tx = (EthBlock.TransactionObject) result.get();
+                if (tx.getTo() == null || !addressIndex.contains(tx.getTo()) || tx.getValue().signum() <= 0) {
+                    continue;
+                }
+                // A reverted transaction still appears in the block but moved no value
+                if (blockchainService.isTransactionSuccessful(tx.getHash())) {
+                    BigDecimal amount = Convert.fromWei(new BigDecimal(tx.getValue()), Convert.Unit.ETHER);
+                    credited += credit(tx.getTo(), eth.get(), amount, tx.getHash(), TransactionLog.NATIVE_TRANSFER_LOG_INDEX) ? 1 : 0;
+                }
+            }
+        }
+        return credited;
+    }
+
+    private boolean credit(String recipient, Token token, BigDecimal amount, String txHash, int logIndex) {
+        long userId = addressIndex.userIdOf(recipient);
+        return userId != TrackedAddressIndex.NOT_FOUND
+                && depositCreditService.creditOnChainDeposit(userId, recipient, token, amount, txHash, logIndex);
+    }
+
+    /**
+     * Pick up wallets added since the last load.
+     */
+    @Scheduled(fixedDelayString = "${deposit.scanner.index-refresh-ms:60000}",
+               initialDelayString = "${deposit.scanner.index-refresh-ms:60000}")
+    public void refreshAddressIndex() {
+        addressIndex.refresh();
+    }
+
+    @PostConstruct
+    void init() {
+        addressIndex.refresh();
+        log.info("BlockScanDepositDetector initialised – scanning blocks for deposits to {} addresses", addressIndex.size());
+    }
+}
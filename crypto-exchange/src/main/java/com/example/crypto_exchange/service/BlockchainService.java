@@ -1,29 +1,81 @@
 package com.example.crypto_exchange.service;
 
+import com.example.crypto_exchange.entity.Token;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.crypto.Hash;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameter;
 import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthBlockNumber;
+import org.web3j.protocol.core.methods.response.EthCall;
 import org.web3j.protocol.core.methods.response.EthGetBalance;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+import org.web3j.protocol.core.methods.response.EthGetTransactionReceipt;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
 import org.web3j.tx.gas.ContractGasProvider;
 import org.web3j.tx.gas.DefaultGasProvider;
 import org.web3j.utils.Convert;
 import org.web3j.utils.Convert.Unit;
+import org.web3j.utils.Numeric;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 
 @Service
 public class BlockchainService {
     private static final Logger log = LoggerFactory.getLogger(BlockchainService.class);
 
+    private static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    private static final int DEFAULT_MULTICALL_MAX_CALLS = 500;
+
+    /**
+     * topic0 of {@code Transfer(address indexed from, address indexed to, uint256 value)}.
+     */
+    public static final String TRANSFER_EVENT_TOPIC = Hash.sha3String("Transfer(address,address,uint256)");
+
     @Autowired
     private Web3j web3j;
 
+    @Autowired
+    private TokenRegistry tokenRegistry;
+
+    @Value("${blockchain.rpc.max-batch-size:" + DEFAULT_MAX_BATCH_SIZE + "}")
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    @Value("${blockchain.multicall.enabled:true}")
+    private boolean multicallEnabled = true;
+
+    @Value("${blockchain.multicall.address:" + Multicall3.DEFAULT_ADDRESS + "}")
+    private String multicallAddress = Multicall3.DEFAULT_ADDRESS;
+
+    @Value("${blockchain.multicall.max-calls:" + DEFAULT_MULTICALL_MAX_CALLS + "}")
+    private int multicallMaxCalls = DEFAULT_MULTICALL_MAX_CALLS;
+
     /**
      * Get the ETH balance of a wallet address
      * @param address The Ethereum wallet address
@@ -53,26 +105,92 @@ public class BlockchainService {
     }
 
     /**
-     * Get the ERC-20 token balance of a wallet address
-     * Note: This is a simplified implementation. In production, you would need proper ERC-20 contract integration.
+     * Get the ETH balances of many wallet addresses.
+     * Lookups are packed into JSON-RPC batch requests of at most {@code blockchain.rpc.max-batch-size} calls,
+     * so one HTTP round trip serves hundreds of addresses.
+     * @param addresses The Ethereum wallet addresses
+     * @return The balances in ETH keyed by address; addresses whose lookup failed are absent
+     */
+    public Map<String, BigDecimal> getNativeBalances(Collection<String> addresses) {
+        List<String> distinctAddresses = addresses.stream().distinct().toList();
+        log.debug("Fetching native ETH balances for {} addresses", distinctAddresses.size());
+
+        Map<String, BigDecimal> balances = new HashMap<>(distinctAddresses.size() * 2);
+        int batchSize = Math.max(1, maxBatchSize);
+        for (int from = 0; from < distinctAddresses.size(); from += batchSize) {
+            List<String> chunk = distinctAddresses.subList(from, Math.min(from + batchSize, distinctAddresses.size()));
+            fetchNativeBalanceBatch(chunk, balances);
+        }
+        return balances;
+    }
+
+    private void fetchNativeBalanceBatch(List<String> addresses, Map<String, BigDecimal> balances) {
+        BatchRequest batch = web3j.newBatch();
+        // Providers may answer a batch in any order, so responses are matched back by request id
+        Map<Long, String> addressByRequestId = new HashMap<>(addresses.size() * 2);
+        for (String address : addresses) {
+            Request<?, EthGetBalance> request = web3j.ethGetBalance(address, DefaultBlockParameterName.LATEST);
+            addressByRequestId.put(request.getId(), address);
+            batch.add(request);
+        }
+
+        try {
+            log.trace("Sending batch of {} ethGetBalance requests", addresses.size());
+            BatchResponse batchResponse = batch.send();
+            for (Response<?> response : batchResponse.getResponses()) {
+                String address = addressByRequestId.get(response.getId());
+                if (address == null) {
+                    log.warn("Ignoring batch response with unknown id {}", response.getId());
+                } else if (response.hasError()) {
+                    log.error("Error fetching native balance for address {}: {}", address, response.getError().getMessage());
+                } else {
+                    BigInteger wei = ((EthGetBalance) response).getBalance();
+                    balances.put(address, Convert.fromWei(new BigDecimal(wei), Convert.Unit.ETHER));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error getting native balances for batch of {} addresses: {}", addresses.size(), e.getMessage(), e);
+            throw new RuntimeException("Failed to get native balances", e);
+        }
+    }
+
+    /**
+     * Get the ERC-20 token balance of a wallet address.
+     * The token's decimals are resolved from the {@link TokenRegistry}.
      * @param tokenContractAddress The ERC-20 token contract address
      * @param walletAddress The wallet address to check
-     * @return The token balance (placeholder implementation)
+     * @return The token balance in token units
      */
     public BigDecimal getTokenBalance(String tokenContractAddress, String walletAddress) {
+        Token token = tokenRegistry.findByContractAddress(tokenContractAddress)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown token contract: " + tokenContractAddress));
+        return getTokenBalance(tokenContractAddress, walletAddress, token.getDecimals());
+    }
+
+    /**
+     * Get the ERC-20 token balance of a wallet address by calling {@code balanceOf}.
+     * @param tokenContractAddress The ERC-20 token contract address
+     * @param walletAddress The wallet address to check
+     * @param decimals The token decimals used to scale the raw balance
+     * @return The token balance in token units
+     */
+    public BigDecimal getTokenBalance(String tokenContractAddress, String walletAddress, int decimals) {
         log.debug("Fetching ERC-20 token balance for contract: {} and wallet: {}", tokenContractAddress, walletAddress);
         
         try {
-            // This is a placeholder implementation
-            // In a real implementation, you would use Web3j's ERC-20 contract wrapper
-            log.warn("ERC-20 token balance check requested but not fully implemented");
-            log.info("Token contract: {}, Wallet: {}", tokenContractAddress, walletAddress);
+            EthCall response = web3j.ethCall(balanceOfCall(tokenContractAddress, walletAddress), DefaultBlockParameterName.LATEST).send();
+            if (response.hasError()) {
+                log.error("Error fetching token balance for wallet {} on contract {}: {}", 
+                        walletAddress, tokenContractAddress, response.getError().getMessage());
+                throw new RuntimeException("Failed to get token balance: " + response.getError().getMessage());
+            }
             
-            // Return a placeholder value for now
-            BigDecimal tokenBalance = BigDecimal.ZERO;
-            log.info("ERC-20 token balance for wallet {} on contract {}: {} tokens (placeholder)", 
+            if (!isUint256(response.getValue())) {
+                throw new RuntimeException("balanceOf returned no value: " + response.getValue());
+            }
+            BigDecimal tokenBalance = toTokenUnits(response.getValue(), decimals);
+            log.debug("ERC-20 token balance for wallet {} on contract {}: {} tokens", 
                     walletAddress, tokenContractAddress, tokenBalance);
-            
             return tokenBalance;
         } catch (Exception e) {
             log.error("Error getting token balance for address {} and token {}: {}", 
@@ -81,6 +199,296 @@ public class BlockchainService {
         }
     }
 
+    /**
+     * Get the balances of one ERC-20 token for many wallets.
+     * With {@code blockchain.multicall.enabled} the {@code balanceOf} calls are aggregated into Multicall3
+     * {@code aggregate3} eth_calls of at most {@code blockchain.multicall.max-calls} wallets each; otherwise
+     * plain eth_calls are sent in JSON-RPC batches of {@code blockchain.rpc.max-batch-size}.
+     * @param token The ERC-20 token (contract address and decimals are used)
+     * @param walletAddresses The wallet addresses to check
+     * @return The token balances in token units keyed by wallet address; wallets whose call failed are absent
+     */
+    public Map<String, BigDecimal> getTokenBalances(Token token, Collection<String> walletAddresses) {
+        List<String> wallets = walletAddresses.stream().distinct().toList();
+        log.debug("Fetching {} balances for {} wallets", token.getSymbol(), wallets.size());
+
+        Map<String, BigDecimal> balances = new HashMap<>(wallets.size() * 2);
+        int chunkSize = Math.max(1, multicallEnabled ? multicallMaxCalls : maxBatchSize);
+        for (int from = 0; from < wallets.size(); from += chunkSize) {
+            List<String> chunk = wallets.subList(from, Math.min(from + chunkSize, wallets.size()));
+            if (multicallEnabled) {
+                fetchTokenBalancesMulticall(token, chunk, balances);
+            } else {
+                fetchTokenBalanceBatch(token, chunk, balances);
+            }
+        }
+        return balances;
+    }
+
+    private void fetchTokenBalancesMulticall(Token token, List<String> wallets, Map<String, BigDecimal> balances) {
+        List<Multicall3.Call> calls = new ArrayList<>(wallets.size());
+        for (String wallet : wallets) {
+            calls.add(new Multicall3.Call(token.getContractAddress(), balanceOfData(wallet)));
+        }
+
+        try {
+            log.trace("Sending Multicall3 aggregate3 with {} balanceOf calls", calls.size());
+            Transaction call = Transaction.createEthCallTransaction(null, multicallAddress, Multicall3.encodeAggregate3(calls));
+            EthCall response = web3j.ethCall(call, DefaultBlockParameterName.LATEST).send();
+            if (response.hasError()) {
+                throw new RuntimeException("Multicall failed: " + response.getError().getMessage());
+            }
+
+            List<Multicall3.Result> results = Multicall3.decodeAggregate3(response.getValue());
+            for (int i = 0; i < wallets.size(); i++) {
+                Multicall3.Result result = results.get(i);
+                if (result.success() && isUint256(result.returnData())) {
+                    balances.put(wallets.get(i), toTokenUnits(result.returnData(), token.getDecimals()));
+                } else {
+                    log.error("balanceOf failed for wallet {} on contract {}", wallets.get(i), token.getContractAddress());
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error getting {} balances for batch of {} wallets: {}", token.getSymbol(), wallets.size(), e.getMessage(), e);
+            throw new RuntimeException("Failed to get token balances", e);
+        }
+    }
+
+    private void fetchTokenBalanceBatch(Token token, List<String> wallets, Map<String, BigDecimal> balances) {
+        BatchRequest batch = web3j.newBatch();
+        Map<Long, String> walletByRequestId = new HashMap<>(wallets.size() * 2);
+        for (String wallet : wallets) {
+            Request<?, EthCall> request = web3j.ethCall(balanceOfCall(token.getContractAddress(), wallet), DefaultBlockParameterName.LATEST);
+            walletByRequestId.put(request.getId(), wallet);
+            batch.add(request);
+        }
+
+        try {
+            log.trace("Sending batch of {} balanceOf eth_call requests", wallets.size());
+            for (Response<?> response : batch.send().getResponses()) {
+                String wallet = walletByRequestId.get(response.getId());
+                if (wallet == null) {
+                    log.warn("Ignoring batch response with unknown id {}", response.getId());
+                } else if (response.hasError()) {
+                    log.error("balanceOf failed for wallet {} on contract {}: {}", wallet, token.getContractAddress(), response.getError().getMessage());
+                } else if (!isUint256(((EthCall) response).getValue())) {
+                    log.error("balanceOf for wallet {} on contract {} returned no value: {}", wallet, token.getContractAddress(), ((EthCall) response).getValue());
+                } else {
+                    balances.put(wallet, toTokenUnits(((EthCall) response).getValue(), token.getDecimals()));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error getting {} balances for batch of {} wallets: {}", token.getSymbol(), wallets.size(), e.getMessage(), e);
+            throw new RuntimeException("Failed to get token balances", e);
+        }
+    }
+
+    private static Transaction balanceOfCall(String tokenContractAddress, String walletAddress) {
+        return Transaction.createEthCallTransaction(null, tokenContractAddress, balanceOfData(walletAddress));
+    }
+
+    private static String balanceOfData(String walletAddress) {
+        return FunctionEncoder.encode(new Function(
+                "balanceOf",
+                List.of(new Address(walletAddress)),
+                List.of(new TypeReference<Uint256>() {})));
+    }
+
+    /**
+     * Whether an eth_call result holds a full 32-byte word. A call to an address without code, or to a
+     * contract that reverts without data, returns {@code 0x}.
+     */
+    private static boolean isUint256(String rawHex) {
+        return rawHex != null && Numeric.cleanHexPrefix(rawHex).length() >= 64;
+    }
+
+    private static BigDecimal toTokenUnits(String rawHex, int decimals) {
+        BigInteger raw = Numeric.toBigInt(rawHex);
+        return new BigDecimal(raw, decimals);
+    }
+
+    /**
+     * Get the number of transactions an address had sent as of a block, i.e. its next nonce at that block
+     * @param address The sender address
+     * @param blockNumber The block to read the count at
+     * @return The transaction count
+     */
+    public long getTransactionCount(String address, long blockNumber) {
+        try {
+            EthGetTransactionCount response = web3j.ethGetTransactionCount(
+                    address, DefaultBlockParameter.valueOf(BigInteger.valueOf(blockNumber))).send();
+            if (response.hasError()) {
+                throw new RuntimeException("Failed to get transaction count: " + response.getError().getMessage());
+            }
+            return response.getTransactionCount().longValueExact();
+        } catch (Exception e) {
+            log.error("Error getting transaction count of {} at block {}: {}", address, blockNumber, e.getMessage(), e);
+            throw new RuntimeException("Failed to get transaction count", e);
+        }
+    }
+
+    /**
+     * Get the number of the most recent block
+     * @return The latest block number
+     */
+    public long getLatestBlockNumber() {
+        try {
+            EthBlockNumber response = web3j.ethBlockNumber().send();
+            if (response.hasError()) {
+                throw new RuntimeException("Failed to get block number: " + response.getError().getMessage());
+            }
+            return response.getBlockNumber().longValueExact();
+        } catch (Exception e) {
+            log.error("Error getting latest block number: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to get latest block number", e);
+        }
+    }
+
+    /**
+     * Get the ERC-20 {@code Transfer} event logs emitted by the given contracts in a block range.
+     * @param fromBlock First block of the range (inclusive)
+     * @param toBlock Last block of the range (inclusive)
+     * @param tokenContractAddresses The ERC-20 contracts to include
+     * @return The matching logs in chain order
+     */
+    public List<Log> getTransferLogs(long fromBlock, long toBlock, Collection<String> tokenContractAddresses) {
+        if (tokenContractAddresses.isEmpty()) {
+            return List.of();
+        }
+        log.debug("Fetching Transfer logs of {} contracts for blocks {}-{}", tokenContractAddresses.size(), fromBlock, toBlock);
+
+        EthFilter filter = new EthFilter(
+                DefaultBlockParameter.valueOf(BigInteger.valueOf(fromBlock)),
+                DefaultBlockParameter.valueOf(BigInteger.valueOf(toBlock)),
+                List.copyOf(tokenContractAddresses));
+        filter.addSingleTopic(TRANSFER_EVENT_TOPIC);
+
+        try {
+            EthLog response = web3j.ethGetLogs(filter).send();
+            if (response.hasError()) {
+                throw new RuntimeException("Failed to get logs: " + response.getError().getMessage());
+            }
+            List<Log> logs = new ArrayList<>(response.getLogs().size());
+            for (EthLog.LogResult<?> result : response.getLogs()) {
+                logs.add((Log) result.get());
+            }
+            return logs;
+        } catch (Exception e) {
+            log.error("Error getting Transfer logs for blocks {}-{}: {}", fromBlock, toBlock, e.getMessage(), e);
+            throw new RuntimeException("Failed to get Transfer logs", e);
+        }
+    }
+
+    /**
+     * Get the blocks of a range including their full transactions.
+     * Blocks are requested in JSON-RPC batches of at most {@code blockchain.rpc.max-batch-size} calls.
+     * @param fromBlock First block of the range (inclusive)
+     * @param toBlock Last block of the range (inclusive)
+     * @return The blocks in ascending order
+     */
+    public List<EthBlock.Block> getBlocksWithTransactions(long fromBlock, long toBlock) {
+        log.debug("Fetching blocks {}-{} with transactions", fromBlock, toBlock);
+        List<EthBlock.Block> blocks = new ArrayList<>((int) (toBlock - fromBlock + 1));
+        int batchSize = Math.max(1, maxBatchSize);
+        for (long from = fromBlock; from <= toBlock; from += batchSize) {
+            blocks.addAll(fetchBlockBatch(from, Math.min(from + batchSize - 1, toBlock)));
+        }
+        return blocks;
+    }
+
+    private List<EthBlock.Block> fetchBlockBatch(long fromBlock, long toBlock) {
+        BatchRequest batch = web3j.newBatch();
+        Map<Long, Long> blockByRequestId = new HashMap<>();
+        for (long number = fromBlock; number <= toBlock; number++) {
+            Request<?, EthBlock> request = web3j.ethGetBlockByNumber(DefaultBlockParameter.valueOf(BigInteger.valueOf(number)), true);
+            blockByRequestId.put(request.getId(), number);
+            batch.add(request);
+        }
+
+        try {
+            Map<Long, EthBlock.Block> blocks = new TreeMap<>();
+            for (Response<?> response : batch.send().getResponses()) {
+                Long number = blockByRequestId.get(response.getId());
+                if (number == null) {
+                    log.warn("Ignoring batch response with unknown id {}", response.getId());
+                    continue;
+                }
+                EthBlock.Block block = response.hasError() ? null : ((EthBlock) response).getBlock();
+                if (block == null) {
+                    // A missing block would silently skip its deposits, so the whole range is retried
+                    throw new RuntimeException("Block " + number + " is not available");
+                }
+                blocks.put(number, block);
+            }
+            return List.copyOf(blocks.values());
+        } catch (Exception e) {
+            log.error("Error getting blocks {}-{}: {}", fromBlock, toBlock, e.getMessage(), e);
+            throw new RuntimeException("Failed to get blocks", e);
+        }
+    }
+
+    /**
+     * Check whether a mined transaction executed successfully.
+     * @param txHash The transaction hash
+     * @return {@code true} if a receipt exists and its status is success
+     */
+    public boolean isTransactionSuccessful(String txHash) {
+        try {
+            EthGetTransactionReceipt response = web3j.ethGetTransactionReceipt(txHash).send();
+            if (response.hasError()) {
+                throw new RuntimeException("Failed to get receipt: " + response.getError().getMessage());
+            }
+            return response.getTransactionReceipt().map(TransactionReceipt::isStatusOK).orElse(false);
+        } catch (Exception e) {
+            log.error("Error getting receipt for transaction {}: {}", txHash, e.getMessage(), e);
+            throw new RuntimeException("Failed to get transaction receipt", e);
+        }
+    }
+
+    /**
+     * Get the receipts of many transactions.
+     * Lookups are packed into JSON-RPC batch requests of at most {@code blockchain.rpc.max-batch-size} calls.
+     * @param txHashes The transaction hashes
+     * @return The receipts keyed by transaction hash; transactions not mined yet or whose lookup failed are absent
+     */
+    public Map<String, TransactionReceipt> getTransactionReceipts(Collection<String> txHashes) {
+        List<String> distinctHashes = txHashes.stream().distinct().toList();
+        Map<String, TransactionReceipt> receipts = new HashMap<>(distinctHashes.size() * 2);
+        int batchSize = Math.max(1, maxBatchSize);
+        for (int from = 0; from < distinctHashes.size(); from += batchSize) {
+            List<String> chunk = distinctHashes.subList(from, Math.min(from + batchSize, distinctHashes.size()));
+            fetchReceiptBatch(chunk, receipts);
+        }
+        return receipts;
+    }
+
+    private void fetchReceiptBatch(List<String> txHashes, Map<String, TransactionReceipt> receipts) {
+        BatchRequest batch = web3j.newBatch();
+        Map<Long, String> hashByRequestId = new HashMap<>(txHashes.size() * 2);
+        for (String txHash : txHashes) {
+            Request<?, EthGetTransactionReceipt> request = web3j.ethGetTransactionReceipt(txHash);
+            hashByRequestId.put(request.getId(), txHash);
+            batch.add(request);
+        }
+
+        try {
+            for (Response<?> response : batch.send().getResponses()) {
+                String txHash = hashByRequestId.get(response.getId());
+                if (txHash == null) {
+                    log.warn("Ignoring batch response with unknown id {}", response.getId());
+                } else if (response.hasError()) {
+                    log.error("Error fetching receipt for transaction {}: {}", txHash, response.getError().getMessage());
+                } else {
+                    ((EthGetTransactionReceipt) response).getTransactionReceipt()
+                            .ifPresent(receipt -> receipts.put(txHash, receipt));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error getting receipts for batch of {} transactions: {}", txHashes.size(), e.getMessage(), e);
+            throw new RuntimeException("Failed to get transaction receipts", e);
+        }
+    }
+
     /**
      * Prepare a transaction (stub for future implementation)
      * @param fromAddress The sender's address
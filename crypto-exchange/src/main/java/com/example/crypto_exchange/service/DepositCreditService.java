@@ -0,0 +1,86 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.entity.Token;
+import com.example.crypto_exchange.entity.TransactionLog;
+import com.example.crypto_exchange.entity.WalletBalance;
+import com.example.crypto_exchange.repository.TransactionLogRepository;
+import com.example.crypto_exchange.repository.WalletBalanceRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+/**
+ * Credits a detected on-chain deposit to the owning user.
+ *
+ * <p>Each call runs in its own short transaction so that the deposit watcher never holds a database
+ * transaction open while it waits for the blockchain node: the balance credit, the audit log entry and
+ * the new last-known on-chain balance of the wallet are committed together or not at all.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DepositCreditService {
+
+    private final UserBalanceService userBalanceService;
+    private final TransactionLogService transactionLogService;
+    private final WalletBalanceRepository walletBalanceRepository;
+    private final TransactionLogRepository transactionLogRepository;
+
+    @PostConstruct
+    void normalizeWalletAddresses() {
+        int normalized = walletBalanceRepository.normalizeAddresses();
+        if (normalized > 0) {
+            log.info("Lower-cased the addresses of {} wallet balances", normalized);
+        }
+    }
+
+    /**
+     * Credit {@code amount} of {@code token} to the owner of {@code walletBalance} and record
+     * {@code newOnChainBalance} as the wallet's last known balance.
+     */
+    @Transactional
+    public void creditDeposit(WalletBalance walletBalance, Token token, BigDecimal amount,
+                              BigDecimal newOnChainBalance, String txHash) {
+        Long userId = walletBalance.getUserId();
+        log.info("Detected deposit → user={} token={} amount={} wallet={}",
+                userId, token.getSymbol(), amount, walletBalance.getWalletAddress());
+
+        userBalanceService.addToBalance(userId, token.getTokenId(), amount);
+        transactionLogService.logDeposit(userId, token.getSymbol(), amount, walletBalance.getWalletAddress(), txHash);
+
+        walletBalance.setBalance(newOnChainBalance);
+        walletBalanceRepository.save(walletBalance);
+    }
+
+    /**
+     * Credit a deposit identified by its on-chain transfer: the {@code Transfer} event at {@code logIndex} of
+     * transaction {@code txHash}, or the ETH value of the transaction itself with
+     * {@link TransactionLog#NATIVE_TRANSFER_LOG_INDEX}. A transfer that was already credited is ignored, so
+     * re-scanning blocks after a restart is harmless; two transfers to the same wallet in one transaction are
+     * credited separately. The unique key on {@code (tx_hash, log_index)} rejects a concurrent second credit.
+     * The wallet's last known on-chain balance is increased by {@code amount} if the wallet is tracked.
+     * @return {@code true} if the deposit was credited, {@code false} if it had been credited before
+     */
+    @Transactional
+    public boolean creditOnChainDeposit(Long userId, String walletAddress, Token token, BigDecimal amount,
+                                        String txHash, int logIndex) {
+        if (transactionLogRepository.existsByTxHashAndLogIndex(txHash, logIndex)) {
+            log.debug("Deposit {}/{} of {} for user {} already credited", txHash, logIndex, token.getSymbol(), userId);
+            return false;
+        }
+        log.info("Detected deposit → user={} token={} amount={} wallet={} tx={}",
+                userId, token.getSymbol(), amount, walletAddress, txHash);
+
+        userBalanceService.addToBalance(userId, token.getTokenId(), amount);
+        transactionLogService.logDeposit(userId, token.getSymbol(), amount, walletAddress, txHash, logIndex);
+
+        String tokenContract = token.getContractAddress() == null ? "" : token.getContractAddress().toLowerCase(Locale.ROOT);
+        walletBalanceRepository.incrementBalance(walletAddress.toLowerCase(Locale.ROOT), tokenContract, amount);
+        return true;
+    }
+}
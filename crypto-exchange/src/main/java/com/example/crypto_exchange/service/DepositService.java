@@ -2,7 +2,6 @@ package com.example.crypto_exchange.service;
 
 import com.example.crypto_exchange.dto.DepositRequest;
 import com.example.crypto_exchange.entity.Token;
-import com.example.crypto_exchange.repository.TokenRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -15,7 +14,7 @@ import java.math.BigDecimal;
 @RequiredArgsConstructor
 public class DepositService {
 
-    private final TokenRepository tokenRepository;
+    private final TokenRegistry tokenRegistry;
     private final UserBalanceService userBalanceService;
 
     /**
@@ -41,11 +40,11 @@ public class DepositService {
         }
 
         // Validate token exists
-        Token token = tokenRepository.findBySymbol(request.getTokenSymbol())
+        Token token = tokenRegistry.findBySymbol(request.getTokenSymbol())
             .orElseThrow(() -> new IllegalArgumentException("Token not found: " + request.getTokenSymbol()));
 
         // Add to user's balance
-        userBalanceService.addToBalance(request.getUserId(), request.getTokenSymbol(), request.getAmount());
+        userBalanceService.addToBalance(request.getUserId(), token.getTokenId(), request.getAmount());
 
         log.info("Deposit processed successfully for user {}: {} {}", 
                 request.getUserId(), request.getAmount(), request.getTokenSymbol());
@@ -2,22 +2,30 @@ package com.example.crypto_exchange.service;
 
 import com.example.crypto_exchange.entity.Token;
 import com.example.crypto_exchange.entity.WalletBalance;
-import com.example.crypto_exchange.repository.TokenRepository;
 import com.example.crypto_exchange.repository.WalletBalanceRepository;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
 
 /**
  * Periodically polls the blockchain (via {@link BlockchainService}) for each recorded wallet address and
@@ -27,102 +35,202 @@ import java.util.UUID;
  * <code>(walletAddress, tokenContractAddress)</code> along with the <code>userId</code> that owns the
  * address.  Any increase between the current on-chain balance and the stored value is interpreted as a
  * deposit.</p>
+ *
+ * <p>This is the default detection mode ({@code deposit.watcher.mode=polling}); see
+ * {@link BlockScanDepositDetector} for the block-scanning alternative.</p>
  */
 
 @Service
+@ConditionalOnProperty(name = "deposit.watcher.mode", havingValue = "polling", matchIfMissing = true)
 public class DepositWatcherService {
 
     private static final Logger log = LoggerFactory.getLogger(DepositWatcherService.class);
 
     private final BlockchainService blockchainService;
     private final WalletBalanceRepository walletBalanceRepository;
-    private final UserBalanceService userBalanceService;
-    private final TransactionLogService transactionLogService;
-    private final TokenRepository tokenRepository;
+    private final DepositCreditService depositCreditService;
+    private final TokenRegistry tokenRegistry;
+
+    /**
+     * Maximum number of balance lookups in flight against the blockchain node at any time.
+     * A value of 1 degrades to the old one-wallet-at-a-time behaviour.
+     */
+    @Value("${deposit.watcher.max-concurrency:32}")
+    private int maxConcurrency;
+
+    /**
+     * Number of native-coin wallets whose balances are fetched with one JSON-RPC batch request.
+     */
+    @Value("${deposit.watcher.batch-size:100}")
+    private int batchSize;
+
+    /**
+     * Number of wallets of the same ERC-20 token whose balances are fetched with one aggregated call.
+     */
+    @Value("${deposit.watcher.token-batch-size:500}")
+    private int tokenBatchSize;
+
+    /**
+     * Number of wallet rows loaded from the database at a time.
+     */
+    @Value("${deposit.watcher.page-size:5000}")
+    private int pageSize;
 
     @Autowired
     public DepositWatcherService(BlockchainService blockchainService,
                                   WalletBalanceRepository walletBalanceRepository,
-                                  UserBalanceService userBalanceService,
-                                  TransactionLogService transactionLogService,
-                                  TokenRepository tokenRepository) {
+                                  DepositCreditService depositCreditService,
+                                  TokenRegistry tokenRegistry) {
         this.blockchainService = blockchainService;
         this.walletBalanceRepository = walletBalanceRepository;
-        this.userBalanceService = userBalanceService;
-        this.transactionLogService = transactionLogService;
-        this.tokenRepository = tokenRepository;
+        this.depositCreditService = depositCreditService;
+        this.tokenRegistry = tokenRegistry;
     }
 
 
+    /**
+     * Checks all tracked wallets. Balance lookups are fanned out over virtual threads, capped at
+     * {@code deposit.watcher.max-concurrency} concurrent RPC calls, and every detected deposit is committed
+     * in its own short transaction by {@link DepositCreditService}; no transaction spans the whole cycle.
+     * Native ETH balances are fetched {@code deposit.watcher.batch-size} wallets at a time through
+     * JSON-RPC batch requests; ERC-20 wallets are grouped by token and fetched
+     * {@code deposit.watcher.token-batch-size} at a time through {@link BlockchainService#getTokenBalances}.
+     */
     @Scheduled(fixedDelayString = "${deposit.watcher.fixed-delay-ms:60000}")
-    @Transactional
     public void pollBlockchain() {
         Instant start = Instant.now();
-        List<WalletBalance> trackedWallets = walletBalanceRepository.findAll();
+        Semaphore rpcPermits = new Semaphore(Math.max(1, maxConcurrency));
+        int pageLimit = Math.max(1, pageSize);
+        long afterId = 0;
+        int polled = 0;
+        List<WalletBalance> page;
+        // Wallets are read page by page (keyset on id) so that only one page of entities is in memory
+        do {
+            page = walletBalanceRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(pageLimit));
+            if (page.isEmpty()) {
+                break;
+            }
+            pollPage(page, rpcPermits);
+            afterId = page.get(page.size() - 1).getId();
+            polled += page.size();
+        } while (page.size() == pageLimit);
+
+        log.debug("DepositWatcher polled {} wallet balances in {} ms", polled, Duration.between(start, Instant.now()).toMillis());
+    }
+
+    private void pollPage(List<WalletBalance> trackedWallets, Semaphore rpcPermits) {
         log.trace("DepositWatcher polling %d wallet balances".formatted(trackedWallets.size()));
 
-        trackedWallets.forEach(this::checkWallet);
+        List<WalletBalance> nativeWallets = new ArrayList<>();
+        Map<String, List<WalletBalance>> tokenWallets = new HashMap<>();
+        for (WalletBalance walletBalance : trackedWallets) {
+            if (isNative(walletBalance)) {
+                nativeWallets.add(walletBalance);
+            } else {
+                tokenWallets.computeIfAbsent(walletBalance.getTokenContractAddress().toLowerCase(), k -> new ArrayList<>())
+                        .add(walletBalance);
+            }
+        }
 
-        log.debug("DepositWatcher finished in {} ms", Duration.between(start, Instant.now()).toMillis());
+        int chunkSize = Math.max(1, batchSize);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int from = 0; from < nativeWallets.size(); from += chunkSize) {
+                List<WalletBalance> chunk = nativeWallets.subList(from, Math.min(from + chunkSize, nativeWallets.size()));
+                executor.submit(() -> checkNativeWallets(chunk, rpcPermits));
+            }
+            int tokenChunkSize = Math.max(1, tokenBatchSize);
+            for (Map.Entry<String, List<WalletBalance>> entry : tokenWallets.entrySet()) {
+                Optional<Token> token = tokenRegistry.findByContractAddress(entry.getKey());
+                if (token.isEmpty()) {
+                    log.warn("Cannot map token for contract '{}' – skipping {} wallets", entry.getKey(), entry.getValue().size());
+                    continue;
+                }
+                List<WalletBalance> wallets = entry.getValue();
+                for (int from = 0; from < wallets.size(); from += tokenChunkSize) {
+                    List<WalletBalance> chunk = wallets.subList(from, Math.min(from + tokenChunkSize, wallets.size()));
+                    executor.submit(() -> checkTokenWallets(token.get(), chunk, rpcPermits));
+                }
+            }
+        } // close() waits for every wallet of this page to be checked
     }
 
+    private void checkNativeWallets(List<WalletBalance> wallets, Semaphore rpcPermits) {
+        checkWallets(wallets, rpcPermits, blockchainService::getNativeBalances, "native");
+    }
+
+    private void checkTokenWallets(Token token, List<WalletBalance> wallets, Semaphore rpcPermits) {
+        checkWallets(wallets, rpcPermits, addresses -> blockchainService.getTokenBalances(token, addresses), token.getSymbol());
+    }
 
-    private void checkWallet(WalletBalance walletBalance) {
+    private void checkWallets(List<WalletBalance> wallets, Semaphore rpcPermits,
+                              Function<List<String>, Map<String, BigDecimal>> balanceLookup, String kind) {
+        Map<String, BigDecimal> balances;
+        try {
+            List<String> addresses = wallets.stream().map(WalletBalance::getWalletAddress).toList();
+            rpcPermits.acquire();
+            try {
+                balances = balanceLookup.apply(addresses);
+            } finally {
+                rpcPermits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            log.error("Error while checking batch of {} {} wallets: {}", wallets.size(), kind, e.getMessage(), e);
+            return;
+        }
+
+        for (WalletBalance walletBalance : wallets) {
+            BigDecimal currentOnChain = balances.get(walletBalance.getWalletAddress());
+            if (currentOnChain != null) {
+                processBalance(walletBalance, currentOnChain);
+            }
+        }
+    }
+
+    private void processBalance(WalletBalance walletBalance, BigDecimal currentOnChain) {
         try {
-            BigDecimal currentOnChain = fetchOnChainBalance(walletBalance);
             BigDecimal lastKnown = walletBalance.getBalance() == null ? BigDecimal.ZERO : walletBalance.getBalance();
 
             // Only act on increases (new deposits)
             if (currentOnChain.compareTo(lastKnown) > 0) {
                 BigDecimal depositAmount = currentOnChain.subtract(lastKnown);
-                handleDeposit(walletBalance, depositAmount);
-
-                walletBalance.setBalance(currentOnChain);
-                walletBalanceRepository.save(walletBalance);
+                handleDeposit(walletBalance, depositAmount, currentOnChain);
             }
         } catch (Exception e) {
             log.error("Error while checking wallet {} / {}: {}", walletBalance.getWalletAddress(), walletBalance.getTokenContractAddress(), e.getMessage(), e);
         }
     }
 
-    private BigDecimal fetchOnChainBalance(WalletBalance wb) {
-        String tokenContract = wb.getTokenContractAddress();
-        String wallet = wb.getWalletAddress();
-
-        if (tokenContract == null || tokenContract.isBlank()) {
-            // Native coin (ETH)
-            return blockchainService.getNativeBalance(wallet);
-        }
-        return blockchainService.getTokenBalance(tokenContract, wallet);
+    private static boolean isNative(WalletBalance wb) {
+        return wb.getTokenContractAddress() == null || wb.getTokenContractAddress().isBlank();
     }
 
-    private void handleDeposit(WalletBalance wb, BigDecimal amount) {
+    private void handleDeposit(WalletBalance wb, BigDecimal amount, BigDecimal newOnChainBalance) {
         Long userId = wb.getUserId();
-        if (userId == null) {
-            log.warn("Wallet {} has no associated user – skipping deposit credit", wb.getWalletAddress());
-            return;
-        }
         String tokenContract = wb.getTokenContractAddress();
 
         Optional<Token> tokenOpt;
         if (tokenContract == null || tokenContract.isBlank()) {
-            tokenOpt = tokenRepository.findBySymbol("ETH");
+            tokenOpt = tokenRegistry.findBySymbol("ETH");
         } else {
-            tokenOpt = tokenRepository.findByContractAddress(tokenContract);
+            tokenOpt = tokenRegistry.findByContractAddress(tokenContract);
         }
 
-        if (tokenOpt.isEmpty()) {
-            log.warn("Cannot map token for contract '{}' – skipping deposit", tokenContract);
+        if (userId == null || tokenOpt.isEmpty()) {
+            if (userId == null) {
+                log.warn("Wallet {} has no associated user – skipping deposit credit", wb.getWalletAddress());
+            } else {
+                log.warn("Cannot map token for contract '{}' – skipping deposit", tokenContract);
+            }
+            wb.setBalance(newOnChainBalance);
+            walletBalanceRepository.save(wb);
             return;
         }
-        String tokenSymbol = tokenOpt.get().getSymbol();
-
-        log.info("Detected deposit → user={} token={} amount={} wallet={}", userId, tokenSymbol, amount, wb.getWalletAddress());
-
-        userBalanceService.addToBalance(userId, tokenSymbol, amount);
 
         String pseudoTxHash = "SIMULATED_DEPOSIT_" + UUID.randomUUID();
-        transactionLogService.logDeposit(userId, tokenSymbol, amount, wb.getWalletAddress(), pseudoTxHash);
+        depositCreditService.creditDeposit(wb, tokenOpt.get(), amount, newOnChainBalance, pseudoTxHash);
     }
 
     @PostConstruct
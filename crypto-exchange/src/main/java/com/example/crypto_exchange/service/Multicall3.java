@@ -0,0 +1,104 @@
+package com.example.crypto_exchange.service;
+
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ABI codec for Multicall3's {@code aggregate3((address,bool,bytes)[])}, which executes many read-only
+ * contract calls inside a single {@code eth_call}.
+ *
+ * <p>Multicall3 is deployed at the same address on practically every EVM chain
+ * ({@link #DEFAULT_ADDRESS}). Only the one function we need is encoded here, by hand, to avoid the
+ * dynamic-struct support of the web3j ABI module.</p>
+ */
+final class Multicall3 {
+
+    static final String DEFAULT_ADDRESS = "0xcA11bde05977b3631167028862bE2a173976CA11";
+
+    private static final String AGGREGATE3_SELECTOR =
+            Hash.sha3String("aggregate3((address,bool,bytes)[])").substring(2, 10);
+
+    private static final int WORD_HEX = 64;
+
+    /**
+     * A call to execute: {@code callData} is the hex encoded calldata for {@code target}.
+     */
+    record Call(String target, String callData) {
+    }
+
+    /**
+     * Outcome of one call; {@code returnData} is hex without prefix and only meaningful on success.
+     */
+    record Result(boolean success, String returnData) {
+    }
+
+    private Multicall3() {
+    }
+
+    /**
+     * Encode an {@code aggregate3} call in which every sub-call is allowed to fail individually.
+     */
+    static String encodeAggregate3(List<Call> calls) {
+        List<String> tuples = new ArrayList<>(calls.size());
+        for (Call call : calls) {
+            String data = Numeric.cleanHexPrefix(call.callData());
+            int dataBytes = data.length() / 2;
+            StringBuilder tuple = new StringBuilder();
+            tuple.append(word(Numeric.toBigInt(call.target())));
+            tuple.append(word(BigInteger.ONE)); // allowFailure
+            tuple.append(word(BigInteger.valueOf(3 * 32))); // offset of callData within the tuple
+            tuple.append(word(BigInteger.valueOf(dataBytes)));
+            tuple.append(data);
+            tuple.append("0".repeat(padding(data.length())));
+            tuples.add(tuple.toString());
+        }
+
+        StringBuilder encoded = new StringBuilder("0x").append(AGGREGATE3_SELECTOR);
+        encoded.append(word(BigInteger.valueOf(32))); // offset of the calls array
+        encoded.append(word(BigInteger.valueOf(calls.size())));
+        long offset = 32L * calls.size();
+        for (String tuple : tuples) {
+            encoded.append(word(BigInteger.valueOf(offset)));
+            offset += tuple.length() / 2;
+        }
+        tuples.forEach(encoded::append);
+        return encoded.toString();
+    }
+
+    /**
+     * Decode the {@code (bool success, bytes returnData)[]} returned by {@code aggregate3}.
+     */
+    static List<Result> decodeAggregate3(String returnValue) {
+        String hex = Numeric.cleanHexPrefix(returnValue);
+        int array = readInt(hex, 0) * 2;
+        int count = readInt(hex, array);
+        int elements = array + WORD_HEX;
+
+        List<Result> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int tuple = elements + readInt(hex, elements + i * WORD_HEX) * 2;
+            boolean success = readInt(hex, tuple) != 0;
+            int data = tuple + readInt(hex, tuple + WORD_HEX) * 2;
+            int length = readInt(hex, data) * 2;
+            results.add(new Result(success, hex.substring(data + WORD_HEX, data + WORD_HEX + length)));
+        }
+        return results;
+    }
+
+    private static String word(BigInteger value) {
+        return Numeric.toHexStringNoPrefixZeroPadded(value, WORD_HEX);
+    }
+
+    private static int padding(int hexLength) {
+        int remainder = hexLength % WORD_HEX;
+        return remainder == 0 ? 0 : WORD_HEX - remainder;
+    }
+
+    private static int readInt(String hex, int position) {
+        return new BigInteger(hex.substring(position, position + WORD_HEX), 16).intValueExact();
+    }
+}
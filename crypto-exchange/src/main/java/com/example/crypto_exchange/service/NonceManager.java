@@ -0,0 +1,194 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.entity.HotWalletNonce;
+import com.example.crypto_exchange.entity.TransactionLog;
+import com.example.crypto_exchange.repository.HotWalletNonceRepository;
+import com.example.crypto_exchange.repository.TransactionLogRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out nonces of the exchange hot wallet without asking the node for every transaction.
+ *
+ * <p>The node is asked once, when the first nonce is reserved: signing continues from the higher of its
+ * pending transaction count and the persisted high-water mark ({@link HotWalletNonce}). After that
+ * {@link #reserve} is an in-memory atomic increment and safe to call from many threads. Nonces of
+ * transactions that were never accepted are {@link #release released} and handed out again first, so the
+ * sequence stays gap-free.</p>
+ *
+ * <p>{@link #reconcile} compares the sequence with the node again: it skips nonces that were used outside
+ * this instance (a replaced transaction, another sender on the same key) and repairs the nonces that were
+ * handed out but are not on the node, each of which would otherwise block every later transaction: a nonce
+ * that no broadcast withdrawal holds is re-issued, and a withdrawal that holds one (its broadcast failed, or
+ * the node dropped it from its pool) is broadcast again from its stored raw transaction. Only one instance
+ * may sign for a hot wallet.</p>
+ */
+@Slf4j
+@Service
+public class NonceManager {
+
+    private final Web3j web3j;
+    private final HotWalletNonceRepository nonceRepository;
+    private final TransactionLogRepository transactionLogRepository;
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    /**
+     * Next nonce never handed out before, -1 until synchronised
+     */
+    private final AtomicLong next = new AtomicLong(-1);
+    private final ConcurrentSkipListSet<Long> released = new ConcurrentSkipListSet<>();
+    private volatile String address;
+    private long persisted = -1;
+
+    public NonceManager(Web3j web3j, HotWalletNonceRepository nonceRepository,
+                        TransactionLogRepository transactionLogRepository) {
+        this.web3j = web3j;
+        this.nonceRepository = nonceRepository;
+        this.transactionLogRepository = transactionLogRepository;
+    }
+
+    /**
+     * Reserve the next nonce for a transaction from {@code walletAddress}.
+     */
+    public long reserve(String walletAddress) throws IOException {
+        if (next.get() < 0) {
+            synchronise(walletAddress);
+        } else if (!walletAddress.equalsIgnoreCase(address)) {
+            throw new IllegalStateException("Nonces are managed for " + address + ", not " + walletAddress);
+        }
+        Long reused = released.pollFirst();
+        return reused != null ? reused : next.getAndIncrement();
+    }
+
+    /**
+     * Give back a reserved nonce whose transaction will not reach the node.
+     */
+    public void release(long nonce) {
+        if (nonce < next.get()) {
+            released.add(nonce);
+        }
+    }
+
+    /**
+     * Persist the high-water mark. Call after the signed transactions are stored and before they are broadcast.
+     */
+    public void checkpoint() {
+        syncLock.lock();
+        try {
+            long current = next.get();
+            if (address != null && current > persisted) {
+                nonceRepository.save(new HotWalletNonce(address, current));
+                persisted = current;
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Line the sequence up with the node's pending transaction count again. Must not run while a
+     * reserved nonce is signed but not yet stored with its withdrawal, as that nonce would look unused.
+     */
+    public void reconcile() throws IOException {
+        String walletAddress = address;
+        if (walletAddress == null) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            fillGaps(pendingCount(walletAddress));
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void synchronise(String walletAddress) throws IOException {
+        syncLock.lock();
+        try {
+            if (next.get() >= 0) {
+                return;
+            }
+            long onNode = pendingCount(walletAddress);
+            persisted = nonceRepository.findById(walletAddress).map(HotWalletNonce::getNextNonce).orElse(-1L);
+            address = walletAddress;
+            long start = Math.max(onNode, persisted);
+            log.info("Hot wallet {} continues at nonce {} (node {}, persisted {})", walletAddress, start, onNode, persisted);
+            reissueUnused(onNode, start);
+            // Publish last: callers that see it reserve right away, and their nonces are not stored yet
+            next.set(start);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void fillGaps(long onNode) {
+        released.headSet(onNode).clear();
+        long current = next.get();
+        if (onNode > current) {
+            log.warn("Hot wallet {} has used nonces up to {} outside the exchange, skipping ahead from {}",
+                    address, onNode - 1, current);
+            next.accumulateAndGet(onNode, Math::max);
+            return;
+        }
+        reissueUnused(onNode, current);
+    }
+
+    /**
+     * Hand out again the nonces in {@code [onNode, current)} that no broadcast withdrawal holds, and broadcast
+     * the withdrawals holding the others again
+     */
+    private void reissueUnused(long onNode, long current) {
+        if (onNode >= current) {
+            return;
+        }
+        Set<Long> inFlight = new HashSet<>();
+        for (TransactionLog withdrawal : transactionLogRepository.findInFlightWithdrawals(onNode, current)) {
+            inFlight.add(withdrawal.getNonce());
+            rebroadcast(withdrawal);
+        }
+        for (long nonce = onNode; nonce < current; nonce++) {
+            if (!inFlight.contains(nonce) && released.add(nonce)) {
+                log.warn("Nonce {} of hot wallet {} is not on the node and not in flight, reissuing it", nonce, address);
+            }
+        }
+    }
+
+    /**
+     * Send a signed withdrawal the node does not count as pending once more. The bytes are unchanged, so
+     * the transaction hash stays the same and a node that has it after all answers "already known".
+     */
+    private void rebroadcast(TransactionLog withdrawal) {
+        if (withdrawal.getRawTransaction() == null) {
+            log.warn("Withdrawal {} holds nonce {} which is not on the node, but its raw transaction was not kept",
+                    withdrawal.getLogId(), withdrawal.getNonce());
+            return;
+        }
+        try {
+            EthSendTransaction response = web3j.ethSendRawTransaction(withdrawal.getRawTransaction()).send();
+            if (response.hasError()) {
+                log.warn("Rebroadcast of withdrawal {} (nonce {}) answered: {}",
+                        withdrawal.getLogId(), withdrawal.getNonce(), response.getError().getMessage());
+            } else {
+                log.warn("Withdrawal {} (nonce {}) was not on the node, broadcast it again",
+                        withdrawal.getLogId(), withdrawal.getNonce());
+            }
+        } catch (IOException e) {
+            log.warn("Rebroadcast of withdrawal {} (nonce {}) failed: {}", withdrawal.getLogId(), withdrawal.getNonce(), e.getMessage());
+        }
+    }
+
+    private long pendingCount(String walletAddress) throws IOException {
+        return web3j.ethGetTransactionCount(walletAddress, DefaultBlockParameterName.PENDING)
+                .send().getTransactionCount().longValueExact();
+    }
+}
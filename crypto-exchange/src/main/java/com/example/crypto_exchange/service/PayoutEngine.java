@@ -0,0 +1,261 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.entity.Token;
+import com.example.crypto_exchange.entity.TransactionLog;
+import com.example.crypto_exchange.entity.TransactionStatus;
+import com.example.crypto_exchange.exception.WithdrawException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.TransactionEncoder;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pays out queued withdrawals (see {@link WithdrawalQueue}).
+ *
+ * <p>Every cycle takes up to {@code payout.engine.batch-size} queued withdrawals, signs them locally with
+ * nonces from the {@link NonceManager}, records nonce and hash, and broadcasts all of them at once with
+ * {@code eth_sendRawTransaction}; the {@link ReceiptTracker} follows them from there. Every {@code payout.nonce.reconcile-interval-ms} the nonce sequence is
+ * compared with the node. Exactly one instance per hot wallet may run the engine
+ * ({@code payout.engine.enabled}).</p>
+ *
+ * <p>With the placeholder {@code exchange.wallet.private-key} nothing is sent: queued withdrawals are
+ * completed with a mock hash, as before.</p>
+ */
+@Slf4j
+@Service
+public class PayoutEngine {
+
+    static final String MOCK_PRIVATE_KEY = "dummy_private_key";
+    private static final BigInteger NATIVE_TRANSFER_GAS = BigInteger.valueOf(21_000);
+
+    private final WithdrawalQueue withdrawalQueue;
+    private final TokenRegistry tokenRegistry;
+    private final Web3j web3j;
+    private final CredentialsFactory credentialsFactory;
+    private final NonceManager nonceManager;
+    private final ReceiptTracker receiptTracker;
+    private final Map<Long, CompletableFuture<String>> submissionWaiters = new ConcurrentHashMap<>();
+
+    @Value("${exchange.wallet.private-key:" + MOCK_PRIVATE_KEY + "}")
+    private String exchangeWalletPrivateKey = MOCK_PRIVATE_KEY;
+
+    @Value("${payout.engine.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${payout.engine.batch-size:200}")
+    private int batchSize = 200;
+
+    @Value("${blockchain.chain-id:1}")
+    private long chainId = 1;
+
+    @Value("${payout.gas-limit.erc20:100000}")
+    private long erc20GasLimit = 100_000;
+
+    @Value("${payout.nonce.reconcile-interval-ms:30000}")
+    private long reconcileIntervalMs = 30_000;
+
+    private Credentials credentials;
+    private long lastReconcile = System.currentTimeMillis();
+
+    public PayoutEngine(WithdrawalQueue withdrawalQueue, TokenRegistry tokenRegistry, Web3j web3j,
+                        CredentialsFactory credentialsFactory, NonceManager nonceManager,
+                        ReceiptTracker receiptTracker) {
+        this.withdrawalQueue = withdrawalQueue;
+        this.tokenRegistry = tokenRegistry;
+        this.web3j = web3j;
+        this.credentialsFactory = credentialsFactory;
+        this.nonceManager = nonceManager;
+        this.receiptTracker = receiptTracker;
+    }
+
+    /**
+     * Future completed with the transaction hash once the withdrawal has been broadcast, or exceptionally
+     * with a {@link WithdrawException} if it failed before that.
+     */
+    public CompletableFuture<String> awaitSubmission(Long logId) {
+        CompletableFuture<String> waiter = submissionWaiters.computeIfAbsent(logId, id -> new CompletableFuture<>());
+        // The engine may have picked the withdrawal up before the waiter was registered
+        withdrawalQueue.find(logId).ifPresent(withdrawal -> {
+            if (withdrawal.getStatus() == TransactionStatus.FAILED) {
+                failWaiter(logId, withdrawal.getErrorMessage());
+            } else if (withdrawal.getTxHash() != null) {
+                submitted(logId, withdrawal.getTxHash());
+            }
+        });
+        return waiter;
+    }
+
+    @Scheduled(fixedDelayString = "${payout.engine.fixed-delay-ms:1000}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            submitQueued();
+            if (System.currentTimeMillis() - lastReconcile >= reconcileIntervalMs) {
+                lastReconcile = System.currentTimeMillis();
+                nonceManager.reconcile();
+            }
+        } catch (Exception e) {
+            log.error("Payout cycle failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sign and broadcast one batch of queued withdrawals.
+     * @return the number of withdrawals taken from the queue
+     */
+    int submitQueued() throws Exception {
+        List<TransactionLog> queued = withdrawalQueue.queued(batchSize);
+        if (queued.isEmpty()) {
+            return 0;
+        }
+        if (MOCK_PRIVATE_KEY.equals(exchangeWalletPrivateKey)) {
+            for (TransactionLog withdrawal : queued) {
+                String mockHash = "0x" + System.currentTimeMillis() + "mock_tx_hash_for_testing";
+                withdrawalQueue.complete(withdrawal, mockHash);
+                submitted(withdrawal.getLogId(), mockHash);
+            }
+            return queued.size();
+        }
+
+        Credentials wallet = credentials();
+        BigInteger gasPrice = web3j.ethGasPrice().send().getGasPrice();
+        List<TransactionLog> signed = new ArrayList<>(queued.size());
+        List<String> rawTransactions = new ArrayList<>(queued.size());
+        for (TransactionLog withdrawal : queued) {
+            try {
+                RawTransaction transaction = toRawTransaction(withdrawal, nonceManager.reserve(wallet.getAddress()), gasPrice);
+                String raw = Numeric.toHexString(TransactionEncoder.signMessage(transaction, chainId, wallet));
+                withdrawal.setNonce(transaction.getNonce().longValueExact());
+                withdrawal.setTxHash(Hash.sha3(raw));
+                withdrawal.setRawTransaction(raw);
+                withdrawal.setFromAddress(wallet.getAddress());
+                signed.add(withdrawal);
+                rawTransactions.add(raw);
+            } catch (RuntimeException e) {
+                // Cannot be signed (unknown token, more decimals than the token has): the nonce was not used
+                releaseNonce(withdrawal.getNonce());
+                withdrawal.setNonce(null);
+                failed(withdrawal, "Cannot sign withdrawal: " + e.getMessage());
+            }
+        }
+        withdrawalQueue.markSigned(signed);
+        nonceManager.checkpoint();
+
+        List<CompletableFuture<EthSendTransaction>> broadcasts = new ArrayList<>(signed.size());
+        for (String raw : rawTransactions) {
+            broadcasts.add(web3j.ethSendRawTransaction(raw).sendAsync());
+        }
+        for (int i = 0; i < signed.size(); i++) {
+            handleBroadcast(signed.get(i), broadcasts.get(i));
+        }
+        receiptTracker.wakeUp();
+        log.info("Broadcast {} withdrawals", signed.size());
+        return queued.size();
+    }
+
+    private void handleBroadcast(TransactionLog withdrawal, CompletableFuture<EthSendTransaction> broadcast) {
+        EthSendTransaction response;
+        try {
+            response = broadcast.join();
+        } catch (RuntimeException e) {
+            // The node may or may not have the transaction. It stays signed under its nonce and hash, and the
+            // reconcile forced for the next cycle broadcasts the stored bytes again if the node lacks them
+            log.warn("Broadcast of withdrawal {} (nonce {}) failed, retrying with the next reconcile: {}",
+                    withdrawal.getLogId(), withdrawal.getNonce(), e.getMessage());
+            lastReconcile = 0;
+            submitted(withdrawal.getLogId(), withdrawal.getTxHash());
+            return;
+        }
+        if (!response.hasError()) {
+            submitted(withdrawal.getLogId(), withdrawal.getTxHash());
+            return;
+        }
+
+        String error = response.getError().getMessage();
+        String normalized = error == null ? "" : error.toLowerCase(Locale.ROOT);
+        if (normalized.contains("already known") || normalized.contains("known transaction")) {
+            submitted(withdrawal.getLogId(), withdrawal.getTxHash());
+        } else if (normalized.contains("nonce too low")) {
+            // Another sender used the wallet: skip ahead to the node's nonce and sign anew next cycle
+            log.warn("Nonce {} of withdrawal {} is already used, resynchronising", withdrawal.getNonce(), withdrawal.getLogId());
+            withdrawalQueue.requeue(withdrawal);
+            try {
+                nonceManager.reconcile();
+            } catch (IOException e) {
+                log.warn("Nonce resynchronisation failed: {}", e.getMessage());
+            }
+        } else {
+            releaseNonce(withdrawal.getNonce());
+            failed(withdrawal, "Rejected by node: " + error);
+        }
+    }
+
+    private RawTransaction toRawTransaction(TransactionLog withdrawal, long nonce, BigInteger gasPrice) {
+        withdrawal.setNonce(nonce);
+        Token token = tokenRegistry.findById(withdrawal.getTokenId())
+                .orElseThrow(() -> new IllegalStateException("Unknown token " + withdrawal.getTokenId()));
+        BigInteger units = withdrawal.getAmount().movePointRight(token.getDecimals()).toBigIntegerExact();
+        if (token.getContractAddress() == null || token.getContractAddress().isBlank()) {
+            return RawTransaction.createEtherTransaction(BigInteger.valueOf(nonce), gasPrice, NATIVE_TRANSFER_GAS, withdrawal.getToAddress(), units);
+        }
+        String transfer = FunctionEncoder.encode(new Function("transfer",
+                List.of(new Address(withdrawal.getToAddress()), new Uint256(units)), List.of()));
+        return RawTransaction.createTransaction(BigInteger.valueOf(nonce), gasPrice, BigInteger.valueOf(erc20GasLimit),
+                token.getContractAddress(), transfer);
+    }
+
+    private void releaseNonce(Long nonce) {
+        if (nonce != null) {
+            nonceManager.release(nonce);
+        }
+    }
+
+    private Credentials credentials() {
+        if (credentials == null) {
+            credentials = credentialsFactory.create(exchangeWalletPrivateKey);
+        }
+        return credentials;
+    }
+
+    private void submitted(Long logId, String txHash) {
+        CompletableFuture<String> waiter = submissionWaiters.remove(logId);
+        if (waiter != null) {
+            waiter.complete(txHash);
+        }
+    }
+
+    private void failed(TransactionLog withdrawal, String errorMessage) {
+        String message = errorMessage.length() > 1000 ? errorMessage.substring(0, 1000) : errorMessage;
+        withdrawalQueue.fail(withdrawal, message);
+        failWaiter(withdrawal.getLogId(), message);
+    }
+
+    private void failWaiter(Long logId, String errorMessage) {
+        CompletableFuture<String> waiter = submissionWaiters.remove(logId);
+        if (waiter != null) {
+            waiter.completeExceptionally(new WithdrawException("WITHDRAWAL_FAILED", errorMessage));
+        }
+    }
+}
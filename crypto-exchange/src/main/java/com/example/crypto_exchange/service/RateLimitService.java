@@ -0,0 +1,84 @@
+package com.example.crypto_exchange.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.Refill;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Per-user, per-endpoint token buckets.
+ *
+ * <p>Each (user, endpoint) pair gets its own Bucket4j bucket, so one client exhausting its quota does
+ * not throttle anybody else. Buckets live in a Caffeine cache bounded by {@code rate-limit.max-buckets}
+ * and dropped after {@link #REFILL_PERIOD} without requests: by then the bucket would be full again, so
+ * memory follows the number of active users. Lookups of existing buckets and the buckets themselves
+ * (Bucket4j's default lock-free synchronization) do not take locks.</p>
+ */
+@Slf4j
+@Service
+public class RateLimitService {
+
+    public enum Endpoint {
+        DEPOSIT, TRANSFER, WITHDRAW
+    }
+
+    static final Duration REFILL_PERIOD = Duration.ofMinutes(1);
+
+    private record BucketKey(String user, Endpoint endpoint) {
+    }
+
+    private final Map<Endpoint, Bandwidth> limits = new EnumMap<>(Endpoint.class);
+    private final Cache<BucketKey, Bucket> buckets;
+
+    public RateLimitService(@Value("${rate-limit.deposit.requests-per-minute:60}") long depositPerMinute,
+                            @Value("${rate-limit.transfer.requests-per-minute:60}") long transferPerMinute,
+                            @Value("${rate-limit.withdraw.requests-per-minute:10}") long withdrawPerMinute,
+                            @Value("${rate-limit.max-buckets:100000}") long maxBuckets) {
+        limits.put(Endpoint.DEPOSIT, perMinute(depositPerMinute));
+        limits.put(Endpoint.TRANSFER, perMinute(transferPerMinute));
+        limits.put(Endpoint.WITHDRAW, perMinute(withdrawPerMinute));
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(REFILL_PERIOD)
+                .build();
+        log.info("Rate limits per user and minute: deposit={}, transfer={}, withdraw={} (at most {} buckets)",
+                depositPerMinute, transferPerMinute, withdrawPerMinute, maxBuckets);
+    }
+
+    /**
+     * Take one token from the user's bucket for the endpoint.
+     *
+     * @return the probe; {@link ConsumptionProbe#isConsumed()} is false when the limit is exhausted
+     */
+    public ConsumptionProbe tryConsume(String user, Endpoint endpoint) {
+        return buckets.get(new BucketKey(user, endpoint), key -> newBucket(key.endpoint()))
+                .tryConsumeAndReturnRemaining(1);
+    }
+
+    /**
+     * Approximate number of buckets currently held
+     */
+    public long activeBuckets() {
+        return buckets.estimatedSize();
+    }
+
+    private Bucket newBucket(Endpoint endpoint) {
+        return Bucket.builder().addLimit(limits.get(endpoint)).build();
+    }
+
+    private static Bandwidth perMinute(long requests) {
+        if (requests <= 0) {
+            throw new IllegalArgumentException("Rate limit must be positive, got " + requests);
+        }
+        return Bandwidth.classic(requests, Refill.greedy(requests, REFILL_PERIOD));
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.entity.TransactionLog;
+import com.example.crypto_exchange.entity.TransactionStatus;
+import com.example.crypto_exchange.exception.WithdrawException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Follows broadcast withdrawals until they are final, from one scheduled poller instead of a blocked
+ * thread per withdrawal.
+ *
+ * <p>Each poll reads the head block and, only when it moved, fetches the receipts of all broadcast
+ * withdrawals in JSON-RPC batches. A withdrawal is completed, or failed and refunded if it reverted, once
+ * its receipt is {@code payout.receipts.confirmations} blocks deep; until then a reorg merely delays it.
+ * A withdrawal without receipt whose nonce the hot wallet had already used by a block that deep was replaced
+ * by another transaction with that nonce and can never be mined: it is failed and refunded. One whose
+ * broadcast was lost is sent again by the {@link NonceManager}. Callers waiting on {@link #awaitFinal} are
+ * answered at the same moment, never before the withdrawal is final. The poll interval starts at {@code payout.receipts.min-interval-ms}, doubles while the head does not move
+ * or nothing is in flight, up to {@code payout.receipts.max-interval-ms}, and drops back when a block
+ * arrives or the {@link PayoutEngine} broadcasts.</p>
+ */
+@Slf4j
+@Service
+public class ReceiptTracker {
+
+    private final WithdrawalQueue withdrawalQueue;
+    private final BlockchainService blockchainService;
+    private final Map<Long, CompletableFuture<String>> finalWaiters = new ConcurrentHashMap<>();
+
+    @Value("${payout.engine.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${payout.receipts.confirmations:12}")
+    private int confirmations = 12;
+
+    @Value("${payout.receipts.batch-size:1000}")
+    private int batchSize = 1000;
+
+    @Value("${payout.receipts.min-interval-ms:1000}")
+    private long minIntervalMs = 1000;
+
+    @Value("${payout.receipts.max-interval-ms:15000}")
+    private long maxIntervalMs = 15_000;
+
+    private volatile long intervalMs = 1000;
+    private volatile long nextPollAt;
+    private long lastHead = -1;
+
+    public ReceiptTracker(WithdrawalQueue withdrawalQueue, BlockchainService blockchainService) {
+        this.withdrawalQueue = withdrawalQueue;
+        this.blockchainService = blockchainService;
+    }
+
+    /**
+     * Future completed with the transaction hash once the withdrawal is completed, {@code confirmations} blocks
+     * deep, or exceptionally with a {@link WithdrawException} once it is failed.
+     */
+    public CompletableFuture<String> awaitFinal(Long logId) {
+        CompletableFuture<String> waiter = finalWaiters.computeIfAbsent(logId, id -> new CompletableFuture<>());
+        // The withdrawal may have been finalised before the waiter was registered
+        withdrawalQueue.find(logId).ifPresent(withdrawal -> {
+            if (withdrawal.getStatus() == TransactionStatus.COMPLETED) {
+                completed(logId, withdrawal.getTxHash());
+            } else if (withdrawal.getStatus() == TransactionStatus.FAILED) {
+                failed(logId, withdrawal.getErrorMessage());
+            }
+        });
+        return waiter;
+    }
+
+    /**
+     * Poll at the shortest interval again, called after new transactions were broadcast.
+     */
+    public void wakeUp() {
+        intervalMs = minIntervalMs;
+        nextPollAt = 0;
+    }
+
+    @Scheduled(fixedDelayString = "${payout.receipts.min-interval-ms:1000}")
+    public void run() {
+        if (!enabled || System.currentTimeMillis() < nextPollAt) {
+            return;
+        }
+        boolean progressed = false;
+        try {
+            progressed = poll();
+        } catch (Exception e) {
+            log.warn("Receipt poll failed: {}", e.getMessage());
+        }
+        intervalMs = progressed ? minIntervalMs : Math.min(Math.max(intervalMs, minIntervalMs) * 2, maxIntervalMs);
+        nextPollAt = System.currentTimeMillis() + intervalMs;
+    }
+
+    /**
+     * Check the receipts of broadcast withdrawals if a new block arrived.
+     * @return whether the head moved since the last poll
+     */
+    boolean poll() {
+        List<TransactionLog> submitted = withdrawalQueue.submitted(batchSize);
+        if (submitted.isEmpty()) {
+            return false;
+        }
+        long head = blockchainService.getLatestBlockNumber();
+        if (head == lastHead) {
+            return false;
+        }
+        Map<String, TransactionReceipt> receipts = blockchainService.getTransactionReceipts(
+                submitted.stream().map(TransactionLog::getTxHash).toList());
+        lastHead = head;
+        int finalised = 0;
+        List<TransactionLog> missing = new ArrayList<>();
+        for (TransactionLog withdrawal : submitted) {
+            TransactionReceipt receipt = receipts.get(withdrawal.getTxHash());
+            if (receipt == null) {
+                missing.add(withdrawal);
+                continue;
+            }
+            if (head - receipt.getBlockNumber().longValueExact() + 1 < confirmations) {
+                continue;
+            }
+            if (receipt.isStatusOK()) {
+                withdrawalQueue.complete(withdrawal, withdrawal.getTxHash());
+                completed(withdrawal.getLogId(), withdrawal.getTxHash());
+            } else {
+                String revertMessage = "Transaction reverted in block " + receipt.getBlockNumber();
+                withdrawalQueue.fail(withdrawal, revertMessage);
+                failed(withdrawal.getLogId(), revertMessage);
+            }
+            finalised++;
+        }
+        finalised += failReplaced(missing, head);
+        log.debug("Block {}: {} of {} broadcast withdrawals mined, {} final",
+                head, receipts.size(), submitted.size(), finalised);
+        return true;
+    }
+
+    /**
+     * Fail the withdrawals without receipt whose nonce was used by a final block.
+     * @return the number of failed withdrawals
+     */
+    private int failReplaced(List<TransactionLog> missing, long head) {
+        long finalBlock = head - confirmations + 1;
+        if (missing.isEmpty() || finalBlock < 0) {
+            return 0;
+        }
+        Map<String, Long> usedNonces = new HashMap<>();
+        List<TransactionLog> replaced = new ArrayList<>();
+        for (TransactionLog withdrawal : missing) {
+            if (withdrawal.getNonce() != null && withdrawal.getFromAddress() != null
+                    && withdrawal.getNonce() < usedNonces.computeIfAbsent(withdrawal.getFromAddress().toLowerCase(Locale.ROOT),
+                            address -> blockchainService.getTransactionCount(address, finalBlock))) {
+                replaced.add(withdrawal);
+            }
+        }
+        if (replaced.isEmpty()) {
+            return 0;
+        }
+        // Ask once more: a receipt that shows up now means the withdrawal was mined after all
+        Map<String, TransactionReceipt> late = blockchainService.getTransactionReceipts(
+                replaced.stream().map(TransactionLog::getTxHash).toList());
+        int failed = 0;
+        for (TransactionLog withdrawal : replaced) {
+            if (late.containsKey(withdrawal.getTxHash())) {
+                continue;
+            }
+            String message = "Nonce " + withdrawal.getNonce() + " was used by another transaction by block " + finalBlock;
+            withdrawalQueue.fail(withdrawal, message);
+            failed(withdrawal.getLogId(), message);
+            failed++;
+        }
+        return failed;
+    }
+
+    private void completed(Long logId, String txHash) {
+        CompletableFuture<String> waiter = finalWaiters.remove(logId);
+        if (waiter != null) {
+            waiter.complete(txHash);
+        }
+    }
+
+    private void failed(Long logId, String errorMessage) {
+        CompletableFuture<String> waiter = finalWaiters.remove(logId);
+        if (waiter != null) {
+            waiter.completeExceptionally(new WithdrawException("WITHDRAWAL_FAILED", errorMessage));
+        }
+    }
+}
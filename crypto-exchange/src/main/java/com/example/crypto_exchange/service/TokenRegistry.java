@@ -0,0 +1,115 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.entity.Token;
+import com.example.crypto_exchange.repository.TokenRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-process cache of the <b>tokens</b> table.
+ *
+ * <p>Tokens are a handful of rows that practically never change, yet every deposit, transfer and
+ * withdrawal needs to resolve one. The registry loads all tokens once at startup into immutable maps
+ * keyed by symbol, lower-cased contract address and id, and swaps in a fresh snapshot on
+ * {@link #refresh()}.</p>
+ *
+ * <p>Nothing in the application writes tokens; they are added to the table directly. The snapshot is
+ * therefore only reloaded at startup and every {@code token.registry.refresh-ms} (5 minutes by default),
+ * so a newly inserted or edited token stays unknown, or stale, for up to that long. Whoever adds a token
+ * and needs it sooner should call {@link #refresh()} afterwards.</p>
+ *
+ * <p>The returned {@link Token} instances are detached snapshots shared between threads and must be
+ * treated as read-only.</p>
+ */
+@Slf4j
+@Component
+public class TokenRegistry {
+
+    private final TokenRepository tokenRepository;
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of(), Map.of());
+
+    public TokenRegistry(TokenRepository tokenRepository) {
+        this.tokenRepository = tokenRepository;
+    }
+
+    @PostConstruct
+    void init() {
+        refresh();
+    }
+
+    /**
+     * Reload all tokens from the database and atomically replace the cached snapshot.
+     */
+    @Scheduled(fixedDelayString = "${token.registry.refresh-ms:300000}",
+               initialDelayString = "${token.registry.refresh-ms:300000}")
+    public void refresh() {
+        List<Token> tokens = tokenRepository.findAll();
+
+        Map<String, Token> bySymbol = new HashMap<>();
+        Map<String, Token> byContract = new HashMap<>();
+        Map<Long, Token> byId = new HashMap<>();
+        for (Token token : tokens) {
+            bySymbol.put(token.getSymbol(), token);
+            byId.put(token.getTokenId(), token);
+            if (token.getContractAddress() != null && !token.getContractAddress().isBlank()) {
+                byContract.put(normalizeAddress(token.getContractAddress()), token);
+            }
+        }
+
+        snapshot = new Snapshot(Map.copyOf(bySymbol), Map.copyOf(byContract), Map.copyOf(byId));
+        log.info("Token registry loaded {} tokens", tokens.size());
+    }
+
+    /**
+     * Find token by symbol (e.g., "ETH", "USDT")
+     */
+    public Optional<Token> findBySymbol(String symbol) {
+        return symbol == null ? Optional.empty() : Optional.ofNullable(snapshot.bySymbol().get(symbol));
+    }
+
+    /**
+     * Find token by its smart-contract address (case-insensitive)
+     */
+    public Optional<Token> findByContractAddress(String contractAddress) {
+        return contractAddress == null
+                ? Optional.empty()
+                : Optional.ofNullable(snapshot.byContract().get(normalizeAddress(contractAddress)));
+    }
+
+    /**
+     * Find token by id
+     */
+    public Optional<Token> findById(Long tokenId) {
+        return tokenId == null ? Optional.empty() : Optional.ofNullable(snapshot.byId().get(tokenId));
+    }
+
+    /**
+     * Check if token exists by id
+     */
+    public boolean existsById(Long tokenId) {
+        return tokenId != null && snapshot.byId().containsKey(tokenId);
+    }
+
+    /**
+     * All known tokens
+     */
+    public List<Token> getAll() {
+        return List.copyOf(snapshot.byId().values());
+    }
+
+    private static String normalizeAddress(String address) {
+        return address.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record Snapshot(Map<String, Token> bySymbol, Map<String, Token> byContract, Map<Long, Token> byId) {
+    }
+}
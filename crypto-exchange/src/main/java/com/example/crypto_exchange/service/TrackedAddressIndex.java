@@ -0,0 +1,275 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.repository.WalletBalanceRepository;
+import com.example.crypto_exchange.repository.WalletBalanceRepository.TrackedWallet;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * In-memory index of the deposit addresses we track, used to match the recipients of on-chain transfers.
+ *
+ * <p>Every address that appears in <b>wallet_balances</b> with an owning user is indexed once, no matter
+ * for how many tokens it is tracked, and maps to the user of the first wallet row seen for it. Rows are
+ * loaded incrementally by id ({@link #refresh()}), so only wallets added since the previous load are read.</p>
+ *
+ * <p>The 20 address bytes and the user id, as an unsigned int, are packed into a primitive open-addressing
+ * table (linear probing, 24 bytes per slot, at most 70% full, capacity a power of two): a million addresses
+ * need 2^21 slots, about 50 MB, and the same table holds up to 1.4 million ({@link #memoryBytes()} reports
+ * the current figure). Users with an id beyond {@link #MAX_USER_ID} are not indexed. With
+ * {@code deposit.scanner.index.off-heap=true} the table lives in a direct buffer outside the Java heap.
+ * Lookups accept an address with or without {@code 0x} or a 32-byte {@code Transfer} topic, parse it in
+ * place and allocate nothing; they may run concurrently with a refresh.</p>
+ */
+@Slf4j
+@Component
+public class TrackedAddressIndex {
+
+    /**
+     * Returned by the lookup methods for addresses that are not tracked.
+     */
+    public static final long NOT_FOUND = -1L;
+
+    /**
+     * Largest user id that fits a slot
+     */
+    public static final long MAX_USER_ID = 0xFFFF_FFFEL;
+
+    // Slot layout: address bytes 0-7, 8-15, then (userId + 1) << 32 | address bytes 16-19; 0 marks a free slot
+    private static final int SLOT_LONGS = 3;
+    private static final long ADDRESS_TAIL = 0xFFFF_FFFFL;
+    private static final double MAX_LOAD = 0.7;
+    private static final int LOAD_PAGE_SIZE = 10_000;
+
+    private final WalletBalanceRepository walletBalanceRepository;
+    private final boolean offHeap;
+    private final StampedLock lock = new StampedLock();
+
+    private LongBuffer table;
+    private int capacity;
+    private int size;
+    private long lastLoadedId;
+
+    public TrackedAddressIndex(WalletBalanceRepository walletBalanceRepository,
+                               @Value("${deposit.scanner.index.off-heap:false}") boolean offHeap,
+                               @Value("${deposit.scanner.index.initial-capacity:1024}") int initialCapacity) {
+        this.walletBalanceRepository = walletBalanceRepository;
+        this.offHeap = offHeap;
+        this.capacity = Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1);
+        this.table = allocate(capacity);
+    }
+
+    /**
+     * Load the wallets created since the previous call (all wallets on the first call).
+     * @return The number of newly indexed addresses
+     */
+    public synchronized int refresh() {
+        int added = 0;
+        List<TrackedWallet> page;
+        do {
+            page = walletBalanceRepository.findTrackedWalletsAfter(lastLoadedId, Limit.of(LOAD_PAGE_SIZE));
+            for (TrackedWallet wallet : page) {
+                added += put(wallet.getWalletAddress(), wallet.getId(), wallet.getUserId()) ? 1 : 0;
+                lastLoadedId = Math.max(lastLoadedId, wallet.getId());
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+
+        if (added > 0) {
+            log.info("Tracked address index: {} new addresses, {} total, {} KB {}",
+                    added, size, memoryBytes() / 1024, offHeap ? "off-heap" : "on-heap");
+        }
+        return added;
+    }
+
+    /**
+     * Check whether an address is tracked.
+     */
+    public boolean contains(CharSequence address) {
+        return userIdOf(address) != NOT_FOUND;
+    }
+
+    /**
+     * Owning user of an address, or {@link #NOT_FOUND}.
+     */
+    public long userIdOf(CharSequence address) {
+        int start = hexStart(address);
+        if (start < 0) {
+            return NOT_FOUND;
+        }
+        long a = parseHex(address, start, 16);
+        long b = parseHex(address, start + 16, 16);
+        long tail = parseHex(address, start + 32, 8);
+
+        long stamp = lock.tryOptimisticRead();
+        long result = probe(a, b, tail);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = probe(a, b, tail);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Number of tracked addresses
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Bytes used by the table
+     */
+    public long memoryBytes() {
+        long stamp = lock.readLock();
+        try {
+            return (long) capacity * SLOT_LONGS * Long.BYTES;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long probe(long a, long b, long tail) {
+        LongBuffer slots = table;
+        int mask = capacity - 1;
+        // A concurrent resize can make capacity and table disagree; the stamp validation discards that read
+        if ((long) (mask + 1) * SLOT_LONGS > slots.capacity()) {
+            return NOT_FOUND;
+        }
+        for (int i = hash(a, b, tail) & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+            int base = i * SLOT_LONGS;
+            long c = slots.get(base + 2);
+            if (c == 0) {
+                return NOT_FOUND;
+            }
+            if ((c & ADDRESS_TAIL) == tail && slots.get(base) == a && slots.get(base + 1) == b) {
+                return (c >>> 32) - 1;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private boolean put(String address, long walletBalanceId, long userId) {
+        int start = hexStart(address);
+        if (start < 0) {
+            log.warn("Ignoring malformed wallet address '{}' (wallet {})", address, walletBalanceId);
+            return false;
+        }
+        if (userId < 0 || userId > MAX_USER_ID) {
+            log.warn("Not indexing wallet {}: user id {} does not fit the address index", walletBalanceId, userId);
+            return false;
+        }
+        long a = parseHex(address, start, 16);
+        long b = parseHex(address, start + 16, 16);
+        long c = (userId + 1) << 32 | parseHex(address, start + 32, 8);
+
+        long stamp = lock.writeLock();
+        try {
+            if (size + 1 > capacity * MAX_LOAD) {
+                resize(capacity << 1);
+            }
+            if (insert(table, capacity, a, b, c)) {
+                size++;
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void resize(int newCapacity) {
+        LongBuffer resized = allocate(newCapacity);
+        for (int i = 0; i < capacity; i++) {
+            int base = i * SLOT_LONGS;
+            long c = table.get(base + 2);
+            if (c != 0) {
+                insert(resized, newCapacity, table.get(base), table.get(base + 1), c);
+            }
+        }
+        table = resized;
+        capacity = newCapacity;
+    }
+
+    private static boolean insert(LongBuffer slots, int capacity, long a, long b, long c) {
+        int mask = capacity - 1;
+        long tail = c & ADDRESS_TAIL;
+        for (int i = hash(a, b, tail) & mask; ; i = (i + 1) & mask) {
+            int base = i * SLOT_LONGS;
+            long slotC = slots.get(base + 2);
+            if (slotC == 0) {
+                slots.put(base, a);
+                slots.put(base + 1, b);
+                slots.put(base + 2, c);
+                return true;
+            }
+            if ((slotC & ADDRESS_TAIL) == tail && slots.get(base) == a && slots.get(base + 1) == b) {
+                return false; // first wallet row wins
+            }
+        }
+    }
+
+    private LongBuffer allocate(int slots) {
+        int longs = Math.multiplyExact(slots, SLOT_LONGS);
+        return offHeap
+                ? ByteBuffer.allocateDirect(Math.multiplyExact(longs, Long.BYTES)).asLongBuffer()
+                : LongBuffer.allocate(longs);
+    }
+
+    private static int hash(long a, long b, long tail) {
+        long h = a * 0x9E3779B97F4A7C15L ^ b * 0xC2B2AE3D27D4EB4FL ^ tail;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * Offset of the 40 hex digits of an address given with or without {@code 0x} prefix, or as a 32-byte
+     * event log topic; -1 if malformed.
+     */
+    private static int hexStart(CharSequence address) {
+        if (address == null) {
+            return -1;
+        }
+        int length = address.length();
+        int start;
+        if (length == 40) {
+            start = 0;
+        } else if ((length == 42 || length == 66) && address.charAt(0) == '0' && (address.charAt(1) == 'x' || address.charAt(1) == 'X')) {
+            start = length - 40;
+        } else {
+            return -1;
+        }
+        for (int i = length == 66 ? 2 : start; i < length; i++) {
+            int digit = Character.digit(address.charAt(i), 16);
+            // The 12 padding bytes of a topic must be zero
+            if (digit < 0 || (i < start && digit != 0)) {
+                return -1;
+            }
+        }
+        return start;
+    }
+
+    private static long parseHex(CharSequence hex, int from, int digits) {
+        long value = 0;
+        for (int i = from; i < from + digits; i++) {
+            value = (value << 4) | Character.digit(hex.charAt(i), 16);
+        }
+        return value;
+    }
+}
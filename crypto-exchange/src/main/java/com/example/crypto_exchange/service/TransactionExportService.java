@@ -0,0 +1,175 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.dto.TransactionLogResponse;
+import com.example.crypto_exchange.entity.TransactionLog;
+import com.example.crypto_exchange.repository.TransactionLogRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Streams transaction history straight to an output stream as CSV or NDJSON.
+ *
+ * <p>Rows are read through a forward-only database cursor ({@link TransactionLogRepository#EXPORT_FETCH_SIZE}
+ * rows per fetch) and every entity is detached once written, so memory use stays constant no matter how
+ * many rows are exported.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TransactionExportService {
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String fileExtension;
+
+        Format(String contentType, String fileExtension) {
+            this.contentType = contentType;
+            this.fileExtension = fileExtension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getFileExtension() {
+            return fileExtension;
+        }
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value);
+            }
+        }
+    }
+
+    private static final String CSV_HEADER = "log_id,transaction_type,user_id,token_id,amount,status,tx_hash," +
+            "from_address,to_address,error_message,created_at";
+
+    private final TransactionLogRepository transactionLogRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Check that an export selects a user, a time range or both.
+     */
+    public static void validateFilter(Long userId, LocalDateTime startTime, LocalDateTime endTime) {
+        if ((startTime == null) != (endTime == null)) {
+            throw new IllegalArgumentException("Both start and end of the time range are required");
+        }
+        if (userId == null && startTime == null) {
+            throw new IllegalArgumentException("Either a user or a time range is required");
+        }
+        if (startTime != null && startTime.isAfter(endTime)) {
+            throw new IllegalArgumentException("Start of the time range must not be after its end");
+        }
+    }
+
+    /**
+     * Write all matching transactions, oldest first, to {@code out}.
+     * @param userId User to export, or {@code null} for all users
+     * @param startTime Start of the time range, or {@code null} together with {@code endTime} for all time
+     * @return The number of exported rows
+     */
+    @Transactional(readOnly = true)
+    public long export(Long userId, LocalDateTime startTime, LocalDateTime endTime, Format format, OutputStream out) throws IOException {
+        validateFilter(userId, startTime, endTime);
+        long rows = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        try (Stream<TransactionLog> logs = open(userId, startTime, endTime)) {
+            if (format == Format.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            Iterator<TransactionLog> iterator = logs.iterator();
+            while (iterator.hasNext()) {
+                TransactionLog logEntry = iterator.next();
+                if (format == Format.CSV) {
+                    writeCsv(writer, logEntry);
+                } else {
+                    writer.write(objectMapper.writeValueAsString(TransactionLogResponse.from(logEntry)));
+                    writer.write('\n');
+                }
+                // Keep the persistence context from accumulating every exported row
+                entityManager.detach(logEntry);
+                if (++rows % TransactionLogRepository.EXPORT_FETCH_SIZE == 0) {
+                    writer.flush();
+                }
+            }
+        }
+        writer.flush();
+        log.info("Exported {} transactions (userId={}, from={}, to={}, format={})", rows, userId, startTime, endTime, format);
+        return rows;
+    }
+
+    private Stream<TransactionLog> open(Long userId, LocalDateTime startTime, LocalDateTime endTime) {
+        if (userId == null) {
+            return transactionLogRepository.streamByTimeRange(startTime, endTime);
+        }
+        if (startTime == null) {
+            return transactionLogRepository.streamByUserId(userId);
+        }
+        return transactionLogRepository.streamByUserIdAndTimeRange(userId, startTime, endTime);
+    }
+
+    private static void writeCsv(Writer writer, TransactionLog logEntry) throws IOException {
+        writer.write(String.valueOf(logEntry.getLogId()));
+        writer.write(',');
+        writer.write(logEntry.getTransactionType().name());
+        writer.write(',');
+        writer.write(String.valueOf(logEntry.getUserId()));
+        writer.write(',');
+        writer.write(String.valueOf(logEntry.getTokenId()));
+        writer.write(',');
+        writer.write(logEntry.getAmount().toPlainString());
+        writer.write(',');
+        writer.write(logEntry.getStatus().name());
+        writer.write(',');
+        writeCsvField(writer, logEntry.getTxHash());
+        writer.write(',');
+        writeCsvField(writer, logEntry.getFromAddress());
+        writer.write(',');
+        writeCsvField(writer, logEntry.getToAddress());
+        writer.write(',');
+        writeCsvField(writer, logEntry.getErrorMessage());
+        writer.write(',');
+        writer.write(logEntry.getCreatedAt().toString());
+        writer.write('\n');
+    }
+
+    /**
+     * Write a free-text field, quoted (RFC 4180) when it contains a separator, quote or line break.
+     */
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -1,11 +1,15 @@
 package com.example.crypto_exchange.service;
 
+import com.example.crypto_exchange.dto.TransactionHistoryPage;
+import com.example.crypto_exchange.dto.TransactionLogResponse;
 import com.example.crypto_exchange.entity.*;
 import com.example.crypto_exchange.repository.TransactionLogRepository;
-import com.example.crypto_exchange.repository.TokenRepository;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -14,20 +18,39 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class TransactionLogService {
     private static final Logger log = LoggerFactory.getLogger(TransactionLogService.class);
 
+    public static final int MAX_HISTORY_PAGE_SIZE = 200;
+
     private final TransactionLogRepository transactionLogRepository;
-    private final TokenRepository tokenRepository;
+    private final TokenRegistry tokenRegistry;
+    private final TransactionLogWriteBehindWriter writeBehindWriter;
+
+    @Value("${transaction-log.write-behind.flush-timeout-ms:5000}")
+    private long flushTimeoutMs = 5000;
 
     @Autowired
     public TransactionLogService(
             TransactionLogRepository transactionLogRepository,
-            TokenRepository tokenRepository) {
+            TokenRegistry tokenRegistry,
+            Optional<TransactionLogWriteBehindWriter> writeBehindWriter) {
         this.transactionLogRepository = transactionLogRepository;
-        this.tokenRepository = tokenRepository;
+        this.tokenRegistry = tokenRegistry;
+        this.writeBehindWriter = writeBehindWriter.orElse(null);
+    }
+
+    @PostConstruct
+    void alignIdSequence() {
+        transactionLogRepository.alignIdSequence()
+                .ifPresent(id -> log.info("Transaction log id sequence moved past existing rows to {}", id));
     }
 
     /**
@@ -35,19 +58,30 @@ public class TransactionLogService {
      */
     @Transactional
     public TransactionLog logDeposit(Long userId, String tokenSymbol, BigDecimal amount, String fromAddress, String txHash) {
-        Token token = tokenRepository.findBySymbol(tokenSymbol)
+        return logDeposit(userId, tokenSymbol, amount, fromAddress, txHash, null);
+    }
+
+    /**
+     * Log an on-chain deposit found at {@code logIndex} of transaction {@code txHash}
+     * (see {@link TransactionLog#getLogIndex()})
+     */
+    @Transactional
+    public TransactionLog logDeposit(Long userId, String tokenSymbol, BigDecimal amount, String fromAddress,
+                                     String txHash, Integer logIndex) {
+        Token token = tokenRegistry.findBySymbol(tokenSymbol)
                 .orElseThrow(() -> new IllegalArgumentException("Token not found: " + tokenSymbol));
 
         TransactionLog logEntry = new TransactionLog();
         logEntry.setTransactionType(TransactionType.DEPOSIT);
         logEntry.setUserId(userId);
-        logEntry.setToken(token);
+        logEntry.setTokenId(token.getTokenId());
         logEntry.setAmount(amount);
         logEntry.setFromAddress(fromAddress);
         logEntry.setTxHash(txHash);
+        logEntry.setLogIndex(logIndex);
         logEntry.setStatus(TransactionStatus.COMPLETED);
 
-        TransactionLog savedLog = transactionLogRepository.save(logEntry);
+        TransactionLog savedLog = persist(logEntry);
         log.info("Deposit logged: userId={}, token={}, amount={}, txHash={}", 
                 userId, tokenSymbol, amount, txHash);
         return savedLog;
@@ -58,19 +92,19 @@ public class TransactionLogService {
      */
     @Transactional
     public TransactionLog logWithdraw(Long userId, String tokenSymbol, BigDecimal amount, String toAddress, String txHash) {
-        Token token = tokenRepository.findBySymbol(tokenSymbol)
+        Token token = tokenRegistry.findBySymbol(tokenSymbol)
                 .orElseThrow(() -> new IllegalArgumentException("Token not found: " + tokenSymbol));
 
         TransactionLog logEntry = new TransactionLog();
         logEntry.setTransactionType(TransactionType.WITHDRAW);
         logEntry.setUserId(userId);
-        logEntry.setToken(token);
+        logEntry.setTokenId(token.getTokenId());
         logEntry.setAmount(amount);
         logEntry.setToAddress(toAddress);
         logEntry.setTxHash(txHash);
         logEntry.setStatus(TransactionStatus.COMPLETED);
 
-        TransactionLog savedLog = transactionLogRepository.save(logEntry);
+        TransactionLog savedLog = persist(logEntry);
         log.info("Withdrawal logged: userId={}, token={}, amount={}, txHash={}", 
                 userId, tokenSymbol, amount, txHash);
         return savedLog;
@@ -81,24 +115,42 @@ public class TransactionLogService {
      */
     @Transactional
     public TransactionLog logTransfer(Long fromUserId, Long toUserId, String tokenSymbol, BigDecimal amount, String txHash) {
-        Token token = tokenRepository.findBySymbol(tokenSymbol)
+        Token token = tokenRegistry.findBySymbol(tokenSymbol)
                 .orElseThrow(() -> new IllegalArgumentException("Token not found: " + tokenSymbol));
 
         TransactionLog logEntry = new TransactionLog();
         logEntry.setTransactionType(TransactionType.TRANSFER);
         logEntry.setUserId(fromUserId); // Log from the sender's perspective
-        logEntry.setToken(token);
+        logEntry.setTokenId(token.getTokenId());
         logEntry.setAmount(amount);
         logEntry.setToAddress(String.valueOf(toUserId)); // Store recipient user ID in toAddress
         logEntry.setTxHash(txHash);
         logEntry.setStatus(TransactionStatus.COMPLETED);
 
-        TransactionLog savedLog = transactionLogRepository.save(logEntry);
+        TransactionLog savedLog = persist(logEntry);
         log.info("Transfer logged: fromUserId={}, toUserId={}, token={}, amount={}, txHash={}", 
                 fromUserId, toUserId, tokenSymbol, amount, txHash);
         return savedLog;
     }
 
+    /**
+     * Log what a user received from one fill of a spot order
+     */
+    @Transactional
+    public TransactionLog logTrade(Long userId, Long orderId, Long tokenId, BigDecimal amount) {
+        TransactionLog logEntry = new TransactionLog();
+        logEntry.setTransactionType(TransactionType.TRADE);
+        logEntry.setUserId(userId);
+        logEntry.setTokenId(tokenId);
+        logEntry.setAmount(amount);
+        logEntry.setOrderId(orderId);
+        logEntry.setStatus(TransactionStatus.COMPLETED);
+
+        TransactionLog savedLog = persist(logEntry);
+        log.debug("Trade logged: userId={}, orderId={}, tokenId={}, amount={}", userId, orderId, tokenId, amount);
+        return savedLog;
+    }
+
     /**
      * Log a failed transaction
      */
@@ -110,23 +162,51 @@ public class TransactionLogService {
             BigDecimal amount,
             String errorMessage) {
         
-        Token token = tokenRepository.findBySymbol(tokenSymbol)
+        Token token = tokenRegistry.findBySymbol(tokenSymbol)
                 .orElseThrow(() -> new IllegalArgumentException("Token not found: " + tokenSymbol));
 
         TransactionLog logEntry = new TransactionLog();
         logEntry.setTransactionType(type);
         logEntry.setUserId(userId);
-        logEntry.setToken(token);
+        logEntry.setTokenId(token.getTokenId());
         logEntry.setAmount(amount);
         logEntry.setStatus(TransactionStatus.FAILED);
         logEntry.setErrorMessage(errorMessage);
 
-        TransactionLog savedLog = transactionLogRepository.save(logEntry);
+        TransactionLog savedLog = persist(logEntry);
         log.error("Failed transaction logged: type={}, userId={}, token={}, amount={}, error={}", 
                 type, userId, tokenSymbol, amount, errorMessage);
         return savedLog;
     }
 
+    /**
+     * Insert a new log entry.
+     *
+     * <p>Entries of deposits, withdrawals, transfers and trades are inserted in the caller's transaction, so they
+     * commit or roll back together with the balance change they record and deposit deduplication sees them
+     * at once. Their ids come from a pooled sequence, so Hibernate inserts them at flush time in JDBC batches
+     * ({@code hibernate.jdbc.batch_size}) rather than one round trip each. Only entries of failed operations, which move no balance and which nothing deduplicates on,
+     * go through the write-behind writer when it is enabled; the calling thread waits until the row is
+     * durable and its id assigned.</p>
+     */
+    private TransactionLog persist(TransactionLog logEntry) {
+        if (writeBehindWriter == null || logEntry.getStatus() != TransactionStatus.FAILED) {
+            return transactionLogRepository.save(logEntry);
+        }
+        return awaitWritten(writeBehindWriter.enqueue(logEntry));
+    }
+
+    private TransactionLog awaitWritten(CompletableFuture<TransactionLog> written) {
+        try {
+            return written.get(flushTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing transaction log", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Failed to write transaction log", e);
+        }
+    }
+
     /**
      * Update transaction status
      */
@@ -159,6 +239,69 @@ public class TransactionLogService {
         return transactionLogRepository.findByUserIdAndTransactionType(userId, type, pageable);
     }
 
+    /**
+     * Get one page of a user's transaction history, newest first, optionally filtered by type.
+     * Pages are read by keyset on {@code (createdAt, logId)}, so every page costs the same regardless of
+     * how deep it is and no count query is issued.
+     * @param cursor The {@code nextCursor} of the previous page, or {@code null} for the first page
+     * @param limit Maximum number of entries (capped at {@value #MAX_HISTORY_PAGE_SIZE})
+     */
+    @Transactional(readOnly = true)
+    public TransactionHistoryPage getUserTransactionHistory(Long userId, TransactionType type, String cursor, int limit) {
+        Limit fetch = fetchLimit(limit);
+        List<TransactionLog> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = type == null
+                    ? transactionLogRepository.findUserHistory(userId, fetch)
+                    : transactionLogRepository.findUserHistoryByType(userId, type, fetch);
+        } else {
+            HistoryCursor after = HistoryCursor.decode(cursor);
+            rows = type == null
+                    ? transactionLogRepository.findUserHistoryBefore(userId, after.createdAt(), after.logId(), fetch)
+                    : transactionLogRepository.findUserHistoryByTypeBefore(userId, type, after.createdAt(), after.logId(), fetch);
+        }
+        return toPage(rows, fetch);
+    }
+
+    /**
+     * Get one page of the transactions within a time range, newest first (keyset pagination, see
+     * {@link #getUserTransactionHistory(Long, TransactionType, String, int)}).
+     */
+    @Transactional(readOnly = true)
+    public TransactionHistoryPage getTransactionsByTimeRange(LocalDateTime startTime, LocalDateTime endTime, String cursor, int limit) {
+        Limit fetch = fetchLimit(limit);
+        List<TransactionLog> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = transactionLogRepository.findTimeRangeHistory(startTime, endTime, fetch);
+        } else {
+            HistoryCursor after = HistoryCursor.decode(cursor);
+            rows = transactionLogRepository.findTimeRangeHistoryBefore(startTime, endTime, after.createdAt(), after.logId(), fetch);
+        }
+        return toPage(rows, fetch);
+    }
+
+    /**
+     * One row more than requested is fetched to know whether another page follows.
+     */
+    private static Limit fetchLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        return Limit.of(Math.min(limit, MAX_HISTORY_PAGE_SIZE) + 1);
+    }
+
+    private static TransactionHistoryPage toPage(List<TransactionLog> rows, Limit fetch) {
+        int pageSize = fetch.max() - 1;
+        boolean hasMore = rows.size() > pageSize;
+        List<TransactionLog> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            TransactionLog last = page.get(page.size() - 1);
+            nextCursor = new HistoryCursor(last.getCreatedAt(), last.getLogId()).encode();
+        }
+        return new TransactionHistoryPage(page.stream().map(TransactionLogResponse::from).toList(), nextCursor);
+    }
+
     /**
      * Get failed transactions for a user
      */
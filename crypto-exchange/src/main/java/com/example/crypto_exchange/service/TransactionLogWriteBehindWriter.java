@@ -0,0 +1,194 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.entity.TransactionLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind writer for <b>transaction_logs</b> (enabled with {@code transaction-log.write-behind.enabled=true}).
+ *
+ * <p>Rows written here are not part of any caller's transaction, so {@link TransactionLogService} only hands
+ * over entries of failed operations; entries that record a balance change are inserted with it.</p>
+ *
+ * <p>Log entries are put on a bounded queue and a single background thread inserts them in multi-row JDBC
+ * batches of up to {@code transaction-log.write-behind.batch-size} rows, one database transaction per batch.
+ * Ids are taken up front from the same pooled sequence Hibernate uses ({@code nextval}, one round trip per
+ * batch, each value standing for {@link TransactionLog#ID_ALLOCATION_SIZE} ids).</p>
+ *
+ * <p>Callers wait on the returned future, so an entry is durable before the request that produced it
+ * completes; concurrent callers share one commit (group commit). When the queue is full, callers block.</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transaction-log.write-behind.enabled", havingValue = "true")
+public class TransactionLogWriteBehindWriter {
+
+    static final String NEXT_IDS_SQL =
+            "SELECT nextval('" + TransactionLog.ID_SEQUENCE + "') FROM generate_series(1, ?)";
+
+    static final String INSERT_SQL = "INSERT INTO transaction_logs (log_id, transaction_type, user_id, token_id, " +
+            "amount, status, tx_hash, log_index, nonce, order_id, from_address, to_address, error_message, created_at, " +
+            "updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private record Pending(TransactionLog entry, CompletableFuture<TransactionLog> written) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<Pending> queue;
+    private final int batchSize;
+    private final Thread writerThread;
+
+    private volatile boolean running = true;
+
+    public TransactionLogWriteBehindWriter(JdbcTemplate jdbcTemplate,
+                                           PlatformTransactionManager transactionManager,
+                                           @Value("${transaction-log.write-behind.queue-capacity:10000}") int queueCapacity,
+                                           @Value("${transaction-log.write-behind.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.writerThread = Thread.ofPlatform().name("txlog-writer").daemon().unstarted(this::run);
+    }
+
+    @PostConstruct
+    void start() {
+        writerThread.start();
+        log.info("Transaction log write-behind enabled (queue capacity {}, batch size {})",
+                queue.remainingCapacity(), batchSize);
+    }
+
+    /**
+     * Queue a log entry for insertion. Blocks while the queue is full.
+     * @return A future completed with the entry (its id assigned) once the row is committed
+     */
+    public CompletableFuture<TransactionLog> enqueue(TransactionLog entry) {
+        if (!running) {
+            throw new IllegalStateException("Transaction log writer is shut down");
+        }
+        CompletableFuture<TransactionLog> written = new CompletableFuture<>();
+        try {
+            queue.put(new Pending(entry, written));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing transaction log", e);
+        }
+        return written;
+    }
+
+    /**
+     * Number of entries waiting to be written
+     */
+    public int backlog() {
+        return queue.size();
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                // Shutdown: keep draining what is already queued
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    void flush(List<Pending> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(batch));
+            batch.forEach(pending -> pending.written().complete(pending.entry()));
+            log.trace("Wrote batch of {} transaction logs", batch.size());
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                log.error("Failed to write transaction log for user {}: {}", batch.get(0).entry().getUserId(), e.getMessage(), e);
+                batch.get(0).written().completeExceptionally(e);
+                return;
+            }
+            // Isolate the offending row(s) so that one bad entry does not fail the whole group
+            log.warn("Batch of {} transaction logs failed, retrying row by row: {}", batch.size(), e.getMessage());
+            for (Pending pending : batch) {
+                flush(new ArrayList<>(List.of(pending)));
+            }
+        }
+    }
+
+    private void insert(List<Pending> batch) {
+        List<Long> ids = allocateIds(batch.size());
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            TransactionLog entry = batch.get(i).entry();
+            entry.setLogId(ids.get(i));
+            rows.add(new Object[]{
+                    entry.getLogId(),
+                    entry.getTransactionType().name(),
+                    entry.getUserId(),
+                    entry.getTokenId(),
+                    entry.getAmount(),
+                    entry.getStatus().name(),
+                    entry.getTxHash(),
+                    entry.getLogIndex(),
+                    entry.getNonce(),
+                    entry.getOrderId(),
+                    entry.getFromAddress(),
+                    entry.getToAddress(),
+                    entry.getErrorMessage(),
+                    Timestamp.valueOf(entry.getCreatedAt()),
+                    entry.getUpdatedAt() == null ? null : Timestamp.valueOf(entry.getUpdatedAt())
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+
+    /**
+     * Reserve ids the way Hibernate's pooled optimizer does, so that both can share the sequence: a value
+     * {@code v} stands for the ids {@code v - ID_ALLOCATION_SIZE + 1} to {@code v} (only 1 for the very first).
+     */
+    private List<Long> allocateIds(int count) {
+        int size = TransactionLog.ID_ALLOCATION_SIZE;
+        List<Long> ids = new ArrayList<>(count);
+        while (ids.size() < count) {
+            int blocks = (count - ids.size() + size - 1) / size;
+            for (long last : jdbcTemplate.queryForList(NEXT_IDS_SQL, Long.class, blocks)) {
+                for (long id = Math.max(1, last - size + 1); id <= last && ids.size() < count; id++) {
+                    ids.add(id);
+                }
+            }
+        }
+        return ids;
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        if (!queue.isEmpty()) {
+            log.error("{} transaction logs were not written before shutdown", queue.size());
+        }
+    }
+}
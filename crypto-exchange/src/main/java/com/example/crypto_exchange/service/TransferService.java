@@ -14,6 +14,7 @@ import java.math.BigDecimal;
 public class TransferService {
 
     private final UserBalanceService userBalanceService;
+    private final TransactionLogService transactionLogService;
 
     /**
      * Process a transfer between two users
@@ -43,16 +44,16 @@ public class TransferService {
             throw new IllegalArgumentException("Amount must be positive");
         }
 
-        // Check if sender has sufficient balance
-        if (!userBalanceService.hasSufficientBalance(request.getFromUserId(), request.getTokenSymbol(), request.getAmount())) {
-            throw new IllegalArgumentException("Insufficient balance for transfer");
+        // Process the transfer; the debit itself checks the sender's balance atomically
+        try {
+            userBalanceService.transferBalance(request.getFromUserId(), request.getToUserId(), request.getTokenSymbol(), request.getAmount());
+        } catch (IllegalStateException e) {
+            throw new IllegalArgumentException("Insufficient balance for transfer", e);
         }
 
-        // Process the transfer
-        userBalanceService.transferBalance(request.getFromUserId(), request.getToUserId(), request.getTokenSymbol(), request.getAmount());
-
         // Generate mock transaction hash
         String txHash = "0x" + System.currentTimeMillis() + "transfer_hash";
+        transactionLogService.logTransfer(request.getFromUserId(), request.getToUserId(), request.getTokenSymbol(), request.getAmount(), txHash);
 
         log.info("Transfer processed successfully: {} {} from user {} to user {}, txHash: {}", 
                 request.getAmount(), request.getTokenSymbol(), request.getFromUserId(), request.getToUserId(), txHash);
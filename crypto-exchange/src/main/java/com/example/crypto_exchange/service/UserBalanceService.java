@@ -4,27 +4,60 @@ import com.example.crypto_exchange.entity.Token;
 import com.example.crypto_exchange.entity.User;
 import com.example.crypto_exchange.entity.UserBalance;
 import com.example.crypto_exchange.entity.UserBalanceId;
-import com.example.crypto_exchange.repository.TokenRepository;
+import com.example.crypto_exchange.ledger.BalanceLedger;
+import com.example.crypto_exchange.ledger.LedgerBalance;
+import com.example.crypto_exchange.ledger.LedgerIntent;
 import com.example.crypto_exchange.repository.UserBalanceRepository;
 import com.example.crypto_exchange.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * Balance operations. With {@code ledger.enabled=true} the {@link BalanceLedger} owns the balances and the
+ * <b>balances</b> table is its asynchronously updated projection: single balances and all mutations go
+ * through the ledger, while the list queries below read the projection.
+ *
+ * <p>Ledger commands take effect at once and are not part of the database transaction of the caller. Value
+ * leaving a balance (debit, reservation, settlement) is therefore taken immediately, so that it is checked and
+ * cannot be spent twice, and given back if the transaction rolls back. Value arriving (credit, release, the
+ * receiver side of a transfer) is journaled as a ledger intent, recorded in the transaction and committed in the ledger once the transaction
+ * has committed, or aborted if it rolls back. A rolled-back deposit or transfer thus never leaves money in the
+ * ledger, and a credit whose transaction committed right before a crash is applied when the ledger restarts.</p>
+ *
+ * <p>Part of a balance can be reserved (locked) for an open order or a pending withdrawal. Reserving, releasing
+ * and settling a reservation are each one conditional update, so callers never re-read a balance to decide.
+ * Debits only draw on the available part: the balance minus what is reserved.</p>
+ */
 @Slf4j
 @Service
 @Transactional
-@RequiredArgsConstructor
 public class UserBalanceService {
 
     private final UserBalanceRepository userBalanceRepository;
     private final UserRepository userRepository;
-    private final TokenRepository tokenRepository;
+    private final TokenRegistry tokenRegistry;
+    private final BalanceLedger ledger;
+
+    @Autowired
+    public UserBalanceService(UserBalanceRepository userBalanceRepository,
+                              UserRepository userRepository,
+                              TokenRegistry tokenRegistry,
+                              Optional<BalanceLedger> ledger) {
+        this.userBalanceRepository = userBalanceRepository;
+        this.userRepository = userRepository;
+        this.tokenRegistry = tokenRegistry;
+        this.ledger = ledger.orElse(null);
+    }
 
     /**
      * Get balance for a specific user and token.
@@ -34,11 +67,45 @@ public class UserBalanceService {
     public BigDecimal getBalance(Long userId, Long tokenId) {
         log.debug("Getting balance for user {} and token {}", userId, tokenId);
         
+        if (ledger != null) {
+            return ledger.find(userId, tokenId).orElse(BigDecimal.ZERO);
+        }
         return userBalanceRepository.findByUserIdAndTokenId(userId, tokenId)
                 .map(UserBalance::getAmount)
                 .orElse(BigDecimal.ZERO);
     }
 
+    /**
+     * Get the balance for a specific user and token with its reserved part, or empty if none exists.
+     */
+    @Transactional(readOnly = true)
+    public Optional<UserBalance> findBalance(Long userId, Long tokenId) {
+        if (ledger != null) {
+            return ledger.findBalance(userId, tokenId).map(balance -> toUserBalance(userId, tokenId, balance));
+        }
+        return userBalanceRepository.findByUserIdAndTokenId(userId, tokenId);
+    }
+
+    /**
+     * Get the balance for a specific user and token by symbol with its reserved part, or empty if none exists.
+     */
+    @Transactional(readOnly = true)
+    public Optional<UserBalance> findBalance(Long userId, String tokenSymbol) {
+        Token token = getTokenBySymbolOrThrow(tokenSymbol);
+        return findBalance(userId, token.getTokenId());
+    }
+
+    /**
+     * Get the part of the balance that is not reserved.
+     * Returns BigDecimal.ZERO if no balance exists.
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal getAvailableBalance(Long userId, Long tokenId) {
+        return findBalance(userId, tokenId)
+                .map(UserBalance::getAvailableAmount)
+                .orElse(BigDecimal.ZERO);
+    }
+
     /**
      * Get balance for a specific user and token by symbol.
      * Returns BigDecimal.ZERO if no balance exists.
@@ -47,7 +114,7 @@ public class UserBalanceService {
     public BigDecimal getBalance(Long userId, String tokenSymbol) {
         log.debug("Getting balance for user {} and token symbol {}", userId, tokenSymbol);
         
-        Optional<Token> token = tokenRepository.findBySymbol(tokenSymbol);
+        Optional<Token> token = tokenRegistry.findBySymbol(tokenSymbol);
         if (token.isEmpty()) {
             log.warn("Token with symbol {} not found", tokenSymbol);
             return BigDecimal.ZERO;
@@ -76,7 +143,7 @@ public class UserBalanceService {
 
     /**
      * Set balance for a specific user and token.
-     * Creates a new balance record if it doesn't exist.
+     * Creates a new balance record if it doesn't exist. The reserved part is kept and cannot exceed the new amount.
      */
     public UserBalance setBalance(Long userId, Long tokenId, BigDecimal amount) {
         log.info("Setting balance for user {} and token {} to {}", userId, tokenId, amount);
@@ -89,10 +156,20 @@ public class UserBalanceService {
         validateUserExists(userId);
         validateTokenExists(tokenId);
         
+        if (ledger != null) {
+            BigDecimal previous = ledger.find(userId, tokenId).orElse(BigDecimal.ZERO);
+            ledger.set(userId, tokenId, amount);
+            onRollback(() -> ledger.set(userId, tokenId, previous));
+            return new UserBalance(userId, tokenId, amount);
+        }
+        
         Optional<UserBalance> existingBalance = userBalanceRepository.findByUserIdAndTokenId(userId, tokenId);
         
         if (existingBalance.isPresent()) {
             UserBalance balance = existingBalance.get();
+            if (amount.compareTo(balance.getLockedAmount()) < 0) {
+                throw new IllegalStateException("Balance cannot be set below the reserved " + balance.getLockedAmount());
+            }
             balance.setAmount(amount);
             return userBalanceRepository.save(balance);
         } else {
@@ -114,83 +191,167 @@ public class UserBalanceService {
     /**
      * Add amount to existing balance.
      * Creates a new balance record with the amount if it doesn't exist.
+     * Executed as a single upsert statement, so concurrent credits never lose updates.
      */
-    public UserBalance addToBalance(Long userId, Long tokenId, BigDecimal amountToAdd) {
+    public void addToBalance(Long userId, Long tokenId, BigDecimal amountToAdd) {
         log.info("Adding {} to balance for user {} and token {}", amountToAdd, userId, tokenId);
         
-        if (amountToAdd == null || amountToAdd.compareTo(BigDecimal.ZERO) <= 0) {
+        if (amountToAdd == null || amountToAdd.signum() <= 0) {
             throw new IllegalArgumentException("Amount to add must be positive");
         }
         
-        // Validate that user and token exist
-        validateUserExists(userId);
-        validateTokenExists(tokenId);
-        
-        Optional<UserBalance> existingBalance = userBalanceRepository.findByUserIdAndTokenId(userId, tokenId);
-        
-        if (existingBalance.isPresent()) {
-            UserBalance balance = existingBalance.get();
-            balance.addAmount(amountToAdd);
-            return userBalanceRepository.save(balance);
-        } else {
-            UserBalance newBalance = new UserBalance(userId, tokenId, amountToAdd);
-            return userBalanceRepository.save(newBalance);
+        if (ledger != null) {
+            LedgerIntent credit = ledger.prepareCredit(userId, tokenId, amountToAdd);
+            validateNewBalance(credit, userId, tokenId);
+            commitWithTransaction(credit.id());
+            return;
+        }
+        try {
+            userBalanceRepository.upsertCredit(userId, tokenId, amountToAdd);
+        } catch (DataIntegrityViolationException e) {
+            // The balances table references users and tokens, so a missing one surfaces as a constraint violation
+            throw new IllegalArgumentException("User with ID " + userId + " or token with ID " + tokenId + " does not exist", e);
         }
     }
 
     /**
      * Add amount to existing balance by token symbol.
      */
-    public UserBalance addToBalance(Long userId, String tokenSymbol, BigDecimal amountToAdd) {
+    public void addToBalance(Long userId, String tokenSymbol, BigDecimal amountToAdd) {
         log.info("Adding {} to balance for user {} and token symbol {}", amountToAdd, userId, tokenSymbol);
         
         Token token = getTokenBySymbolOrThrow(tokenSymbol);
-        return addToBalance(userId, token.getTokenId(), amountToAdd);
+        addToBalance(userId, token.getTokenId(), amountToAdd);
     }
 
     /**
      * Subtract amount from existing balance.
-     * Throws exception if insufficient balance.
+     * Throws exception if the available balance is insufficient.
+     * Executed as a single conditional update; the balance is only re-read to explain a failure.
      */
-    public UserBalance subtractFromBalance(Long userId, Long tokenId, BigDecimal amountToSubtract) {
+    public void subtractFromBalance(Long userId, Long tokenId, BigDecimal amountToSubtract) {
         log.info("Subtracting {} from balance for user {} and token {}", amountToSubtract, userId, tokenId);
         
-        if (amountToSubtract == null || amountToSubtract.compareTo(BigDecimal.ZERO) <= 0) {
+        if (amountToSubtract == null || amountToSubtract.signum() <= 0) {
             throw new IllegalArgumentException("Amount to subtract must be positive");
         }
         
-        UserBalance balance = userBalanceRepository.findByUserIdAndTokenId(userId, tokenId)
-                .orElseThrow(() -> new IllegalStateException("No balance found for user " + userId + " and token " + tokenId));
-        
-        if (!balance.hasSufficientBalance(amountToSubtract)) {
-            throw new IllegalStateException("Insufficient balance. Current: " + balance.getAmount() + ", Required: " + amountToSubtract);
+        if (ledger != null) {
+            ledger.debit(userId, tokenId, amountToSubtract);
+            onRollback(() -> ledger.credit(userId, tokenId, amountToSubtract));
+            return;
+        }
+        if (userBalanceRepository.debitIfSufficient(userId, tokenId, amountToSubtract) == 0) {
+            UserBalance balance = userBalanceRepository.findByUserIdAndTokenId(userId, tokenId)
+                    .orElseThrow(() -> new IllegalStateException("No balance found for user " + userId + " and token " + tokenId));
+            throw new IllegalStateException("Insufficient balance. Available: " + balance.getAvailableAmount() + ", Required: " + amountToSubtract);
+        }
+    }
+
+    /**
+     * Subtract amount from existing balance if its available part covers the amount.
+     * @return {@code false} if the balance is missing or insufficient
+     */
+    public boolean debitIfSufficient(Long userId, Long tokenId, BigDecimal amount) {
+        if (ledger == null) {
+            return userBalanceRepository.debitIfSufficient(userId, tokenId, amount) > 0;
+        }
+        try {
+            ledger.debit(userId, tokenId, amount);
+        } catch (IllegalStateException e) {
+            return false;
+        }
+        onRollback(() -> ledger.credit(userId, tokenId, amount));
+        return true;
+    }
+
+    /**
+     * Reserve (lock) part of the available balance, e.g. for an open order or a pending withdrawal.
+     * @return {@code false} if the balance is missing or its available part is insufficient
+     */
+    public boolean reserveIfAvailable(Long userId, Long tokenId, BigDecimal amount) {
+        log.debug("Reserving {} of token {} for user {}", amount, tokenId, userId);
+        requirePositive(amount);
+        if (ledger == null) {
+            return userBalanceRepository.reserveIfAvailable(userId, tokenId, amount) > 0;
+        }
+        try {
+            ledger.reserve(userId, tokenId, amount);
+        } catch (IllegalStateException e) {
+            return false;
+        }
+        onRollback(() -> ledger.release(userId, tokenId, amount));
+        return true;
+    }
+
+    /**
+     * Give back part of a reservation: the balance is unchanged and the amount becomes available again.
+     * @throws IllegalStateException if less than the amount is reserved
+     */
+    public void releaseReserved(Long userId, Long tokenId, BigDecimal amount) {
+        log.debug("Releasing {} of token {} for user {}", amount, tokenId, userId);
+        requirePositive(amount);
+        if (ledger != null) {
+            commitWithTransaction(ledger.prepareRelease(userId, tokenId, amount).id());
+            return;
+        }
+        if (userBalanceRepository.releaseReserved(userId, tokenId, amount) == 0) {
+            throw insufficientReserved(userId, tokenId, amount);
         }
-        
-        balance.subtractAmount(amountToSubtract);
-        return userBalanceRepository.save(balance);
+    }
+
+    /**
+     * Spend part of a reservation: the amount leaves both the balance and its reserved part.
+     * @throws IllegalStateException if less than the amount is reserved
+     */
+    public void settleReserved(Long userId, Long tokenId, BigDecimal amount) {
+        log.debug("Settling {} of token {} for user {}", amount, tokenId, userId);
+        requirePositive(amount);
+        if (ledger != null) {
+            ledger.settle(userId, tokenId, amount);
+            onRollback(() -> {
+                ledger.credit(userId, tokenId, amount);
+                ledger.reserve(userId, tokenId, amount);
+            });
+            return;
+        }
+        if (userBalanceRepository.settleReserved(userId, tokenId, amount) == 0) {
+            throw insufficientReserved(userId, tokenId, amount);
+        }
+    }
+
+    /**
+     * Check if a balance record exists for user and token
+     */
+    @Transactional(readOnly = true)
+    public boolean hasBalance(Long userId, Long tokenId) {
+        if (ledger != null) {
+            return ledger.find(userId, tokenId).isPresent();
+        }
+        return userBalanceRepository.existsByUserIdAndTokenId(userId, tokenId);
     }
 
     /**
      * Subtract amount from existing balance by token symbol.
      */
-    public UserBalance subtractFromBalance(Long userId, String tokenSymbol, BigDecimal amountToSubtract) {
+    public void subtractFromBalance(Long userId, String tokenSymbol, BigDecimal amountToSubtract) {
         log.info("Subtracting {} from balance for user {} and token symbol {}", amountToSubtract, userId, tokenSymbol);
         
         Token token = getTokenBySymbolOrThrow(tokenSymbol);
-        return subtractFromBalance(userId, token.getTokenId(), amountToSubtract);
+        subtractFromBalance(userId, token.getTokenId(), amountToSubtract);
     }
 
     /**
-     * Check if user has sufficient balance for a transaction
+     * Check if user has sufficient available balance for a transaction
      */
     @Transactional(readOnly = true)
     public boolean hasSufficientBalance(Long userId, Long tokenId, BigDecimal requiredAmount) {
-        if (requiredAmount == null || requiredAmount.compareTo(BigDecimal.ZERO) <= 0) {
+        if (requiredAmount == null || requiredAmount.signum() <= 0) {
             return true;
         }
         
-        BigDecimal currentBalance = getBalance(userId, tokenId);
-        return currentBalance.compareTo(requiredAmount) >= 0;
+        BigDecimal availableBalance = getAvailableBalance(userId, tokenId);
+        return availableBalance.compareTo(requiredAmount) >= 0;
     }
 
     /**
@@ -203,25 +364,31 @@ public class UserBalanceService {
     }
 
     /**
-     * Transfer balance between two users for the same token
+     * Transfer balance between two users for the same token.
+     * Rows are always touched in ascending user order so that opposite transfers cannot deadlock.
      */
     public void transferBalance(Long fromUserId, Long toUserId, Long tokenId, BigDecimal amount) {
         log.info("Transferring {} of token {} from user {} to user {}", amount, tokenId, fromUserId, toUserId);
         
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+        if (amount == null || amount.signum() <= 0) {
             throw new IllegalArgumentException("Transfer amount must be positive");
         }
         
-        // Validate users and token exist
-        validateUserExists(fromUserId);
-        validateUserExists(toUserId);
-        validateTokenExists(tokenId);
-        
-        // Subtract from sender
-        subtractFromBalance(fromUserId, tokenId, amount);
-        
-        // Add to receiver
-        addToBalance(toUserId, tokenId, amount);
+        if (ledger != null) {
+            LedgerIntent transfer = ledger.prepareTransfer(fromUserId, toUserId, tokenId, amount);
+            validateNewBalance(transfer, toUserId, tokenId);
+            commitWithTransaction(transfer.id());
+            log.info("Transfer completed successfully");
+            return;
+        }
+        if (fromUserId < toUserId) {
+            subtractFromBalance(fromUserId, tokenId, amount);
+            addToBalance(toUserId, tokenId, amount);
+        } else {
+            // Crediting first is safe: a failed debit rolls the whole transaction back
+            addToBalance(toUserId, tokenId, amount);
+            subtractFromBalance(fromUserId, tokenId, amount);
+        }
         
         log.info("Transfer completed successfully");
     }
@@ -241,14 +408,133 @@ public class UserBalanceService {
         }
     }
 
+    /**
+     * The ledger has no foreign keys: check user and token of a credit or transfer that creates a balance,
+     * dropping the intent if either is unknown.
+     */
+    private void validateNewBalance(LedgerIntent credit, Long userId, Long tokenId) {
+        if (!credit.newBalance()) {
+            return;
+        }
+        try {
+            validateUserExists(userId);
+            validateTokenExists(tokenId);
+        } catch (IllegalArgumentException e) {
+            ledger.abort(credit.id());
+            throw e;
+        }
+    }
+
     private void validateTokenExists(Long tokenId) {
-        if (!tokenRepository.existsById(tokenId)) {
+        if (!tokenRegistry.existsById(tokenId)) {
             throw new IllegalArgumentException("Token with ID " + tokenId + " does not exist");
         }
     }
 
+    /**
+     * Commit a prepared ledger intent together with the current transaction, or now without one.
+     */
+    private void commitWithTransaction(long intentId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            ledger.commit(intentId);
+            return;
+        }
+        TransactionIntents intents = (TransactionIntents) TransactionSynchronizationManager.getResource(ledger);
+        if (intents == null) {
+            intents = new TransactionIntents();
+            TransactionSynchronizationManager.bindResource(ledger, intents);
+            TransactionSynchronizationManager.registerSynchronization(intents);
+        }
+        intents.intentIds.add(intentId);
+    }
+
+    /**
+     * Undo a ledger command that was already applied if the current transaction rolls back.
+     */
+    private void onRollback(Runnable compensation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_ROLLED_BACK) {
+                    return;
+                }
+                try {
+                    compensation.run();
+                } catch (RuntimeException e) {
+                    log.error("Undoing a ledger command after rollback failed: {}", e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    /**
+     * The ledger intents of one transaction. Their ids are inserted right before it commits, so that a crash
+     * between the database commit and the ledger commit is resolved when the ledger restarts.
+     */
+    private final class TransactionIntents implements TransactionSynchronization {
+
+        private final List<Long> intentIds = new ArrayList<>();
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(ledger);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(ledger, this);
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            ledger.recordCommitted(intentIds);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ledger);
+            if (status == STATUS_UNKNOWN) {
+                log.warn("Outcome of a transaction with ledger intents {} is unknown, they are resolved on the next restart", intentIds);
+                return;
+            }
+            for (long intentId : intentIds) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        ledger.commit(intentId);
+                    } else {
+                        ledger.abort(intentId);
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Resolving ledger intent {} failed, it is resolved on the next restart: {}", intentId, e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private IllegalStateException insufficientReserved(Long userId, Long tokenId, BigDecimal amount) {
+        BigDecimal reserved = userBalanceRepository.findByUserIdAndTokenId(userId, tokenId)
+                .map(UserBalance::getLockedAmount)
+                .orElse(BigDecimal.ZERO);
+        return new IllegalStateException("Insufficient reserved balance. Reserved: " + reserved + ", Required: " + amount);
+    }
+
+    private static void requirePositive(BigDecimal amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+    }
+
+    private static UserBalance toUserBalance(Long userId, Long tokenId, LedgerBalance balance) {
+        UserBalance userBalance = new UserBalance(userId, tokenId, balance.amount());
+        userBalance.setLockedAmount(balance.locked());
+        return userBalance;
+    }
+
     private Token getTokenBySymbolOrThrow(String tokenSymbol) {
-        return tokenRepository.findBySymbol(tokenSymbol)
+        return tokenRegistry.findBySymbol(tokenSymbol)
                 .orElseThrow(() -> new IllegalArgumentException("Token with symbol " + tokenSymbol + " does not exist"));
     }
 } 
\ No newline at end of file
@@ -1,114 +1,101 @@
 package com.example.crypto_exchange.service;
 
+import com.example.crypto_exchange.config.AsyncConfig;
 import com.example.crypto_exchange.dto.WithdrawRequest;
 import com.example.crypto_exchange.dto.WithdrawResponse;
 import com.example.crypto_exchange.entity.Token;
-import com.example.crypto_exchange.entity.UserBalance;
+import com.example.crypto_exchange.entity.TransactionLog;
 import com.example.crypto_exchange.exception.WithdrawException;
-import com.example.crypto_exchange.repository.TokenRepository;
-import com.example.crypto_exchange.repository.UserBalanceRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.web3j.crypto.Credentials;
-import org.web3j.protocol.Web3j;
-import org.web3j.protocol.core.methods.response.TransactionReceipt;
-import org.web3j.protocol.core.RemoteCall;
-import org.web3j.tx.Transfer;
-import org.web3j.utils.Convert;
-import org.web3j.crypto.WalletUtils;
 
 import java.math.BigDecimal;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class WithdrawService {
     
-    private final TokenRepository tokenRepository;
-    private final UserBalanceRepository userBalanceRepository;
-    private final Web3j web3j;
-    private final CredentialsFactory credentialsFactory;
-    private final Executor executor = ForkJoinPool.commonPool();
-
-    @Value("${exchange.wallet.private-key:dummy_private_key}")
-    private String exchangeWalletPrivateKey;
-
-    @Async
-    @Transactional
+    private final TokenRegistry tokenRegistry;
+    private final WithdrawalQueue withdrawalQueue;
+    private final PayoutEngine payoutEngine;
+    private final ReceiptTracker receiptTracker;
+    @Qualifier(AsyncConfig.WITHDRAWAL_EXECUTOR)
+    private final Executor withdrawalExecutor;
+
+    @Value("${payout.sync-timeout-ms:300000}")
+    private long syncTimeoutMs = 300000;
+
+    /**
+     * Debit the balance and queue the withdrawal for the {@link PayoutEngine}; the blocking database work
+     * runs on the withdrawal executor. The response carries the id of the PENDING transaction log entry,
+     * whose status and hash follow the payout.
+     */
     public CompletableFuture<WithdrawResponse> processWithdraw(WithdrawRequest request) {
-        return CompletableFuture.supplyAsync(() -> {
-            validateRequest(request);
-            log.info("Processing withdrawal request for user {} of {} {}", 
-                    request.getUserId(), request.getAmount(), request.getTokenSymbol());
-
-            Token token = tokenRepository.findBySymbol(request.getTokenSymbol())
-                .orElseThrow(() -> new WithdrawException("TOKEN_NOT_FOUND", "Token not found"));
-
-            UserBalance userBalance = userBalanceRepository.findByUserIdAndTokenId(request.getUserId(), token.getTokenId())
-                .orElseThrow(() -> new WithdrawException("BALANCE_NOT_FOUND", "User balance not found"));
-
-            if (!userBalance.hasSufficientBalance(request.getAmount())) {
-                throw new WithdrawException("INSUFFICIENT_BALANCE", "Insufficient balance");
-            }
-
-            try {
-                BigDecimal newAmount = userBalance.getAmount().subtract(request.getAmount());
-                userBalanceRepository.updateBalanceAmount(request.getUserId(), token.getTokenId(), newAmount);
-
-                String txHash = sendBlockchainTransaction(request.getToAddress(), request.getAmount());
-                String txId = String.format("WD_%d_%s", request.getUserId(), System.currentTimeMillis());
-
-                log.info("Withdrawal processed successfully. Transaction hash: {}", txHash);
-                return new WithdrawResponse(txId, txHash, "SUCCESS");
-
-            } catch (Exception e) {
-                log.error("Error processing withdrawal: {}", e.getMessage(), e);
-                throw new WithdrawException("BLOCKCHAIN_ERROR", "Failed to process withdrawal: " + e.getMessage());
-            }
-        }, executor);
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                TransactionLog withdrawal = enqueue(request);
+                return new WithdrawResponse(txId(withdrawal), null, "PENDING");
+            }, withdrawalExecutor);
+        } catch (RejectedExecutionException e) {
+            log.warn("Withdrawal executor saturated, rejecting withdrawal for user {}", request.getUserId());
+            return CompletableFuture.failedFuture(
+                    new WithdrawException("SERVICE_BUSY", "Too many withdrawals in progress, please retry later"));
+        }
     }
 
-    // Simple synchronous version for testing
-    @Transactional
+    /**
+     * Queue the withdrawal and wait until its transaction is final ({@code payout.receipts.confirmations} blocks
+     * deep) and the withdrawal completed. The caller's thread is the only one
+     * waiting; broadcast and receipt polling happen in the {@link PayoutEngine} and {@link ReceiptTracker}.
+     */
     public WithdrawResponse processWithdrawSync(WithdrawRequest request) {
         log.info("Processing synchronous withdrawal request for user {} of {} {}", 
                 request.getUserId(), request.getAmount(), request.getTokenSymbol());
 
-        validateRequest(request);
-
-        Token token = tokenRepository.findBySymbol(request.getTokenSymbol())
-            .orElseThrow(() -> new WithdrawException("TOKEN_NOT_FOUND", "Token not found"));
-
-        UserBalance userBalance = userBalanceRepository.findByUserIdAndTokenId(request.getUserId(), token.getTokenId())
-            .orElseThrow(() -> new WithdrawException("BALANCE_NOT_FOUND", "User balance not found"));
-
-        if (!userBalance.hasSufficientBalance(request.getAmount())) {
-            throw new WithdrawException("INSUFFICIENT_BALANCE", "Insufficient balance");
-        }
-
+        TransactionLog withdrawal = enqueue(request);
         try {
-            BigDecimal newAmount = userBalance.getAmount().subtract(request.getAmount());
-            userBalanceRepository.updateBalanceAmount(request.getUserId(), token.getTokenId(), newAmount);
+            String txHash = payoutEngine.awaitSubmission(withdrawal.getLogId())
+                    .thenCompose(broadcast -> receiptTracker.awaitFinal(withdrawal.getLogId()))
+                    .get(syncTimeoutMs, TimeUnit.MILLISECONDS);
+            log.info("Synchronous withdrawal {} completed. Transaction hash: {}", withdrawal.getLogId(), txHash);
+            return new WithdrawResponse(txId(withdrawal), txHash, "SUCCESS");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof WithdrawException withdrawException) {
+                throw withdrawException;
+            }
+            throw new WithdrawException("BLOCKCHAIN_ERROR", "Failed to process withdrawal: " + e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            // Still queued or in flight, the engine and tracker carry on
+            throw new WithdrawException("SUBMISSION_TIMEOUT",
+                    "Withdrawal " + txId(withdrawal) + " is in progress but was not final within " + syncTimeoutMs + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WithdrawException("INTERRUPTED", "Interrupted while waiting for withdrawal " + txId(withdrawal));
+        }
+    }
 
-            String txHash = sendBlockchainTransaction(request.getToAddress(), request.getAmount());
-            String txId = String.format("WD_%d_%s", request.getUserId(), System.currentTimeMillis());
+    private TransactionLog enqueue(WithdrawRequest request) {
+        validateRequest(request);
+        log.info("Processing withdrawal request for user {} of {} {}", 
+                request.getUserId(), request.getAmount(), request.getTokenSymbol());
 
-            log.info("Synchronous withdrawal processed successfully. Transaction hash: {}", txHash);
-            return new WithdrawResponse(txId, txHash, "SUCCESS");
+        Token token = tokenRegistry.findBySymbol(request.getTokenSymbol())
+            .orElseThrow(() -> new WithdrawException("TOKEN_NOT_FOUND", "Token not found"));
+        return withdrawalQueue.enqueue(request.getUserId(), token, request.getAmount(), request.getToAddress());
+    }
 
-        } catch (Exception e) {
-            log.error("Error processing synchronous withdrawal: {}", e.getMessage(), e);
-            throw new WithdrawException("BLOCKCHAIN_ERROR", "Failed to process withdrawal: " + e.getMessage());
-        }
+    private static String txId(TransactionLog withdrawal) {
+        return "WD_" + withdrawal.getLogId();
     }
 
     private void validateRequest(WithdrawRequest request) {
@@ -133,57 +120,4 @@ public class WithdrawService {
         }
         log.debug("Withdrawal request validation successful");
     }
-
-    @Retryable(
-        value = { Exception.class },
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 1000, multiplier = 2)
-    )
-    private String sendBlockchainTransaction(String toAddress, BigDecimal amount) throws Exception {
-        log.debug("Sending blockchain transaction: toAddress={}, amount={}", toAddress, amount);
-        
-        // For testing purposes, return a mock transaction hash
-        // In production, this would use real blockchain transactions
-        if ("dummy_private_key".equals(exchangeWalletPrivateKey)) {
-            log.info("Using mock blockchain transaction for testing");
-            return "0x" + System.currentTimeMillis() + "mock_tx_hash_for_testing";
-        }
-        
-        try {
-            Credentials credentials = credentialsFactory.create(exchangeWalletPrivateKey);
-            log.debug("Created credentials for address: {}", credentials.getAddress());
-            
-            RemoteCall<TransactionReceipt> remoteCall = Transfer.sendFunds(
-                web3j, 
-                credentials,
-                toAddress,
-                amount,
-                Convert.Unit.ETHER
-            );
-            
-            if (remoteCall == null) {
-                log.error("Failed to create transaction: remoteCall is null");
-                throw new WithdrawException("BLOCKCHAIN_ERROR", "Failed to create transaction");
-            }
-            
-            TransactionReceipt receipt = remoteCall.send();
-            if (receipt == null) {
-                log.error("Failed to get transaction receipt: receipt is null");
-                throw new WithdrawException("BLOCKCHAIN_ERROR", "Failed to get transaction receipt");
-            }
-            
-            String txHash = receipt.getTransactionHash();
-            log.info("Transaction successful. Hash: {}", txHash);
-            return txHash;
-        } catch (Exception e) {
-            log.error("Error sending blockchain transaction: {}", e.getMessage(), e);
-            throw new WithdrawException("BLOCKCHAIN_ERROR", "Failed to send transaction: " + e.getMessage());
-        }
-    }
-
-    private void validateAddress(String address) {
-        if (!WalletUtils.isValidAddress(address)) {
-            throw new WithdrawException("INVALID_ADDRESS", "Invalid Ethereum address format");
-        }
-    }
-}
\ No newline at end of file
+}
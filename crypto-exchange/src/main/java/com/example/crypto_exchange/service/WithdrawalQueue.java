@@ -0,0 +1,118 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.entity.Token;
+import com.example.crypto_exchange.entity.TransactionLog;
+import com.example.crypto_exchange.entity.TransactionStatus;
+import com.example.crypto_exchange.entity.TransactionType;
+import com.example.crypto_exchange.exception.WithdrawException;
+import com.example.crypto_exchange.repository.TransactionLogRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Database side of the withdrawal pipeline. A withdrawal is a WITHDRAW {@link TransactionLog} row:
+ * <ul>
+ *   <li>PENDING without tx hash: queued, the amount is reserved in the user's balance</li>
+ *   <li>PENDING with nonce and tx hash: signed and broadcast by the {@link PayoutEngine}</li>
+ *   <li>COMPLETED: mined successfully, the reservation is settled; FAILED: rejected or reverted, the
+ *   reservation is released</li>
+ * </ul>
+ * Withdrawals queued before balances had reservations were debited instead: let them finish before upgrading.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WithdrawalQueue {
+
+    private final TransactionLogRepository transactionLogRepository;
+    private final UserBalanceService userBalanceService;
+
+    /**
+     * Queue the withdrawal and reserve its amount in one transaction. The row is written first, so that with
+     * the ledger enabled a failed reservation only has to roll back the database.
+     */
+    @Transactional
+    public TransactionLog enqueue(Long userId, Token token, BigDecimal amount, String toAddress) {
+        TransactionLog withdrawal = new TransactionLog();
+        withdrawal.setTransactionType(TransactionType.WITHDRAW);
+        withdrawal.setUserId(userId);
+        withdrawal.setTokenId(token.getTokenId());
+        withdrawal.setAmount(amount);
+        withdrawal.setToAddress(toAddress);
+        withdrawal.setStatus(TransactionStatus.PENDING);
+        TransactionLog saved = transactionLogRepository.save(withdrawal);
+
+        if (!userBalanceService.reserveIfAvailable(userId, token.getTokenId(), amount)) {
+            if (!userBalanceService.hasBalance(userId, token.getTokenId())) {
+                throw new WithdrawException("BALANCE_NOT_FOUND", "User balance not found");
+            }
+            throw new WithdrawException("INSUFFICIENT_BALANCE", "Insufficient balance");
+        }
+        log.info("Withdrawal {} queued: userId={}, token={}, amount={}", saved.getLogId(), userId, token.getSymbol(), amount);
+        return saved;
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<TransactionLog> find(Long logId) {
+        return transactionLogRepository.findById(logId);
+    }
+
+    @Transactional(readOnly = true)
+    public List<TransactionLog> queued(int limit) {
+        return transactionLogRepository.findQueuedWithdrawals(Limit.of(limit));
+    }
+
+    @Transactional(readOnly = true)
+    public List<TransactionLog> submitted(int limit) {
+        return transactionLogRepository.findSubmittedWithdrawals(Limit.of(limit));
+    }
+
+    /**
+     * Record nonce and hash of signed withdrawals before they are broadcast, so a restart never signs
+     * a second transaction for the same withdrawal under a different nonce.
+     */
+    @Transactional
+    public void markSigned(List<TransactionLog> withdrawals) {
+        transactionLogRepository.saveAll(withdrawals);
+    }
+
+    /**
+     * Put a withdrawal the node rejected back into the queue to be signed again.
+     */
+    @Transactional
+    public void requeue(TransactionLog withdrawal) {
+        withdrawal.setNonce(null);
+        withdrawal.setTxHash(null);
+        withdrawal.setRawTransaction(null);
+        transactionLogRepository.save(withdrawal);
+    }
+
+    /**
+     * Mark a withdrawal COMPLETED and spend its reservation, at most once.
+     */
+    @Transactional
+    public void complete(TransactionLog withdrawal, String txHash) {
+        if (transactionLogRepository.finishPending(withdrawal.getLogId(), TransactionStatus.COMPLETED, txHash, null) == 1) {
+            userBalanceService.settleReserved(withdrawal.getUserId(), withdrawal.getTokenId(), withdrawal.getAmount());
+            log.info("Withdrawal {} completed: {}", withdrawal.getLogId(), txHash);
+        }
+    }
+
+    /**
+     * Mark a withdrawal FAILED and release its reservation, at most once.
+     */
+    @Transactional
+    public void fail(TransactionLog withdrawal, String errorMessage) {
+        if (transactionLogRepository.finishPending(withdrawal.getLogId(), TransactionStatus.FAILED, null, errorMessage) == 1) {
+            userBalanceService.releaseReserved(withdrawal.getUserId(), withdrawal.getTokenId(), withdrawal.getAmount());
+            log.warn("Withdrawal {} failed and its reservation was released: {}", withdrawal.getLogId(), errorMessage);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.crypto_exchange.config;
+
+import com.example.crypto_exchange.dto.TransferRequest;
+import com.example.crypto_exchange.repository.TokenRepository;
+import com.example.crypto_exchange.service.TransferService;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MethodMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private MethodMetrics methodMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        methodMetrics = new MethodMetrics(meterRegistry, 1000, 1.0);
+    }
+
+    @Test
+    void time_RecordsSuccessAndFailureSeparately() throws Throwable {
+        // Arrange
+        TransferService service = Mockito.mock(TransferService.class);
+        ProceedingJoinPoint ok = joinPoint(service, TransferService.class.getMethod("processTransfer", TransferRequest.class));
+        when(ok.proceed()).thenReturn("0xhash");
+        ProceedingJoinPoint failing = joinPoint(service, TransferService.class.getMethod("processTransfer", TransferRequest.class));
+        when(failing.proceed()).thenThrow(new IllegalArgumentException("Amount must be positive"));
+
+        // Act
+        assertEquals("0xhash", methodMetrics.time(ok, "service"));
+        assertEquals("0xhash", methodMetrics.time(ok, "service"));
+        assertThrows(IllegalArgumentException.class, () -> methodMetrics.time(failing, "service"));
+
+        // Assert - the Mockito subclass is reported under the class it extends
+        Timer success = meterRegistry.get(MethodMetrics.METRIC_NAME)
+                .tags("layer", "service", "class", "TransferService", "method", "processTransfer", "outcome", "success")
+                .timer();
+        Timer error = meterRegistry.get(MethodMetrics.METRIC_NAME)
+                .tags("outcome", "error", "exception", "IllegalArgumentException")
+                .timer();
+        assertEquals(2, success.count());
+        assertEquals(1, error.count());
+    }
+
+    @Test
+    void time_NamesRepositoryProxiesAfterTheirInterface() throws Throwable {
+        // Arrange
+        Object repositoryProxy = Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{TokenRepository.class}, (proxy, method, args) -> null);
+        ProceedingJoinPoint joinPoint = joinPoint(repositoryProxy, TokenRepository.class.getMethod("findBySymbol", String.class));
+
+        // Act
+        methodMetrics.time(joinPoint, "repository");
+
+        // Assert
+        assertEquals(1, meterRegistry.get(MethodMetrics.METRIC_NAME)
+                .tags("layer", "repository", "class", "TokenRepository", "method", "findBySymbol")
+                .timer().count());
+    }
+
+    private static ProceedingJoinPoint joinPoint(Object proxy, Method method) {
+        ProceedingJoinPoint joinPoint = Mockito.mock(ProceedingJoinPoint.class);
+        MethodSignature signature = Mockito.mock(MethodSignature.class);
+        when(signature.getMethod()).thenReturn(method);
+        when(joinPoint.getSignature()).thenReturn(signature);
+        when(joinPoint.getThis()).thenReturn(proxy);
+        return joinPoint;
+    }
+}
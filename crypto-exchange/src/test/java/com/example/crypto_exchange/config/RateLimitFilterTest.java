@@ -0,0 +1,73 @@
+package com.example.crypto_exchange.config;
+
+import com.example.crypto_exchange.service.RateLimitService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimitFilter rateLimitFilter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimitFilter = new RateLimitFilter(new RateLimitService(60, 60, 1, 1000), new ObjectMapper(), meterRegistry);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("nikgeo", null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_OverLimit_Returns429WithRetryAfter() throws Exception {
+        // Arrange
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        rateLimitFilter.doFilter(new MockHttpServletRequest("POST", "/api/v1/withdraw/sync"), first, new MockFilterChain());
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        MockFilterChain secondChain = new MockFilterChain();
+
+        // Act
+        rateLimitFilter.doFilter(new MockHttpServletRequest("POST", "/api/v1/withdraw"), second, secondChain);
+
+        // Assert
+        assertEquals(200, first.getStatus());
+        assertEquals("0", first.getHeader("X-Rate-Limit-Remaining"));
+        assertEquals(429, second.getStatus());
+        assertNotNull(second.getHeader("Retry-After"));
+        assertTrue(second.getContentAsString().contains("TOO_MANY_REQUESTS"));
+        assertNull(secondChain.getRequest(), "the request must not reach the controller");
+        assertEquals(1.0, meterRegistry.get("exchange.rate_limit.rejected").tag("endpoint", "withdraw").counter().count());
+    }
+
+    @Test
+    void doFilter_NotRateLimitedEndpoint_PassesThrough() throws Exception {
+        // Arrange
+        MockFilterChain chain = null;
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            chain = new MockFilterChain();
+            rateLimitFilter.doFilter(new MockHttpServletRequest("GET", "/api/v1/transactions"), response, chain);
+        }
+
+        // Assert
+        assertNotNull(chain.getRequest());
+        assertNull(response.getHeader("X-Rate-Limit-Remaining"));
+    }
+}
@@ -0,0 +1,343 @@
+package com.example.crypto_exchange.ledger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class BalanceLedgerTest {
+
+    private static final long ALICE = 1L;
+    private static final long BOB = 2L;
+    private static final long ETH = 1L;
+    private static final int SHARDS = 4;
+
+    @TempDir
+    Path directory;
+
+    private JdbcTemplate jdbcTemplate;
+    private LedgerProjector projector;
+    private BalanceLedger ledger;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+        projector = Mockito.mock(LedgerProjector.class);
+        ledger = open(1_000_000);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ledger.shutdown();
+    }
+
+    @Test
+    void creditDebitTransfer_UpdateBalancesAndPublishThem() {
+        // Act
+        ledger.credit(ALICE, ETH, new BigDecimal("10"));
+        ledger.debit(ALICE, ETH, new BigDecimal("2.5"));
+        transfer(ALICE, BOB, ETH, new BigDecimal("3"));
+
+        // Assert
+        assertEquals(scaled("4.5"), ledger.find(ALICE, ETH).orElseThrow());
+        assertEquals(scaled("3"), ledger.find(BOB, ETH).orElseThrow());
+        assertEquals(Optional.empty(), ledger.find(BOB, 99L));
+        verify(projector).publish(BOB, ETH, 0L, 3_000_000_000_000_000_000L, 0L, 0L);
+        verify(projector).publish(ALICE, ETH, 0L, 4_500_000_000_000_000_000L, 0L, 0L);
+    }
+
+    @Test
+    void reserveReleaseSettle_OnlyAvailablePartCanBeSpent() throws Exception {
+        // Arrange: snapshots every 3 records, so the reservation is in a snapshot and the journal after it
+        ledger.shutdown();
+        ledger = open(3);
+        ledger.credit(ALICE, ETH, new BigDecimal("10"));
+
+        // Act
+        ledger.reserve(ALICE, ETH, new BigDecimal("6"));
+        IllegalStateException debit = assertThrows(IllegalStateException.class,
+                () -> ledger.debit(ALICE, ETH, new BigDecimal("5")));
+        assertThrows(IllegalStateException.class, () -> ledger.reserve(ALICE, ETH, new BigDecimal("5")));
+        assertThrows(IllegalStateException.class, () -> ledger.prepareTransfer(ALICE, BOB, ETH, new BigDecimal("5")));
+        ledger.settle(ALICE, ETH, new BigDecimal("2"));
+        ledger.release(ALICE, ETH, new BigDecimal("1"));
+        ledger.shutdown();
+        ledger = open(3);
+
+        // Assert
+        assertTrue(debit.getMessage().startsWith("Insufficient balance. Available: 4"));
+        LedgerBalance balance = ledger.findBalance(ALICE, ETH).orElseThrow();
+        assertEquals(scaled("8"), balance.amount());
+        assertEquals(scaled("3"), balance.locked());
+        assertEquals(scaled("5"), balance.available());
+        verify(projector, atLeastOnce()).publish(ALICE, ETH, 0L, 8_000_000_000_000_000_000L, 0L, 3_000_000_000_000_000_000L);
+    }
+
+    @Test
+    void releaseSettleAndSet_BeyondReservation_AreRejected() {
+        // Arrange
+        ledger.credit(ALICE, ETH, new BigDecimal("10"));
+        ledger.reserve(ALICE, ETH, new BigDecimal("4"));
+
+        // Act & Assert
+        IllegalStateException release = assertThrows(IllegalStateException.class,
+                () -> ledger.release(ALICE, ETH, new BigDecimal("5")));
+        assertTrue(release.getMessage().startsWith("Insufficient reserved balance"));
+        assertThrows(IllegalStateException.class, () -> ledger.settle(ALICE, ETH, new BigDecimal("5")));
+        assertThrows(IllegalStateException.class, () -> ledger.settle(BOB, ETH, BigDecimal.ONE));
+        assertThrows(IllegalStateException.class, () -> ledger.set(ALICE, ETH, new BigDecimal("3")));
+        ledger.set(ALICE, ETH, new BigDecimal("4"));
+        assertEquals(scaled("0"), ledger.findBalance(ALICE, ETH).orElseThrow().available());
+    }
+
+    @Test
+    void debit_InsufficientOrMissingBalance_IsRejectedWithoutJournaling() throws Exception {
+        // Arrange
+        ledger.credit(ALICE, ETH, BigDecimal.ONE);
+
+        // Act & Assert
+        IllegalStateException insufficient = assertThrows(IllegalStateException.class,
+                () -> ledger.debit(ALICE, ETH, new BigDecimal("2")));
+        assertTrue(insufficient.getMessage().startsWith("Insufficient balance"));
+        assertThrows(IllegalStateException.class, () -> ledger.prepareTransfer(BOB, ALICE, ETH, BigDecimal.ONE));
+        assertThrows(IllegalArgumentException.class, () -> ledger.credit(ALICE, ETH, BigDecimal.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> ledger.credit(ALICE, ETH, new BigDecimal("1E-19")));
+
+        ledger.shutdown();
+        ledger = open(1_000_000);
+        assertEquals(scaled("1"), ledger.find(ALICE, ETH).orElseThrow());
+    }
+
+    @Test
+    void restart_ReplaysJournalAfterSnapshot() throws Exception {
+        // Arrange: snapshots every 3 records, so the last two records live only in the journal
+        ledger.shutdown();
+        ledger = open(3);
+        for (int i = 0; i < 5; i++) {
+            ledger.credit(ALICE, ETH, BigDecimal.ONE);
+        }
+        transfer(ALICE, BOB, ETH, new BigDecimal("0.25"));
+
+        // Act
+        ledger.shutdown();
+        ledger = open(3);
+
+        // Assert
+        assertEquals(scaled("4.75"), ledger.find(ALICE, ETH).orElseThrow());
+        assertEquals(scaled("0.25"), ledger.find(BOB, ETH).orElseThrow());
+        try (Stream<Path> files = Files.list(shardDirectory(ALICE))) {
+            assertTrue(files.filter(path -> path.getFileName().toString().startsWith("journal-")).count() <= 2,
+                    "journal segments covered by a snapshot are deleted");
+        }
+    }
+
+    @Test
+    void concurrentTransfers_NeverLoseOrCreateFunds() throws Exception {
+        // Arrange: the two users live in different shards, so every transfer is a debit and a credit
+        assertNotEquals(BalanceLedger.shardIndex(ALICE, SHARDS), BalanceLedger.shardIndex(BOB, SHARDS));
+        ledger.credit(ALICE, ETH, new BigDecimal("1000"));
+        ledger.credit(BOB, ETH, new BigDecimal("1000"));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // Act
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            boolean aliceSends = i % 2 == 0;
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 200; j++) {
+                    transfer(aliceSends ? ALICE : BOB, aliceSends ? BOB : ALICE, ETH, BigDecimal.ONE);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(scaled("2000"),
+                ledger.find(ALICE, ETH).orElseThrow().add(ledger.find(BOB, ETH).orElseThrow()));
+    }
+
+    @Test
+    void firstStart_SeedsFromBalancesTable() throws Exception {
+        // Arrange
+        ledger.shutdown();
+        Path fresh = directory.resolve("fresh");
+        ResultSet row = Mockito.mock(ResultSet.class);
+        when(row.getLong("user_id")).thenReturn(ALICE);
+        when(row.getLong("token_id")).thenReturn(ETH);
+        when(row.getBigDecimal("amount")).thenReturn(new BigDecimal("7"));
+        when(row.getBigDecimal("locked_amount")).thenReturn(new BigDecimal("2"));
+        doAnswer(invocation -> {
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+
+        // Act
+        ledger = new BalanceLedger(projector, jdbcTemplate, fresh.toString(), SHARDS, 1, 1024, 64, 1_000_000);
+        ledger.start();
+
+        // Assert
+        assertEquals(new LedgerBalance(scaled("7"), scaled("2")), ledger.findBalance(ALICE, ETH).orElseThrow());
+    }
+
+    @Test
+    void restart_CreditsCrossShardTransferCommittedBeforeACrash_ExactlyOnce() throws Exception {
+        // Arrange: Alice's shard journaled a transfer to Bob and its commit (sequences 2 and 3, after her credit)
+        // but Bob was never credited. A second transfer (sequence 4) was prepared but its transaction never committed.
+        ledger.credit(ALICE, ETH, new BigDecimal("10"));
+        ledger.shutdown();
+        try (LedgerJournal journal = new LedgerJournal(shardDirectory(ALICE), 1 << 20)) {
+            journal.replay(1, record -> {
+            });
+            journal.append(new LedgerRecord(2, LedgerOperation.PREPARE_TRANSFER, ALICE, ETH, BOB, 0L, 4_000_000_000_000_000_000L, 0));
+            journal.append(new LedgerRecord(3, LedgerOperation.COMMIT, ALICE, ETH, BOB, 0L, 4_000_000_000_000_000_000L, 2));
+            journal.append(new LedgerRecord(4, LedgerOperation.PREPARE_TRANSFER, ALICE, ETH, BOB, 0L, 1_000_000_000_000_000_000L, 0));
+            journal.commit();
+        }
+
+        // Act
+        ledger = open(1_000_000);
+        BigDecimal bobAfterFirstRestart = ledger.find(BOB, ETH).orElseThrow();
+        ledger.shutdown();
+        ledger = open(1_000_000);
+
+        // Assert
+        assertEquals(scaled("6"), ledger.find(ALICE, ETH).orElseThrow());
+        assertEquals(scaled("4"), bobAfterFirstRestart);
+        assertEquals(scaled("4"), ledger.find(BOB, ETH).orElseThrow());
+    }
+
+    @Test
+    void transfer_CreditsReceiverOnlyOnCommit() {
+        // Arrange
+        long carol = LongStream.range(3, 1_000)
+                .filter(userId -> BalanceLedger.shardIndex(userId, SHARDS) == BalanceLedger.shardIndex(ALICE, SHARDS))
+                .findFirst().orElseThrow();
+        ledger.credit(ALICE, ETH, new BigDecimal("10"));
+
+        // Act
+        LedgerIntent aborted = ledger.prepareTransfer(ALICE, BOB, ETH, new BigDecimal("4"));
+        BigDecimal aliceWhilePrepared = ledger.find(ALICE, ETH).orElseThrow();
+        ledger.abort(aborted.id());
+        LedgerIntent committed = ledger.prepareTransfer(ALICE, BOB, ETH, new BigDecimal("3"));
+        Optional<BigDecimal> bobWhilePrepared = ledger.find(BOB, ETH);
+        ledger.commit(committed.id());
+        transfer(ALICE, carol, ETH, new BigDecimal("2"));
+
+        // Assert
+        assertTrue(committed.newBalance());
+        assertEquals(scaled("6"), aliceWhilePrepared);
+        assertEquals(Optional.empty(), bobWhilePrepared);
+        assertEquals(scaled("5"), ledger.find(ALICE, ETH).orElseThrow());
+        assertEquals(scaled("3"), ledger.find(BOB, ETH).orElseThrow());
+        assertEquals(scaled("2"), ledger.find(carol, ETH).orElseThrow());
+        assertFalse(ledger.prepareTransfer(BOB, ALICE, ETH, BigDecimal.ONE).newBalance());
+    }
+
+    @Test
+    void intents_OnlyChangeBalancesOnceCommitted() {
+        // Arrange
+        ledger.credit(ALICE, ETH, new BigDecimal("10"));
+        ledger.reserve(ALICE, ETH, new BigDecimal("4"));
+
+        // Act
+        LedgerIntent credit = ledger.prepareCredit(ALICE, ETH, new BigDecimal("5"));
+        LedgerIntent release = ledger.prepareRelease(ALICE, ETH, new BigDecimal("3"));
+        LedgerBalance prepared = ledger.findBalance(ALICE, ETH).orElseThrow();
+        ledger.commit(credit.id());
+        ledger.abort(release.id());
+
+        // Assert
+        assertFalse(credit.newBalance());
+        assertTrue(ledger.prepareCredit(BOB, ETH, BigDecimal.ONE).newBalance());
+        assertThrows(IllegalStateException.class, () -> ledger.prepareRelease(ALICE, ETH, new BigDecimal("5")));
+        assertThrows(IllegalStateException.class, () -> ledger.commit(credit.id()));
+        assertEquals(new LedgerBalance(scaled("10"), scaled("4")), prepared);
+        assertEquals(new LedgerBalance(scaled("15"), scaled("4")), ledger.findBalance(ALICE, ETH).orElseThrow());
+        assertEquals(Optional.empty(), ledger.find(BOB, ETH));
+    }
+
+    @Test
+    void restart_CommitsIntentsWhoseTransactionCommittedBeforeACrash_ExactlyOnce() throws Exception {
+        // Arrange: one credit intent is open at shutdown; a second one was journaled (sequence 3) right before a
+        // crash. Only the transaction of the second one committed, so only its ledger_commits row exists.
+        ledger.credit(ALICE, ETH, new BigDecimal("10"));
+        LedgerIntent rolledBack = ledger.prepareCredit(ALICE, ETH, new BigDecimal("5"));
+        ledger.shutdown();
+        try (LedgerJournal journal = new LedgerJournal(shardDirectory(ALICE), 1 << 20)) {
+            journal.replay(2, record -> {
+            });
+            journal.append(new LedgerRecord(3, LedgerOperation.PREPARE_CREDIT, ALICE, ETH, 0, 0L, 7_000_000_000_000_000_000L, 0));
+            journal.commit();
+        }
+        long committed = BalanceLedger.intentId(BalanceLedger.shardIndex(ALICE, SHARDS), 3);
+        when(jdbcTemplate.queryForList("SELECT intent_id FROM ledger_commits", Long.class)).thenReturn(List.of(committed));
+
+        // Act
+        ledger = open(1_000_000);
+        BigDecimal afterFirstRestart = ledger.find(ALICE, ETH).orElseThrow();
+        ledger.shutdown();
+        ledger = open(1_000_000);
+
+        // Assert
+        assertEquals(scaled("17"), afterFirstRestart);
+        assertEquals(scaled("17"), ledger.find(ALICE, ETH).orElseThrow());
+        assertThrows(IllegalStateException.class, () -> ledger.commit(rolledBack.id()));
+        verify(jdbcTemplate).queryForList("SELECT intent_id FROM ledger_commits", Long.class);
+        verify(jdbcTemplate, atLeastOnce()).update("DELETE FROM ledger_commits");
+    }
+
+    @Test
+    void start_WithDifferentShardCount_IsRefused() throws Exception {
+        // Arrange
+        ledger.shutdown();
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () ->
+                new BalanceLedger(projector, jdbcTemplate, directory.toString(), SHARDS + 1, 1, 1024, 64, 1_000_000));
+        ledger = open(1_000_000);
+    }
+
+    private BalanceLedger open(long snapshotEvery) throws IOException {
+        BalanceLedger opened = new BalanceLedger(projector, jdbcTemplate, directory.toString(), SHARDS, 1, 1024, 64, snapshotEvery);
+        opened.start();
+        return opened;
+    }
+
+    private void transfer(long fromUserId, long toUserId, long tokenId, BigDecimal amount) {
+        ledger.commit(ledger.prepareTransfer(fromUserId, toUserId, tokenId, amount).id());
+    }
+
+    private static BigDecimal scaled(String amount) {
+        return new BigDecimal(amount).setScale(FixedPoint.SCALE);
+    }
+
+    private Path shardDirectory(long userId) {
+        return directory.resolve(String.format("shard-%02d", BalanceLedger.shardIndex(userId, SHARDS)));
+    }
+}
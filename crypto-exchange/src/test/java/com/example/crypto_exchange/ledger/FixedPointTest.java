@@ -0,0 +1,64 @@
+package com.example.crypto_exchange.ledger;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FixedPointTest {
+
+    @Test
+    void units_RoundTripsExactlyAtColumnPrecision() {
+        for (String amount : new String[]{"0", "0.000000000000000001", "-2.5", "123456.789", "999999999999999999.999999999999999999"}) {
+            // Act
+            BigInteger units = FixedPoint.units(new BigDecimal(amount));
+            BigDecimal back = FixedPoint.toBigDecimal(FixedPoint.high(units), FixedPoint.low(units));
+
+            // Assert
+            assertEquals(new BigDecimal(amount).setScale(FixedPoint.SCALE), back);
+        }
+    }
+
+    @Test
+    void units_TooManyDecimalsOrDigits_IsRejected() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> FixedPoint.units(new BigDecimal("0.0000000000000000001")));
+        assertThrows(IllegalArgumentException.class, () -> FixedPoint.units(new BigDecimal("1E18")));
+        assertEquals(FixedPoint.units(new BigDecimal("1.50")), FixedPoint.units(new BigDecimal("1.5")));
+    }
+
+    @Test
+    void addAndSubtract_CarryAcrossTheLowWord() {
+        // Arrange: all 64 bits of the low word set, so adding carries into the high word
+        BigInteger a = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        BigInteger b = BigInteger.valueOf(5);
+
+        // Act
+        long sumHigh = FixedPoint.addHigh(FixedPoint.high(a), FixedPoint.low(a), FixedPoint.high(b), FixedPoint.low(b));
+        long sumLow = FixedPoint.low(a) + FixedPoint.low(b);
+        long differenceHigh = FixedPoint.subtractHigh(sumHigh, sumLow, 0, 7);
+        long differenceLow = sumLow - 7;
+
+        // Assert
+        assertEquals(new BigDecimal(a.add(b), FixedPoint.SCALE), FixedPoint.toBigDecimal(sumHigh, sumLow));
+        assertEquals(new BigDecimal(a.subtract(BigInteger.TWO), FixedPoint.SCALE), FixedPoint.toBigDecimal(differenceHigh, differenceLow));
+        assertTrue(FixedPoint.compare(sumHigh, sumLow, FixedPoint.high(a), FixedPoint.low(a)) > 0);
+        assertEquals(-1, FixedPoint.signum(FixedPoint.subtractHigh(0, 1, 0, 2), 1 - 2));
+    }
+
+    @Test
+    void inRange_StopsAtThirtySixDigits() {
+        // Arrange
+        BigInteger max = BigInteger.TEN.pow(36).subtract(BigInteger.ONE);
+
+        // Act & Assert
+        assertTrue(FixedPoint.inRange(FixedPoint.high(max), FixedPoint.low(max)));
+        assertTrue(FixedPoint.inRange(FixedPoint.high(max.negate()), FixedPoint.low(max.negate())));
+        assertFalse(FixedPoint.inRange(FixedPoint.high(max.add(BigInteger.ONE)), FixedPoint.low(max.add(BigInteger.ONE))));
+        assertFalse(FixedPoint.inRange(FixedPoint.high(max.negate().subtract(BigInteger.ONE)),
+                FixedPoint.low(max.negate().subtract(BigInteger.ONE))));
+        assertFalse(FixedPoint.inRange(Long.MIN_VALUE, 0));
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.crypto_exchange.ledger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LedgerJournalTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replay_ReturnsRecordsAcrossSegmentsInOrder() throws IOException {
+        // Arrange: 73 bytes per record, so 200 records span several segments
+        try (LedgerJournal journal = new LedgerJournal(directory, SEGMENT_SIZE)) {
+            journal.replay(0, record -> fail("journal should be empty"));
+            for (int i = 1; i <= 200; i++) {
+                journal.append(credit(i));
+            }
+            journal.commit();
+        }
+
+        // Act
+        List<LedgerRecord> replayed = new ArrayList<>();
+        long last;
+        try (LedgerJournal journal = new LedgerJournal(directory, SEGMENT_SIZE)) {
+            last = journal.replay(50, replayed::add);
+        }
+
+        // Assert
+        assertEquals(200, last);
+        assertEquals(150, replayed.size());
+        assertEquals(credit(51), replayed.get(0));
+        assertEquals(credit(200), replayed.get(149));
+    }
+
+    @Test
+    void replay_TornLastRecord_IsDiscardedAndOverwritten() throws IOException {
+        // Arrange
+        try (LedgerJournal journal = new LedgerJournal(directory, SEGMENT_SIZE)) {
+            journal.replay(0, record -> { });
+            journal.append(credit(1));
+            journal.append(credit(2));
+            journal.commit();
+        }
+        Path segment = segments().get(0);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            // Flip a byte inside the second record's body
+            int firstRecordLength = 8 + file.readInt();
+            file.seek(firstRecordLength + 20);
+            file.write(file.read() ^ 0xFF);
+        }
+
+        // Act
+        List<LedgerRecord> replayed = new ArrayList<>();
+        try (LedgerJournal journal = new LedgerJournal(directory, SEGMENT_SIZE)) {
+            assertEquals(1, journal.replay(0, replayed::add));
+            journal.append(credit(2));
+            journal.commit();
+        }
+
+        // Assert
+        replayed.clear();
+        try (LedgerJournal journal = new LedgerJournal(directory, SEGMENT_SIZE)) {
+            assertEquals(2, journal.replay(0, replayed::add));
+        }
+        assertEquals(List.of(credit(1), credit(2)), replayed);
+    }
+
+    @Test
+    void checkpoint_DeletesSegmentsCoveredBySnapshot() throws IOException {
+        // Arrange
+        try (LedgerJournal journal = new LedgerJournal(directory, SEGMENT_SIZE)) {
+            journal.replay(0, record -> { });
+            for (int i = 1; i <= 200; i++) {
+                journal.append(credit(i));
+            }
+
+            // Act
+            journal.checkpoint(201);
+            journal.append(credit(201));
+            journal.commit();
+        }
+
+        // Assert
+        assertEquals(1, segments().size());
+        List<LedgerRecord> replayed = new ArrayList<>();
+        try (LedgerJournal journal = new LedgerJournal(directory, SEGMENT_SIZE)) {
+            journal.replay(200, replayed::add);
+        }
+        assertEquals(List.of(credit(201)), replayed);
+    }
+
+    private static LedgerRecord credit(long sequence) {
+        return new LedgerRecord(sequence, LedgerOperation.CREDIT, sequence % 7, 1, 0, 0, sequence * 1_000_000_000_000_000L, 0);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("journal-")).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.crypto_exchange.matching;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderBookTest {
+
+    private record Trade(long maker, long taker, long price, long quantity, long makerRemaining) {
+    }
+
+    private OrderBook book;
+    private List<Trade> trades;
+    private OrderBook.Listener listener;
+
+    @BeforeEach
+    void setUp() {
+        book = new OrderBook(4, 4);
+        trades = new ArrayList<>();
+        listener = (makerOrderId, makerUserId, takerOrderId, takerUserId, takerBuys, price, quantity, makerRemaining) ->
+                trades.add(new Trade(makerOrderId, takerOrderId, price, quantity, makerRemaining));
+    }
+
+    @Test
+    void match_BestPriceThenOldestFirst() {
+        // Arrange
+        book.add(1, 10, false, 101, 5);
+        book.add(2, 11, false, 100, 5);
+        book.add(3, 12, false, 100, 5);
+
+        // Act
+        long left = book.match(4, 13, true, 101, 12, listener);
+
+        // Assert
+        assertEquals(0, left);
+        assertEquals(List.of(
+                new Trade(2, 4, 100, 5, 0),
+                new Trade(3, 4, 100, 5, 0),
+                new Trade(1, 4, 101, 2, 3)), trades);
+        assertEquals(1, book.size());
+        assertEquals(1, book.depth(false));
+        assertEquals(101, book.levelPrice(false, 0));
+        assertEquals(3, book.levelQuantity(false, 0));
+    }
+
+    @Test
+    void match_StopsAtLimitPrice() {
+        // Arrange
+        book.add(1, 10, true, 100, 5);
+        book.add(2, 10, true, 98, 5);
+
+        // Act
+        long left = book.match(3, 11, false, 99, 8, listener);
+
+        // Assert
+        assertEquals(3, left);
+        assertEquals(List.of(new Trade(1, 3, 100, 5, 0)), trades);
+        assertEquals(98, book.levelPrice(true, 0));
+        assertFalse(book.contains(1));
+    }
+
+    @Test
+    void match_FailingListenerLeavesThatTradeUnapplied() {
+        // Arrange
+        book.add(1, 10, false, 100, 5);
+        book.add(2, 11, false, 100, 5);
+        OrderBook.Listener failing = (makerOrderId, makerUserId, takerOrderId, takerUserId, takerBuys, price, quantity, makerRemaining) -> {
+            if (makerOrderId == 2) {
+                throw new IllegalStateException("settlement failed");
+            }
+            listener.onTrade(makerOrderId, makerUserId, takerOrderId, takerUserId, takerBuys, price, quantity, makerRemaining);
+        };
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> book.match(3, 12, true, 100, 8, failing));
+        assertEquals(List.of(new Trade(1, 3, 100, 5, 0)), trades);
+        assertFalse(book.contains(1));
+        assertTrue(book.contains(2));
+        assertEquals(1, book.depth(false));
+        assertEquals(5, book.levelQuantity(false, 0));
+        assertEquals(0, book.match(4, 12, true, 100, 5, listener));
+        assertEquals(0, book.size());
+    }
+
+    @Test
+    void cancel_RemovesOrderAndEmptyLevel() {
+        // Arrange
+        book.add(1, 10, true, 100, 5);
+        book.add(2, 10, true, 100, 7);
+        book.add(3, 10, true, 99, 1);
+
+        // Act
+        long first = book.cancel(1);
+        long second = book.cancel(2);
+        long missing = book.cancel(2);
+
+        // Assert
+        assertEquals(5, first);
+        assertEquals(7, second);
+        assertEquals(-1, missing);
+        assertEquals(1, book.depth(true));
+        assertEquals(99, book.levelPrice(true, 0));
+        assertEquals(1, book.size());
+    }
+
+    @Test
+    void availableCostAndAffordable_WalkTheOppositeSide() {
+        // Arrange
+        book.add(1, 10, false, 100, 5);
+        book.add(2, 10, false, 102, 5);
+        book.add(3, 10, false, 105, 5);
+
+        // Act & Assert
+        assertEquals(10, book.available(true, 102, 20));
+        assertEquals(7, book.available(true, Long.MAX_VALUE, 7));
+        assertEquals(5 * 100 + 2 * 102, book.cost(true, Long.MAX_VALUE, 7));
+        assertEquals(0, book.available(false, 0, 5));
+        assertEquals(7, book.affordable(Long.MAX_VALUE, 7, 5 * 100 + 2 * 102));
+        assertEquals(6, book.affordable(Long.MAX_VALUE, 7, 5 * 100 + 2 * 102 - 1));
+        assertEquals(10, book.affordable(102, 20, Long.MAX_VALUE));
+        assertTrue(trades.isEmpty());
+    }
+
+    @Test
+    void add_GrowsPoolsAndReusesFreedSlots() {
+        // Arrange
+        for (long id = 1; id <= 100; id++) {
+            book.add(id, id, id % 2 == 0, id % 2 == 0 ? id : 1000 + id, 1);
+        }
+
+        // Act
+        long left = book.match(101, 1, true, Long.MAX_VALUE, 50, listener);
+        for (long id = 2; id <= 100; id += 2) {
+            book.cancel(id);
+        }
+        book.add(102, 1, true, 500, 3);
+
+        // Assert
+        assertEquals(0, left);
+        assertEquals(50, trades.size());
+        assertEquals(1001, trades.get(0).price());
+        assertEquals(1, book.size());
+        assertTrue(book.contains(102));
+    }
+
+    @Test
+    void add_DuplicateOrderId() {
+        // Arrange
+        book.add(1, 10, true, 100, 5);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> book.add(1, 10, true, 101, 5));
+    }
+}
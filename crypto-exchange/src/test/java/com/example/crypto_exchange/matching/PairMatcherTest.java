@@ -0,0 +1,260 @@
+package com.example.crypto_exchange.matching;
+
+import com.example.crypto_exchange.entity.OrderSide;
+import com.example.crypto_exchange.entity.OrderStatus;
+import com.example.crypto_exchange.entity.OrderType;
+import com.example.crypto_exchange.entity.SpotOrder;
+import com.example.crypto_exchange.entity.TimeInForce;
+import com.example.crypto_exchange.entity.TradingPair;
+import com.example.crypto_exchange.exception.InvalidInputException;
+import com.example.crypto_exchange.repository.SpotOrderRepository;
+import com.example.crypto_exchange.service.TransactionLogService;
+import com.example.crypto_exchange.service.UserBalanceService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PairMatcherTest {
+
+    private static final long BASE = 1L;
+    private static final long QUOTE = 2L;
+    private static final long MAKER = 10L;
+    private static final long TAKER = 20L;
+
+    private UserBalanceService balances;
+    private SpotOrderRepository orders;
+    private TransactionLogService transactionLog;
+    private PairMatcher matcher;
+
+    @BeforeEach
+    void setUp() {
+        balances = Mockito.mock(UserBalanceService.class);
+        orders = Mockito.mock(SpotOrderRepository.class);
+        transactionLog = Mockito.mock(TransactionLogService.class);
+        when(balances.reserveIfAvailable(anyLong(), anyLong(), any())).thenReturn(true);
+        TradingPair pair = new TradingPair("ETHUSDT", BASE, QUOTE, new BigDecimal("0.01"), new BigDecimal("0.001"));
+        pair.setPairId(1L);
+        matcher = new PairMatcher(pair, balances, orders, transactionLog, transaction(), 16, 64, 5_000);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        matcher.shutdown();
+    }
+
+    @Test
+    void place_GtcRestsAndIsSaved() {
+        // Act
+        PairMatcher.Placement placement = matcher.place(1, MAKER, OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC,
+                new BigDecimal("2000.00"), new BigDecimal("1.5"));
+
+        // Assert
+        assertEquals(OrderStatus.OPEN, placement.status());
+        verify(balances).reserveIfAvailable(MAKER, BASE, new BigDecimal("1.500"));
+        ArgumentCaptor<SpotOrder> saved = ArgumentCaptor.forClass(SpotOrder.class);
+        verify(orders).save(saved.capture());
+        assertEquals(1L, saved.getValue().getOrderId());
+        assertEquals(OrderStatus.PENDING, saved.getValue().getStatus());
+        assertEquals(0, new BigDecimal("1.5").compareTo(saved.getValue().getRemainingQuantity()));
+        assertEquals(0, new BigDecimal("1.5").compareTo(saved.getValue().getReservedAmount()));
+        assertEquals(0, new BigDecimal("2000").compareTo(saved.getValue().getPrice()));
+        verify(orders).updateMatched(eq(1L), amount("2000"), amount("1.5"), amount("1.5"), eq(OrderStatus.OPEN));
+    }
+
+    @Test
+    void place_TradeSettlesBothSidesAndReleasesPriceImprovement() {
+        // Arrange
+        matcher.place(1, MAKER, OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC,
+                new BigDecimal("2000.00"), new BigDecimal("2"));
+
+        // Act
+        PairMatcher.Placement placement = matcher.place(2, TAKER, OrderSide.BUY, OrderType.LIMIT, TimeInForce.GTC,
+                new BigDecimal("2010.00"), new BigDecimal("0.5"));
+
+        // Assert
+        assertEquals(OrderStatus.FILLED, placement.status());
+        assertEquals(placement.quantity(), placement.filled());
+        verify(balances).reserveIfAvailable(eq(TAKER), eq(QUOTE), argThat(amount -> amount.compareTo(new BigDecimal("1005")) == 0));
+        verify(balances).settleReserved(eq(MAKER), eq(BASE), argThat(amount -> amount.compareTo(new BigDecimal("0.5")) == 0));
+        verify(balances).settleReserved(eq(TAKER), eq(QUOTE), argThat(amount -> amount.compareTo(new BigDecimal("1000")) == 0));
+        verify(balances).addToBalance(eq(TAKER), eq(BASE), argThat(amount -> amount.compareTo(new BigDecimal("0.5")) == 0));
+        verify(balances).addToBalance(eq(MAKER), eq(QUOTE), argThat(amount -> amount.compareTo(new BigDecimal("1000")) == 0));
+        verify(balances).releaseReserved(eq(TAKER), eq(QUOTE), argThat(amount -> amount.compareTo(new BigDecimal("5")) == 0));
+        verify(orders).updateRemaining(eq(1L), amount("1.5"), amount("1.5"), eq(OrderStatus.PARTIALLY_FILLED));
+        verify(orders).updateMatched(eq(2L), amount("2010"), amount("0"), amount("0"), eq(OrderStatus.FILLED));
+        verify(transactionLog).logTrade(eq(TAKER), eq(2L), eq(BASE), argThat(amount -> amount.compareTo(new BigDecimal("0.5")) == 0));
+        verify(transactionLog).logTrade(eq(MAKER), eq(1L), eq(QUOTE), argThat(amount -> amount.compareTo(new BigDecimal("1000")) == 0));
+        ArgumentCaptor<SpotOrder> saved = ArgumentCaptor.forClass(SpotOrder.class);
+        verify(orders, times(2)).save(saved.capture());
+        SpotOrder taker = saved.getAllValues().get(1);
+        assertEquals(2L, taker.getOrderId());
+        assertEquals(OrderStatus.PENDING, taker.getStatus());
+        assertEquals(0, new BigDecimal("1005").compareTo(taker.getReservedAmount()));
+    }
+
+    @Test
+    void place_IocReleasesUnfilledRemainder() {
+        // Arrange
+        matcher.place(1, MAKER, OrderSide.BUY, OrderType.LIMIT, TimeInForce.GTC,
+                new BigDecimal("100.00"), new BigDecimal("1"));
+
+        // Act
+        PairMatcher.Placement placement = matcher.place(2, TAKER, OrderSide.SELL, OrderType.LIMIT, TimeInForce.IOC,
+                new BigDecimal("100.00"), new BigDecimal("3"));
+
+        // Assert
+        assertEquals(OrderStatus.CANCELLED, placement.status());
+        assertEquals(1000, placement.filled());
+        verify(balances).releaseReserved(eq(TAKER), eq(BASE), argThat(amount -> amount.compareTo(new BigDecimal("2")) == 0));
+        verify(orders).updateMatched(eq(2L), amount("100"), amount("2"), amount("0"), eq(OrderStatus.CANCELLED));
+    }
+
+    @Test
+    void place_FailedSettlementIsRetriedWhileTradingIsSuspended() throws Exception {
+        // Arrange
+        matcher.place(1, MAKER, OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC,
+                new BigDecimal("100.00"), new BigDecimal("1"));
+        AtomicBoolean databaseUp = new AtomicBoolean();
+        doAnswer(invocation -> {
+            if (!databaseUp.get()) {
+                throw new IllegalStateException("database unavailable");
+            }
+            return 1;
+        }).when(orders).updateRemaining(eq(1L), any(), any(), any());
+
+        // Act
+        CompletableFuture<PairMatcher.Placement> taker = CompletableFuture.supplyAsync(() -> matcher.place(2, TAKER,
+                OrderSide.BUY, OrderType.LIMIT, TimeInForce.GTC, new BigDecimal("100.00"), new BigDecimal("1")));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!matcher.suspended() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        IllegalStateException rejected = assertThrows(IllegalStateException.class, () -> matcher.place(3, MAKER + 1,
+                OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC, new BigDecimal("100.00"), new BigDecimal("1")));
+        databaseUp.set(true);
+        PairMatcher.Placement placement = taker.get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertTrue(rejected.getMessage().contains("suspended"));
+        verify(balances, never()).reserveIfAvailable(eq(MAKER + 1), anyLong(), any());
+        assertEquals(OrderStatus.FILLED, placement.status());
+        verify(orders).updateMatched(eq(2L), amount("100"), amount("0"), amount("0"), eq(OrderStatus.FILLED));
+        assertFalse(matcher.suspended());
+        assertTrue(matcher.depth(5).getAsks().isEmpty());
+    }
+
+    @Test
+    void place_FokWithoutLiquidityTakesNothing() {
+        // Arrange
+        matcher.place(1, MAKER, OrderSide.SELL, OrderType.LIMIT, TimeInForce.GTC,
+                new BigDecimal("100.00"), new BigDecimal("1"));
+        clearInvocations(balances, orders);
+
+        // Act
+        PairMatcher.Placement placement = matcher.place(2, TAKER, OrderSide.BUY, OrderType.LIMIT, TimeInForce.FOK,
+                new BigDecimal("100.00"), new BigDecimal("2"));
+
+        // Assert
+        assertEquals(OrderStatus.CANCELLED, placement.status());
+        assertEquals(0, placement.filled());
+        verifyNoInteractions(balances, orders);
+    }
+
+    @Test
+    void place_InsufficientBalance() {
+        // Arrange
+        when(balances.reserveIfAvailable(anyLong(), anyLong(), any())).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(InvalidInputException.class, () -> matcher.place(1, TAKER, OrderSide.BUY, OrderType.LIMIT,
+                TimeInForce.GTC, new BigDecimal("100.00"), new BigDecimal("1")));
+        verifyNoInteractions(orders);
+    }
+
+    @Test
+    void place_RejectsPriceOffTick() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> matcher.place(1, TAKER, OrderSide.BUY, OrderType.LIMIT,
+                TimeInForce.GTC, new BigDecimal("100.005"), new BigDecimal("1")));
+        verifyNoInteractions(balances, orders);
+    }
+
+    @Test
+    void cancel_ReleasesRemainder() {
+        // Arrange
+        matcher.place(1, MAKER, OrderSide.BUY, OrderType.LIMIT, TimeInForce.GTC,
+                new BigDecimal("100.00"), new BigDecimal("2"));
+        SpotOrder order = new SpotOrder().setOrderId(1L).setUserId(MAKER).setSide(OrderSide.BUY)
+                .setPrice(new BigDecimal("100.00")).setRemainingQuantity(new BigDecimal("2"));
+
+        // Act
+        boolean cancelled = matcher.cancel(order);
+        boolean again = matcher.cancel(order);
+
+        // Assert
+        assertTrue(cancelled);
+        assertFalse(again);
+        verify(balances).releaseReserved(eq(MAKER), eq(QUOTE), argThat(amount -> amount.compareTo(new BigDecimal("200")) == 0));
+        verify(orders).updateRemaining(eq(1L), amount("2"), amount("0"), eq(OrderStatus.CANCELLED));
+    }
+
+    @Test
+    void cancelPending_ReleasesWhatTheOrderStillHadReserved() {
+        // Arrange
+        SpotOrder pending = new SpotOrder().setOrderId(4L).setUserId(TAKER).setSide(OrderSide.BUY)
+                .setPrice(new BigDecimal("100.00")).setRemainingQuantity(new BigDecimal("1"))
+                .setReservedAmount(new BigDecimal("100")).setStatus(OrderStatus.PENDING);
+
+        // Act
+        matcher.cancelPending(List.of(pending));
+
+        // Assert
+        verify(balances).releaseReserved(eq(TAKER), eq(QUOTE), amount("100"));
+        verify(orders).updateRemaining(eq(4L), amount("1"), amount("0"), eq(OrderStatus.CANCELLED));
+        assertTrue(matcher.depth(5).getBids().isEmpty());
+    }
+
+    private static BigDecimal amount(String expected) {
+        return argThat(amount -> amount != null && amount.compareTo(new BigDecimal(expected)) == 0);
+    }
+
+    /**
+     * Transactions without a resource, enough to run the settlement callbacks
+     */
+    private static TransactionTemplate transaction() {
+        return new TransactionTemplate(new AbstractPlatformTransactionManager() {
+            @Override
+            protected Object doGetTransaction() {
+                return new Object();
+            }
+
+            @Override
+            protected void doBegin(Object transaction, TransactionDefinition definition) {
+            }
+
+            @Override
+            protected void doCommit(DefaultTransactionStatus status) {
+            }
+
+            @Override
+            protected void doRollback(DefaultTransactionStatus status) {
+            }
+        });
+    }
+}
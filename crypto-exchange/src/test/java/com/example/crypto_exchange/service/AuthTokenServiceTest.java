@@ -0,0 +1,79 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.service.AuthTokenService.TokenClaims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuthTokenServiceTest {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
+    private static final Instant NOW = Instant.parse("2025-01-01T12:00:00Z");
+
+    private AuthTokenService authTokenService;
+
+    @BeforeEach
+    void setUp() {
+        authTokenService = new AuthTokenService(SECRET, Duration.ofMinutes(15), Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void verify_IssuedToken_ReturnsUserAndAuthorities() {
+        // Arrange
+        String token = authTokenService.issue(UsernamePasswordAuthenticationToken.authenticated(
+                "nikgeo", null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+
+        // Act
+        Optional<TokenClaims> claims = authTokenService.verify(token);
+
+        // Assert
+        assertTrue(claims.isPresent());
+        assertEquals("nikgeo", claims.get().username());
+        assertEquals(AuthorityUtils.createAuthorityList("ROLE_USER"), claims.get().authorities());
+        assertEquals(NOW.plus(Duration.ofMinutes(15)), claims.get().expiresAt());
+    }
+
+    @Test
+    void verify_TamperedOrForeignToken_ReturnsEmpty() {
+        // Arrange
+        String token = authTokenService.issue(UsernamePasswordAuthenticationToken.authenticated(
+                "nikgeo", null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+        String payload = token.substring(0, token.indexOf('.'));
+        String signature = token.substring(token.indexOf('.') + 1);
+        AuthTokenService otherInstance = new AuthTokenService("fedcba9876543210fedcba9876543210",
+                Duration.ofMinutes(15), Clock.fixed(NOW, ZoneOffset.UTC));
+
+        // Act & Assert
+        assertTrue(authTokenService.verify(payload + "." + signature.substring(1) + "A").isEmpty());
+        assertTrue(authTokenService.verify(payload.substring(1) + "." + signature).isEmpty());
+        assertTrue(authTokenService.verify("not-a-token").isEmpty());
+        assertTrue(otherInstance.verify(token).isEmpty());
+    }
+
+    @Test
+    void verify_ExpiredToken_ReturnsEmpty() {
+        // Arrange
+        String token = authTokenService.issue(UsernamePasswordAuthenticationToken.authenticated(
+                "nikgeo", null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+        AuthTokenService later = new AuthTokenService(SECRET, Duration.ofMinutes(15),
+                Clock.fixed(NOW.plus(Duration.ofMinutes(16)), ZoneOffset.UTC));
+
+        // Act & Assert
+        assertTrue(later.verify(token).isEmpty());
+    }
+
+    @Test
+    void constructor_ShortSecret_Throws() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AuthTokenService("too-short", Duration.ofMinutes(15), Clock.systemUTC()));
+    }
+}
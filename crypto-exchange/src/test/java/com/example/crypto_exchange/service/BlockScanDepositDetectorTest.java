@@ -0,0 +1,161 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.entity.BlockScanCheckpoint;
+import com.example.crypto_exchange.entity.Token;
+import com.example.crypto_exchange.entity.TransactionLog;
+import com.example.crypto_exchange.repository.BlockScanCheckpointRepository;
+import com.example.crypto_exchange.repository.WalletBalanceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.utils.Numeric;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BlockScanDepositDetectorTest {
+
+    private static final String USDT_CONTRACT = "0xdac17f958d2ee523a2206206994597c13d831ec7";
+    private static final String TRACKED = "0x742d35cc6634c0532925a3b844bc454e4438f44e";
+    private static final String STRANGER = "0x0000000000000000000000000000000000000bad";
+
+    private BlockchainService blockchainService;
+    private BlockScanCheckpointRepository checkpointRepository;
+    private DepositCreditService depositCreditService;
+    private TrackedAddressIndex addressIndex;
+    private BlockScanDepositDetector detector;
+    private Token eth;
+    private Token usdt;
+
+    @BeforeEach
+    void setUp() {
+        blockchainService = Mockito.mock(BlockchainService.class);
+        checkpointRepository = Mockito.mock(BlockScanCheckpointRepository.class);
+        depositCreditService = Mockito.mock(DepositCreditService.class);
+        TokenRegistry tokenRegistry = Mockito.mock(TokenRegistry.class);
+        WalletBalanceRepository walletBalanceRepository = Mockito.mock(WalletBalanceRepository.class);
+        when(walletBalanceRepository.findTrackedWalletsAfter(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(TrackedAddressIndexTest.trackedWallet(7L, TRACKED, 42L)));
+        addressIndex = new TrackedAddressIndex(walletBalanceRepository, false, 16);
+        addressIndex.refresh();
+
+        eth = new Token("ETH", "Ethereum", 18).setTokenId(1L);
+        usdt = new Token("USDT", "Tether", 6).setTokenId(2L).setContractAddress(USDT_CONTRACT);
+        when(tokenRegistry.getAll()).thenReturn(List.of(eth, usdt));
+        when(tokenRegistry.findBySymbol("ETH")).thenReturn(Optional.of(eth));
+        when(checkpointRepository.save(any(BlockScanCheckpoint.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(depositCreditService.creditOnChainDeposit(anyLong(), anyString(), any(Token.class), any(BigDecimal.class), anyString(), anyInt()))
+                .thenReturn(true);
+
+        detector = new BlockScanDepositDetector(blockchainService, checkpointRepository, depositCreditService, tokenRegistry, addressIndex);
+        ReflectionTestUtils.setField(detector, "confirmations", 12);
+        ReflectionTestUtils.setField(detector, "maxBlockRange", 100);
+        ReflectionTestUtils.setField(detector, "startBlock", -1L);
+    }
+
+    @Test
+    void scan_CreditsMatchingTransfersWithRealTxHashes() {
+        // Arrange
+        when(checkpointRepository.findById(BlockScanDepositDetector.CHECKPOINT))
+                .thenReturn(Optional.of(new BlockScanCheckpoint(BlockScanDepositDetector.CHECKPOINT, 999L)));
+        when(blockchainService.getLatestBlockNumber()).thenReturn(1012L);
+        when(blockchainService.getTransferLogs(eq(1000L), eq(1000L), anyCollection())).thenReturn(List.of(
+                transferLog(TRACKED, 25_000_000L, "0xaa", 3),
+                transferLog(TRACKED, 5_000_000L, "0xaa", 4),
+                transferLog(STRANGER, 1_000_000L, "0xbb", 5)));
+        when(blockchainService.getBlocksWithTransactions(1000L, 1000L)).thenReturn(List.of(block(
+                transaction(TRACKED, "0xcc", new BigInteger("1500000000000000000")),
+                transaction(TRACKED, "0xdd", new BigInteger("2000000000000000000")),
+                transaction(STRANGER, "0xee", BigInteger.TEN))));
+        when(blockchainService.isTransactionSuccessful("0xcc")).thenReturn(true);
+        when(blockchainService.isTransactionSuccessful("0xdd")).thenReturn(false);
+
+        // Act
+        detector.scan();
+
+        // Assert
+        verify(depositCreditService).creditOnChainDeposit(42L, TRACKED, usdt, new BigDecimal("25.000000"), "0xaa", 3);
+        verify(depositCreditService).creditOnChainDeposit(42L, TRACKED, usdt, new BigDecimal("5.000000"), "0xaa", 4);
+        verify(depositCreditService).creditOnChainDeposit(eq(42L), eq(TRACKED), eq(eth),
+                argThat(amount -> amount.compareTo(new BigDecimal("1.5")) == 0), eq("0xcc"),
+                eq(TransactionLog.NATIVE_TRANSFER_LOG_INDEX));
+        verifyNoMoreInteractions(depositCreditService);
+
+        ArgumentCaptor<BlockScanCheckpoint> saved = ArgumentCaptor.forClass(BlockScanCheckpoint.class);
+        verify(checkpointRepository).save(saved.capture());
+        assertEquals(1000L, saved.getValue().getLastBlock());
+    }
+
+    @Test
+    void scan_WalksBacklogInRangesAndStopsAtFailure() {
+        // Arrange - 250 blocks behind, the third range fails
+        ReflectionTestUtils.setField(detector, "confirmations", 0);
+        when(checkpointRepository.findById(BlockScanDepositDetector.CHECKPOINT))
+                .thenReturn(Optional.of(new BlockScanCheckpoint(BlockScanDepositDetector.CHECKPOINT, 0L)));
+        when(blockchainService.getLatestBlockNumber()).thenReturn(250L);
+        when(blockchainService.getTransferLogs(anyLong(), anyLong(), anyCollection())).thenReturn(List.of());
+        when(blockchainService.getBlocksWithTransactions(anyLong(), anyLong())).thenReturn(List.of());
+        when(blockchainService.getBlocksWithTransactions(201L, 250L)).thenThrow(new RuntimeException("node unavailable"));
+
+        // Act
+        detector.scan();
+
+        // Assert - the checkpoint stays at the last completed range
+        ArgumentCaptor<BlockScanCheckpoint> saved = ArgumentCaptor.forClass(BlockScanCheckpoint.class);
+        verify(checkpointRepository, times(2)).save(saved.capture());
+        assertEquals(200L, saved.getValue().getLastBlock());
+        verify(blockchainService).getTransferLogs(eq(1L), eq(100L), anyCollection());
+        verify(blockchainService).getTransferLogs(eq(101L), eq(200L), anyCollection());
+    }
+
+    @Test
+    void scan_StartsAtHeadWithoutCheckpoint() {
+        // Arrange
+        when(checkpointRepository.findById(BlockScanDepositDetector.CHECKPOINT)).thenReturn(Optional.empty());
+        when(blockchainService.getLatestBlockNumber()).thenReturn(5_000L);
+
+        // Act
+        detector.scan();
+
+        // Assert
+        verify(blockchainService).getTransferLogs(eq(4_988L), eq(4_988L), anyCollection());
+    }
+
+    private static Log transferLog(String to, long rawAmount, String txHash, int logIndex) {
+        Log log = new Log();
+        log.setAddress(USDT_CONTRACT);
+        log.setTopics(List.of(
+                BlockchainService.TRANSFER_EVENT_TOPIC,
+                Numeric.toHexStringWithPrefixZeroPadded(BigInteger.ONE, 64),
+                Numeric.toHexStringWithPrefixZeroPadded(Numeric.toBigInt(to), 64)));
+        log.setData(Numeric.toHexStringWithPrefixZeroPadded(BigInteger.valueOf(rawAmount), 64));
+        log.setTransactionHash(txHash);
+        log.setLogIndex(Numeric.toHexStringWithPrefix(BigInteger.valueOf(logIndex)));
+        return log;
+    }
+
+    private static EthBlock.TransactionObject transaction(String to, String hash, BigInteger wei) {
+        EthBlock.TransactionObject tx = new EthBlock.TransactionObject();
+        tx.setTo(to);
+        tx.setHash(hash);
+        tx.setValue(Numeric.toHexStringWithPrefix(wei));
+        return tx;
+    }
+
+    private static EthBlock.Block block(EthBlock.TransactionObject... transactions) {
+        EthBlock.Block block = new EthBlock.Block();
+        block.setTransactions(List.of((EthBlock.TransactionResult[]) transactions));
+        return block;
+    }
+}
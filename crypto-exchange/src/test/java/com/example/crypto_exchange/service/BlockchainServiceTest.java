@@ -1,9 +1,12 @@
 package com.example.crypto_exchange.service;
 
+import com.example.crypto_exchange.entity.Token;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.http.HttpService;
 import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.methods.response.EthGetBalance;
 import org.web3j.utils.Convert;
@@ -14,6 +17,10 @@ import org.web3j.protocol.core.methods.response.TransactionReceipt;
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -26,6 +33,7 @@ class BlockchainServiceTest {
     private BlockchainService blockchainService;
     private Web3j web3j;
     private static final String TEST_ADDRESS = "0x742d35Cc6634C0532925a3b844Bc454e4438f44e";
+    private static final String USDT_CONTRACT = "0xdAC17F958D2ee523a2206206994597C13D831ec7";
 
     @BeforeEach
     void setUp() throws Exception {
@@ -68,14 +76,139 @@ class BlockchainServiceTest {
     }
 
     @Test
-    void getTokenBalance_Placeholder() {
+    void getNativeBalances_UsesJsonRpcBatches() throws Exception {
+        // Arrange - every address holds (index + 1) ETH, the last one cannot be looked up
+        List<String> addresses = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            addresses.add(String.format("0x%040x", i));
+        }
+        String failing = addresses.get(addresses.size() - 1);
+        try (StubJsonRpcServer node = new StubJsonRpcServer((method, params) -> {
+            assertEquals("eth_getBalance", method);
+            String address = params.get(0).asText();
+            if (address.equals(failing)) {
+                return null;
+            }
+            BigInteger index = new BigInteger(address.substring(2), 16);
+            return Numeric.toHexStringWithPrefix(Convert.toWei(new BigDecimal(index.add(BigInteger.ONE)), Convert.Unit.ETHER).toBigInteger());
+        })) {
+            Field web3jField = BlockchainService.class.getDeclaredField("web3j");
+            web3jField.setAccessible(true);
+            web3jField.set(blockchainService, Web3j.build(new HttpService(node.url())));
+            ReflectionTestUtils.setField(blockchainService, "maxBatchSize", 100);
+
+            // Act
+            Map<String, BigDecimal> balances = blockchainService.getNativeBalances(addresses);
+
+            // Assert
+            assertEquals(List.of(100, 100, 50), node.batchSizes());
+            assertEquals(249, balances.size());
+            assertFalse(balances.containsKey(failing));
+            for (int i = 0; i < 249; i++) {
+                assertEquals(0, BigDecimal.valueOf(i + 1).compareTo(balances.get(addresses.get(i))));
+            }
+        }
+    }
+
+    @Test
+    void getTokenBalance_CallsBalanceOf() throws Exception {
+        // Arrange - 1234.5 USDT (6 decimals)
+        try (StubJsonRpcServer node = new StubJsonRpcServer((method, params) -> {
+            assertEquals("eth_call", method);
+            assertEquals(USDT_CONTRACT.toLowerCase(), params.get(0).get("to").asText().toLowerCase());
+            assertTrue(params.get(0).get("data").asText().startsWith("0x70a08231"), "balanceOf selector");
+            return Numeric.toHexStringWithPrefixZeroPadded(BigInteger.valueOf(1_234_500_000L), 64);
+        })) {
+            useNode(node);
+
+            // Act
+            BigDecimal balance = blockchainService.getTokenBalance(USDT_CONTRACT, TEST_ADDRESS, 6);
+
+            // Assert
+            assertEquals(0, new BigDecimal("1234.5").compareTo(balance));
+        }
+    }
+
+    @Test
+    void getTokenBalance_UnknownContract() {
         // Arrange
-        String tokenAddress = "0x1234567890123456789012345678901234567890";
-        // Act
-        BigDecimal balance = blockchainService.getTokenBalance(tokenAddress, TEST_ADDRESS);
-        // Assert
-        assertNotNull(balance);
-        assertEquals(BigDecimal.ZERO, balance);
+        TokenRegistry tokenRegistry = Mockito.mock(TokenRegistry.class);
+        when(tokenRegistry.findByContractAddress(USDT_CONTRACT)).thenReturn(Optional.empty());
+        ReflectionTestUtils.setField(blockchainService, "tokenRegistry", tokenRegistry);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> blockchainService.getTokenBalance(USDT_CONTRACT, TEST_ADDRESS));
+    }
+
+    @Test
+    void getTokenBalances_AggregatesCallsWithMulticall() throws Exception {
+        // Arrange - 1200 wallets in chunks of 500; in every chunk the second call fails
+        List<String> wallets = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            wallets.add(String.format("0x%040x", i));
+        }
+        try (StubJsonRpcServer node = new StubJsonRpcServer((method, params) -> {
+            assertEquals("eth_call", method);
+            assertEquals(Multicall3.DEFAULT_ADDRESS.toLowerCase(), params.get(0).get("to").asText().toLowerCase());
+            int calls = Multicall3Test.callCount(params.get(0).get("data").asText());
+            List<Multicall3.Result> results = new ArrayList<>();
+            for (int i = 0; i < calls; i++) {
+                results.add(i == 1
+                        ? new Multicall3.Result(false, "")
+                        : new Multicall3.Result(true, Numeric.toHexStringNoPrefixZeroPadded(BigInteger.valueOf(2_500_000L), 64)));
+            }
+            return Multicall3Test.encodeResults(results);
+        })) {
+            useNode(node);
+            ReflectionTestUtils.setField(blockchainService, "multicallMaxCalls", 500);
+
+            // Act
+            Map<String, BigDecimal> balances = blockchainService.getTokenBalances(usdt(), wallets);
+
+            // Assert
+            assertEquals(List.of(1, 1, 1), node.batchSizes());
+            assertEquals(1197, balances.size());
+            assertFalse(balances.containsKey(wallets.get(1)));
+            assertFalse(balances.containsKey(wallets.get(501)));
+            assertEquals(0, new BigDecimal("2.5").compareTo(balances.get(wallets.get(0))));
+        }
+    }
+
+    @Test
+    void getTokenBalances_UsesJsonRpcBatchWithoutMulticall() throws Exception {
+        // Arrange - the second call fails and the third returns an empty result
+        List<String> wallets = List.of(TEST_ADDRESS,
+                "0x0000000000000000000000000000000000000001",
+                "0x0000000000000000000000000000000000000002");
+        try (StubJsonRpcServer node = new StubJsonRpcServer((method, params) -> {
+            assertEquals("eth_call", method);
+            assertEquals(USDT_CONTRACT.toLowerCase(), params.get(0).get("to").asText().toLowerCase());
+            String data = params.get(0).get("data").asText();
+            if (data.endsWith("1")) {
+                return null;
+            }
+            return data.endsWith("2")
+                    ? "0x"
+                    : Numeric.toHexStringWithPrefixZeroPadded(BigInteger.valueOf(7_000_000L), 64);
+        })) {
+            useNode(node);
+            ReflectionTestUtils.setField(blockchainService, "multicallEnabled", false);
+
+            // Act
+            Map<String, BigDecimal> balances = blockchainService.getTokenBalances(usdt(), wallets);
+
+            // Assert
+            assertEquals(List.of(3), node.batchSizes());
+            assertEquals(Map.of(TEST_ADDRESS, new BigDecimal("7.000000")), balances);
+        }
+    }
+
+    private void useNode(StubJsonRpcServer node) {
+        ReflectionTestUtils.setField(blockchainService, "web3j", Web3j.build(new HttpService(node.url())));
+    }
+
+    private static Token usdt() {
+        return new Token("USDT", "Tether", 6).setTokenId(2L).setContractAddress(USDT_CONTRACT);
     }
 
     @Test
@@ -0,0 +1,169 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.entity.Token;
+import com.example.crypto_exchange.entity.WalletBalance;
+import com.example.crypto_exchange.repository.WalletBalanceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class DepositWatcherServiceTest {
+
+    private static final int WALLETS = 40;
+    private static final int MAX_CONCURRENCY = 4;
+    private static final int BATCH_SIZE = 5;
+    private static final int PAGE_SIZE = 20;
+    private static final String USDT_CONTRACT = "0xdAC17F958D2ee523a2206206994597C13D831ec7";
+
+    private BlockchainService blockchainService;
+    private WalletBalanceRepository walletBalanceRepository;
+    private DepositCreditService depositCreditService;
+    private TokenRegistry tokenRegistry;
+    private DepositWatcherService depositWatcherService;
+    private Token eth;
+
+    @BeforeEach
+    void setUp() {
+        blockchainService = Mockito.mock(BlockchainService.class);
+        walletBalanceRepository = Mockito.mock(WalletBalanceRepository.class);
+        depositCreditService = Mockito.mock(DepositCreditService.class);
+        tokenRegistry = Mockito.mock(TokenRegistry.class);
+
+        eth = new Token("ETH", "Ethereum", 18).setTokenId(1L);
+        when(tokenRegistry.findBySymbol("ETH")).thenReturn(Optional.of(eth));
+
+        depositWatcherService = new DepositWatcherService(blockchainService, walletBalanceRepository, depositCreditService, tokenRegistry);
+        ReflectionTestUtils.setField(depositWatcherService, "maxConcurrency", MAX_CONCURRENCY);
+        ReflectionTestUtils.setField(depositWatcherService, "batchSize", BATCH_SIZE);
+        ReflectionTestUtils.setField(depositWatcherService, "tokenBatchSize", BATCH_SIZE);
+        ReflectionTestUtils.setField(depositWatcherService, "pageSize", PAGE_SIZE);
+    }
+
+    @Test
+    void pollBlockchain_CreditsIncreasesWithBoundedConcurrency() {
+        // Arrange
+        List<WalletBalance> wallets = new ArrayList<>();
+        for (int i = 0; i < WALLETS; i++) {
+            wallets.add(wallet(i + 1L, String.format("0x%040x", i), BigDecimal.ONE));
+        }
+        givenWallets(wallets);
+
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(blockchainService.getNativeBalances(anyCollection())).thenAnswer(invocation -> {
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            Thread.sleep(20);
+            inFlight.decrementAndGet();
+            Collection<String> addresses = invocation.getArgument(0);
+            assertTrue(addresses.size() <= BATCH_SIZE);
+            // Every even wallet received 0.5 ETH
+            Map<String, BigDecimal> balances = new HashMap<>();
+            for (String address : addresses) {
+                balances.put(address, Long.parseLong(address.substring(2), 16) % 2 == 0 ? new BigDecimal("1.5") : BigDecimal.ONE);
+            }
+            return balances;
+        });
+
+        // Act
+        depositWatcherService.pollBlockchain();
+
+        // Assert
+        verify(blockchainService, times(WALLETS / BATCH_SIZE)).getNativeBalances(anyCollection());
+        verify(blockchainService, never()).getNativeBalance(anyString());
+        verify(depositCreditService, times(WALLETS / 2))
+                .creditDeposit(any(WalletBalance.class), eq(eth), eq(new BigDecimal("0.5")), eq(new BigDecimal("1.5")), anyString());
+        assertTrue(maxInFlight.get() <= MAX_CONCURRENCY, "at most " + MAX_CONCURRENCY + " RPC calls in flight");
+        assertTrue(maxInFlight.get() > 1, "balance lookups run in parallel");
+    }
+
+    @Test
+    void pollBlockchain_FailingWalletDoesNotStopCycle() {
+        // Arrange
+        WalletBalance broken = wallet(1L, "0x0000000000000000000000000000000000000001", BigDecimal.ZERO);
+        WalletBalance funded = wallet(2L, "0x0000000000000000000000000000000000000002", BigDecimal.ZERO);
+        givenWallets(List.of(broken, funded));
+        // The lookup for the broken wallet failed, so it is missing from the result
+        when(blockchainService.getNativeBalances(anyCollection()))
+                .thenReturn(Map.of(funded.getWalletAddress(), BigDecimal.TEN));
+
+        // Act
+        depositWatcherService.pollBlockchain();
+
+        // Assert
+        verify(depositCreditService).creditDeposit(eq(funded), eq(eth), eq(BigDecimal.TEN), eq(BigDecimal.TEN), anyString());
+        verifyNoMoreInteractions(depositCreditService);
+    }
+
+    @Test
+    void pollBlockchain_ChecksTokenWalletsPerToken() {
+        // Arrange
+        Token usdt = new Token("USDT", "Tether", 6).setTokenId(2L).setContractAddress(USDT_CONTRACT);
+        when(tokenRegistry.findByContractAddress(USDT_CONTRACT.toLowerCase())).thenReturn(Optional.of(usdt));
+        when(tokenRegistry.findByContractAddress(USDT_CONTRACT)).thenReturn(Optional.of(usdt));
+        WalletBalance first = wallet(1L, "0x0000000000000000000000000000000000000001", BigDecimal.ZERO);
+        WalletBalance second = wallet(2L, "0x0000000000000000000000000000000000000002", BigDecimal.ONE);
+        WalletBalance unknownToken = wallet(3L, "0x0000000000000000000000000000000000000003", BigDecimal.ZERO);
+        first.setTokenContractAddress(USDT_CONTRACT);
+        second.setTokenContractAddress(USDT_CONTRACT.toLowerCase());
+        unknownToken.setTokenContractAddress("0x00000000000000000000000000000000000000ff");
+        givenWallets(List.of(first, second, unknownToken));
+        when(blockchainService.getTokenBalances(eq(usdt), anyCollection())).thenReturn(Map.of(
+                first.getWalletAddress(), new BigDecimal("25"),
+                second.getWalletAddress(), BigDecimal.ONE));
+
+        // Act
+        depositWatcherService.pollBlockchain();
+
+        // Assert - both USDT wallets share one lookup, the unknown token is skipped
+        verify(blockchainService).getTokenBalances(usdt, List.of(first.getWalletAddress(), second.getWalletAddress()));
+        verifyNoMoreInteractions(blockchainService);
+        verify(depositCreditService).creditDeposit(eq(first), eq(usdt), eq(new BigDecimal("25")), eq(new BigDecimal("25")), anyString());
+        verifyNoMoreInteractions(depositCreditService);
+    }
+
+    /**
+     * Serve the wallets through keyset pages, like the database would.
+     */
+    private void givenWallets(List<WalletBalance> wallets) {
+        when(walletBalanceRepository.findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class))).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            Limit limit = invocation.getArgument(1);
+            return wallets.stream()
+                    .filter(wb -> wb.getId() > afterId)
+                    .sorted(Comparator.comparing(WalletBalance::getId))
+                    .limit(limit.max())
+                    .toList();
+        });
+    }
+
+    private WalletBalance wallet(Long id, String address, BigDecimal lastKnown) {
+        WalletBalance walletBalance = new WalletBalance();
+        walletBalance.setId(id);
+        walletBalance.setUserId(id + 100);
+        walletBalance.setWalletAddress(address);
+        walletBalance.setTokenContractAddress("");
+        walletBalance.setBalance(lastKnown);
+        return walletBalance;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.crypto_exchange.service;
+
+import org.junit.jupiter.api.Test;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Bool;
+import org.web3j.abi.datatypes.DynamicArray;
+import org.web3j.abi.datatypes.DynamicBytes;
+import org.web3j.abi.datatypes.DynamicStruct;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.utils.Numeric;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Multicall3Test {
+
+    private static final String TOKEN = "0xdac17f958d2ee523a2206206994597c13d831ec7";
+
+    @Test
+    void encodeAggregate3_MatchesWeb3jAbiEncoding() {
+        // Arrange - calldata of different lengths exercises the padding
+        List<Multicall3.Call> calls = List.of(
+                new Multicall3.Call(TOKEN, "0x70a08231" + "00".repeat(12) + "742d35cc6634c0532925a3b844bc454e4438f44e"),
+                new Multicall3.Call(TOKEN, "0x18160ddd"));
+
+        List<DynamicStruct> structs = new ArrayList<>();
+        for (Multicall3.Call call : calls) {
+            structs.add(new DynamicStruct(new Address(call.target()), new Bool(true),
+                    new DynamicBytes(Numeric.hexStringToByteArray(call.callData()))));
+        }
+        String expected = FunctionEncoder.encode(new Function("aggregate3",
+                List.of(new DynamicArray<>(DynamicStruct.class, structs)), List.of()));
+
+        // Act & Assert
+        assertEquals(expected, Multicall3.encodeAggregate3(calls));
+        assertEquals(2, callCount(expected));
+    }
+
+    @Test
+    void decodeAggregate3_ReadsSuccessFlagsAndReturnData() {
+        // Arrange
+        String balance = "00".repeat(31) + "2a";
+        List<Multicall3.Result> results = List.of(
+                new Multicall3.Result(true, balance),
+                new Multicall3.Result(false, ""),
+                new Multicall3.Result(true, balance + balance));
+
+        // Act
+        List<Multicall3.Result> decoded = Multicall3.decodeAggregate3(encodeResults(results));
+
+        // Assert
+        assertEquals(results, decoded);
+    }
+
+    /**
+     * ABI encoding of {@code (bool,bytes)[]} as returned by {@code aggregate3}, produced with web3j.
+     */
+    static String encodeResults(List<Multicall3.Result> results) {
+        List<DynamicStruct> structs = new ArrayList<>();
+        for (Multicall3.Result result : results) {
+            structs.add(new DynamicStruct(new Bool(result.success()),
+                    new DynamicBytes(Numeric.hexStringToByteArray(result.returnData()))));
+        }
+        return "0x" + FunctionEncoder.encodeConstructor(List.of(new DynamicArray<>(DynamicStruct.class, structs)));
+    }
+
+    /**
+     * Number of calls in encoded {@code aggregate3} calldata.
+     */
+    static int callCount(String calldata) {
+        String hex = Numeric.cleanHexPrefix(calldata).substring(8);
+        return Numeric.toBigInt(hex.substring(64, 128)).intValueExact();
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.entity.HotWalletNonce;
+import com.example.crypto_exchange.entity.TransactionLog;
+import com.example.crypto_exchange.repository.HotWalletNonceRepository;
+import com.example.crypto_exchange.repository.TransactionLogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.web3j.crypto.Hash;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class NonceManagerTest {
+
+    private static final String WALLET = "0x90f8bf6a479f320ead074411a4b0e7944ea8c9c1";
+
+    private Web3j web3j;
+    private HotWalletNonceRepository nonceRepository;
+    private TransactionLogRepository transactionLogRepository;
+    private Request<?, EthGetTransactionCount> countRequest;
+    private NonceManager nonceManager;
+
+    @BeforeEach
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void setUp() {
+        web3j = Mockito.mock(Web3j.class);
+        nonceRepository = Mockito.mock(HotWalletNonceRepository.class);
+        transactionLogRepository = Mockito.mock(TransactionLogRepository.class);
+        countRequest = mock(Request.class);
+        when(web3j.ethGetTransactionCount(WALLET, DefaultBlockParameterName.PENDING)).thenReturn((Request) countRequest);
+        nonceManager = new NonceManager(web3j, nonceRepository, transactionLogRepository);
+    }
+
+    @Test
+    void reserve_ConcurrentCallers_GetDistinctConsecutiveNoncesWithOneNodeCall() throws Exception {
+        // Arrange
+        nodeCount(7);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        Set<Long> nonces = ConcurrentHashMap.newKeySet();
+
+        // Act
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 125; j++) {
+                    nonces.add(nonceManager.reserve(WALLET));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(1000, nonces.size());
+        assertEquals(7L, nonces.stream().mapToLong(Long::longValue).min().orElseThrow());
+        assertEquals(1006L, nonces.stream().mapToLong(Long::longValue).max().orElseThrow());
+        verify(countRequest, times(1)).send();
+    }
+
+    @Test
+    void reserve_PersistedMarkAheadOfNode_ContinuesFromMarkAndReissuesLostNonces() throws Exception {
+        // Arrange: nonces 5..9 were handed out before a restart, 6 and 8 are still in flight
+        nodeCount(5);
+        when(nonceRepository.findById(WALLET)).thenReturn(Optional.of(new HotWalletNonce(WALLET, 10L)));
+        when(transactionLogRepository.findInFlightWithdrawals(5L, 10L)).thenReturn(List.of(inFlight(6L, null), inFlight(8L, null)));
+
+        // Act
+        List<Long> nonces = List.of(nonceManager.reserve(WALLET), nonceManager.reserve(WALLET),
+                nonceManager.reserve(WALLET), nonceManager.reserve(WALLET));
+
+        // Assert
+        assertEquals(List.of(5L, 7L, 9L, 10L), nonces);
+    }
+
+    @Test
+    void release_RejectedNonce_IsHandedOutBeforeNewOnes() throws Exception {
+        // Arrange
+        nodeCount(0);
+        nonceManager.reserve(WALLET);
+        long rejected = nonceManager.reserve(WALLET);
+        nonceManager.reserve(WALLET);
+
+        // Act
+        nonceManager.release(rejected);
+
+        // Assert
+        assertEquals(1L, nonceManager.reserve(WALLET));
+        assertEquals(3L, nonceManager.reserve(WALLET));
+    }
+
+    @Test
+    void reconcile_NonceUsedOutsideExchange_SkipsAheadAndDropsStaleReleases() throws Exception {
+        // Arrange
+        nodeCount(3);
+        nonceManager.reserve(WALLET);
+        nonceManager.release(3L);
+        nodeCount(12);
+
+        // Act
+        nonceManager.reconcile();
+
+        // Assert
+        assertEquals(12L, nonceManager.reserve(WALLET));
+        verify(transactionLogRepository, never()).findInFlightWithdrawals(anyLong(), anyLong());
+    }
+
+    @Test
+    void reconcile_DroppedBroadcast_SendsStoredRawTransactionsAgainWithoutReissuingTheirNonces() throws Exception {
+        // Arrange: nonces 5..7 were signed and stored, but the broadcast of 5 never reached the node
+        nodeCount(5);
+        nonceManager.reserve(WALLET);
+        nonceManager.reserve(WALLET);
+        nonceManager.reserve(WALLET);
+        when(transactionLogRepository.findInFlightWithdrawals(5L, 8L))
+                .thenReturn(List.of(inFlight(5L, "0xraw5"), inFlight(6L, "0xraw6"), inFlight(7L, "0xraw7")));
+        List<String> sent = nodeAcceptsRawTransactions();
+
+        // Act
+        nonceManager.reconcile();
+
+        // Assert
+        assertEquals(List.of("0xraw5", "0xraw6", "0xraw7"), sent);
+        assertEquals(8L, nonceManager.reserve(WALLET));
+    }
+
+    @Test
+    void checkpoint_PersistsHighWaterMarkOnlyWhenItMoved() throws Exception {
+        // Arrange
+        nodeCount(4);
+        nonceManager.reserve(WALLET);
+        nonceManager.reserve(WALLET);
+
+        // Act
+        nonceManager.checkpoint();
+        nonceManager.checkpoint();
+
+        // Assert
+        ArgumentCaptor<HotWalletNonce> saved = ArgumentCaptor.forClass(HotWalletNonce.class);
+        verify(nonceRepository, times(1)).save(saved.capture());
+        assertEquals(WALLET, saved.getValue().getAddress());
+        assertEquals(6L, saved.getValue().getNextNonce());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<String> nodeAcceptsRawTransactions() throws Exception {
+        List<String> sent = new ArrayList<>();
+        when(web3j.ethSendRawTransaction(anyString())).thenAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            EthSendTransaction response = new EthSendTransaction();
+            response.setResult(Hash.sha3(invocation.getArgument(0, String.class)));
+            Request request = mock(Request.class);
+            when(request.send()).thenReturn(response);
+            return request;
+        });
+        return sent;
+    }
+
+    private static TransactionLog inFlight(long nonce, String rawTransaction) {
+        TransactionLog withdrawal = new TransactionLog();
+        withdrawal.setLogId(100 + nonce);
+        withdrawal.setNonce(nonce);
+        withdrawal.setRawTransaction(rawTransaction);
+        return withdrawal;
+    }
+
+    private void nodeCount(long count) throws Exception {
+        EthGetTransactionCount response = new EthGetTransactionCount();
+        response.setResult("0x" + Long.toHexString(count));
+        doReturn(response).when(countRequest).send();
+    }
+}
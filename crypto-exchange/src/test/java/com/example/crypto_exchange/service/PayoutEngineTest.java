@@ -0,0 +1,165 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.entity.Token;
+import com.example.crypto_exchange.entity.TransactionLog;
+import com.example.crypto_exchange.entity.TransactionStatus;
+import com.example.crypto_exchange.entity.TransactionType;
+import com.example.crypto_exchange.repository.HotWalletNonceRepository;
+import com.example.crypto_exchange.repository.TransactionLogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Hash;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthGasPrice;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PayoutEngineTest {
+
+    private static final String PRIVATE_KEY = "0x4c0883a69102937d6231471b5dbb6204fe5129617082792ae468d01a3f362318";
+    private static final String TO_ADDRESS = "0x742d35cc6634c0532925a3b844bc454e4438f44e";
+
+    private WithdrawalQueue withdrawalQueue;
+    private Web3j web3j;
+    private PayoutEngine payoutEngine;
+    private final List<String> broadcastRaw = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void setUp() throws Exception {
+        withdrawalQueue = Mockito.mock(WithdrawalQueue.class);
+        TokenRegistry tokenRegistry = Mockito.mock(TokenRegistry.class);
+        web3j = Mockito.mock(Web3j.class);
+        CredentialsFactory credentialsFactory = Mockito.mock(CredentialsFactory.class);
+        when(credentialsFactory.create(PRIVATE_KEY)).thenReturn(Credentials.create(PRIVATE_KEY));
+        when(tokenRegistry.findById(1L)).thenReturn(Optional.of(new Token(1L, "ETH", "Ethereum", 18, null)));
+
+        EthGasPrice gasPrice = new EthGasPrice();
+        gasPrice.setResult("0x3b9aca00");
+        Request gasPriceRequest = mock(Request.class);
+        when(gasPriceRequest.send()).thenReturn(gasPrice);
+        when(web3j.ethGasPrice()).thenReturn(gasPriceRequest);
+
+        EthGetTransactionCount count = new EthGetTransactionCount();
+        count.setResult("0x5");
+        Request countRequest = mock(Request.class);
+        when(countRequest.send()).thenReturn(count);
+        when(web3j.ethGetTransactionCount(anyString(), eq(DefaultBlockParameterName.PENDING))).thenReturn(countRequest);
+
+        NonceManager nonceManager = new NonceManager(web3j, Mockito.mock(HotWalletNonceRepository.class),
+                Mockito.mock(TransactionLogRepository.class));
+        payoutEngine = new PayoutEngine(withdrawalQueue, tokenRegistry, web3j, credentialsFactory, nonceManager,
+                Mockito.mock(ReceiptTracker.class));
+        ReflectionTestUtils.setField(payoutEngine, "exchangeWalletPrivateKey", PRIVATE_KEY);
+    }
+
+    @Test
+    void submitQueued_SignsWithConsecutiveNoncesAndRecordsHashesBeforeBroadcast() throws Exception {
+        // Arrange
+        when(withdrawalQueue.queued(anyInt())).thenReturn(List.of(withdrawal(1L), withdrawal(2L)));
+        nodeResponds(null, null);
+        CompletableFuture<String> waiter = payoutEngine.awaitSubmission(2L);
+
+        // Act
+        int taken = payoutEngine.submitQueued();
+
+        // Assert
+        assertEquals(2, taken);
+        ArgumentCaptor<List<TransactionLog>> signed = ArgumentCaptor.forClass(List.class);
+        verify(withdrawalQueue).markSigned(signed.capture());
+        assertEquals(List.of(5L, 6L), signed.getValue().stream().map(TransactionLog::getNonce).toList());
+        assertEquals(Hash.sha3(broadcastRaw.get(1)), signed.getValue().get(1).getTxHash());
+        assertEquals(broadcastRaw.get(1), signed.getValue().get(1).getRawTransaction());
+        assertEquals(Hash.sha3(broadcastRaw.get(1)), waiter.getNow(null));
+        verify(withdrawalQueue, never()).fail(any(), anyString());
+    }
+
+    @Test
+    void submitQueued_RejectedTransaction_IsRefundedAndItsNonceReused() throws Exception {
+        // Arrange
+        when(withdrawalQueue.queued(anyInt())).thenReturn(List.of(withdrawal(1L)), List.of(withdrawal(2L)));
+        nodeResponds("insufficient funds for gas * price + value", null);
+
+        // Act
+        payoutEngine.submitQueued();
+        payoutEngine.submitQueued();
+
+        // Assert
+        verify(withdrawalQueue).fail(argThat(w -> w.getLogId() == 1L), contains("insufficient funds"));
+        ArgumentCaptor<List<TransactionLog>> signed = ArgumentCaptor.forClass(List.class);
+        verify(withdrawalQueue, times(2)).markSigned(signed.capture());
+        assertEquals(5L, signed.getAllValues().get(1).get(0).getNonce(), "the rejected nonce must be used again");
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void run_BroadcastFails_KeepsWithdrawalSignedAndReconcilesAtOnce() throws Exception {
+        // Arrange
+        when(withdrawalQueue.queued(anyInt())).thenReturn(List.of(withdrawal(1L)));
+        when(web3j.ethSendRawTransaction(anyString())).thenAnswer(invocation -> {
+            Request request = mock(Request.class);
+            when(request.sendAsync()).thenReturn(CompletableFuture.failedFuture(new IOException("connection reset")));
+            return request;
+        });
+        ReflectionTestUtils.setField(payoutEngine, "reconcileIntervalMs", 3_600_000L);
+
+        // Act
+        payoutEngine.run();
+
+        // Assert - the nonce is compared with the node again (after the first reservation) instead of in an hour
+        verify(withdrawalQueue, never()).fail(any(), anyString());
+        verify(withdrawalQueue, never()).requeue(any());
+        verify(web3j, times(2)).ethGetTransactionCount(anyString(), eq(DefaultBlockParameterName.PENDING));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void nodeResponds(String... errors) {
+        List<String> remaining = new ArrayList<>(Arrays.asList(errors));
+        when(web3j.ethSendRawTransaction(anyString())).thenAnswer(invocation -> {
+            broadcastRaw.add(invocation.getArgument(0));
+            EthSendTransaction response = new EthSendTransaction();
+            String error = remaining.isEmpty() ? null : remaining.remove(0);
+            if (error != null) {
+                response.setError(new Response.Error(-32000, error));
+            } else {
+                response.setResult(Hash.sha3(invocation.getArgument(0, String.class)));
+            }
+            Request request = mock(Request.class);
+            when(request.sendAsync()).thenReturn(CompletableFuture.completedFuture(response));
+            return request;
+        });
+    }
+
+    private static TransactionLog withdrawal(Long logId) {
+        TransactionLog withdrawal = new TransactionLog();
+        withdrawal.setLogId(logId);
+        withdrawal.setTransactionType(TransactionType.WITHDRAW);
+        withdrawal.setUserId(1L);
+        withdrawal.setTokenId(1L);
+        withdrawal.setAmount(new BigDecimal("0.5"));
+        withdrawal.setToAddress(TO_ADDRESS);
+        withdrawal.setStatus(TransactionStatus.PENDING);
+        return withdrawal;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.service.RateLimitService.Endpoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitServiceTest {
+
+    private RateLimitService rateLimitService;
+
+    @BeforeEach
+    void setUp() {
+        rateLimitService = new RateLimitService(5, 5, 2, 1000);
+    }
+
+    @Test
+    void tryConsume_ExhaustedUser_DoesNotThrottleOtherUsers() {
+        // Arrange
+        assertTrue(rateLimitService.tryConsume("alice", Endpoint.WITHDRAW).isConsumed());
+        assertTrue(rateLimitService.tryConsume("alice", Endpoint.WITHDRAW).isConsumed());
+
+        // Act
+        boolean aliceAllowed = rateLimitService.tryConsume("alice", Endpoint.WITHDRAW).isConsumed();
+        boolean bobAllowed = rateLimitService.tryConsume("bob", Endpoint.WITHDRAW).isConsumed();
+
+        // Assert
+        assertFalse(aliceAllowed);
+        assertTrue(bobAllowed);
+        assertEquals(2, rateLimitService.activeBuckets());
+    }
+
+    @Test
+    void tryConsume_EndpointsHaveSeparateBuckets() {
+        // Arrange
+        rateLimitService.tryConsume("alice", Endpoint.WITHDRAW);
+        rateLimitService.tryConsume("alice", Endpoint.WITHDRAW);
+
+        // Act & Assert
+        assertFalse(rateLimitService.tryConsume("alice", Endpoint.WITHDRAW).isConsumed());
+        assertEquals(4, rateLimitService.tryConsume("alice", Endpoint.TRANSFER).getRemainingTokens());
+        assertTrue(rateLimitService.tryConsume("alice", Endpoint.DEPOSIT).isConsumed());
+    }
+
+    @Test
+    void constructor_NonPositiveLimit_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimitService(0, 5, 2, 1000));
+    }
+}
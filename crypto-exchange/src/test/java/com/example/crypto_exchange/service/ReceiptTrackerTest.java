@@ -0,0 +1,167 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.entity.TransactionLog;
+import com.example.crypto_exchange.entity.TransactionStatus;
+import com.example.crypto_exchange.entity.TransactionType;
+import com.example.crypto_exchange.exception.WithdrawException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ReceiptTrackerTest {
+
+    private static final String HOT_WALLET = "0x90f8bf6a479f320ead074411a4b0e7944ea8c9c1";
+
+    private WithdrawalQueue withdrawalQueue;
+    private BlockchainService blockchainService;
+    private ReceiptTracker receiptTracker;
+
+    @BeforeEach
+    void setUp() {
+        withdrawalQueue = Mockito.mock(WithdrawalQueue.class);
+        blockchainService = Mockito.mock(BlockchainService.class);
+        when(withdrawalQueue.find(any())).thenReturn(Optional.empty());
+        receiptTracker = new ReceiptTracker(withdrawalQueue, blockchainService);
+    }
+
+    @Test
+    void poll_MinedWithdrawal_CompletesWaiterOnlyOnceFinal() throws Exception {
+        // Arrange
+        TransactionLog withdrawal = submitted(1L, "0xaa");
+        when(withdrawalQueue.submitted(anyInt())).thenReturn(List.of(withdrawal));
+        when(blockchainService.getTransactionReceipts(List.of("0xaa"))).thenReturn(Map.of("0xaa", receipt(100, "0x1")));
+        CompletableFuture<String> waiter = receiptTracker.awaitFinal(1L);
+
+        // Act: mined in block 100, head 105 is 6 confirmations, head 111 is 12
+        when(blockchainService.getLatestBlockNumber()).thenReturn(105L);
+        receiptTracker.poll();
+        verify(withdrawalQueue, never()).complete(any(), anyString());
+        assertFalse(waiter.isDone());
+        when(blockchainService.getLatestBlockNumber()).thenReturn(111L);
+        receiptTracker.poll();
+
+        // Assert
+        assertEquals("0xaa", waiter.getNow(null));
+        verify(withdrawalQueue).complete(argThat(w -> w.getLogId() == 1L), eq("0xaa"));
+    }
+
+    @Test
+    void poll_RevertedWithdrawal_FailsWaiterAndRefundsWhenFinal() {
+        // Arrange
+        TransactionLog withdrawal = submitted(2L, "0xbb");
+        when(withdrawalQueue.submitted(anyInt())).thenReturn(List.of(withdrawal));
+        when(blockchainService.getLatestBlockNumber()).thenReturn(200L);
+        when(blockchainService.getTransactionReceipts(List.of("0xbb"))).thenReturn(Map.of("0xbb", receipt(150, "0x0")));
+        CompletableFuture<String> waiter = receiptTracker.awaitFinal(2L);
+
+        // Act
+        receiptTracker.poll();
+
+        // Assert
+        ExecutionException exception = assertThrows(ExecutionException.class, waiter::get);
+        assertEquals("WITHDRAWAL_FAILED", ((WithdrawException) exception.getCause()).getErrorCode());
+        verify(withdrawalQueue).fail(withdrawal, "Transaction reverted in block 150");
+    }
+
+    @Test
+    void poll_NonceUsedByAnotherTransaction_FailsAndRefundsWithdrawal() {
+        // Arrange - nonces 7 and 9 have no receipt; by the final block 100 the wallet had used nonces up to 7
+        TransactionLog replaced = submitted(5L, "0xee");
+        replaced.setNonce(7L);
+        replaced.setFromAddress(HOT_WALLET);
+        TransactionLog pending = submitted(6L, "0xff");
+        pending.setNonce(9L);
+        pending.setFromAddress(HOT_WALLET);
+        when(withdrawalQueue.submitted(anyInt())).thenReturn(List.of(replaced, pending));
+        when(blockchainService.getLatestBlockNumber()).thenReturn(111L);
+        when(blockchainService.getTransactionReceipts(any())).thenReturn(Map.of());
+        when(blockchainService.getTransactionCount(HOT_WALLET, 100L)).thenReturn(8L);
+        CompletableFuture<String> waiter = receiptTracker.awaitFinal(5L);
+
+        // Act
+        receiptTracker.poll();
+
+        // Assert
+        assertTrue(waiter.isCompletedExceptionally());
+        verify(withdrawalQueue).fail(replaced, "Nonce 7 was used by another transaction by block 100");
+        verify(withdrawalQueue, never()).fail(eq(pending), anyString());
+        verify(blockchainService).getTransactionReceipts(List.of("0xee"));
+    }
+
+    @Test
+    void poll_SameHeadAsLastPoll_SkipsReceiptLookups() {
+        // Arrange
+        when(withdrawalQueue.submitted(anyInt())).thenReturn(List.of(submitted(3L, "0xcc")));
+        when(blockchainService.getLatestBlockNumber()).thenReturn(300L);
+        when(blockchainService.getTransactionReceipts(any())).thenReturn(Map.of());
+
+        // Act
+        boolean first = receiptTracker.poll();
+        boolean second = receiptTracker.poll();
+
+        // Assert
+        assertTrue(first);
+        assertFalse(second);
+        verify(blockchainService, times(1)).getTransactionReceipts(any());
+    }
+
+    @Test
+    void poll_NothingInFlight_DoesNotCallTheNode() {
+        // Arrange
+        when(withdrawalQueue.submitted(anyInt())).thenReturn(List.of());
+
+        // Act
+        boolean progressed = receiptTracker.poll();
+
+        // Assert
+        assertFalse(progressed);
+        verifyNoInteractions(blockchainService);
+    }
+
+    @Test
+    void awaitFinal_AlreadyCompleted_CompletesImmediately() throws Exception {
+        // Arrange
+        TransactionLog completed = submitted(4L, "0xdd");
+        completed.setStatus(TransactionStatus.COMPLETED);
+        when(withdrawalQueue.find(4L)).thenReturn(Optional.of(completed));
+
+        // Act
+        CompletableFuture<String> waiter = receiptTracker.awaitFinal(4L);
+
+        // Assert
+        assertEquals("0xdd", waiter.get());
+    }
+
+    private static TransactionReceipt receipt(long blockNumber, String status) {
+        TransactionReceipt receipt = new TransactionReceipt();
+        receipt.setBlockNumber("0x" + Long.toHexString(blockNumber));
+        receipt.setStatus(status);
+        return receipt;
+    }
+
+    private static TransactionLog submitted(Long logId, String txHash) {
+        TransactionLog withdrawal = new TransactionLog();
+        withdrawal.setLogId(logId);
+        withdrawal.setTransactionType(TransactionType.WITHDRAW);
+        withdrawal.setUserId(1L);
+        withdrawal.setTokenId(1L);
+        withdrawal.setAmount(BigDecimal.ONE);
+        withdrawal.setStatus(TransactionStatus.PENDING);
+        withdrawal.setTxHash(txHash);
+        return withdrawal;
+    }
+}
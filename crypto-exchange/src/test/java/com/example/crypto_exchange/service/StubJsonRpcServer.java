@@ -0,0 +1,86 @@
+package com.example.crypto_exchange.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Minimal local JSON-RPC endpoint for tests. Every call (single or batched) is answered by the given
+ * handler; returning {@code null} from the handler produces a JSON-RPC error for that call.
+ * Batch responses are deliberately returned in reverse order, which the JSON-RPC spec allows.
+ */
+class StubJsonRpcServer implements AutoCloseable {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final BiFunction<String, JsonNode, Object> handler;
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+    StubJsonRpcServer(BiFunction<String, JsonNode, Object> handler) throws IOException {
+        this.handler = handler;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", exchange -> {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            JsonNode response;
+            if (request.isArray()) {
+                batchSizes.add(request.size());
+                ArrayNode responses = objectMapper.createArrayNode();
+                for (int i = request.size() - 1; i >= 0; i--) {
+                    responses.add(answer(request.get(i)));
+                }
+                response = responses;
+            } else {
+                batchSizes.add(1);
+                response = answer(request);
+            }
+            byte[] body = objectMapper.writeValueAsBytes(response);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        this.server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Number of calls contained in each HTTP request received so far.
+     */
+    List<Integer> batchSizes() {
+        return List.copyOf(batchSizes);
+    }
+
+    private ObjectNode answer(JsonNode call) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", call.get("id"));
+        Object result = handler.apply(call.get("method").asText(), call.get("params"));
+        if (result == null) {
+            ObjectNode error = response.putObject("error");
+            error.put("code", -32000);
+            error.put("message", "stub error");
+        } else {
+            response.set("result", objectMapper.valueToTree(result));
+        }
+        return response;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.entity.Token;
+import com.example.crypto_exchange.repository.TokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TokenRegistryTest {
+
+    private static final String USDT_CONTRACT = "0xdAC17F958D2ee523a2206206994597C13D831ec7";
+
+    private TokenRepository tokenRepository;
+    private TokenRegistry tokenRegistry;
+
+    @BeforeEach
+    void setUp() {
+        tokenRepository = Mockito.mock(TokenRepository.class);
+        Token eth = new Token("ETH", "Ethereum", 18).setTokenId(1L);
+        Token usdt = new Token("USDT", "Tether", 6).setTokenId(2L).setContractAddress(USDT_CONTRACT);
+        when(tokenRepository.findAll()).thenReturn(List.of(eth, usdt));
+
+        tokenRegistry = new TokenRegistry(tokenRepository);
+        tokenRegistry.refresh();
+    }
+
+    @Test
+    void lookupsAreServedFromMemory() {
+        assertEquals(1L, tokenRegistry.findBySymbol("ETH").orElseThrow().getTokenId());
+        assertEquals("USDT", tokenRegistry.findById(2L).orElseThrow().getSymbol());
+        assertTrue(tokenRegistry.existsById(1L));
+        assertFalse(tokenRegistry.existsById(3L));
+        assertTrue(tokenRegistry.findBySymbol("BTC").isEmpty());
+
+        verify(tokenRepository, times(1)).findAll();
+        verifyNoMoreInteractions(tokenRepository);
+    }
+
+    @Test
+    void contractLookupIsCaseInsensitive() {
+        assertEquals("USDT", tokenRegistry.findByContractAddress(USDT_CONTRACT.toLowerCase()).orElseThrow().getSymbol());
+        assertEquals("USDT", tokenRegistry.findByContractAddress(USDT_CONTRACT.toUpperCase().replace("0X", "0x")).orElseThrow().getSymbol());
+    }
+
+    @Test
+    void refreshPicksUpNewTokens() {
+        Token dai = new Token("DAI", "Dai", 18).setTokenId(3L);
+        when(tokenRepository.findAll()).thenReturn(List.of(dai));
+
+        tokenRegistry.refresh();
+
+        assertTrue(tokenRegistry.findBySymbol("DAI").isPresent());
+        assertTrue(tokenRegistry.findBySymbol("ETH").isEmpty());
+    }
+}
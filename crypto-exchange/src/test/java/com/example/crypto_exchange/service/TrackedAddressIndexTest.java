@@ -0,0 +1,144 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.repository.WalletBalanceRepository;
+import com.example.crypto_exchange.repository.WalletBalanceRepository.TrackedWallet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Limit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TrackedAddressIndexTest {
+
+    private static final String ADDRESS = "0x742d35Cc6634C0532925a3b844Bc454e4438f44e";
+
+    private WalletBalanceRepository walletBalanceRepository;
+
+    @BeforeEach
+    void setUp() {
+        walletBalanceRepository = Mockito.mock(WalletBalanceRepository.class);
+        when(walletBalanceRepository.findTrackedWalletsAfter(anyLong(), any(Limit.class))).thenReturn(List.of());
+    }
+
+    @Test
+    void lookupIgnoresCaseAndPrefixAndMatchesTopics() {
+        // Arrange
+        when(walletBalanceRepository.findTrackedWalletsAfter(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(trackedWallet(7L, ADDRESS, 42L)));
+        TrackedAddressIndex index = new TrackedAddressIndex(walletBalanceRepository, false, 16);
+
+        // Act
+        index.refresh();
+
+        // Assert
+        assertEquals(42L, index.userIdOf(ADDRESS));
+        assertEquals(42L, index.userIdOf(ADDRESS.toLowerCase()));
+        assertEquals(42L, index.userIdOf(ADDRESS.substring(2).toUpperCase()));
+        assertEquals(42L, index.userIdOf("0x000000000000000000000000" + ADDRESS.substring(2)));
+        assertFalse(index.contains("0x0000000000000000000000000000000000000001"));
+        assertFalse(index.contains("0x000000000000000000000001" + ADDRESS.substring(2)), "non-zero topic padding");
+        assertFalse(index.contains("0x742d35"));
+        assertFalse(index.contains("0xzz2d35Cc6634C0532925a3b844Bc454e4438f44e"));
+        assertFalse(index.contains(null));
+    }
+
+    @Test
+    void refreshLoadsIncrementallyAndGrows() {
+        // Arrange - two pages on the first load, then only rows after the last seen id
+        List<TrackedWallet> first = wallets(1, 10_000);
+        List<TrackedWallet> second = wallets(10_001, 15_000);
+        when(walletBalanceRepository.findTrackedWalletsAfter(eq(0L), any(Limit.class))).thenReturn(first);
+        when(walletBalanceRepository.findTrackedWalletsAfter(eq(10_000L), any(Limit.class))).thenReturn(second);
+        TrackedAddressIndex index = new TrackedAddressIndex(walletBalanceRepository, true, 16);
+
+        // Act
+        int loaded = index.refresh();
+        when(walletBalanceRepository.findTrackedWalletsAfter(eq(15_000L), any(Limit.class)))
+                .thenReturn(List.of(trackedWallet(15_001L, address(15_001), 99L)));
+        int added = index.refresh();
+
+        // Assert
+        assertEquals(15_000, loaded);
+        assertEquals(1, added);
+        assertEquals(15_001, index.size());
+        for (int i = 1; i <= 15_000; i++) {
+            assertEquals(i + 1_000_000L, index.userIdOf(address(i)));
+        }
+        assertEquals(99L, index.userIdOf(address(15_001)));
+        verify(walletBalanceRepository).findTrackedWalletsAfter(eq(15_000L), any(Limit.class));
+    }
+
+    @Test
+    void refreshKeepsFirstWalletForAnAddress() {
+        // Arrange - the same address tracked for ETH and USDT
+        TrackedAddressIndex index = new TrackedAddressIndex(walletBalanceRepository, false, 16);
+        when(walletBalanceRepository.findTrackedWalletsAfter(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(trackedWallet(1L, ADDRESS, 5L), trackedWallet(2L, ADDRESS.toLowerCase(), 6L)));
+
+        // Act
+        int added = index.refresh();
+
+        // Assert
+        assertEquals(1, added);
+        assertEquals(1, index.size());
+        assertEquals(5L, index.userIdOf(ADDRESS));
+    }
+
+    @Test
+    void refreshSkipsUserIdsTooLargeForASlot() {
+        // Arrange
+        TrackedAddressIndex index = new TrackedAddressIndex(walletBalanceRepository, false, 16);
+        when(walletBalanceRepository.findTrackedWalletsAfter(eq(0L), any(Limit.class))).thenReturn(List.of(
+                trackedWallet(1L, ADDRESS, TrackedAddressIndex.MAX_USER_ID),
+                trackedWallet(2L, address(2), TrackedAddressIndex.MAX_USER_ID + 1)));
+
+        // Act
+        int added = index.refresh();
+
+        // Assert
+        assertEquals(1, added);
+        assertEquals(TrackedAddressIndex.MAX_USER_ID, index.userIdOf(ADDRESS));
+        assertFalse(index.contains(address(2)));
+        assertEquals(32L * 24, index.memoryBytes(), "24 bytes per slot");
+    }
+
+    private static List<TrackedWallet> wallets(int fromId, int toId) {
+        List<TrackedWallet> wallets = new ArrayList<>();
+        for (int id = fromId; id <= toId; id++) {
+            wallets.add(trackedWallet(id, address(id), id + 1_000_000L));
+        }
+        return wallets;
+    }
+
+    private static String address(int i) {
+        // Spread the bits over the whole address
+        return String.format("0x%08x%016x%016x", i * 31, (long) i * 0x9E3779B97F4A7C15L, (long) i);
+    }
+
+    static TrackedWallet trackedWallet(long id, String address, long userId) {
+        return new TrackedWallet() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getWalletAddress() {
+                return address;
+            }
+
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+        };
+    }
+}
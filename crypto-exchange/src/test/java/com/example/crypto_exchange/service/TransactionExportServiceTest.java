@@ -0,0 +1,108 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.entity.TransactionLog;
+import com.example.crypto_exchange.entity.TransactionStatus;
+import com.example.crypto_exchange.entity.TransactionType;
+import com.example.crypto_exchange.repository.TransactionLogRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TransactionExportServiceTest {
+
+    private static final Long USER_ID = 1L;
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 1, 12, 0, 0);
+
+    private TransactionLogRepository transactionLogRepository;
+    private EntityManager entityManager;
+    private TransactionExportService transactionExportService;
+
+    @BeforeEach
+    void setUp() {
+        transactionLogRepository = Mockito.mock(TransactionLogRepository.class);
+        entityManager = Mockito.mock(EntityManager.class);
+        transactionExportService = new TransactionExportService(transactionLogRepository, entityManager,
+                new ObjectMapper().findAndRegisterModules());
+    }
+
+    @Test
+    void export_WritesCsvAndDetachesRows() throws Exception {
+        // Arrange
+        AtomicBoolean closed = new AtomicBoolean();
+        TransactionLog failed = logEntry(2L, NOW.plusSeconds(1));
+        failed.setStatus(TransactionStatus.FAILED);
+        failed.setErrorMessage("Insufficient balance, \"ETH\"");
+        when(transactionLogRepository.streamByUserId(USER_ID))
+                .thenReturn(Stream.of(logEntry(1L, NOW), failed).onClose(() -> closed.set(true)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        long rows = transactionExportService.export(USER_ID, null, null, TransactionExportService.Format.CSV, out);
+
+        // Assert
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, rows);
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("log_id,transaction_type,"));
+        assertEquals("1,DEPOSIT,1,1,1.5,COMPLETED,0xabc,,,,2025-06-01T12:00", lines[1]);
+        assertEquals("2,DEPOSIT,1,1,1.5,FAILED,0xabc,,,\"Insufficient balance, \"\"ETH\"\"\",2025-06-01T12:00:01", lines[2]);
+        verify(entityManager, times(2)).detach(any(TransactionLog.class));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void export_WritesNdjsonForUserWithinTimeRange() throws Exception {
+        // Arrange
+        when(transactionLogRepository.streamByUserIdAndTimeRange(USER_ID, NOW.minusDays(1), NOW))
+                .thenReturn(Stream.of(logEntry(1L, NOW), logEntry(2L, NOW)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        transactionExportService.export(USER_ID, NOW.minusDays(1), NOW, TransactionExportService.Format.NDJSON, out);
+
+        // Assert
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        JsonNode second = new ObjectMapper().readTree(lines[1]);
+        assertEquals(2L, second.get("logId").asLong());
+        assertEquals("DEPOSIT", second.get("transactionType").asText());
+        assertEquals(0, new BigDecimal("1.5").compareTo(second.get("amount").decimalValue()));
+    }
+
+    @Test
+    void export_RequiresUserOrCompleteTimeRange() {
+        assertThrows(IllegalArgumentException.class, () ->
+                transactionExportService.export(null, null, null, TransactionExportService.Format.CSV, new ByteArrayOutputStream()));
+        assertThrows(IllegalArgumentException.class, () ->
+                transactionExportService.export(null, NOW, null, TransactionExportService.Format.CSV, new ByteArrayOutputStream()));
+        assertThrows(IllegalArgumentException.class, () -> TransactionExportService.Format.parse("xml"));
+        verifyNoInteractions(transactionLogRepository);
+    }
+
+    private static TransactionLog logEntry(Long logId, LocalDateTime createdAt) {
+        TransactionLog entry = new TransactionLog();
+        entry.setLogId(logId);
+        entry.setTransactionType(TransactionType.DEPOSIT);
+        entry.setUserId(USER_ID);
+        entry.setTokenId(1L);
+        entry.setAmount(new BigDecimal("1.5"));
+        entry.setStatus(TransactionStatus.COMPLETED);
+        entry.setTxHash("0xabc");
+        entry.setCreatedAt(createdAt);
+        return entry;
+    }
+}
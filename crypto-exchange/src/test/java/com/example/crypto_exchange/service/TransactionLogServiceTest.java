@@ -0,0 +1,141 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.dto.TransactionHistoryPage;
+import com.example.crypto_exchange.dto.TransactionLogResponse;
+import com.example.crypto_exchange.entity.Token;
+import com.example.crypto_exchange.entity.TransactionLog;
+import com.example.crypto_exchange.entity.TransactionStatus;
+import com.example.crypto_exchange.entity.TransactionType;
+import com.example.crypto_exchange.repository.TransactionLogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Limit;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TransactionLogServiceTest {
+
+    private static final Long USER_ID = 1L;
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 1, 12, 0, 0, 123_000_000);
+
+    private TransactionLogRepository transactionLogRepository;
+    private TransactionLogService transactionLogService;
+
+    @BeforeEach
+    void setUp() {
+        transactionLogRepository = Mockito.mock(TransactionLogRepository.class);
+        transactionLogService = new TransactionLogService(transactionLogRepository, Mockito.mock(TokenRegistry.class), Optional.empty());
+    }
+
+    @Test
+    void getUserTransactionHistory_ReturnsCursorToNextPage() {
+        // Arrange - 3 rows requested, 4 available; the last two share a timestamp
+        List<TransactionLog> rows = List.of(
+                logEntry(10L, NOW), logEntry(9L, NOW.minusSeconds(1)), logEntry(8L, NOW.minusSeconds(2)), logEntry(7L, NOW.minusSeconds(2)));
+        when(transactionLogRepository.findUserHistory(USER_ID, Limit.of(4))).thenReturn(rows);
+        when(transactionLogRepository.findUserHistoryBefore(USER_ID, NOW.minusSeconds(2), 8L, Limit.of(4)))
+                .thenReturn(List.of(logEntry(7L, NOW.minusSeconds(2))));
+
+        // Act
+        TransactionHistoryPage first = transactionLogService.getUserTransactionHistory(USER_ID, null, null, 3);
+        TransactionHistoryPage second = transactionLogService.getUserTransactionHistory(USER_ID, null, first.getNextCursor(), 3);
+
+        // Assert
+        assertEquals(List.of(10L, 9L, 8L), first.getItems().stream().map(TransactionLogResponse::getLogId).toList());
+        assertNotNull(first.getNextCursor());
+        assertEquals(List.of(7L), second.getItems().stream().map(TransactionLogResponse::getLogId).toList());
+        assertNull(second.getNextCursor());
+        verify(transactionLogRepository, never()).count();
+    }
+
+    @Test
+    void getUserTransactionHistory_FiltersByTypeAndCapsLimit() {
+        // Arrange
+        when(transactionLogRepository.findUserHistoryByType(USER_ID, TransactionType.DEPOSIT,
+                Limit.of(TransactionLogService.MAX_HISTORY_PAGE_SIZE + 1))).thenReturn(new ArrayList<>());
+
+        // Act
+        TransactionHistoryPage page = transactionLogService.getUserTransactionHistory(USER_ID, TransactionType.DEPOSIT, null, 10_000);
+
+        // Assert
+        assertTrue(page.getItems().isEmpty());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void getTransactionsByTimeRange_RejectsInvalidCursor() {
+        assertThrows(IllegalArgumentException.class, () ->
+                transactionLogService.getTransactionsByTimeRange(NOW.minusDays(1), NOW, "not-a-cursor", 10));
+        assertThrows(IllegalArgumentException.class, () ->
+                transactionLogService.getTransactionsByTimeRange(NOW.minusDays(1), NOW, null, 0));
+    }
+
+    @Test
+    void logDeposit_IsInsertedInCallersTransactionWithWriteBehind() {
+        // Arrange
+        TransactionLogWriteBehindWriter writer = Mockito.mock(TransactionLogWriteBehindWriter.class);
+        TransactionLogService service = new TransactionLogService(transactionLogRepository, ethRegistry(), Optional.of(writer));
+        when(transactionLogRepository.save(any(TransactionLog.class))).thenAnswer(invocation -> {
+            TransactionLog entry = invocation.getArgument(0);
+            entry.setLogId(7L);
+            return entry;
+        });
+
+        // Act
+        TransactionLog logged = service.logDeposit(USER_ID, "ETH", BigDecimal.ONE, "0xfrom", "0xaa", 3);
+
+        // Assert
+        assertEquals(7L, logged.getLogId());
+        assertEquals(3, logged.getLogIndex());
+        verify(transactionLogRepository).save(logged);
+        verifyNoInteractions(writer);
+    }
+
+    @Test
+    void logFailedTransaction_GoesThroughWriteBehind() {
+        // Arrange
+        TransactionLogWriteBehindWriter writer = Mockito.mock(TransactionLogWriteBehindWriter.class);
+        TransactionLogService service = new TransactionLogService(transactionLogRepository, ethRegistry(), Optional.of(writer));
+        when(writer.enqueue(any(TransactionLog.class))).thenAnswer(invocation -> {
+            TransactionLog entry = invocation.getArgument(0);
+            entry.setLogId(8L);
+            return CompletableFuture.completedFuture(entry);
+        });
+
+        // Act
+        TransactionLog logged = service.logFailedTransaction(TransactionType.WITHDRAW, USER_ID, "ETH", BigDecimal.ONE, "node down");
+
+        // Assert
+        assertEquals(8L, logged.getLogId());
+        assertEquals(TransactionStatus.FAILED, logged.getStatus());
+        verify(transactionLogRepository, never()).save(any(TransactionLog.class));
+    }
+
+    private static TokenRegistry ethRegistry() {
+        TokenRegistry tokenRegistry = Mockito.mock(TokenRegistry.class);
+        when(tokenRegistry.findBySymbol("ETH")).thenReturn(Optional.of(new Token("ETH", "Ethereum", 18).setTokenId(1L)));
+        return tokenRegistry;
+    }
+
+    private static TransactionLog logEntry(Long logId, LocalDateTime createdAt) {
+        TransactionLog entry = new TransactionLog();
+        entry.setLogId(logId);
+        entry.setTransactionType(TransactionType.DEPOSIT);
+        entry.setUserId(USER_ID);
+        entry.setTokenId(1L);
+        entry.setAmount(BigDecimal.ONE);
+        entry.setStatus(TransactionStatus.COMPLETED);
+        entry.setCreatedAt(createdAt);
+        return entry;
+    }
+}
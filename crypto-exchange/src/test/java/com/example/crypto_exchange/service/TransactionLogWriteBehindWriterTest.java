@@ -0,0 +1,131 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.entity.TransactionLog;
+import com.example.crypto_exchange.entity.TransactionStatus;
+import com.example.crypto_exchange.entity.TransactionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TransactionLogWriteBehindWriterTest {
+
+    private static final Long BAD_USER = -1L;
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionLogWriteBehindWriter writer;
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong sequence = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForList(eq(TransactionLogWriteBehindWriter.NEXT_IDS_SQL), eq(Long.class), any()))
+                .thenAnswer(invocation -> {
+                    int count = invocation.getArgument(2);
+                    return LongStream.range(0, count).map(i -> sequence.addAndGet(TransactionLog.ID_ALLOCATION_SIZE)).boxed().toList();
+                });
+        when(jdbcTemplate.batchUpdate(eq(TransactionLogWriteBehindWriter.INSERT_SQL), anyList())).thenAnswer(invocation -> {
+            List<Object[]> rows = invocation.getArgument(1);
+            if (rows.stream().anyMatch(row -> row[2].equals(BAD_USER))) {
+                throw new DataIntegrityViolationException("bad row");
+            }
+            batchSizes.add(rows.size());
+            return new int[rows.size()];
+        });
+        writer = new TransactionLogWriteBehindWriter(jdbcTemplate, Mockito.mock(PlatformTransactionManager.class), 100, 50);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writer.shutdown();
+    }
+
+    @Test
+    void queuedEntriesAreWrittenInBatches() throws Exception {
+        // Arrange - hold the first batch until everything else is queued
+        CountDownLatch release = new CountDownLatch(1);
+        when(jdbcTemplate.queryForList(eq(TransactionLogWriteBehindWriter.NEXT_IDS_SQL), eq(Long.class), eq(1)))
+                .thenAnswer(invocation -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return List.of(sequence.addAndGet(TransactionLog.ID_ALLOCATION_SIZE));
+                });
+        writer.start();
+
+        // Act
+        List<CompletableFuture<TransactionLog>> written = new ArrayList<>();
+        written.add(writer.enqueue(entry(1L)));
+        Thread.sleep(50);
+        for (long userId = 2; userId <= 61; userId++) {
+            written.add(writer.enqueue(entry(userId)));
+        }
+        release.countDown();
+        CompletableFuture.allOf(written.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        // Assert - one single-row batch, then the 60 waiting entries in batches of at most 50
+        assertEquals(List.of(1, 50, 10), batchSizes);
+        for (CompletableFuture<TransactionLog> future : written) {
+            assertNotNull(future.get().getLogId());
+        }
+        assertEquals(61, written.stream().map(f -> f.join().getLogId()).distinct().count());
+    }
+
+    @Test
+    void failingEntryDoesNotFailItsBatch() throws Exception {
+        // Arrange
+        writer.start();
+
+        // Act
+        CompletableFuture<TransactionLog> good = writer.enqueue(entry(12L));
+        CompletableFuture<TransactionLog> bad = writer.enqueue(entry(BAD_USER));
+        CompletableFuture<TransactionLog> alsoGood = writer.enqueue(entry(14L));
+
+        // Assert
+        assertNotNull(good.get(5, TimeUnit.SECONDS).getLogId());
+        assertNotNull(alsoGood.get(5, TimeUnit.SECONDS).getLogId());
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(DataIntegrityViolationException.class, failure.getCause());
+    }
+
+    @Test
+    void shutdownDrainsQueue() throws Exception {
+        // Arrange
+        CompletableFuture<TransactionLog> queued = writer.enqueue(entry(1L));
+        writer.start();
+
+        // Act
+        writer.shutdown();
+
+        // Assert
+        assertTrue(queued.isDone());
+        assertThrows(IllegalStateException.class, () -> writer.enqueue(entry(2L)));
+    }
+
+    private static TransactionLog entry(Long userId) {
+        TransactionLog entry = new TransactionLog();
+        entry.setTransactionType(TransactionType.TRANSFER);
+        entry.setUserId(userId);
+        entry.setTokenId(1L);
+        entry.setAmount(BigDecimal.ONE);
+        entry.setStatus(TransactionStatus.COMPLETED);
+        return entry;
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.entity.UserBalance;
+import com.example.crypto_exchange.ledger.BalanceLedger;
+import com.example.crypto_exchange.ledger.LedgerIntent;
+import com.example.crypto_exchange.repository.UserBalanceRepository;
+import com.example.crypto_exchange.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class UserBalanceServiceTest {
+
+    private static final Long USER_ID = 1L;
+    private static final Long OTHER_USER_ID = 2L;
+    private static final Long TOKEN_ID = 1L;
+
+    private UserBalanceService userBalanceService;
+    private UserBalanceRepository userBalanceRepository;
+    private UserRepository userRepository;
+    private TokenRegistry tokenRegistry;
+
+    @BeforeEach
+    void setUp() {
+        userBalanceRepository = Mockito.mock(UserBalanceRepository.class);
+        userRepository = Mockito.mock(UserRepository.class);
+        tokenRegistry = Mockito.mock(TokenRegistry.class);
+        userBalanceService = new UserBalanceService(userBalanceRepository, userRepository, tokenRegistry, Optional.empty());
+    }
+
+    @Test
+    void addToBalance_UsesSingleUpsert() {
+        // Act
+        userBalanceService.addToBalance(USER_ID, TOKEN_ID, new BigDecimal("2.5"));
+
+        // Assert
+        verify(userBalanceRepository).upsertCredit(USER_ID, TOKEN_ID, new BigDecimal("2.5"));
+        verifyNoMoreInteractions(userBalanceRepository);
+        verifyNoInteractions(userRepository, tokenRegistry);
+    }
+
+    @Test
+    void addToBalance_UnknownUserOrToken() {
+        // Arrange
+        when(userBalanceRepository.upsertCredit(any(), any(), any()))
+                .thenThrow(new DataIntegrityViolationException("fk_balances_user"));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> userBalanceService.addToBalance(USER_ID, TOKEN_ID, BigDecimal.ONE));
+    }
+
+    @Test
+    void subtractFromBalance_UsesSingleConditionalUpdate() {
+        // Arrange
+        when(userBalanceRepository.debitIfSufficient(USER_ID, TOKEN_ID, BigDecimal.ONE)).thenReturn(1);
+
+        // Act
+        userBalanceService.subtractFromBalance(USER_ID, TOKEN_ID, BigDecimal.ONE);
+
+        // Assert
+        verify(userBalanceRepository).debitIfSufficient(USER_ID, TOKEN_ID, BigDecimal.ONE);
+        verifyNoMoreInteractions(userBalanceRepository);
+    }
+
+    @Test
+    void subtractFromBalance_InsufficientBalance() {
+        // Arrange
+        when(userBalanceRepository.debitIfSufficient(USER_ID, TOKEN_ID, BigDecimal.TEN)).thenReturn(0);
+        when(userBalanceRepository.findByUserIdAndTokenId(USER_ID, TOKEN_ID))
+                .thenReturn(Optional.of(new UserBalance(USER_ID, TOKEN_ID, BigDecimal.ONE)));
+
+        // Act & Assert
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+                () -> userBalanceService.subtractFromBalance(USER_ID, TOKEN_ID, BigDecimal.TEN));
+        assertTrue(ex.getMessage().startsWith("Insufficient balance"));
+    }
+
+    @Test
+    void subtractFromBalance_NoBalance() {
+        // Arrange
+        when(userBalanceRepository.debitIfSufficient(USER_ID, TOKEN_ID, BigDecimal.ONE)).thenReturn(0);
+        when(userBalanceRepository.findByUserIdAndTokenId(USER_ID, TOKEN_ID)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+                () -> userBalanceService.subtractFromBalance(USER_ID, TOKEN_ID, BigDecimal.ONE));
+        assertTrue(ex.getMessage().startsWith("No balance found"));
+    }
+
+    @Test
+    void transferBalance_TouchesRowsInUserOrder() {
+        // Arrange
+        when(userBalanceRepository.debitIfSufficient(any(), any(), any())).thenReturn(1);
+
+        // Act
+        userBalanceService.transferBalance(OTHER_USER_ID, USER_ID, TOKEN_ID, BigDecimal.ONE);
+
+        // Assert - the lower user id (the receiver here) is locked first
+        InOrder inOrder = inOrder(userBalanceRepository);
+        inOrder.verify(userBalanceRepository).upsertCredit(USER_ID, TOKEN_ID, BigDecimal.ONE);
+        inOrder.verify(userBalanceRepository).debitIfSufficient(OTHER_USER_ID, TOKEN_ID, BigDecimal.ONE);
+    }
+
+    @Test
+    void reserveIfAvailable_UsesSingleConditionalUpdate() {
+        // Arrange
+        when(userBalanceRepository.reserveIfAvailable(USER_ID, TOKEN_ID, BigDecimal.ONE)).thenReturn(1);
+        when(userBalanceRepository.reserveIfAvailable(USER_ID, TOKEN_ID, BigDecimal.TEN)).thenReturn(0);
+
+        // Act & Assert
+        assertTrue(userBalanceService.reserveIfAvailable(USER_ID, TOKEN_ID, BigDecimal.ONE));
+        assertFalse(userBalanceService.reserveIfAvailable(USER_ID, TOKEN_ID, BigDecimal.TEN));
+        verify(userBalanceRepository, never()).findByUserIdAndTokenId(any(), any());
+    }
+
+    @Test
+    void releaseAndSettleReserved_MoreThanReserved() {
+        // Arrange
+        UserBalance balance = new UserBalance(USER_ID, TOKEN_ID, BigDecimal.TEN);
+        balance.setLockedAmount(BigDecimal.ONE);
+        when(userBalanceRepository.findByUserIdAndTokenId(USER_ID, TOKEN_ID)).thenReturn(Optional.of(balance));
+
+        // Act & Assert
+        IllegalStateException release = assertThrows(IllegalStateException.class,
+                () -> userBalanceService.releaseReserved(USER_ID, TOKEN_ID, BigDecimal.TEN));
+        IllegalStateException settle = assertThrows(IllegalStateException.class,
+                () -> userBalanceService.settleReserved(USER_ID, TOKEN_ID, BigDecimal.TEN));
+        assertTrue(release.getMessage().startsWith("Insufficient reserved balance. Reserved: 1"));
+        assertTrue(settle.getMessage().startsWith("Insufficient reserved balance"));
+        verify(userBalanceRepository).releaseReserved(USER_ID, TOKEN_ID, BigDecimal.TEN);
+        verify(userBalanceRepository).settleReserved(USER_ID, TOKEN_ID, BigDecimal.TEN);
+    }
+
+    @Test
+    void getAvailableBalance_ExcludesLockedPart() {
+        // Arrange
+        UserBalance balance = new UserBalance(USER_ID, TOKEN_ID, new BigDecimal("5"));
+        balance.setLockedAmount(new BigDecimal("2"));
+        when(userBalanceRepository.findByUserIdAndTokenId(USER_ID, TOKEN_ID)).thenReturn(Optional.of(balance));
+
+        // Act & Assert
+        assertEquals(new BigDecimal("3"), userBalanceService.getAvailableBalance(USER_ID, TOKEN_ID));
+        assertEquals(new BigDecimal("5"), userBalanceService.getBalance(USER_ID, TOKEN_ID));
+        assertFalse(userBalanceService.hasSufficientBalance(USER_ID, TOKEN_ID, new BigDecimal("4")));
+        assertEquals(BigDecimal.ZERO, userBalanceService.getAvailableBalance(OTHER_USER_ID, TOKEN_ID));
+    }
+
+    @Test
+    void ledgerTransfer_RolledBack_GivesDebitBackAndNeverCreditsReceiver() {
+        // Arrange
+        BalanceLedger ledger = Mockito.mock(BalanceLedger.class);
+        BigDecimal amount = new BigDecimal("2");
+        when(ledger.prepareTransfer(USER_ID, OTHER_USER_ID, TOKEN_ID, amount)).thenReturn(new LedgerIntent(7L, false));
+        UserBalanceService service = new UserBalanceService(userBalanceRepository, userRepository, tokenRegistry, Optional.of(ledger));
+
+        // Act - the audit insert after the balance change fails
+        assertThrows(IllegalStateException.class, () -> transaction().executeWithoutResult(status -> {
+            service.transferBalance(USER_ID, OTHER_USER_ID, TOKEN_ID, amount);
+            throw new IllegalStateException("audit insert failed");
+        }));
+
+        // Assert - aborting the transfer gives the sender the debit back
+        verify(ledger).abort(7L);
+        verify(ledger, never()).commit(anyLong());
+        verify(ledger, never()).recordCommitted(any());
+        verify(ledger, never()).credit(anyLong(), anyLong(), any());
+        verify(ledger, never()).find(anyLong(), anyLong());
+    }
+
+    @Test
+    void ledgerCredit_CommittedOnlyOnceTheTransactionCommits() {
+        // Arrange
+        BalanceLedger ledger = Mockito.mock(BalanceLedger.class);
+        when(ledger.prepareCredit(USER_ID, TOKEN_ID, BigDecimal.ONE)).thenReturn(new LedgerIntent(1L, false));
+        when(ledger.prepareCredit(USER_ID, TOKEN_ID, BigDecimal.TEN)).thenReturn(new LedgerIntent(2L, false));
+        when(ledger.prepareRelease(USER_ID, TOKEN_ID, BigDecimal.ONE)).thenReturn(new LedgerIntent(3L, false));
+        UserBalanceService service = new UserBalanceService(userBalanceRepository, userRepository, tokenRegistry, Optional.of(ledger));
+
+        // Act
+        transaction().executeWithoutResult(status -> {
+            service.addToBalance(USER_ID, TOKEN_ID, BigDecimal.ONE);
+            status.setRollbackOnly();
+        });
+        transaction().executeWithoutResult(status -> {
+            service.addToBalance(USER_ID, TOKEN_ID, BigDecimal.TEN);
+            service.releaseReserved(USER_ID, TOKEN_ID, BigDecimal.ONE);
+            verify(ledger, never()).commit(anyLong());
+        });
+
+        // Assert - the ids are recorded in the transaction before the ledger commits them
+        verify(ledger).abort(1L);
+        InOrder inOrder = inOrder(ledger);
+        inOrder.verify(ledger).recordCommitted(List.of(2L, 3L));
+        inOrder.verify(ledger).commit(2L);
+        inOrder.verify(ledger).commit(3L);
+        verify(ledger, never()).commit(1L);
+        verify(ledger, never()).credit(anyLong(), anyLong(), any());
+        verifyNoInteractions(userRepository, tokenRegistry);
+    }
+
+    @Test
+    void ledgerCredit_ForUnknownUser_AbortsTheIntent() {
+        // Arrange
+        BalanceLedger ledger = Mockito.mock(BalanceLedger.class);
+        when(ledger.prepareCredit(USER_ID, TOKEN_ID, BigDecimal.ONE)).thenReturn(new LedgerIntent(4L, true));
+        UserBalanceService service = new UserBalanceService(userBalanceRepository, userRepository, tokenRegistry, Optional.of(ledger));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> service.addToBalance(USER_ID, TOKEN_ID, BigDecimal.ONE));
+        verify(ledger).abort(4L);
+        verify(ledger, never()).commit(anyLong());
+    }
+
+    /**
+     * Transactions without a resource, enough to run the synchronisations on commit and rollback
+     */
+    private static TransactionTemplate transaction() {
+        return new TransactionTemplate(new AbstractPlatformTransactionManager() {
+            @Override
+            protected Object doGetTransaction() {
+                return new Object();
+            }
+
+            @Override
+            protected void doBegin(Object transaction, TransactionDefinition definition) {
+            }
+
+            @Override
+            protected void doCommit(DefaultTransactionStatus status) {
+            }
+
+            @Override
+            protected void doRollback(DefaultTransactionStatus status) {
+            }
+        });
+    }
+}
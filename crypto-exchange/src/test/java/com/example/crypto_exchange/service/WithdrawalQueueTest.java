@@ -0,0 +1,96 @@
+package com.example.crypto_exchange.service;
+
+import com.example.crypto_exchange.entity.Token;
+import com.example.crypto_exchange.entity.TransactionLog;
+import com.example.crypto_exchange.entity.TransactionStatus;
+import com.example.crypto_exchange.exception.WithdrawException;
+import com.example.crypto_exchange.repository.TransactionLogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class WithdrawalQueueTest {
+
+    private static final Long USER_ID = 1L;
+    private static final Long TOKEN_ID = 2L;
+    private static final BigDecimal AMOUNT = new BigDecimal("0.5");
+
+    private TransactionLogRepository transactionLogRepository;
+    private UserBalanceService userBalanceService;
+    private WithdrawalQueue withdrawalQueue;
+
+    @BeforeEach
+    void setUp() {
+        transactionLogRepository = Mockito.mock(TransactionLogRepository.class);
+        userBalanceService = Mockito.mock(UserBalanceService.class);
+        when(transactionLogRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        withdrawalQueue = new WithdrawalQueue(transactionLogRepository, userBalanceService);
+    }
+
+    @Test
+    void enqueue_ReservesAmountInsteadOfDebiting() {
+        // Arrange
+        when(userBalanceService.reserveIfAvailable(USER_ID, TOKEN_ID, AMOUNT)).thenReturn(true);
+
+        // Act
+        TransactionLog queued = withdrawalQueue.enqueue(USER_ID, token(), AMOUNT, "0xabc");
+
+        // Assert
+        assertEquals(TransactionStatus.PENDING, queued.getStatus());
+        verify(userBalanceService).reserveIfAvailable(USER_ID, TOKEN_ID, AMOUNT);
+        verify(userBalanceService, never()).debitIfSufficient(any(), any(), any());
+    }
+
+    @Test
+    void enqueue_InsufficientAvailableBalance() {
+        // Arrange
+        when(userBalanceService.reserveIfAvailable(USER_ID, TOKEN_ID, AMOUNT)).thenReturn(false);
+        when(userBalanceService.hasBalance(USER_ID, TOKEN_ID)).thenReturn(true);
+
+        // Act & Assert
+        WithdrawException ex = assertThrows(WithdrawException.class,
+                () -> withdrawalQueue.enqueue(USER_ID, token(), AMOUNT, "0xabc"));
+        assertEquals("INSUFFICIENT_BALANCE", ex.getErrorCode());
+    }
+
+    @Test
+    void completeAndFail_SettleOrReleaseReservationOnce() {
+        // Arrange
+        TransactionLog mined = withdrawal(10L);
+        TransactionLog reverted = withdrawal(11L);
+        when(transactionLogRepository.finishPending(eq(10L), any(), any(), any())).thenReturn(1, 0);
+        when(transactionLogRepository.finishPending(eq(11L), any(), any(), any())).thenReturn(1, 0);
+
+        // Act: the second call of each finds the withdrawal already final
+        withdrawalQueue.complete(mined, "0x1");
+        withdrawalQueue.complete(mined, "0x1");
+        withdrawalQueue.fail(reverted, "reverted");
+        withdrawalQueue.fail(reverted, "reverted");
+
+        // Assert
+        verify(userBalanceService, times(1)).settleReserved(USER_ID, TOKEN_ID, AMOUNT);
+        verify(userBalanceService, times(1)).releaseReserved(USER_ID, TOKEN_ID, AMOUNT);
+        verify(userBalanceService, never()).addToBalance(any(Long.class), any(Long.class), any());
+    }
+
+    private static Token token() {
+        Token token = new Token("ETH", "Ether", 18);
+        token.setTokenId(TOKEN_ID);
+        return token;
+    }
+
+    private static TransactionLog withdrawal(Long logId) {
+        TransactionLog withdrawal = new TransactionLog();
+        withdrawal.setLogId(logId);
+        withdrawal.setUserId(USER_ID);
+        withdrawal.setTokenId(TOKEN_ID);
+        withdrawal.setAmount(AMOUNT);
+        return withdrawal;
+    }
+}